@@ -26,6 +26,47 @@ package org.ode4j.ode;
 
 public interface DBhvSpace extends DSpace {
 
+	/**
+	 * Tree builders, see
+	 * {@link OdeHelper#createBHVSpace(DSpace, int, BUILD, double, long)}.
+	 */
+	enum BUILD {
+		/** Median splits, the split axis alternates. */
+		LOW_QUALITY,
+		/** Median splits along the axis with the smallest surface area. */
+		HIGH_QUALITY,
+		/**
+		 * Binned surface area heuristic. Slower to build, but queries visit
+		 * fewer nodes. Updates decide per subtree whether to refit or to
+		 * rebuild it, depending on how many geoms left their fat AABBs.
+		 */
+		SAH,
+		/**
+		 * Geoms are sorted once by the Morton code of their centers, then
+		 * split at the median. Fastest to build, e.g. for large static levels.
+		 */
+		MORTON
+	}
+
+	/**
+	 * Add many geoms and build the tree once. This is much faster than
+	 * adding geoms one by one with {@link #add(DGeom)} and colliding in
+	 * between, e.g. when a level is loaded.
+	 * @param geoms Geoms that are not in a space yet.
+	 */
+	void addAll(Iterable<? extends DGeom> geoms);
+
+	/**
+	 * @param parallelBuild Build large trees with ForkJoin tasks of the
+	 * common pool. Default is 'false'.
+	 */
+	void setParallelBuild(boolean parallelBuild);
+
+	/**
+	 * @return Whether large trees are built in parallel.
+	 */
+	boolean getParallelBuild();
+
 	// intentionally undefined, don't use these
 //	dSimpleSpace (dSimpleSpace &);
 //	void operator= (dSimpleSpace &);
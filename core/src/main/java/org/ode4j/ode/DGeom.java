@@ -65,7 +65,8 @@ public interface DGeom {
 	public static final int   dSweepAndPruneSpaceClass = 12;
 	public static final int   dQuadTreeSpaceClass = 13;
 	public static final int   dBVHSpaceClass = 14;
-	public static final int   dLastSpaceClass = dBVHSpaceClass; //14
+	public static final int   dOctreeSpaceClass = 15;
+	public static final int   dLastSpaceClass = dOctreeSpaceClass; //15
 
 	/** 
 	 * ID of the first user defined class. 
@@ -74,7 +75,7 @@ public interface DGeom {
 	 * based on <tt>dFirstUserClass</tt>, for example: 
 	 * <tt>int myCLassID = dFirstUserClass + x;</tt>, where (x &ge; 1). 
 	 */
-	public static final int   dFirstUserClass = 14;
+	public static final int   dFirstUserClass = 15;
 	public static final int   dLastUserClass = dFirstUserClass + dMaxUserClasses - 1;
 	public static final int   dGeomNumClasses = dLastUserClass + 1; 
 	//	};
@@ -112,6 +113,8 @@ public interface DGeom {
 	 *  <li> dSimpleSpaceClass </li>
 	 *  <li> dHashSpaceClass </li>
 	 *  <li> dQuadTreeSpaceClass </li>
+	 *  <li> dBVHSpaceClass </li>
+	 *  <li> dOctreeSpaceClass </li>
 	 *  <li> dFirstUserClass </li>
 	 *  <li> dLastUserClass </li>
 	 * </ul>
@@ -39,6 +39,34 @@ public interface DJointGroup {
 	void empty();
 	void clear();
 
+	/**
+	 * Enable or disable pooling of contact joints.
+	 * <p>
+	 * In a pooling group, {@link #empty()} does not discard contact joints but
+	 * keeps them in a free list, and creating a contact joint in this group
+	 * reuses one of them instead of allocating a new object. This avoids
+	 * allocating a joint for every contact in every step.
+	 * <p>
+	 * Note that pooling changes joint identity semantics: after
+	 * {@link #empty()}, a later call to
+	 * {@link OdeHelper#createContactJoint(DWorld, DJointGroup, DContact)} may
+	 * return the same Java object again, re-initialized for the new contact
+	 * (attached bodies, feedback and user data are reset). References to
+	 * contact joints of a pooling group must therefore not be kept or used
+	 * after the group has been emptied. Other joint types are not pooled.
+	 * <p>
+	 * Disabling pooling discards the free list. Default is <tt>false</tt>.
+	 *
+	 * @param pooling 'true' to reuse contact joints
+	 */
+	void setPooling(boolean pooling);
+
+	/**
+	 * @return 'true' if this group reuses contact joints.
+	 * @see #setPooling(boolean)
+	 */
+	boolean isPooling();
+
 	/**
 	 * Destroy a joint group.
 	 * <p>
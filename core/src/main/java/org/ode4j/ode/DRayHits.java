@@ -0,0 +1,168 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import java.util.Arrays;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+
+/**
+ * Closest hits of the rays of
+ * {@link DSpace#raycastBatch(double[], double[], double[], DRayHits)}.
+ * <p>
+ * The results are stored in primitive arrays that are reused by the next
+ * query. Ray i has hit a geom if {@link #getGeom(int)} is not null, its
+ * depth is then the distance of the hit from the origin of the ray.
+ */
+public final class DRayHits {
+
+	private int size;
+	private DGeom[] geoms;
+	private double[] depths;
+	private double[] positions;
+	private double[] normals;
+
+	public DRayHits() {
+		this(16);
+	}
+
+	/**
+	 * @param capacity initial number of rays
+	 */
+	public DRayHits(int capacity) {
+		geoms = new DGeom[capacity];
+		depths = new double[capacity];
+		positions = new double[capacity * 3];
+		normals = new double[capacity * 3];
+	}
+
+	/**
+	 * Clears the hits and makes room for the given number of rays.
+	 * This is called by the space at the start of a query.
+	 * @param numRays number of rays
+	 */
+	public void reset(int numRays) {
+		if (geoms.length < numRays) {
+			int capacity = Math.max(numRays, geoms.length * 2);
+			geoms = new DGeom[capacity];
+			depths = new double[capacity];
+			positions = new double[capacity * 3];
+			normals = new double[capacity * 3];
+		} else {
+			Arrays.fill(geoms, 0, size, null);
+		}
+		Arrays.fill(depths, 0, numRays, OdeConstants.dInfinity);
+		Arrays.fill(positions, 0, numRays * 3, 0);
+		Arrays.fill(normals, 0, numRays * 3, 0);
+		size = numRays;
+	}
+
+	/**
+	 * Stores the hit of a ray. This is called by the space.
+	 * @param ray index of the ray
+	 * @param geom the geom that has been hit
+	 * @param depth distance from the origin of the ray
+	 * @param pos hit position
+	 * @param normal surface normal at the hit position
+	 */
+	public void set(int ray, DGeom geom, double depth, DVector3C pos, DVector3C normal) {
+		geoms[ray] = geom;
+		depths[ray] = depth;
+		positions[ray * 3] = pos.get0();
+		positions[ray * 3 + 1] = pos.get1();
+		positions[ray * 3 + 2] = pos.get2();
+		normals[ray * 3] = normal.get0();
+		normals[ray * 3 + 1] = normal.get1();
+		normals[ray * 3 + 2] = normal.get2();
+	}
+
+	/**
+	 * @return The number of rays of the last query.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return 'true' if the ray has hit a geom.
+	 */
+	public boolean isHit(int ray) {
+		return geoms[ray] != null;
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return The closest geom hit by the ray or 'null'.
+	 */
+	public DGeom getGeom(int ray) {
+		return geoms[ray];
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @return The distance of the hit from the origin of the ray,
+	 * or infinity if the ray has not hit any geom.
+	 */
+	public double getDepth(int ray) {
+		return depths[ray];
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @param pos receives the hit position
+	 */
+	public void getPosition(int ray, DVector3 pos) {
+		pos.set(positions[ray * 3], positions[ray * 3 + 1], positions[ray * 3 + 2]);
+	}
+
+	/**
+	 * @param ray index of the ray
+	 * @param normal receives the surface normal at the hit position
+	 */
+	public void getNormal(int ray, DVector3 normal) {
+		normal.set(normals[ray * 3], normals[ray * 3 + 1], normals[ray * 3 + 2]);
+	}
+
+	/**
+	 * @return The depths of all rays, the array may be longer than {@link #size()}.
+	 */
+	public double[] getDepths() {
+		return depths;
+	}
+
+	/**
+	 * @return The hit positions, x, y and z of every ray.
+	 */
+	public double[] getPositions() {
+		return positions;
+	}
+
+	/**
+	 * @return The surface normals, x, y and z of every ray.
+	 */
+	public double[] getNormals() {
+		return normals;
+	}
+}
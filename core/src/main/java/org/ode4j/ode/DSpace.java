@@ -24,6 +24,8 @@
  *************************************************************************/
 package org.ode4j.ode;
 
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 /**
  * collision space.
@@ -61,7 +63,293 @@ public interface DSpace extends DGeom {
 	 * @param callback callback
 	 */
 	void collide (Object data, DNearCallback callback);
-	
+
+
+	/**
+	 * Callback for {@link DSpace#collideParallel(TaskExecutor, DParallelNearCallback)}.
+	 * <p>
+	 * Every job gets its own sink, e.g. a contact buffer, so that jobs can
+	 * run concurrently without sharing any state.
+	 *
+	 * @param <T> type of the sink
+	 */
+	interface DParallelNearCallback<T> {
+		/**
+		 * Called on the calling thread once for every job before any pair is tested.
+		 * @return A new (or reused) empty sink.
+		 */
+		T createSink();
+
+		/**
+		 * Called concurrently for all pairs of geoms that may be near each other.
+		 * Implementations should only call {@link OdeHelper#collide} and write
+		 * the results to the sink.
+		 * @param sink The sink of the current job.
+		 * @param o1   The first geom being tested.
+		 * @param o2   The second geom being tested.
+		 */
+		void call(T sink, DGeom o1, DGeom o2);
+
+		/**
+		 * Called on the calling thread for every sink after all pairs have been
+		 * tested, e.g. to create the contact joints.
+		 * The sinks are merged in the order in which a sequential
+		 * {@link DSpace#collide(Object, DNearCallback)} would have reported the pairs.
+		 * @param sink The sink of a job.
+		 */
+		void merge(T sink);
+	}
+
+
+	/**
+	 * Like {@link #collide(Object, DNearCallback)}, but the narrowphase runs in
+	 * parallel on the given executor.
+	 * <p>
+	 * The candidate pairs are found on the calling thread, pairs that involve
+	 * other spaces are expanded as with
+	 * {@link OdeHelper#spaceCollide2(DGeom, DGeom, Object, DNearCallback)},
+	 * so the callback only gets geoms that are not spaces.
+	 * The pairs are then split across the threads of the executor.
+	 * <p>
+	 * Colliders that keep temporary data in the geom (e.g. GImpact trimeshes)
+	 * must not be used with this method, because a geom may be tested in
+	 * several jobs at the same time.
+	 *
+	 * @param <T> type of the sink
+	 * @param executor executor, e.g. the executor of the world
+	 * @param callback callback
+	 */
+	<T> void collideParallel(TaskExecutor executor, DParallelNearCallback<T> callback);
+
+
+	/**
+	 * Callback for {@link DSpace#collideBatched(int, DBatchedNearCallback)}.
+	 */
+	interface DBatchedNearCallback {
+		/**
+		 * Called on the calling thread for all pairs of geoms that may be near
+		 * each other, before any of them is tested.
+		 * @param o1 The first geom.
+		 * @param o2 The second geom.
+		 * @return {@code false} to skip the pair, e.g. because the bodies of the
+		 * geoms are connected by a joint.
+		 */
+		boolean accept(DGeom o1, DGeom o2);
+
+		/**
+		 * Called on the calling thread for every accepted pair with contacts.
+		 * The pairs are reported in the order in which they were accepted.
+		 * @param o1       The first geom.
+		 * @param o2       The second geom.
+		 * @param contacts The contacts, only valid during this call.
+		 * @param count    The number of contacts.
+		 */
+		void call(DGeom o1, DGeom o2, DContactGeomBuffer contacts, int count);
+	}
+
+
+	/**
+	 * Like {@link #collide(Object, DNearCallback)} followed by
+	 * {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)} for every
+	 * pair, but the accepted pairs are first sorted by collider, e.g. all
+	 * box-box pairs, then all sphere-box pairs, and every collider is run over
+	 * all of its pairs in a row.
+	 * <p>
+	 * Pairs that involve other spaces are expanded as with
+	 * {@link OdeHelper#spaceCollide2(DGeom, DGeom, Object, DNearCallback)}.
+	 * The contacts are reported in broadphase order, independent of the sorting.
+	 *
+	 * @param flags the maximum number of contacts per pair, as for
+	 * {@link OdeHelper#collide(DGeom, DGeom, int, DContactGeomBuffer)}
+	 * @param callback callback
+	 */
+	void collideBatched(int flags, DBatchedNearCallback callback);
+
+
+	/**
+	 * Like {@link #collideBatched(int, DBatchedNearCallback)}, but the sorted
+	 * pairs are split across the threads of the executor. Only the colliders
+	 * run in parallel, the callback is always called on the calling thread.
+	 * <p>
+	 * The restrictions of {@link #collideParallel(TaskExecutor, DParallelNearCallback)}
+	 * for colliders that keep temporary data in the geom apply.
+	 *
+	 * @param executor executor, e.g. the executor of the world
+	 * @param flags the maximum number of contacts per pair
+	 * @param callback callback
+	 */
+	void collideBatched(TaskExecutor executor, int flags, DBatchedNearCallback callback);
+
+
+	/**
+	 * A pair of geoms whose AABBs overlap, as tracked by
+	 * {@link DSpace#collideCached(Object, DPairCallback)}.
+	 * <p>
+	 * The pair object stays the same from the call that reports the pair
+	 * as begun until the call that reports it as ended. It is reused for
+	 * other pairs afterwards.
+	 */
+	interface DGeomPair {
+		/**
+		 * @return The first geom, the order of the geoms does not change
+		 * while the pair exists.
+		 */
+		DGeom getGeom1();
+
+		/**
+		 * @return The second geom.
+		 */
+		DGeom getGeom2();
+
+		/**
+		 * @return The user data of the pair, e.g. a contact manifold.
+		 */
+		Object getData();
+
+		/**
+		 * Attach user data to the pair. The data is cleared when the pair ends.
+		 * @param data user data
+		 */
+		void setData(Object data);
+
+		/**
+		 * @return 'true' if neither geom has moved or changed its shape since
+		 * the previous call that reported this pair, for example because
+		 * both bodies are disabled. The results of the previous narrowphase
+		 * test of this pair are then still valid.
+		 */
+		boolean isUnchanged();
+	}
+
+
+	/**
+	 * Callback for {@link DSpace#collideCached(Object, DPairCallback)}.
+	 */
+	interface DPairCallback {
+		/**
+		 * Called for a pair that was not reported by the previous call.
+		 * @param data  data passed to collideCached()
+		 * @param pair  The new pair.
+		 */
+		void begin(Object data, DGeomPair pair);
+
+		/**
+		 * Called for a pair that was also reported by the previous call.
+		 * @param data  data passed to collideCached()
+		 * @param pair  The pair.
+		 */
+		void persist(Object data, DGeomPair pair);
+
+		/**
+		 * Called after all other pairs for every pair that is no longer
+		 * reported. This includes pairs with geoms that have been disabled,
+		 * removed from the space or destroyed since the previous call.
+		 * @param data  data passed to collideCached()
+		 * @param pair  The ended pair, it is reused after this method returns.
+		 */
+		void end(Object data, DGeomPair pair);
+	}
+
+
+	/**
+	 * Like {@link #collide(Object, DNearCallback)}, but the pairs of geoms
+	 * are tracked across calls. Each pair is reported as begun, persisting
+	 * or ended, and user data such as contact manifolds can be attached to it.
+	 * The callback can skip the narrowphase of pairs that are
+	 * {@link DGeomPair#isUnchanged() unchanged}.
+	 * <p>
+	 * Pairs that involve other spaces are expanded as with
+	 * {@link OdeHelper#spaceCollide2(DGeom, DGeom, Object, DNearCallback)},
+	 * so the callback only gets geoms that are not spaces.
+	 * <p>
+	 * The space keeps its pairs until the next call of this method. Calls
+	 * of {@link #collide(Object, DNearCallback)} do not affect them.
+	 *
+	 * @param data data that is passed to the callback
+	 * @param callback callback
+	 */
+	void collideCached(Object data, DPairCallback callback);
+
+
+	/**
+	 * Casts a batch of rays against the geoms of this space and its nested
+	 * spaces and stores the closest hit of every ray in <tt>hits</tt>.
+	 * <p>
+	 * This is faster than testing a {@link DRay} with
+	 * {@link OdeHelper#spaceCollide2(DGeom, DGeom, Object, DNearCallback)}
+	 * for every ray, because the rays traverse the structures of the space
+	 * directly and no contacts are passed to a callback. The hits are the
+	 * same as those of a {@link DRay} with {@link DRay#setClosestHit(boolean)}.
+	 * Disabled geoms are ignored, the category and collide bits are not
+	 * tested.
+	 *
+	 * @param origins origins of the rays, x, y and z of every ray
+	 * @param dirs directions of the rays, x, y and z of every ray,
+	 * they do not need to be normalized
+	 * @param maxLen maximum length of every ray, the length of this array
+	 * is the number of rays
+	 * @param hits receives the closest hit of every ray
+	 * @return The number of rays that have hit a geom.
+	 */
+	int raycastBatch(double[] origins, double[] dirs, double[] maxLen, DRayHits hits);
+
+
+	/**
+	 * Like {@link #raycastBatch(double[], double[], double[], DRayHits)}, but
+	 * the rays are split across the threads of the executor.
+	 * <p>
+	 * The restrictions of {@link #collideParallel(TaskExecutor, DParallelNearCallback)}
+	 * for colliders that keep temporary data in the geom apply.
+	 *
+	 * @param origins origins of the rays, x, y and z of every ray
+	 * @param dirs directions of the rays, x, y and z of every ray
+	 * @param maxLen maximum length of every ray
+	 * @param hits receives the closest hit of every ray
+	 * @param executor executor, e.g. the executor of the world
+	 * @return The number of rays that have hit a geom.
+	 * @see #collideParallel(TaskExecutor, DParallelNearCallback)
+	 */
+	int raycastBatch(double[] origins, double[] dirs, double[] maxLen, DRayHits hits, TaskExecutor executor);
+
+
+	/**
+	 * Moves a geom along a straight line through this space and its nested
+	 * spaces and finds the first geom that it hits, e.g. to move a character
+	 * capsule or a projectile without sub-stepping. The geom keeps its
+	 * orientation, neither the geom nor its space are changed.
+	 * <p>
+	 * Geoms are skipped if they are the moving geom, are attached to the
+	 * same body, are disabled, or do not pass the category and collide bits
+	 * test with the moving geom. The moving geom may be part of this space.
+	 * <p>
+	 * Candidates are found with the swept AABB of the geom. The time of
+	 * impact is found with the colliders: the geom is moved in steps of a
+	 * quarter of the smallest side of its AABB, and the first step that
+	 * touches is bisected. Very thin geoms that are only grazed may be missed.
+	 * <p>
+	 * The geom must be placeable and of a class that can be copied, i.e. a
+	 * sphere, box, capsule, cylinder, convex or trimesh.
+	 *
+	 * @param geom geom to move
+	 * @param motion translation from the current position to the end position
+	 * @param hit receives the first hit
+	 * @return 'true' if a geom has been hit.
+	 */
+	boolean sweep(DGeom geom, DVector3C motion, DSweepHit hit);
+
+
+	/**
+	 * Moves an axis aligned box along a straight line through this space and
+	 * its nested spaces and finds the first enabled geom whose AABB it hits.
+	 * The normal of the hit is the face normal of the AABB that has been hit.
+	 *
+	 * @param aabb box to move
+	 * @param motion translation from the current position to the end position
+	 * @param hit receives the first hit
+	 * @return 'true' if a geom has been hit.
+	 */
+	boolean sweepAABB(DAABBC aabb, DVector3C motion, DSweepHit hit);
+
 	
 	/**
 	 * Sets manual cleanup flag for a space.
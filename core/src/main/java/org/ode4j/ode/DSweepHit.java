@@ -0,0 +1,101 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+
+/**
+ * First hit of {@link DSpace#sweep(DGeom, DVector3C, DSweepHit)} and
+ * {@link DSpace#sweepAABB(DAABBC, DVector3C, DSweepHit)}.
+ * The object can be reused for many queries.
+ */
+public final class DSweepHit {
+
+	private DGeom geom;
+	private double fraction = 1;
+	private final DVector3 normal = new DVector3();
+	private final DVector3 pos = new DVector3();
+
+	/**
+	 * Clears the hit. This is called by the space at the start of a query.
+	 */
+	public void reset() {
+		geom = null;
+		fraction = 1;
+		normal.setZero();
+		pos.setZero();
+	}
+
+	/**
+	 * Stores the hit. This is called by the space.
+	 * @param geom the geom that has been hit
+	 * @param fraction fraction of the motion
+	 * @param normal normal of the hit
+	 * @param pos contact position
+	 */
+	public void set(DGeom geom, double fraction, DVector3C normal, DVector3C pos) {
+		this.geom = geom;
+		this.fraction = fraction;
+		this.normal.set(normal);
+		this.pos.set(pos);
+	}
+
+	/**
+	 * @return 'true' if a geom has been hit.
+	 */
+	public boolean isHit() {
+		return geom != null;
+	}
+
+	/**
+	 * @return The first geom that has been hit or 'null'.
+	 */
+	public DGeom getGeom() {
+		return geom;
+	}
+
+	/**
+	 * @return The fraction of the motion that can be moved without
+	 * penetrating the hit geom, 0 if the geom overlaps it at the start,
+	 * 1 if nothing has been hit.
+	 */
+	public double getFraction() {
+		return fraction;
+	}
+
+	/**
+	 * @return The unit normal of the hit, it points from the hit geom
+	 * towards the moving geom.
+	 */
+	public DVector3C getNormal() {
+		return normal;
+	}
+
+	/**
+	 * @return The contact position at the time of the hit.
+	 */
+	public DVector3C getPosition() {
+		return pos;
+	}
+}
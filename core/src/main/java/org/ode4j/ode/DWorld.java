@@ -24,6 +24,9 @@
  *************************************************************************/
 package org.ode4j.ode;
 
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.threading.task.TaskExecutor;
@@ -365,6 +368,126 @@ public interface DWorld {
 	double getQuickStepW();
 
 
+	/**
+	 * Set the convergence tolerance of QuickStep.
+	 * <p>
+	 * The SOR iterations of an island stop early when no constraint force
+	 * (lambda) changed by more than this value in the last iteration. The
+	 * number of iterations set with {@link #setQuickStepNumIterations(int)}
+	 * is then only the upper limit.
+	 * Default is 0, which always performs all iterations.
+	 *
+	 * @param tolerance maximum change of lambda in a converged iteration, &gt;= 0
+	 * @see #getQuickStepIterationsUsed()
+	 */
+	void setQuickStepTolerance(double tolerance);
+
+
+	/**
+	 * @return The convergence tolerance of QuickStep.
+	 * @see #setQuickStepTolerance(double)
+	 */
+	double getQuickStepTolerance();
+
+
+	/**
+	 * Get the number of SOR iterations that the last call of
+	 * {@link #quickStep(double)} performed for each island.
+	 * Islands without constraints report 0 iterations.
+	 *
+	 * @return a new array with one entry per island of the last step
+	 * @see #setQuickStepTolerance(double)
+	 */
+	int[] getQuickStepIterationsUsed();
+
+
+	/**
+	 * Enable or disable the graph-colored SOR mode of QuickStep.
+	 * <p>
+	 * The constraint rows of an island are then colored so that rows of
+	 * the same color do not share a body. The rows of each color are
+	 * independent and are solved in parallel on the threads of the
+	 * task executor, which pays off for large islands such as big
+	 * contact piles. The rows are solved in a different order than
+	 * in the default mode, so the results differ slightly.
+	 * Default is 'false'.
+	 *
+	 * @param colored 'true' to enable the graph-colored SOR mode
+	 * @see #setTaskExecutor(TaskExecutor)
+	 */
+	void setQuickStepColoredSOR(boolean colored);
+
+
+	/**
+	 * @return Whether QuickStep uses the graph-colored SOR mode.
+	 * @see #setQuickStepColoredSOR(boolean)
+	 */
+	boolean getQuickStepColoredSOR();
+
+
+	/**
+	 * Set the random number seed that QuickStep uses to reorder the
+	 * constraints.
+	 * <p>
+	 * Each world has its own seed, so that worlds stepped in parallel do
+	 * not influence each other. A new world starts with the current
+	 * global seed, see {@link DMisc#dRandSetSeed(long)}.
+	 *
+	 * @param seed the random number seed
+	 */
+	void setQuickStepRandomSeed(long seed);
+
+
+	/**
+	 * @return The random number seed of QuickStep.
+	 * @see #setQuickStepRandomSeed(long)
+	 */
+	long getQuickStepRandomSeed();
+
+
+	/**
+	 * Enable or disable warm starting of QuickStep.
+	 * <p>
+	 * The SOR iterations then start with the constraint forces of the
+	 * previous step instead of zero, so fewer iterations are needed for
+	 * resting contacts and stacks. Contact joints are usually recreated in
+	 * every step, a new contact joint starts with the forces of the previous
+	 * contact between the same geoms that is closest to it (see
+	 * {@link #setQuickStepWarmStartingDistance(double)}). For this to work,
+	 * the contact joints of the previous step must be destroyed (e.g. by
+	 * emptying their joint group) before the new ones are created.
+	 * Default is 'false'.
+	 *
+	 * @param warmStarting 'true' to enable warm starting
+	 */
+	void setQuickStepWarmStarting(boolean warmStarting);
+
+
+	/**
+	 * @return Whether QuickStep uses warm starting.
+	 * @see #setQuickStepWarmStarting(boolean)
+	 */
+	boolean getQuickStepWarmStarting();
+
+
+	/**
+	 * Set the maximum distance between a new contact and a contact of the
+	 * previous step for the new contact to be warm started with the forces
+	 * of the old one. Default is 0.02.
+	 *
+	 * @param distance maximum distance between matching contacts
+	 * @see #setQuickStepWarmStarting(boolean)
+	 */
+	void setQuickStepWarmStartingDistance(double distance);
+
+
+	/**
+	 * @return The maximum distance between matching contacts.
+	 * @see #setQuickStepWarmStartingDistance(double)
+	 */
+	double getQuickStepWarmStartingDistance();
+
+
 	/**
 	 * Set auto disable linear average threshold for newly created bodies.
 	 *
@@ -592,5 +715,196 @@ public interface DWorld {
 	 */
 	void setMaxAngularSpeed (double max_speed);
 
+	/**
+	 * Set the executor that is used to step islands (and, if enabled,
+	 * the stages of the stepper) in parallel.
+	 * Default is a {@link org.ode4j.ode.threading.task.SameThreadTaskExecutor}.
+	 * @param executor executor, e.g. a
+	 *        {@link org.ode4j.ode.threading.task.MultiThreadTaskExecutor} or a
+	 *        work-stealing {@link org.ode4j.ode.threading.task.ForkJoinTaskExecutor}
+	 */
 	void setTaskExecutor(TaskExecutor executor);
+
+
+	/**
+	 * Enable or disable the concurrent island search.
+	 * <p>
+	 * The islands are then found with a lock-free union-find that is split
+	 * across the threads of the task executor, instead of walking the
+	 * body/joint graph on a single thread. This pays off for worlds with
+	 * many thousands of bodies. The order of bodies and joints within
+	 * an island may differ from the sequential search.
+	 * Default is 'false'.
+	 * @param parallel 'true' to search islands concurrently
+	 * @see #setTaskExecutor(TaskExecutor)
+	 */
+	void setParallelIslandSearch(boolean parallel);
+
+
+	/**
+	 * @return Whether islands are searched concurrently.
+	 * @see #setParallelIslandSearch(boolean)
+	 */
+	boolean getParallelIslandSearch();
+
+
+	/**
+	 * Enable or disable persistent islands.
+	 * <p>
+	 * Island membership is then kept up to date when joints are attached,
+	 * detached, enabled or disabled, instead of searching all islands in
+	 * every step. Joints that only connect a body to the static environment
+	 * (e.g. most contacts) never cause a new search, only islands that lost
+	 * a link between two bodies are split again in the next step.
+	 * The order of bodies and joints within an island may differ from the
+	 * regular search.
+	 * Default is 'false'. If enabled, this takes precedence over
+	 * {@link #setParallelIslandSearch(boolean)}.
+	 * @param persistent 'true' to keep islands across steps
+	 */
+	void setPersistentIslands(boolean persistent);
+
+
+	/**
+	 * @return Whether islands are kept across steps.
+	 * @see #setPersistentIslands(boolean)
+	 */
+	boolean getPersistentIslands();
+
+
+	/** Body state layout flag: position (x, y, z). */
+	int BODY_STATE_POSITION = 1;
+	/** Body state layout flag: orientation quaternion (w, x, y, z). */
+	int BODY_STATE_QUATERNION = 2;
+	/** Body state layout flag: linear velocity (x, y, z). */
+	int BODY_STATE_LINEAR_VEL = 4;
+	/** Body state layout flag: angular velocity (x, y, z). */
+	int BODY_STATE_ANGULAR_VEL = 8;
+	/** Body state layout with all components. */
+	int BODY_STATE_ALL = BODY_STATE_POSITION | BODY_STATE_QUATERNION
+			| BODY_STATE_LINEAR_VEL | BODY_STATE_ANGULAR_VEL;
+
+
+	/**
+	 * @return The number of bodies in this world.
+	 */
+	int getNumBodies();
+
+
+	/**
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of doubles in the record of one body.
+	 * @see #exportBodyStates(double[], int, int)
+	 */
+	int getBodyStateSize(int layout);
+
+
+	/**
+	 * Write the state of all bodies into a buffer.
+	 * <p>
+	 * Every body is written as one packed record. A record contains the
+	 * components selected in <tt>layout</tt> in the order position,
+	 * quaternion, linear velocity, angular velocity, see
+	 * {@link #getBodyStateSize(int)}. The bodies are written in the order of
+	 * the world's body list, which starts with the most recently created body.
+	 * The order only changes when bodies are created or destroyed.
+	 *
+	 * @param dst buffer of at least <tt>getNumBodies() * getBodyStateSize(layout)</tt>
+	 * doubles after <tt>offset</tt>
+	 * @param offset index of the first record
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies written.
+	 * @see #importBodyStates(double[], int, int)
+	 */
+	int exportBodyStates(double[] dst, int offset, int layout);
+
+
+	/**
+	 * Write the state of all bodies into a buffer, starting at the buffer's
+	 * position. The position is advanced past the last record.
+	 * @param dst buffer
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies written.
+	 * @see #exportBodyStates(double[], int, int)
+	 */
+	int exportBodyStates(DoubleBuffer dst, int layout);
+
+
+	/**
+	 * Write the state of all bodies into a byte buffer, e.g. a direct buffer
+	 * that is handed to a native renderer. The doubles are written in the
+	 * buffer's byte order, starting at the buffer's position. The position is
+	 * advanced past the last record.
+	 * @param dst buffer
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies written.
+	 * @see #exportBodyStates(double[], int, int)
+	 */
+	int exportBodyStates(ByteBuffer dst, int layout);
+
+
+	/**
+	 * Set the state of all bodies from a buffer that has been written by
+	 * {@link #exportBodyStates(double[], int, int)} with the same layout and
+	 * the same set of bodies. This has the same effect as calling the
+	 * <tt>setPosition()</tt>, <tt>setQuaternion()</tt>, <tt>setLinearVel()</tt>
+	 * and <tt>setAngularVel()</tt> methods of every body.
+	 * @param src buffer
+	 * @param offset index of the first record
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies read.
+	 */
+	int importBodyStates(double[] src, int offset, int layout);
+
+
+	/**
+	 * Set the state of all bodies from a buffer, starting at the buffer's
+	 * position. The position is advanced past the last record.
+	 * @param src buffer
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies read.
+	 * @see #importBodyStates(double[], int, int)
+	 */
+	int importBodyStates(DoubleBuffer src, int layout);
+
+
+	/**
+	 * Set the state of all bodies from a byte buffer, starting at the
+	 * buffer's position. The position is advanced past the last record.
+	 * @param src buffer
+	 * @param layout combination of the <tt>BODY_STATE_...</tt> flags
+	 * @return The number of bodies read.
+	 * @see #importBodyStates(double[], int, int)
+	 */
+	int importBodyStates(ByteBuffer src, int layout);
+
+
+	/**
+	 * Save the dynamic state of this world into a snapshot. The snapshot's
+	 * buffer is reused, so saving every frame does not allocate once the
+	 * buffer has grown to the size of the world.
+	 * <p>
+	 * The snapshot contains the position, orientation, velocities, force
+	 * accumulators and auto-disable state of all bodies, the enabled flag,
+	 * impulses (lambda) and feedback of all joints, the contact impulses
+	 * stored for warm starting and the seed of the random number generator
+	 * that is used by QuickStep.
+	 * @param snapshot snapshot, see {@link OdeHelper#createWorldSnapshot()}
+	 */
+	void saveSnapshot(DWorldSnapshot snapshot);
+
+
+	/**
+	 * Restore the state of this world from a snapshot, without creating any
+	 * objects. A snapshot can be restored any number of times.
+	 * <p>
+	 * Bodies and joints must not have been created or destroyed since the
+	 * snapshot was saved, and joints must still be attached to the same
+	 * bodies. Contact joints are part of the saved joints, so the contact
+	 * joint group should be emptied before saving and restoring.
+	 * Body properties that are not part of the snapshot (mass, damping,
+	 * auto-disable parameters, ...) are not changed.
+	 * @param snapshot a snapshot that was saved from this world
+	 */
+	void restoreSnapshot(DWorldSnapshot snapshot);
 }
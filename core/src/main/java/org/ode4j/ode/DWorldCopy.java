@@ -0,0 +1,68 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+/**
+ * Deep copy of a world and its collision space, see
+ * {@link OdeHelper#copyWorld(DWorld, DSpace)}.
+ * <p>
+ * The copy shares no mutable state with the original world, so the original
+ * and any number of copies can be stepped in parallel on separate threads.
+ * The copy starts with the QuickStep random seed of the original world, see
+ * {@link DWorld#setQuickStepRandomSeed(long)}, so both follow the same
+ * trajectory when they are stepped the same way.
+ * The objects of the copy are found with the objects of the original world.
+ */
+public interface DWorldCopy {
+
+	/**
+	 * @return The copied world.
+	 */
+	DWorld getWorld();
+
+	/**
+	 * @return The copied space or 'null' if no space was copied.
+	 */
+	DSpace getSpace();
+
+	/**
+	 * @param original a body of the original world
+	 * @return The copy of the body or 'null' if it was not copied.
+	 */
+	DBody getBody(DBody original);
+
+	/**
+	 * @param original a joint of the original world
+	 * @return The copy of the joint or 'null' if it was not copied.
+	 * @param <T> joint type
+	 */
+	<T extends DJoint> T getJoint(T original);
+
+	/**
+	 * @param original a geom or space of the original space
+	 * @return The copy of the geom or 'null' if it was not copied.
+	 * @param <T> geom type
+	 */
+	<T extends DGeom> T getGeom(T original);
+
+}
@@ -519,6 +519,36 @@ public abstract class OdeHelper {
 		return DxWorld.dWorldCreate();
 	}
 
+	/**
+	 * Create an empty snapshot for saving and restoring the state of a world.
+	 * @return snapshot
+	 * @see DWorld#saveSnapshot(DWorldSnapshot)
+	 */
+	public static DWorldSnapshot createWorldSnapshot () {
+		return new DxWorldSnapshot();
+	}
+
+	/**
+	 * Create a deep copy of a world and its top level space, for example to
+	 * simulate several alternative futures in parallel.
+	 * <p>
+	 * Bodies, joints, spaces and geoms are copied with their parameters and
+	 * dynamic state. Immutable shape data (trimesh, heightfield and convex
+	 * data) is shared with the original. Joints that belong to a joint group
+	 * (usually contact joints) and the warm starting contact cache are not
+	 * copied. The copied world steps on the calling thread until a task
+	 * executor is set.
+	 * <p>
+	 * All built-in geom and space classes can be copied. If a geom of another
+	 * class is found, an error is reported before anything is copied.
+	 * @param world world to copy
+	 * @param space top level space with the geoms of the world, can be 'null'
+	 * @return the copy
+	 */
+	public static DWorldCopy copyWorld (DWorld world, DSpace space) {
+		return DxWorldCopy.copy((DxWorld) world, (DxSpace) space);
+	}
+
 	
 	public static DMass createMass() {
 		return new DxMass();
@@ -580,6 +610,18 @@ public abstract class OdeHelper {
 	public static DSapSpace createSapSpace2 (DSpace space, DSapSpace.AXES axes, long staticGeomCategoryMask) {
 		return DxSAPSpace2.dSweepAndPruneSpaceCreate((DxSpace) space, axes.getCode(), staticGeomCategoryMask);
 	}
+	/**
+	 * Incremental sweep and prune space. It keeps the sorted AABBs and the
+	 * overlapping pairs between calls to collide(), so it is faster than
+	 * {@link #createSapSpace(DSpace, DSapSpace.AXES)} when most geoms move
+	 * only a little between calls.
+	 * @param space space
+	 * @param axes DSapSpace.AXES
+	 * @return SAP space
+	 */
+	public static DSapSpace createSapSpaceIncremental (DSpace space, DSapSpace.AXES axes) {
+		return DxSAPSpaceIncremental.dSweepAndPruneSpaceCreate((DxSpace) space, axes.getCode());
+	}
 	//ODE_API 
 	public static DHashSpace createHashSpace () {
 		return DxHashSpace.dHashSpaceCreate(null);
@@ -622,6 +664,44 @@ public abstract class OdeHelper {
 		return DxBVHSpace.bvhSpaceCreate((DxSpace) space, nodesPerLeaf, highQuality, fatAabbMargin, 
 				staticGeomCategoryMask);
 	}
+	/**
+	 * @param space space
+	 * @param nodesPerLeaf Suggested default: 4-16
+	 * @param build Tree builder, use {@link DBhvSpace.BUILD#SAH} for large
+	 * and mostly static worlds, or {@link DBhvSpace.BUILD#MORTON} when build
+	 * time matters most.
+	 * @param fatAabbMargin Suggested default: 0.2
+	 * @param staticGeomCategoryMask Geoms that are marked as static are not checked
+	 * for mutual collision. See SpacePerformanceTest for an example.
+	 * @return BVH space
+	 */
+	public static DBhvSpace createBHVSpace (DSpace space, int nodesPerLeaf, DBhvSpace.BUILD build,
+			double fatAabbMargin, long staticGeomCategoryMask) {
+		return DxBVHSpace.bvhSpaceCreate((DxSpace) space, nodesPerLeaf, build, fatAabbMargin,
+				staticGeomCategoryMask);
+	}
+	/**
+	 * Creates a loose octree space with the root node centered at the
+	 * origin, an extent of 512 and a maximum depth of 10.
+	 * @param space parent space or null
+	 * @return octree space
+	 */
+	public static DOctreeSpace createOctreeSpace (DSpace space) {
+		return DxOctreeSpace.dOctreeSpaceCreate((DxSpace) space, new DVector3(), 512, 10);
+	}
+	/**
+	 * Creates a loose octree space. The root node grows when geoms leave it,
+	 * so center and extent only need to cover the usual world.
+	 * @param space parent space or null
+	 * @param center center of the root node
+	 * @param extent half the side length of the root node
+	 * @param maxDepth depth of the smallest nodes below the initial root
+	 * node, the smallest nodes have an extent of extent/2^maxDepth
+	 * @return octree space
+	 */
+	public static DOctreeSpace createOctreeSpace (DSpace space, DVector3C center, double extent, int maxDepth) {
+		return DxOctreeSpace.dOctreeSpaceCreate((DxSpace) space, center, extent, maxDepth);
+	}
 
 	/**
 	 * Create a box geom with the provided side lengths.
@@ -25,6 +25,7 @@
 package org.ode4j.ode.internal;
 
 import org.ode4j.ode.internal.cpp4j.java.Ref;
+import org.ode4j.ode.internal.processmem.DxIslandCache;
 
 
 /**
@@ -38,6 +39,8 @@ public abstract class DObject extends DBase {
     private final Ref<DObject> _next;        // next object of this type in list
     private Ref<DObject> _tome;        // pointer to previous object's next ptr
     public int tag;            // used by dynamics algorithms
+    public DxIslandCache.Island island;    // persistent island, if enabled in the world
+    public int islandIndex;    // index in the persistent island
     //void userdata;        // user settable data
     protected Object userdata;        // user settable data
     protected DObject(DxWorld w) { //From ODE.java
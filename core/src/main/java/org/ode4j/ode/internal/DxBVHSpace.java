@@ -33,6 +33,7 @@ import java.util.List;
 
 import org.ode4j.ode.DAABB;
 import org.ode4j.ode.DBhvSpace;
+import org.ode4j.ode.DGeom;
 import org.ode4j.ode.DSpace;
 import org.ode4j.ode.internal.aabbtree.AABBTree;
 import org.ode4j.ode.internal.aabbtree.AABBTreeNodeCallback;
@@ -42,6 +43,10 @@ import org.ode4j.ode.internal.aabbtree.ExternalObjectHandler;
 public class DxBVHSpace extends DxSpace implements DBhvSpace {
 
 	private final AABBTree<DxGeom> bvhTree;
+	private final int nodesPerLeaf;
+	private final BUILD build;
+	private final double fatAabbMargin;
+	private final long staticGeomCategoryMask;
 	private boolean dirtyGeoms;
 	private List<DxGeom> dirty = new ArrayList<DxGeom>();
 	// geoms with infinite AABBs
@@ -78,14 +83,36 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 	}
 
 	public static DxBVHSpace bvhSpaceCreate(DxSpace space, int nodesPerLeaf, boolean highQuality, double fatAabbMargin, long staticGeomCategoryMask) {
-		return new DxBVHSpace(space, nodesPerLeaf, highQuality, fatAabbMargin, staticGeomCategoryMask);
+		return new DxBVHSpace(space, nodesPerLeaf, highQuality ? BUILD.HIGH_QUALITY : BUILD.LOW_QUALITY,
+				fatAabbMargin, staticGeomCategoryMask);
 	}
 
-	private DxBVHSpace(DxSpace space, int nodesPerLeaf, boolean highQuality, double fatAabbMargin, long staticGeomCategoryMask) {
+	public static DxBVHSpace bvhSpaceCreate(DxSpace space, int nodesPerLeaf, BUILD build, double fatAabbMargin, long staticGeomCategoryMask) {
+		return new DxBVHSpace(space, nodesPerLeaf, build, fatAabbMargin, staticGeomCategoryMask);
+	}
+
+	private DxBVHSpace(DxSpace space, int nodesPerLeaf, BUILD build, double fatAabbMargin, long staticGeomCategoryMask) {
 		super(space);
 		type = dBVHSpaceClass;
 		_aabb.set(-dInfinity, dInfinity, -dInfinity, dInfinity, -dInfinity, dInfinity);
-		bvhTree = new AABBTree<>(new GeomSpatialIndexHandler(staticGeomCategoryMask), nodesPerLeaf, highQuality, fatAabbMargin);
+		bvhTree = new AABBTree<>(new GeomSpatialIndexHandler(staticGeomCategoryMask), nodesPerLeaf, build,
+				fatAabbMargin);
+		this.nodesPerLeaf = nodesPerLeaf;
+		this.build = build;
+		this.fatAabbMargin = fatAabbMargin;
+		this.staticGeomCategoryMask = staticGeomCategoryMask;
+	}
+
+	@Override
+	protected boolean isCopySupported() {
+		return true;
+	}
+
+	@Override
+	protected DxBVHSpace copy(DxSpace space) {
+		DxBVHSpace copy = new DxBVHSpace(space, nodesPerLeaf, build, fatAabbMargin, staticGeomCategoryMask);
+		copy.setParallelBuild(getParallelBuild());
+		return copy;
 	}
 
 	@Override
@@ -99,6 +126,25 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 		super.add(g);
 	}
 
+	@Override
+	public void addAll(Iterable<? extends DGeom> geoms) {
+		for (DGeom g : geoms) {
+			add((DxGeom) g);
+		}
+		// build the tree now rather than on the next collide
+		cleanGeoms();
+	}
+
+	@Override
+	public void setParallelBuild(boolean parallelBuild) {
+		bvhTree.setParallelBuild(parallelBuild);
+	}
+
+	@Override
+	public boolean getParallelBuild() {
+		return bvhTree.getParallelBuild();
+	}
+
 	@Override
 	void remove(DxGeom g) {
 		CHECK_NOT_LOCKED(this);
@@ -254,4 +300,14 @@ public class DxBVHSpace extends DxSpace implements DBhvSpace {
 		lock_count--;
 	}
 
+	@Override
+	void raycast(DxRaycaster.Query query) {
+		bvhTree.getRayOverlappingNodes(query);
+		for (DxGeom g : infGeomList) {
+			if (GEOM_ENABLED(g)) {
+				query.test(g);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,323 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DColliderFn;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DBatchedNearCallback;
+import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Narrowphase for {@link DxSpace#collideBatched(TaskExecutor, int, DBatchedNearCallback)}.
+ * <p>
+ * The broadphase only records the accepted candidate pairs, pairs with nested spaces are
+ * expanded with {@link DxSpace#dSpaceCollide2}. The pairs are then sorted into one bucket
+ * per collider with a counting sort, so every collider runs over all of its pairs in a row.
+ * Within a bucket the pairs keep their broadphase order. The sorted pair list is split into
+ * contiguous ranges, one per job, and every job stores its contacts in its own pool.
+ * Finally the contacts are reported to the callback in broadphase order, so the result is
+ * the same as calling {@link DxGeom#dCollide} for every pair in the broadphase.
+ * <p>
+ * All arrays, the contact pools and the task graph are kept between calls.
+ */
+final class DxBatchCollider {
+
+	/** Minimum number of pairs per job. */
+	private static final int MIN_PAIRS_PER_JOB = 32;
+
+	private static final int NUM_BUCKETS = DxGeom.dGeomNumClasses * DxGeom.dGeomNumClasses;
+
+	/** Contacts of one job. */
+	private static final class Pool {
+		DContactGeomBuffer buffer;
+		int bufferSize;
+		DContactGeom[] contacts = new DContactGeom[64];
+		int size;
+
+		void ensureBuffer(int maxContacts) {
+			if (buffer == null || bufferSize < maxContacts) {
+				buffer = new DContactGeomBuffer(maxContacts);
+				bufferSize = maxContacts;
+			}
+		}
+
+		int add(DContactGeomBuffer src, int count) {
+			int first = size;
+			if (size + count > contacts.length) {
+				contacts = Arrays.copyOf(contacts, Math.max(contacts.length * 2, size + count));
+			}
+			for (int i = 0; i < count; i++) {
+				DContactGeom c = contacts[size];
+				if (c == null) {
+					c = contacts[size] = new DContactGeom();
+				}
+				c.set(src.get(i));
+				size++;
+			}
+			return first;
+		}
+	}
+
+	// pairs in broadphase order, the geoms are already in the order of the collider
+	private DxGeom[] pairs = new DxGeom[64];
+	private boolean[] reversed = new boolean[32];
+	private int[] bucketOfPair = new int[32];
+	private int pairCount;
+
+	// pair indices sorted by bucket
+	private int[] order = new int[32];
+	private final int[] bucketStart = new int[NUM_BUCKETS + 1];
+
+	// result of every pair: job, first contact in the pool of the job, number of contacts
+	private int[] contactJob = new int[32];
+	private int[] contactFirst = new int[32];
+	private int[] contactCount = new int[32];
+
+	private Pool[] pools = new Pool[0];
+	private DContactGeomBuffer out;
+	private int outSize;
+	private int flags;
+
+	private DBatchedNearCallback callback;
+
+	private TaskExecutor executor;
+	private TaskGroup group;
+	private Task[] jobs = new Task[0];
+	private volatile RuntimeException failure;
+
+	private final DNearCallback collector = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+				DxSpace.dSpaceCollide2((DxGeom) o1, (DxGeom) o2, null, this);
+				return;
+			}
+			add((DxGeom) o1, (DxGeom) o2);
+		}
+	};
+
+	private void add(DxGeom o1, DxGeom o2) {
+		// the same checks as dCollide()
+		if (o1 == o2 || (o1.body == o2.body && o1.body != null)) {
+			return;
+		}
+		if (DxGeom.getCollider(o1.type, o2.type) == null) {
+			return;
+		}
+		if (!callback.accept(o1, o2)) {
+			return;
+		}
+		int n = pairCount;
+		if (2 * n + 2 > pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
+			reversed = Arrays.copyOf(reversed, pairs.length / 2);
+			bucketOfPair = Arrays.copyOf(bucketOfPair, pairs.length / 2);
+		}
+		boolean reverse = DxGeom.isColliderReversed(o1.type, o2.type);
+		if (reverse) {
+			DxGeom tmp = o1;
+			o1 = o2;
+			o2 = tmp;
+		}
+		pairs[2 * n] = o1;
+		pairs[2 * n + 1] = o2;
+		reversed[n] = reverse;
+		bucketOfPair[n] = o1.type * DxGeom.dGeomNumClasses + o2.type;
+		pairCount++;
+	}
+
+	void collide(DxSpace space, TaskExecutor executor, int flags, DBatchedNearCallback callback) {
+		int maxContacts = flags & DxGeom.NUMC_MASK;
+		dUASSERT(maxContacts > 0, "no contacts requested");
+		this.flags = flags;
+		this.callback = callback;
+		pairCount = 0;
+		try {
+			space.collide(null, collector);
+			int n = pairCount;
+			sortPairs(n);
+
+			int jobCount = 1;
+			if (executor != null) {
+				jobCount = Math.min(executor.getThreadCount(), (n + MIN_PAIRS_PER_JOB - 1) / MIN_PAIRS_PER_JOB);
+				if (jobCount < 1) {
+					jobCount = 1;
+				}
+			}
+			ensurePools(jobCount, maxContacts);
+			if (jobCount == 1) {
+				runJob(0, 1);
+			} else {
+				ensureTasks(executor, jobCount);
+				failure = null;
+				group.reset();
+				for (Task job : jobs) {
+					job.reset();
+					job.submit();
+				}
+				group.submit();
+				group.awaitCompletion();
+				RuntimeException e = failure;
+				if (e != null) {
+					failure = null;
+					throw e;
+				}
+			}
+			report(n, maxContacts);
+		} finally {
+			// Do not keep references to geoms or user objects
+			Arrays.fill(pairs, 0, 2 * pairCount, null);
+			for (Pool pool : pools) {
+				for (int i = 0; i < pool.size; i++) {
+					pool.contacts[i].g1 = null;
+					pool.contacts[i].g2 = null;
+				}
+				pool.size = 0;
+			}
+			pairCount = 0;
+			this.callback = null;
+		}
+	}
+
+	/**
+	 * Stable counting sort of the pairs by bucket.
+	 */
+	private void sortPairs(int n) {
+		if (order.length < n) {
+			int size = Math.max(n, order.length * 2);
+			order = new int[size];
+			contactJob = new int[size];
+			contactFirst = new int[size];
+			contactCount = new int[size];
+		}
+		int[] start = bucketStart;
+		Arrays.fill(start, 0);
+		for (int i = 0; i < n; i++) {
+			start[bucketOfPair[i] + 1]++;
+		}
+		for (int b = 0; b < NUM_BUCKETS; b++) {
+			start[b + 1] += start[b];
+		}
+		for (int i = 0; i < n; i++) {
+			order[start[bucketOfPair[i]]++] = i;
+		}
+	}
+
+	private void ensurePools(int jobCount, int maxContacts) {
+		if (pools.length < jobCount) {
+			Pool[] newPools = Arrays.copyOf(pools, jobCount);
+			for (int i = pools.length; i < jobCount; i++) {
+				newPools[i] = new Pool();
+			}
+			pools = newPools;
+		}
+		for (int i = 0; i < jobCount; i++) {
+			pools[i].ensureBuffer(maxContacts);
+		}
+		if (out == null || outSize < maxContacts) {
+			out = new DContactGeomBuffer(maxContacts);
+			outSize = maxContacts;
+		}
+	}
+
+	private void ensureTasks(TaskExecutor executor, int jobCount) {
+		if (this.executor == executor && jobs.length == jobCount) {
+			return;
+		}
+		this.executor = executor;
+		group = executor.group("Space Collide Batched", new Runnable() {
+			@Override
+			public void run() {}
+		});
+		jobs = new Task[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			final int job = i;
+			jobs[i] = group.subtask("Space Collide Batched Job", new Runnable() {
+				@Override
+				public void run() {
+					try {
+						runJob(job, jobs.length);
+					} catch (RuntimeException e) {
+						failure = e;
+					}
+				}
+			});
+		}
+	}
+
+	private void runJob(int job, int jobCount) {
+		int n = pairCount;
+		int begin = (int) ((long) n * job / jobCount);
+		int end = (int) ((long) n * (job + 1) / jobCount);
+		Pool pool = pools[job];
+		DContactGeomBuffer buffer = pool.buffer;
+		int i = begin;
+		while (i < end) {
+			// all pairs of the bucket in this job
+			int bucket = bucketOfPair[order[i]];
+			DColliderFn fn = DxGeom.getCollider(bucket / DxGeom.dGeomNumClasses, bucket % DxGeom.dGeomNumClasses);
+			for (; i < end && bucketOfPair[order[i]] == bucket; i++) {
+				int p = order[i];
+				DxGeom o1 = pairs[2 * p];
+				DxGeom o2 = pairs[2 * p + 1];
+				o1.recomputePosr();
+				o2.recomputePosr();
+				int count = fn.dColliderFn(o1, o2, flags, buffer);
+				if (reversed[p]) {
+					DxGeom.reverseContacts(buffer, count);
+				}
+				contactJob[p] = job;
+				contactFirst[p] = pool.add(buffer, count);
+				contactCount[p] = count;
+			}
+		}
+	}
+
+	private void report(int n, int maxContacts) {
+		for (int p = 0; p < n; p++) {
+			int count = contactCount[p];
+			if (count == 0) {
+				continue;
+			}
+			DContactGeom[] contacts = pools[contactJob[p]].contacts;
+			int first = contactFirst[p];
+			for (int i = 0; i < count; i++) {
+				out.get(i).set(contacts[first + i]);
+			}
+			if (reversed[p]) {
+				callback.call(pairs[2 * p + 1], pairs[2 * p], out, count);
+			} else {
+				callback.call(pairs[2 * p], pairs[2 * p + 1], out, count);
+			}
+		}
+	}
+}
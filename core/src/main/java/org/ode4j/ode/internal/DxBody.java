@@ -24,10 +24,7 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
-import static org.ode4j.ode.OdeMath.dAddVectorCross3;
 import static org.ode4j.ode.OdeMath.dCalcVectorDot3;
-import static org.ode4j.ode.OdeMath.dMultiply0_331;
-import static org.ode4j.ode.OdeMath.dMultiply1_331;
 import static org.ode4j.ode.OdeMath.dNormalize3;
 import static org.ode4j.ode.OdeMath.dNormalize4;
 import static org.ode4j.ode.OdeMath.dOrthogonalizeR;
@@ -52,6 +49,7 @@ import org.ode4j.ode.internal.Objects_H.dxDampingParameters;
 import org.ode4j.ode.internal.cpp4j.java.Ref;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.joints.DxJointNode;
+import org.ode4j.ode.internal.processmem.DxIslandCache;
 import org.ode4j.ode.internal.processmem.DxWorldProcessContext;
 
 import java.util.Iterator;
@@ -170,6 +168,10 @@ public class DxBody extends DObject implements DBody {
 		//addObjectToList (b,(dObject **) &w.firstbody);
 		addObjectToList(b, w.firstbody);
 		w.nb++;
+		DxIslandCache islandCache = w.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.bodyAdded(b);
+		}
 
 		// set auto-disable parameters
 		b.average_avel_buffer = b.average_lvel_buffer = null; // no buffer at beginning
@@ -193,6 +195,53 @@ public class DxBody extends DObject implements DBody {
 	}
 
 
+	/**
+	 * Create a body in another world with the mass, parameters and dynamic
+	 * state of this body. Geoms and joints are not copied.
+	 * @param w world of the new body
+	 * @return new body
+	 */
+	DxBody dBodyCopy (DxWorld w)
+	{
+		DxBody b = dBodyCreate(w);
+		b.flags = flags;
+		b.mass.set(mass);
+		b.invI.set(invI);
+		b.invMass = invMass;
+		b._posr.pos.set(_posr.pos);
+		b._posr.Rw().set(_posr.R());
+		b._q.set(_q);
+		b.lvel.set(lvel);
+		b.avel.set(avel);
+		b.facc.set(facc);
+		b.tacc.set(tacc);
+		b.finite_rot_axis.set(finite_rot_axis);
+
+		b.adis.set(adis);
+		b.adis_timeleft = adis_timeleft;
+		b.adis_stepsleft = adis_stepsleft;
+		if (average_lvel_buffer != null) {
+			b.average_lvel_buffer = DVector3.newArray(average_lvel_buffer.length);
+			b.average_avel_buffer = DVector3.newArray(average_avel_buffer.length);
+			for (int i = 0; i < average_lvel_buffer.length; i++) {
+				b.average_lvel_buffer[i].set(average_lvel_buffer[i]);
+				b.average_avel_buffer[i].set(average_avel_buffer[i]);
+			}
+		} else {
+			b.average_lvel_buffer = null;
+			b.average_avel_buffer = null;
+		}
+		b.average_counter = average_counter;
+		b.average_ready = average_ready;
+
+		b.moved_callback = moved_callback;
+		b.dampingp.set(dampingp);
+		b.max_angular_speed = max_angular_speed;
+		b.userdata = userdata;
+		return b;
+	}
+
+
 	//		public void dBodyDestroy (dxBody b)
 	public void dBodyDestroy ()
 	{
@@ -220,6 +269,10 @@ public class DxBody extends DObject implements DBody {
 			n.joint.removeJointReferencesFromAttachedBodies ();
 			n = next;
 		}
+		DxIslandCache islandCache = world.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.bodyRemoved(this);
+		}
 		removeObjectFromList ();
 		world.nb--;
 
@@ -301,7 +354,11 @@ public class DxBody extends DObject implements DBody {
 		//			_q.v[1] = q.v[1];
 		//			_q.v[2] = q.v[2];
 		//			_q.v[3] = q.v[3];
-		_q.set(q);
+		dBodySetQuaternion(q.get0(), q.get1(), q.get2(), q.get3());
+	}
+	public void dBodySetQuaternion (double w, double x, double y, double z)
+	{
+		_q.set(w, x, y, z);
 		dNormalize4 (_q);
 		//dQtoR (b.q, b.posr.R);
 		dRfromQ(_posr.Rw(), _q);
@@ -460,73 +517,104 @@ public class DxBody extends DObject implements DBody {
 	}
 
 
+	// The force and point functions below are implemented on scalars so that
+	// they do not need temporary vectors. The DVector3C variants delegate to them.
+
+	void dBodyAddRelForce (double fx, double fy, double fz)
+	{
+		DMatrix3C R = _posr.R();
+		facc.add( R.get00()*fx + R.get01()*fy + R.get02()*fz,
+				R.get10()*fx + R.get11()*fy + R.get12()*fz,
+				R.get20()*fx + R.get21()*fy + R.get22()*fz );
+	}
 	void dBodyAddRelForce (DVector3C f)
 	{
-		DVector3 t2 = new DVector3();
-		dMultiply0_331 (t2,_posr.R(),f);
-		facc.add(t2);
+		dBodyAddRelForce(f.get0(), f.get1(), f.get2());
 	}
 
 
 	//	void dBodyAddRelTorque (dxBody b, double fx, double fy, double fz)
+	public void dBodyAddRelTorque (double fx, double fy, double fz)
+	{
+		DMatrix3C R = _posr.R();
+		tacc.add( R.get00()*fx + R.get01()*fy + R.get02()*fz,
+				R.get10()*fx + R.get11()*fy + R.get12()*fz,
+				R.get20()*fx + R.get21()*fy + R.get22()*fz );
+	}
 	public void dBodyAddRelTorque (DVector3C f)
 	{
-		DVector3 t2 = new DVector3();
-		dMultiply0_331 (t2,_posr.R(),f);
-		tacc.add(t2);
+		dBodyAddRelTorque(f.get0(), f.get1(), f.get2());
+	}
+
+
+	// facc += f, tacc += p x f
+	private void addForceAndTorque (double fx, double fy, double fz,
+			double px, double py, double pz)
+	{
+		facc.add(fx, fy, fz);
+		tacc.add( py*fz - pz*fy, pz*fx - px*fz, px*fy - py*fx );
 	}
 
 
+	void dBodyAddForceAtPos (double fx, double fy, double fz,
+			double px, double py, double pz)
+	{
+		DVector3C pos = _posr.pos();
+		addForceAndTorque(fx, fy, fz, px - pos.get0(), py - pos.get1(), pz - pos.get2());
+	}
 	void dBodyAddForceAtPos (DVector3C f, DVector3C p)
 	{
-		facc.add(f);
-		DVector3 q = p.reSub(_posr.pos());
-		dAddVectorCross3 (tacc,q,f);
+		dBodyAddForceAtPos(f.get0(), f.get1(), f.get2(), p.get0(), p.get1(), p.get2());
 	}
 
 
+	void dBodyAddForceAtRelPos (double fx, double fy, double fz,
+			double px, double py, double pz)
+	{
+		DMatrix3C R = _posr.R();
+		addForceAndTorque(fx, fy, fz,
+				R.get00()*px + R.get01()*py + R.get02()*pz,
+				R.get10()*px + R.get11()*py + R.get12()*pz,
+				R.get20()*px + R.get21()*py + R.get22()*pz);
+	}
 	void dBodyAddForceAtRelPos (DVector3C f, DVector3C prel)
 	{
-		DVector3 p = new DVector3();
-		dMultiply0_331 (p,_posr.R(),prel);
-		facc.add(f);
-		dAddVectorCross3 (tacc,p,f);
+		dBodyAddForceAtRelPos(f.get0(), f.get1(), f.get2(), prel.get0(), prel.get1(), prel.get2());
 	}
 
 
+	void dBodyAddRelForceAtPos (double fx, double fy, double fz,
+			double px, double py, double pz)
+	{
+		DMatrix3C R = _posr.R();
+		DVector3C pos = _posr.pos();
+		addForceAndTorque(R.get00()*fx + R.get01()*fy + R.get02()*fz,
+				R.get10()*fx + R.get11()*fy + R.get12()*fz,
+				R.get20()*fx + R.get21()*fy + R.get22()*fz,
+				px - pos.get0(), py - pos.get1(), pz - pos.get2());
+	}
 	void dBodyAddRelForceAtPos (DVector3C frel, DVector3C p)
 	{
-		DVector3 f = new DVector3();
-		dMultiply0_331 (f,_posr.R(),frel);
-		facc.add(f);
-		DVector3 q = p.reSub(_posr.pos());
-		dAddVectorCross3 (tacc,q,f);
+		dBodyAddRelForceAtPos(frel.get0(), frel.get1(), frel.get2(), p.get0(), p.get1(), p.get2());
 	}
 
 
 	//	void dBodyAddRelForceAtRelPos (dxBody b, double fx, double fy, double fz,
 	//	double px, double py, double pz)
+	void dBodyAddRelForceAtRelPos (double fx, double fy, double fz,
+			double px, double py, double pz)
+	{
+		DMatrix3C R = _posr.R();
+		addForceAndTorque(R.get00()*fx + R.get01()*fy + R.get02()*fz,
+				R.get10()*fx + R.get11()*fy + R.get12()*fz,
+				R.get20()*fx + R.get21()*fy + R.get22()*fz,
+				R.get00()*px + R.get01()*py + R.get02()*pz,
+				R.get10()*px + R.get11()*py + R.get12()*pz,
+				R.get20()*px + R.get21()*py + R.get22()*pz);
+	}
 	void dBodyAddRelForceAtRelPos (DVector3C fRel, DVector3C pRel)
 	{
-		//		dVector3 frel = new dVector3(fx, fy, fz);
-		//		dVector3 prel = new dVector3(px, py, pz);
-		DVector3 f = new DVector3();
-		DVector3 p = new DVector3();
-		//		frel.v[0] = fx;
-		//		frel.v[1] = fy;
-		//		frel.v[2] = fz;
-		//		frel.v[3] = 0;
-		//		prel.v[0] = px;
-		//		prel.v[1] = py;
-		//		prel.v[2] = pz;
-		//		prel.v[3] = 0;
-		dMultiply0_331 (f,_posr.R(),fRel);
-		dMultiply0_331 (p,_posr.R(),pRel);
-		//		b.facc.v[0] += f.v[0];
-		//		b.facc.v[1] += f.v[1];
-		//		b.facc.v[2] += f.v[2];
-		facc.add(f);
-		dAddVectorCross3 (tacc,p,f);
+		dBodyAddRelForceAtRelPos(fRel.get0(), fRel.get1(), fRel.get2(), pRel.get0(), pRel.get1(), pRel.get2());
 	}
 
 
@@ -565,68 +653,97 @@ public class DxBody extends DObject implements DBody {
 
 	//	void dBodyGetRelPointPos (dxBody b, double px, double py, double pz,
 	//			dVector3 result)
+	void dBodyGetRelPointPos (double px, double py, double pz, DVector3 result)
+	{
+		DMatrix3C R = _posr.R();
+		DVector3C pos = _posr.pos();
+		result.set( R.get00()*px + R.get01()*py + R.get02()*pz + pos.get0(),
+				R.get10()*px + R.get11()*py + R.get12()*pz + pos.get1(),
+				R.get20()*px + R.get21()*py + R.get22()*pz + pos.get2() );
+	}
 	void dBodyGetRelPointPos (DVector3C prel, DVector3 result)
 	{
-		//dVector3 prel = new dVector3(px, py, pz);
-		//		dVector3 p = new dVector3();
-		//	  prel.v[0] = px;
-		//	  prel.v[1] = py;
-		//	  prel.v[2] = pz;
-		//	  prel.v[3] = 0;
-		//		dMULTIPLY0_331 (p,b._posr.R,prel);
-		//		result.v[0] = p.v[0] + b._posr.pos.v[0];
-		//		result.v[1] = p.v[1] + b._posr.pos.v[1];
-		//		result.v[2] = p.v[2] + b._posr.pos.v[2];
-		//		result.sum(p, b._posr.pos);
-		dMultiply0_331 (result,_posr.R(),prel);
-		result.add( _posr.pos() );
+		dBodyGetRelPointPos(prel.get0(), prel.get1(), prel.get2(), result);
+	}
+
+
+	// result = lvel + avel x p
+	private void getVelocityAt (double px, double py, double pz, DVector3 result)
+	{
+		result.set( lvel.get0() + (avel.get1()*pz - avel.get2()*py),
+				lvel.get1() + (avel.get2()*px - avel.get0()*pz),
+				lvel.get2() + (avel.get0()*py - avel.get1()*px) );
 	}
 
 
 	//	public void dBodyGetRelPointVel (double px, double py, double pz,
 	//			dVector3 result)
+	public void dBodyGetRelPointVel (double px, double py, double pz, DVector3 result)
+	{
+		DMatrix3C R = _posr.R();
+		getVelocityAt(R.get00()*px + R.get01()*py + R.get02()*pz,
+				R.get10()*px + R.get11()*py + R.get12()*pz,
+				R.get20()*px + R.get21()*py + R.get22()*pz, result);
+	}
 	public void dBodyGetRelPointVel (DVector3C prel, DVector3 result)
 	{
-		//dVector3 prel = new dVector3(px, py, pz);
-		DVector3 p = new DVector3();
-		dMultiply0_331 (p,_posr.R(),prel);
-		result.set(lvel);
-		dAddVectorCross3 (result,avel,p);
+		dBodyGetRelPointVel(prel.get0(), prel.get1(), prel.get2(), result);
 	}
 
 
 	//	void dBodyGetPointVel (dxBody b, double px, double py, double pz,
 	//			dVector3 result)
-	void dBodyGetPointVel (DVector3C prel, DVector3 result)
+	void dBodyGetPointVel (double px, double py, double pz, DVector3 result)
+	{
+		DVector3C pos = _posr.pos();
+		getVelocityAt(px - pos.get0(), py - pos.get1(), pz - pos.get2(), result);
+	}
+	void dBodyGetPointVel (DVector3C p, DVector3 result)
 	{
-		DVector3 p = new DVector3(prel).sub(_posr.pos());
-		result.set(lvel);
-		dAddVectorCross3 (result,avel,p);
+		dBodyGetPointVel(p.get0(), p.get1(), p.get2(), result);
 	}
 
 
 	//	void dBodyGetPosRelPoint (dxBody b, double px, double py, double pz,
 	//			dVector3 result)
+	void dBodyGetPosRelPoint (double px, double py, double pz, DVector3 result)
+	{
+		DVector3C pos = _posr.pos();
+		dBodyVectorFromWorld(px - pos.get0(), py - pos.get1(), pz - pos.get2(), result);
+	}
 	void dBodyGetPosRelPoint (DVector3C p, DVector3 result)
 	{
-		DVector3 prel = p.reSub(_posr.pos());
-		dMultiply1_331 (result,_posr.R(),prel);
+		dBodyGetPosRelPoint(p.get0(), p.get1(), p.get2(), result);
 	}
 
 
 	//	void dBodyVectorToWorld (dxBody b, double px, double py, double pz,
 	//			dVector3 result)
+	void dBodyVectorToWorld (double px, double py, double pz, DVector3 result)
+	{
+		DMatrix3C R = _posr.R();
+		result.set( R.get00()*px + R.get01()*py + R.get02()*pz,
+				R.get10()*px + R.get11()*py + R.get12()*pz,
+				R.get20()*px + R.get21()*py + R.get22()*pz );
+	}
 	void dBodyVectorToWorld (DVector3C p, DVector3 result)
 	{
-		dMultiply0_331 (result,_posr.R(),p);
+		dBodyVectorToWorld(p.get0(), p.get1(), p.get2(), result);
 	}
 
 
 	//	void dBodyVectorFromWorld (dxBody b, double px, double py, double pz,
 	//			dVector3 result)
+	void dBodyVectorFromWorld (double px, double py, double pz, DVector3 result)
+	{
+		DMatrix3C R = _posr.R();
+		result.set( R.get00()*px + R.get10()*py + R.get20()*pz,
+				R.get01()*px + R.get11()*py + R.get21()*pz,
+				R.get02()*px + R.get12()*py + R.get22()*pz );
+	}
 	void dBodyVectorFromWorld (DVector3C p, DVector3 result)
 	{
-		dMultiply1_331 (result,_posr.R(),p);
+		dBodyVectorFromWorld(p.get0(), p.get1(), p.get2(), result);
 	}
 
 
@@ -1240,13 +1357,13 @@ public class DxBody extends DObject implements DBody {
 
 	@Override
 	public void addRelForce (double fx, double fy, double fz)
-	{ dBodyAddRelForce ( new DVector3(fx, fy, fz)); }
+	{ dBodyAddRelForce (fx, fy, fz); }
 	@Override
 	public void addRelForce (DVector3C f)
 	{ dBodyAddRelForce (f); }
 	@Override
 	public void addRelTorque (double fx, double fy, double fz)
-	{ dBodyAddRelTorque (new DVector3(fx, fy, fz)); }
+	{ dBodyAddRelTorque (fx, fy, fz); }
 	@Override
 	public void addRelTorque (DVector3C t)
 	{ dBodyAddRelTorque (t); }
@@ -1254,7 +1371,7 @@ public class DxBody extends DObject implements DBody {
 	@Override
 	public void addForceAtPos (double fx, double fy, double fz,
 			double px, double py, double pz)
-	{ dBodyAddForceAtPos (new DVector3(fx, fy, fz), new DVector3(px, py, pz)); }
+	{ dBodyAddForceAtPos (fx, fy, fz, px, py, pz); }
 	@Override
 	public void addForceAtPos (DVector3C f, DVector3C p)
 	{ dBodyAddForceAtPos (f,p); }
@@ -1262,7 +1379,7 @@ public class DxBody extends DObject implements DBody {
 	@Override
 	public void addForceAtRelPos (double fx, double fy, double fz,
 			double px, double py, double pz)
-	{ dBodyAddForceAtRelPos (new DVector3(fx, fy, fz), new DVector3(px, py, pz)); }
+	{ dBodyAddForceAtRelPos (fx, fy, fz, px, py, pz); }
 	@Override
 	public void addForceAtRelPos (DVector3C f, DVector3C p)
 	{ dBodyAddForceAtRelPos (f, p); }
@@ -1270,7 +1387,7 @@ public class DxBody extends DObject implements DBody {
 	@Override
 	public void addRelForceAtPos (double fx, double fy, double fz,
 			double px, double py, double pz)
-	{ dBodyAddRelForceAtPos (new DVector3(fx, fy, fz), new DVector3(px, py, pz)); }
+	{ dBodyAddRelForceAtPos (fx, fy, fz, px, py, pz); }
 	@Override
 	public void addRelForceAtPos (DVector3C f, DVector3C p)
 	{ dBodyAddRelForceAtPos (f, p); }
@@ -1278,7 +1395,7 @@ public class DxBody extends DObject implements DBody {
 	@Override
 	public void addRelForceAtRelPos (double fx, double fy, double fz,
 			double px, double py, double pz)
-	{ dBodyAddRelForceAtRelPos (new DVector3(fx, fy, fz), new DVector3(px, py, pz)); }
+	{ dBodyAddRelForceAtRelPos (fx, fy, fz, px, py, pz); }
 	@Override
 	public void addRelForceAtRelPos (DVector3C f, DVector3C p)
 	{ dBodyAddRelForceAtRelPos (f, p); }
@@ -1329,42 +1446,42 @@ public class DxBody extends DObject implements DBody {
 
 	@Override
 	public void getRelPointPos (double px, double py, double pz, DVector3 result) //const
-	{ dBodyGetRelPointPos (new DVector3(px, py, pz), result); }
+	{ dBodyGetRelPointPos (px, py, pz, result); }
 	@Override
 	public void getRelPointPos (DVector3C p, DVector3 result) //const
 	{ dBodyGetRelPointPos (p, result); }
 
 	@Override
 	public void getRelPointVel (double px, double py, double pz, DVector3 result) //const
-	{ dBodyGetRelPointVel (new DVector3(px, py, pz), result); }
+	{ dBodyGetRelPointVel (px, py, pz, result); }
 	@Override
 	public void getRelPointVel (DVector3C p, DVector3 result) //const
 	{ dBodyGetRelPointVel (p, result); }
 
 	@Override
 	public void getPointVel (double px, double py, double pz, DVector3 result) //const
-	{ dBodyGetPointVel ( new DVector3(px, py, pz), result); }
+	{ dBodyGetPointVel (px, py, pz, result); }
 	@Override
 	public void getPointVel (DVector3C p, DVector3 result) //const
 	{ dBodyGetPointVel (p, result); }
 
 	@Override
 	public void getPosRelPoint (double px, double py, double pz, DVector3 result) //const
-	{ dBodyGetPosRelPoint ( new DVector3(px, py, pz), result); }
+	{ dBodyGetPosRelPoint (px, py, pz, result); }
 	@Override
 	public void getPosRelPoint (DVector3C p, DVector3 result) //const
 	{ dBodyGetPosRelPoint (p, result); }
 
 	@Override
 	public void vectorToWorld (double px, double py, double pz, DVector3 result) //const
-	{ dBodyVectorToWorld ( new DVector3(px, py, pz), result); }
+	{ dBodyVectorToWorld (px, py, pz, result); }
 	@Override
 	public void vectorToWorld (DVector3C p, DVector3 result) //const
 	{ dBodyVectorToWorld (p, result); }
 
 	@Override
 	public void vectorFromWorld (double px, double py, double pz, DVector3 result) //const
-	{ dBodyVectorFromWorld (new DVector3(px,py,pz),result); }
+	{ dBodyVectorFromWorld (px, py, pz, result); }
 	@Override
 	public void vectorFromWorld (DVector3C p, DVector3 result) //const
 	{ dBodyVectorFromWorld (p, result); }
@@ -66,6 +66,18 @@ public class DxBox extends DxGeom implements DBox {
 		updateZeroSizedFlag(lx==0 || ly==0 || lz==0);
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxBox copy(DxSpace space)
+	{
+		return new DxBox(space, side.get0(), side.get1(), side.get2());
+	}
+
 
 	@Override
     protected void computeAABB()
@@ -61,6 +61,18 @@ public class DxCapsule extends DxGeom implements DCapsule {
 		updateZeroSizedFlag(__radius == 0.0);
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxCapsule copy(DxSpace space)
+	{
+		return new DxCapsule(space, _radius, _lz);
+	}
+
 
 	@Override
 	public void computeAABB()
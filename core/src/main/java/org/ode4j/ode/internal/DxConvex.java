@@ -260,6 +260,35 @@ public class DxConvex extends DxGeom implements DConvex {
 		//CreateTree();
 			}
 
+	/**
+	 * Copy constructor, the convex data is shared with the source.
+	 */
+	private DxConvex (DxSpace space, DxConvex src)
+	{
+		super(space, true);
+		type = dConvexClass;
+		planesV = src.planesV;
+		planesD = src.planesD;
+		planecount = src.planecount;
+		points = src.points;
+		pointcount = src.pointcount;
+		polygons = src.polygons;
+		edges = src.edges;
+		edgecount = src.edgecount;
+	}
+
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxConvex copy(DxSpace space)
+	{
+		return new DxConvex(space, this);
+	}
+
 
 	@Override
     protected void computeAABB()
@@ -59,6 +59,18 @@ public class DxCylinder extends DxGeom implements DCylinder {
 		updateZeroSizedFlag(_radius == 0.0 || __length == 0.0);
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxCylinder copy(DxSpace space)
+	{
+		return new DxCylinder(space, _radius, _lz);
+	}
+
 
 	@Override
     protected void computeAABB()
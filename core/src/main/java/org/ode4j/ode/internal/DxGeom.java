@@ -160,6 +160,7 @@ public abstract class DxGeom extends DBase implements DGeom {
 	DxSpace parent_space;// the space this geom is contained in, 0 if none
 	int _sapIdxDirtyEx; // TZ: Used by SAP-Space.
 	int _sapIdxGeomEx; // TZ: Used by SAP-Space.
+	int _moveCount; // Incremented by dGeomMoved(), used by DxPairCache.
 	Block _qtIdxEx; // TZ: Used by QuadTree-Space.
 	
 	//double[] aabb = new double[6];	// cached AABB for this space
@@ -1194,6 +1195,56 @@ public abstract class DxGeom extends DBase implements DGeom {
 
 
 
+	/* ************************************************************************ */
+	/* copying */
+
+	/**
+	 * @return Whether this geom class implements {@link #copy(DxSpace)}.
+	 */
+	protected boolean isCopySupported() {
+		return false;
+	}
+
+	/**
+	 * Create a geom of the same class with the same shape parameters in
+	 * another space. Immutable shape data (trimesh, heightfield and convex
+	 * data) is shared with this geom. Body, placement and flags are copied
+	 * with copyState().
+	 * @param space space of the new geom, can be 'null'
+	 * @return new geom
+	 */
+	protected DxGeom copy(DxSpace space) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " can not be copied");
+	}
+
+	/**
+	 * Copy user data, category and collide bits, the enabled flag and the
+	 * placement of another geom.
+	 * @param src geom to copy from
+	 * @param b body of the new geom, i.e. the copy of the body of src
+	 */
+	void copyState(DxGeom src, DxBody b) {
+		_data = src._data;
+		category_bits = src.category_bits;
+		collide_bits = src.collide_bits;
+		if ((src._gflags & GEOM_ENABLED) == 0) {
+			dGeomDisable();
+		}
+		if (b != null) {
+			dGeomSetBody(b);
+			if (src.offset_posr != null) {
+				dGeomCreateOffset();
+				offset_posr.pos.set(src.offset_posr.pos);
+				offset_posr.Rw().set(src.offset_posr.R());
+			}
+		} else if ((_gflags & GEOM_PLACEABLE) != 0) {
+			_final_posr.pos.set(src._final_posr.pos);
+			_final_posr.Rw().set(src._final_posr.R());
+		}
+		dGeomMoved();
+	}
+
+
 	/* ************************************************************************ */
 	/* geom offset from body */
 
@@ -1444,6 +1495,8 @@ public abstract class DxGeom extends DBase implements DGeom {
 	//	void dGeomMoved (dxGeom geom)
 	void dGeomMoved ()
 	{
+		_moveCount++;
+
 		// if geom is offset, mark it as needing a calculate
 		if (offset_posr != null) {
 			_gflags |= GEOM_POSR_BAD;
@@ -1702,20 +1755,7 @@ public abstract class DxGeom extends DBase implements DGeom {
 		if (ce.fn != null) {
 			if (ce.reverse) {
 				count = ce.fn.dColliderFn (o2,o1,flags,contacts);
-				for (int i=0; i<count; i++) {
-					//dContactGeom c = CONTACT(contact,skip*i);
-					DContactGeom c = contacts.get(i);
-//					c.normal.v[0] = -c.normal.v[0];
-//					c.normal.v[1] = -c.normal.v[1];
-//					c.normal.v[2] = -c.normal.v[2];
-					c.normal.scale(-1);
-					DGeom tmp = c.g1;
-					c.g1 = c.g2;
-					c.g2 = tmp;
-					int tmpint = c.side1;
-					c.side1 = c.side2;
-					c.side2 = tmpint;
-				}
+				reverseContacts(contacts, count);
 			} else {
 				count = ce.fn.dColliderFn (o1,o2,flags,contacts);
 			}
@@ -1724,6 +1764,40 @@ public abstract class DxGeom extends DBase implements DGeom {
 		return count;
 	}
 
+	/**
+	 * Turn contacts of a collider that was called with swapped geoms into
+	 * contacts for the original order.
+	 */
+	static void reverseContacts(DContactGeomBuffer contacts, int count) {
+		for (int i=0; i<count; i++) {
+			//dContactGeom c = CONTACT(contact,skip*i);
+			DContactGeom c = contacts.get(i);
+//			c.normal.v[0] = -c.normal.v[0];
+//			c.normal.v[1] = -c.normal.v[1];
+//			c.normal.v[2] = -c.normal.v[2];
+			c.normal.scale(-1);
+			DGeom tmp = c.g1;
+			c.g1 = c.g2;
+			c.g2 = tmp;
+			int tmpint = c.side1;
+			c.side1 = c.side2;
+			c.side2 = tmpint;
+		}
+	}
+
+	/**
+	 * @return The collider for geoms of the classes t1 and t2, or null if
+	 * there is none. If {@link #isColliderReversed(int, int)} the collider
+	 * expects the geoms in the opposite order.
+	 */
+	static DColliderFn getCollider(int t1, int t2) {
+		return colliders[t1][t2].fn;
+	}
+
+	static boolean isColliderReversed(int t1, int t2) {
+		return colliders[t1][t2].reverse;
+	}
+
 
 	// **************** from collision_space_internal.h TZ
 
@@ -25,16 +25,23 @@
 package org.ode4j.ode.internal;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.ode4j.ode.DAABB;
 import org.ode4j.ode.DHashSpace;
-import org.ode4j.ode.internal.cpp4j.java.RefInt;
 
 import static org.ode4j.ode.OdeMath.*;
 import static org.ode4j.ode.internal.cpp4j.C_All.*;
 
 /**
  * From collision_space.cpp
+ * <p>
+ * Unlike in ODE, the hash table is kept between calls to collide(). Every
+ * geom has a handle, the cells of a geom are stored as (level, x, y, z,
+ * handle) entries in an open addressing (linear probing) hash table of
+ * primitive arrays. Only dirty geoms are moved in the table, and only if
+ * their level or cells have changed.
  */
 public class DxHashSpace extends DxSpace implements DHashSpace {
 	//****************************************************************************
@@ -46,36 +53,12 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	//	#endif
 	private static final int MAXINT = Integer.MAX_VALUE;
 
-
-	// prime[i] is the largest prime smaller than 2^i
-	//	#define NUM_PRIMES 31
-	//	static const long int prime[NUM_PRIMES] = {1L,2L,3L,7L,13L,31L,61L,127L,251L,509L,
-	//	  1021L,2039L,4093L,8191L,16381L,32749L,65521L,131071L,262139L,
-	//	  524287L,1048573L,2097143L,4194301L,8388593L,16777213L,33554393L,
-	//	  67108859L,134217689L,268435399L,536870909L,1073741789L};
-	private static final int NUM_PRIMES = 31;
-	private static final int[] prime =  {1,2,3,7,13,31,61,127,251,509,
-		1021,2039,4093,8191,16381,32749,65521,131071,262139,
-		524287,1048573,2097143,4194301,8388593,16777213,33554393,
-		67108859,134217689,268435399,536870909,1073741789};
-
-
-	// an axis aligned bounding box in the hash table
-	private static class dxAABB {
-		int level;		// the level this is stored in (cell size = 2^level)
-		int[] dbounds = new int[6];	// AABB bounds, discretized to cell size
-		DxGeom geom;		// corresponding geometry object (AABB stored here)
-		int index;		// index of this AABB, starting from 0
-	}
-
-
-	// a hash table node that represents an AABB that intersects a particular cell
-	// at a particular level
-	private static class Node {
-		Node next;		// next node in hash table collision list, 0 if none
-		int x,y,z;		// cell position in space, discretized to cell size
-		dxAABB aabb;		// axis aligned bounding box that intersects this cell
-	}
+	private static final int GEOM_INVALID_IDX = -1;
+	// handle levels that are not a hash table level
+	private static final int LEVEL_NONE = Integer.MIN_VALUE;	// not yet cleaned
+	private static final int LEVEL_BIG = Integer.MAX_VALUE;	// in bigGeoms
+	private static final int EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 16;
 
 
 	// return the `level' of an AABB. the AABB will be put into cells at this
@@ -106,20 +89,17 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		if (q2 > q) q = q2;
 
 		// find level such that 0.5 * 2^level < q <= 2^level
-		RefInt level = new RefInt();
-		frexp (q,level);	// q = (0.5 .. 1.0) * 2^level (definition of frexp)
-		return level.i;
+		// This is the exponent of frexp(q), without allocating a RefInt.
+		if (q == 0 || Double.isNaN(q)) {
+			return 0;
+		}
+		return Math.getExponent(q) + 1;
 	}
-	// find a virtual memory address for a cell at the given level and x,y,z
-	// position.
-	// @@@ currently this is not very sophisticated, e.g. the scaling
-	// factors could be better designed to avoid collisions, and they should
-	// probably depend on the hash table physical size.
-
-	private static long getVirtualAddressBase(int level, int x, int y) {
-		long r = level * 1000L + x * 100L + y * 10L;
-		//assert (r >= 0);
-		return r;
+
+	private static int hash(int level, int x, int y, int z) {
+		int h = ((level * 31 + x) * 0x9E3779B1 + y) * 0x85EBCA6B + z;
+		h *= 0xC2B2AE35;
+		return h ^ (h >>> 16);
 	}
 
 	//****************************************************************************
@@ -130,6 +110,38 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	private int global_maxlevel;	// objects that need a level larger than this will be
 	// put in a "big objects" list instead of a hash table
 
+	// dirty geoms, each geom knows its index in the list
+	private final List<DxGeom> dirtyList = new ArrayList<>();
+	// geoms that are too big for the hash table
+	private final List<DxGeom> bigGeoms = new ArrayList<>();
+
+	// Every geom of the space has a handle, the handle is stored in the geom.
+	private DxGeom[] handleGeom = new DxGeom[INITIAL_CAPACITY];
+	private int[] handleLevel = new int[INITIAL_CAPACITY];
+	// AABB bounds, discretized to the cell size of the level: [handle * 6 + i]
+	private int[] handleBounds = new int[INITIAL_CAPACITY * 6];
+	// stamp of the last handle that has tested this handle in collide()
+	private int[] handleTested = new int[INITIAL_CAPACITY];
+	private int handleCount;
+	private int[] freeHandles = new int[INITIAL_CAPACITY];
+	private int freeCount;
+	private int testStamp;
+
+	// number of handles per level, index is level - global_minlevel
+	private int[] levelCount;
+
+	// hash table entries, cellHandle is EMPTY for free slots
+	private int[] cellLevel = new int[INITIAL_CAPACITY];
+	private int[] cellX = new int[INITIAL_CAPACITY];
+	private int[] cellY = new int[INITIAL_CAPACITY];
+	private int[] cellZ = new int[INITIAL_CAPACITY];
+	private int[] cellHandle = newTable(INITIAL_CAPACITY);
+	private int cellMask = INITIAL_CAPACITY - 1;
+	private int cellCount;
+
+	private final int[] db = new int[6];	// discrete bounds in update()
+	private final int[] searchBounds = new int[6];	// discrete bounds at current level in collide()
+
 	//	  dxHashSpace (dSpace _space);
 	//	  void setLevels (int minlevel, int maxlevel);
 	//	  void getLevels (int *minlevel, int *maxlevel);
@@ -145,6 +157,21 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		type = dHashSpaceClass;
 		global_minlevel = -3;
 		global_maxlevel = 10;
+		levelCount = new int[global_maxlevel - global_minlevel + 1];
+	}
+
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxHashSpace copy(DxSpace space)
+	{
+		DxHashSpace s = new DxHashSpace(space);
+		s.setLevels(global_minlevel, global_maxlevel);
+		return s;
 	}
 
 
@@ -152,8 +179,24 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	public void setLevels (int minlevel, int maxlevel)
 	{
 		dAASSERT (minlevel <= maxlevel);
+		if (minlevel == global_minlevel && maxlevel == global_maxlevel) {
+			return;
+		}
 		global_minlevel = minlevel;
 		global_maxlevel = maxlevel;
+
+		// all geoms have to be placed anew
+		levelCount = new int[global_maxlevel - global_minlevel + 1];
+		Arrays.fill(cellHandle, EMPTY);
+		cellCount = 0;
+		bigGeoms.clear();
+		for (int h = 0; h < handleCount; h++) {
+			DxGeom g = handleGeom[h];
+			if (g != null) {
+				handleLevel[h] = LEVEL_NONE;
+				dirty(g);
+			}
+		}
 	}
 
 
@@ -170,14 +213,98 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	}
 
 
+	@Override
+	void add (DxGeom g)
+	{
+		CHECK_NOT_LOCKED (this);
+		dUASSERT(g.parent_space == null, "geom is already in a space");
+
+		int h;
+		if (freeCount > 0) {
+			h = freeHandles[--freeCount];
+		} else {
+			if (handleCount == handleGeom.length) {
+				int capacity = handleCount * 2;
+				handleGeom = Arrays.copyOf(handleGeom, capacity);
+				handleLevel = Arrays.copyOf(handleLevel, capacity);
+				handleBounds = Arrays.copyOf(handleBounds, capacity * 6);
+				handleTested = Arrays.copyOf(handleTested, capacity);
+			}
+			h = handleCount++;
+		}
+		handleGeom[h] = g;
+		handleLevel[h] = LEVEL_NONE;
+		g._sapIdxGeomEx = h;
+
+		// add to dirty list
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add( g );
+
+		super.add(g);
+	}
+
+	@Override
+	void remove (DxGeom g)
+	{
+		CHECK_NOT_LOCKED(this);
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		int dirtyIdx = g._sapIdxDirtyEx;
+		if (dirtyIdx != GEOM_INVALID_IDX) {
+			removeFromDirtyList(dirtyIdx);
+		}
+		int h = g._sapIdxGeomEx;
+		removeFromTable(h);
+		handleGeom[h] = null;
+		handleLevel[h] = LEVEL_NONE;
+		if (freeCount == freeHandles.length) {
+			freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+		}
+		freeHandles[freeCount++] = h;
+		g._sapIdxGeomEx = GEOM_INVALID_IDX;
+
+		super.remove(g);
+	}
+
+	private void removeFromDirtyList(int dirtyIdx) {
+		int last = dirtyList.size() - 1;
+		DxGeom g = dirtyList.get(dirtyIdx);
+		if (dirtyIdx != last) {
+			DxGeom lastG = dirtyList.get(last);
+			dirtyList.set(dirtyIdx, lastG);
+			lastG._sapIdxDirtyEx = dirtyIdx;
+		}
+		dirtyList.remove(last);
+		g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+	}
+
+	@Override
+	void dirty (DxGeom g)
+	{
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		// check if already dirtied
+		if (g._sapIdxDirtyEx != GEOM_INVALID_IDX) {
+			return;
+		}
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add( g );
+	}
+
+
 	@Override
 	public void cleanGeoms()
 	{
-		// compute the AABBs of all dirty geoms, and clear the dirty flags
+		int dirtySize = dirtyList.size();
+		if (dirtySize == 0) {
+			return;
+		}
+
+		// compute the AABBs of all dirty geoms, clear the dirty flags
+		// and move them in the hash table
 		lock_count++;
-		for (DxGeom g : getGeomsDx()) {
-			//if ((g._gflags & GEOM_DIRTY)==0) break;
-			if (!g.hasFlagDirty()) break;
+		for (int i = 0; i < dirtySize; ++i) {
+			DxGeom g = dirtyList.get(i);
 			if (g instanceof DxSpace) {
 				((DxSpace)g).cleanGeoms();
 			}
@@ -187,7 +314,10 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 			// g->gflags &= ~GEOM_DIRTY;
 			dIASSERT(!g.hasFlagAabbBad());
 			g.unsetFlagDirty();
+			g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+			update(g._sapIdxGeomEx);
 		}
+		dirtyList.clear();
 		lock_count--;
 	}
 
@@ -195,8 +325,6 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 	public void collide (Object data, DNearCallback callback)
 	{
 		dAASSERT(callback);
-		//dxGeom geom; //*
-		int i,maxlevel;
 
 		// 0 or 1 geoms can't collide with anything
 		if (getNumGeoms() < 2) return;
@@ -204,145 +332,50 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		lock_count++;
 		cleanGeoms();
 
-		// create a list of auxiliary information for all geom axis aligned bounding
-		// boxes. set the level for all AABBs. put AABBs larger than the space's
-		// global_maxlevel in the big_boxes list, check everything else against
-		// that list at the end. for AABBs that are not too big, record the maximum
-		// level that we need.
-
-		ArrayList<dxAABB> hash_boxes = new ArrayList<>();	// list of AABBs in hash table
-		ArrayList<dxAABB> big_boxes = new ArrayList<>();	// list of AABBs too big for hash table
-		maxlevel = global_minlevel - 1;
-		for (DxGeom geom : getGeomsDx()) {
-			if (!GEOM_ENABLED(geom)){
+		int maxlevel = global_maxlevel;
+		while (maxlevel >= global_minlevel && levelCount[maxlevel - global_minlevel] == 0) {
+			maxlevel--;
+		}
+
+		// for all AABBs, check for other AABBs in the same cells for
+		// collisions, and then check for other AABBs in all intersecting higher
+		// level cells. AABBs of the same level find each other, the pair is
+		// tested by the one with the lower handle. within the search of one
+		// AABB, handleTested makes sure that every other AABB is tested once.
+		for (int h = 0; h < handleCount; h++) {
+			int aabbLevel = handleLevel[h];
+			if (aabbLevel == LEVEL_NONE || aabbLevel == LEVEL_BIG) {
 				continue;
 			}
-			dxAABB aabb = new dxAABB(); //(dxAABB) ALLOCA (sizeof(dxAABB));
-			aabb.geom = geom;
-			// compute level, but prevent cells from getting too small
-			int level = findLevel (geom._aabb);
-			if (level < global_minlevel) level = global_minlevel;
-			if (level <= global_maxlevel) {
-				aabb.level = level;
-				if (level > maxlevel) maxlevel = level;
-				// cellsize = 2^level
-				double cellSizeRecip = dRecip(ldexp(1.0, level)); // No computational errors here!
-				// discretize AABB position to cell size
-				for (i=0; i < 3; i++) {
-					double aabbBoundMin = Math.floor (geom._aabb.getMin(i) * cellSizeRecip); // No computational errors so far!
-					double aabbBoundMax = Math.floor (geom._aabb.getMax(i) * cellSizeRecip); // No computational errors so far!
-					dICHECK(aabbBoundMin >= Integer.MIN_VALUE && aabbBoundMin </*=*/ Integer.MAX_VALUE); // Otherwise the scene is too large for integer types used
-					dICHECK(aabbBoundMax >= Integer.MIN_VALUE && aabbBoundMax </*=*/ Integer.MAX_VALUE); // Otherwise the scene is too large for integer types used
-					aabb.dbounds[2*i] = (int)Math.floor (aabbBoundMin);
-					aabb.dbounds[2*i+1] = (int)Math.floor (aabbBoundMax);
-				}
-				// set AABB index
-				aabb.index = hash_boxes.size();
-	            // aabb goes in main list
-	            hash_boxes.add(aabb);
+			DxGeom g = handleGeom[h];
+			if (!GEOM_ENABLED(g)) {
+				continue;
 			}
-			else {
-				// aabb is too big, put it in the big_boxes list. we don't care about
-				// setting level, dbounds, index, or the maxlevel
-				big_boxes.add(aabb);
+			if (++testStamp == 0) {
+				Arrays.fill(handleTested, 0);
+				testStamp = 1;
 			}
-		}
-
-	    int n = hash_boxes.size(); // number of AABBs in main list
-
-		// for `n' objects, an n*n array of bits is used to record if those objects
-		// have been intersection-tested against each other yet. this array can
-		// grow large with high n, but oh well...
-		int tested_rowsize = (n+7) >> 3;	// number of bytes needed for n bits
-		//std::vector<unsigned char> tested(n * tested_rowsize);
-		int[] tested = new int[n * tested_rowsize];
-
-		// create a hash table to store all AABBs. each AABB may take up to 8 cells.
-		// we use chaining to resolve collisions, but we use a relatively large table
-		// to reduce the chance of collisions.
-
-		// compute hash table size sz to be a prime > 8*n
-		for (i=0; i<NUM_PRIMES; i++) {
-			if (prime[i] >= (8*n)) break;
-		}
-		if (i >= NUM_PRIMES) 
-			i = NUM_PRIMES-1;	// probably pointless
-		int sz = prime[i];
-
-		// allocate and initialize hash table node pointers
-		//std::vector<Node*> table(sz);
-		Node[] table = new Node[sz];
-
-		// add each AABB to the hash table (may need to add it to up to 8 cells)
-		//TODO use proper List here!
-		//for (aabb=first_aabb; aabb != null; aabb=aabb.next) {
-		for (dxAABB aabb: hash_boxes) {
-			int[] dbounds = aabb.dbounds;
-			int xend = dbounds[1];
-			for (int xi = dbounds[0]; xi <= xend; xi++) {
-				int yend = dbounds[3];
-				for (int yi = dbounds[2]; yi <= yend; yi++) {
-					int zbegin = dbounds[4];
-					int hi = (int) Math.floorMod((getVirtualAddressBase (aabb.level,xi,yi) + zbegin) , (long) sz);
-					int zend = dbounds[5];
-					for (int zi = zbegin; zi <= zend; hi = hi + 1 != sz ? hi + 1 : 0, zi++) {
-						// add a new node to the hash table
-						Node node = new Node();//(Node) ALLOCA (sizeof (Node));
-						node.x = xi;
-						node.y = yi;
-						node.z = zi;
-						node.aabb = aabb;
-						node.next = table[hi];
-						table[hi] = node;
-					}
-				}
-			}
-		}
-
-		// now that all AABBs are loaded into the hash table, we do the actual
-		// collision detection. for all AABBs, check for other AABBs in the
-		// same cells for collisions, and then check for other AABBs in all
-		// intersecting higher level cells.
-
-		int[] db = new int[6];			// discrete bounds at current level
-		for (dxAABB aabb: hash_boxes) {
-			// we are searching for collisions with aabb
-			for (i=0; i<6; i++) db[i] = aabb.dbounds[i];
-			for (int level = aabb.level; ; ) {
+			System.arraycopy(handleBounds, h * 6, searchBounds, 0, 6);
+			for (int level = aabbLevel; ; ) {
 				dIASSERT(level <= maxlevel);
-	            final int xend = db[1];
-				for (int xi = db[0]; xi <= xend; xi++) {
-					final int yend = db[3];
-					for (int yi = db[2]; yi <= yend; yi++) {
-						int zbegin = db[4];
-						// get the hash index
-						int hi = (int)Math.floorMod((getVirtualAddressBase(level, xi, yi) + zbegin), (long)sz);
-						final int zend = db[5];
-						for (int zi = zbegin; zi <= zend; hi = hi + 1 != sz ? hi + 1 : 0, zi++) {
-							// search all nodes at this index
-							for (Node node = table[hi]; node != null; node=node.next) {
-								// node points to an AABB that may intersect aabb
-								if (node.aabb == aabb) 
+				for (int xi = searchBounds[0]; xi <= searchBounds[1]; xi++) {
+					for (int yi = searchBounds[2]; yi <= searchBounds[3]; yi++) {
+						for (int zi = searchBounds[4]; zi <= searchBounds[5]; zi++) {
+							// search all entries of this cell
+							int mask = cellMask;
+							for (int i = hash(level, xi, yi, zi) & mask; cellHandle[i] != EMPTY; i = (i + 1) & mask) {
+								int h2 = cellHandle[i];
+								if (h2 == h || cellLevel[i] != level || cellX[i] != xi || cellY[i] != yi
+										|| cellZ[i] != zi) {
+									continue;
+								}
+								if ((level == aabbLevel && h2 < h) || handleTested[h2] == testStamp) {
 									continue;
-								if (node.aabb.level == level &&
-										node.x == xi && node.y == yi && node.z == zi) {
-									// see if aabb and node->aabb have already been tested
-									// against each other
-									//TZ unsigned char mask;
-									int mask;
-									if (aabb.index <= node.aabb.index) {
-										i = (aabb.index * tested_rowsize)+(node.aabb.index >> 3);
-										mask = 1 << (node.aabb.index & 7);
-									}
-									else {
-										i = (node.aabb.index * tested_rowsize)+(aabb.index >> 3);
-										mask = 1 << (aabb.index & 7);
-									}
-									dIASSERT (i >= 0 && i < (tested_rowsize*n));
-									if ((tested[i] & mask)==0) {
-										tested[i] |= mask;
-										collideAABBs (aabb.geom,node.aabb.geom,data,callback);
-									}
+								}
+								handleTested[h2] = testStamp;
+								DxGeom g2 = handleGeom[h2];
+								if (GEOM_ENABLED(g2)) {
+									collideAABBs (g,g2,data,callback);
 								}
 							}
 						}
@@ -354,36 +387,44 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 				}
 				++level;
 				// get the discrete bounds for the next level up
-				for (i=0; i<6; i++) 
-					db[i] >>= 1;
+				for (int i=0; i<6; i++) 
+					searchBounds[i] >>= 1;
 			}
 		}
 
-		// every AABB in the normal list must now be intersected against every
-		// AABB in the big_boxes list. so let's hope there are not too many objects
-		// in the big_boxes list.
-		for (dxAABB aabb: hash_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		// every AABB in the hash table must now be intersected against every
+		// AABB in the bigGeoms list. so let's hope there are not too many objects
+		// in the bigGeoms list.
+		int bigSize = bigGeoms.size();
+		if (bigSize > 0) {
+			for (int h = 0; h < handleCount; h++) {
+				int level = handleLevel[h];
+				if (level == LEVEL_NONE || level == LEVEL_BIG || !GEOM_ENABLED(handleGeom[h])) {
+					continue;
+				}
+				for (int i = 0; i < bigSize; i++) {
+					DxGeom g2 = bigGeoms.get(i);
+					if (GEOM_ENABLED(g2)) {
+						collideAABBs (handleGeom[h],g2,data,callback);
+					}
+				}
 			}
 		}
 
-		// intersected all AABBs in the big_boxes list together
-		for (dxAABB aabb: big_boxes) {
-			for (dxAABB aabb2: big_boxes) {
-				collideAABBs (aabb.geom,aabb2.geom,data,callback);
+		// intersected all AABBs in the bigGeoms list together
+		for (int i = 0; i < bigSize; i++) {
+			DxGeom g1 = bigGeoms.get(i);
+			if (!GEOM_ENABLED(g1)) {
+				continue;
+			}
+			for (int j = i + 1; j < bigSize; j++) {
+				DxGeom g2 = bigGeoms.get(j);
+				if (GEOM_ENABLED(g2)) {
+					collideAABBs (g1,g2,data,callback);
+				}
 			}
 		}
 
-		//(TZ): Not necessary in Java
-//	    // deallocate table
-//	    for (int ii=0; ii<table.length; ++i)
-//	        for (Node node = table[ii]; node != null;) {
-//	            Node next = node.next;
-//	            delete node;
-//	            node = next;
-//	        }
-
 		lock_count--;
 	}
 
@@ -408,6 +449,151 @@ public class DxHashSpace extends DxSpace implements DHashSpace {
 		lock_count--;
 	}
 
+	//****************************************************************************
+	// hash table
+
+	/**
+	 * Compute the level and cells of a dirty geom and move it in the hash
+	 * table if they have changed.
+	 */
+	private void update(int h) {
+		DxGeom g = handleGeom[h];
+		// compute level, but prevent cells from getting too small
+		int level = findLevel (g._aabb);
+		if (level < global_minlevel) level = global_minlevel;
+		if (level > global_maxlevel) {
+			if (handleLevel[h] != LEVEL_BIG) {
+				removeFromTable(h);
+				handleLevel[h] = LEVEL_BIG;
+				bigGeoms.add(g);
+			}
+			return;
+		}
+
+		// cellsize = 2^level
+		double cellSizeRecip = dRecip(ldexp(1.0, level)); // No computational errors here!
+		// discretize AABB position to cell size
+		for (int i=0; i < 3; i++) {
+			double aabbBoundMin = Math.floor (g._aabb.getMin(i) * cellSizeRecip); // No computational errors so far!
+			double aabbBoundMax = Math.floor (g._aabb.getMax(i) * cellSizeRecip); // No computational errors so far!
+			dICHECK(aabbBoundMin >= Integer.MIN_VALUE && aabbBoundMin </*=*/ Integer.MAX_VALUE); // Otherwise the scene is too large for integer types used
+			dICHECK(aabbBoundMax >= Integer.MIN_VALUE && aabbBoundMax </*=*/ Integer.MAX_VALUE); // Otherwise the scene is too large for integer types used
+			db[2*i] = (int) aabbBoundMin;
+			db[2*i+1] = (int) aabbBoundMax;
+		}
+
+		int o = h * 6;
+		if (handleLevel[h] == level && handleBounds[o] == db[0] && handleBounds[o + 1] == db[1]
+				&& handleBounds[o + 2] == db[2] && handleBounds[o + 3] == db[3]
+				&& handleBounds[o + 4] == db[4] && handleBounds[o + 5] == db[5]) {
+			// still in the same cells
+			return;
+		}
+		removeFromTable(h);
+		System.arraycopy(db, 0, handleBounds, o, 6);
+		handleLevel[h] = level;
+		levelCount[level - global_minlevel]++;
+		// add the AABB to the hash table (may need to add it to up to 8 cells)
+		for (int xi = db[0]; xi <= db[1]; xi++) {
+			for (int yi = db[2]; yi <= db[3]; yi++) {
+				for (int zi = db[4]; zi <= db[5]; zi++) {
+					addCell(level, xi, yi, zi, h);
+				}
+			}
+		}
+	}
+
+	private void removeFromTable(int h) {
+		int level = handleLevel[h];
+		if (level == LEVEL_NONE) {
+			return;
+		}
+		if (level == LEVEL_BIG) {
+			bigGeoms.remove(handleGeom[h]);
+		} else {
+			levelCount[level - global_minlevel]--;
+			int o = h * 6;
+			for (int xi = handleBounds[o]; xi <= handleBounds[o + 1]; xi++) {
+				for (int yi = handleBounds[o + 2]; yi <= handleBounds[o + 3]; yi++) {
+					for (int zi = handleBounds[o + 4]; zi <= handleBounds[o + 5]; zi++) {
+						removeCell(level, xi, yi, zi, h);
+					}
+				}
+			}
+		}
+		handleLevel[h] = LEVEL_NONE;
+	}
+
+	private void addCell(int level, int x, int y, int z, int h) {
+		if (2 * (cellCount + 1) > cellHandle.length) {
+			rehash(cellHandle.length * 2);
+		}
+		int i = hash(level, x, y, z) & cellMask;
+		while (cellHandle[i] != EMPTY) {
+			i = (i + 1) & cellMask;
+		}
+		cellLevel[i] = level;
+		cellX[i] = x;
+		cellY[i] = y;
+		cellZ[i] = z;
+		cellHandle[i] = h;
+		cellCount++;
+	}
+
+	private void removeCell(int level, int x, int y, int z, int h) {
+		int i = hash(level, x, y, z) & cellMask;
+		while (cellHandle[i] != h || cellLevel[i] != level || cellX[i] != x || cellY[i] != y || cellZ[i] != z) {
+			dIASSERT(cellHandle[i] != EMPTY);
+			i = (i + 1) & cellMask;
+		}
+		cellCount--;
+		// backward shift deletion: move later entries of the probe sequence
+		// into the gap, unless that would move them before their home slot
+		for (int j = i; ; ) {
+			j = (j + 1) & cellMask;
+			if (cellHandle[j] == EMPTY) {
+				break;
+			}
+			int home = hash(cellLevel[j], cellX[j], cellY[j], cellZ[j]) & cellMask;
+			if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) {
+				continue;
+			}
+			cellLevel[i] = cellLevel[j];
+			cellX[i] = cellX[j];
+			cellY[i] = cellY[j];
+			cellZ[i] = cellZ[j];
+			cellHandle[i] = cellHandle[j];
+			i = j;
+		}
+		cellHandle[i] = EMPTY;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldLevel = cellLevel;
+		int[] oldX = cellX;
+		int[] oldY = cellY;
+		int[] oldZ = cellZ;
+		int[] oldHandle = cellHandle;
+		cellLevel = new int[capacity];
+		cellX = new int[capacity];
+		cellY = new int[capacity];
+		cellZ = new int[capacity];
+		cellHandle = newTable(capacity);
+		cellMask = capacity - 1;
+		cellCount = 0;
+		for (int i = 0; i < oldHandle.length; i++) {
+			if (oldHandle[i] != EMPTY) {
+				addCell(oldLevel[i], oldX[i], oldY[i], oldZ[i], oldHandle[i]);
+			}
+		}
+	}
+
+	private static int[] newTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
 	//****************************************************************************
 	// space functions
 
@@ -188,6 +188,10 @@ public class DxHeightfield extends DxAbstractHeightfield {
 	private int              tempHeightBufferSizeX;
 	private int              tempHeightBufferSizeZ;
 
+	// per geom rather than in the shared heightfield data, so that copies of a
+	// world can collide in parallel
+	private final DContactGeomBuffer tempPlaneContacts = new DContactGeomBuffer(HEIGHTFIELDMAXCONTACTPERCELL);
+
 
 
 	// dxHeightfield constructor
@@ -456,6 +460,18 @@ public class DxHeightfield extends DxAbstractHeightfield {
 		return new DxHeightfield( space, data, bPlaceable );
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxHeightfield copy( DxSpace space )
+	{
+		return new DxHeightfield( space, m_p_data, hasFlagPlaceable() );
+	}
+
 
 	//	void dGeomHeightfieldSetHeightfieldData( dGeom g, dHeightfieldData d )
 	void dGeomHeightfieldSetHeightfieldData( DHeightfieldData d )
@@ -961,7 +977,7 @@ public class DxHeightfield extends DxAbstractHeightfield {
 
 		int numTerrainContacts = 0;
 		//dContactGeom *PlaneContact = m_p_data.m_contacts;
-		DContactGeomBuffer PlaneContact = m_p_data.m_contacts;
+		DContactGeomBuffer PlaneContact = tempPlaneContacts;
 
 		//final unsigned 
 		final int numTriMax = (maxX - minX) * (maxZ - minZ) * 2;
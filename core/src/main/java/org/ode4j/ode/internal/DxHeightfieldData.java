@@ -27,7 +27,6 @@ package org.ode4j.ode.internal;
 import java.util.Arrays;
 
 import org.ode4j.math.DVector3C;
-import org.ode4j.ode.DContactGeomBuffer;
 import org.ode4j.ode.DHeightfieldData;
 import org.ode4j.ode.DHeightfield.DHeightfieldGetHeight;
 import org.ode4j.ode.internal.DxHeightfield.HeightFieldVertex;
@@ -78,7 +77,7 @@ public class DxHeightfieldData implements DHeightfieldData {
 	Object m_pUserData;         // Callback user data
 
 	//dContactGeom[]            m_contacts = new dContactGeom[HEIGHTFIELDMAXCONTACTPERCELL];
-	DContactGeomBuffer            m_contacts = new DContactGeomBuffer(DxHeightfield.HEIGHTFIELDMAXCONTACTPERCELL);
+	// moved to DxHeightfield, the data may be shared by geoms of different worlds
 
 	//dHeightfieldGetHeight* m_pGetHeightCallback;		// Callback pointer.
 	/** TODO uses CPP-API! */
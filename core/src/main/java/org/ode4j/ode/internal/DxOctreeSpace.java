@@ -0,0 +1,619 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DOctreeSpace;
+
+/**
+ * Loose octree space.
+ * <p>
+ * Every node has a cubic cell, its loose bounds are the cell scaled by
+ * LOOSENESS around the cell center. A geom is stored in the smallest node
+ * that contains the center of its AABB in its cell and the whole AABB in
+ * its loose bounds, so the loose bounds of a node contain the AABBs of all
+ * geoms in its subtree. Nodes are created when they are needed and dropped
+ * when their subtree is empty.
+ * <p>
+ * The root grows towards geoms that leave it. Only the root may hold geoms
+ * outside of its loose bounds: geoms with infinite AABBs and geoms that
+ * are too far away even for a root of MAX_EXTENT.
+ * <p>
+ * Dirty geoms are moved to their new node, all other geoms stay where they
+ * are. collide() tests the geoms of every node with each other and with the
+ * child nodes whose loose bounds they overlap. The loose bounds of sibling
+ * nodes overlap too, so the subtrees of overlapping siblings are collided
+ * with each other.
+ */
+public class DxOctreeSpace extends DxSpace implements DOctreeSpace {
+
+	private static final int GEOM_INVALID_IDX = -1;
+	private static final double LOOSENESS = 2;
+	// the root does not grow beyond this extent
+	private static final double MAX_EXTENT = 1e12;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final class Node {
+		final double cx, cy, cz;
+		final double extent;	// half the side length of the cell
+		// loose bounds
+		final double looseMinX, looseMinY, looseMinZ, looseMaxX, looseMaxY, looseMaxZ;
+		// bounds of the AABBs in the subtree, empty if the subtree is empty
+		double minX = dInfinity, minY = dInfinity, minZ = dInfinity;
+		double maxX = -dInfinity, maxY = -dInfinity, maxZ = -dInfinity;
+		// false if the bounds of this node or of a child have changed,
+		// the parent of an invalid node is invalid too
+		boolean boundsValid = true;
+		Node parent;
+		int index;	// index in parent.children
+		Node[] children;	// null until a child is needed
+		int[] handles = new int[2];
+		int numHandles;
+		int subtreeCount;	// handles in this node and its children
+
+		Node(Node parent, int index, double cx, double cy, double cz, double extent) {
+			this.parent = parent;
+			this.index = index;
+			this.cx = cx;
+			this.cy = cy;
+			this.cz = cz;
+			this.extent = extent;
+			double loose = LOOSENESS * extent;
+			looseMinX = cx - loose;
+			looseMinY = cy - loose;
+			looseMinZ = cz - loose;
+			looseMaxX = cx + loose;
+			looseMaxY = cy + loose;
+			looseMaxZ = cz + loose;
+		}
+
+		/**
+		 * @return true if the AABB is inside of the loose bounds.
+		 */
+		boolean contains(DAABB aabb) {
+			return aabb.getMin0() >= looseMinX && aabb.getMax0() <= looseMaxX && aabb.getMin1() >= looseMinY
+					&& aabb.getMax1() <= looseMaxY && aabb.getMin2() >= looseMinZ && aabb.getMax2() <= looseMaxZ;
+		}
+
+		boolean overlaps(DAABB aabb) {
+			return aabb.getMin0() <= maxX && aabb.getMax0() >= minX && aabb.getMin1() <= maxY
+					&& aabb.getMax1() >= minY && aabb.getMin2() <= maxZ && aabb.getMax2() >= minZ;
+		}
+
+		boolean overlaps(Node node) {
+			return node.minX <= maxX && node.maxX >= minX && node.minY <= maxY
+					&& node.maxY >= minY && node.minZ <= maxZ && node.maxZ >= minZ;
+		}
+
+		void invalidate() {
+			for (Node n = this; n != null && n.boundsValid; n = n.parent) {
+				n.boundsValid = false;
+			}
+		}
+
+		int octant(double x, double y, double z) {
+			return (x >= cx ? 1 : 0) | (y >= cy ? 2 : 0) | (z >= cz ? 4 : 0);
+		}
+	}
+
+	// creation parameters, for copy()
+	private final DVector3 center = new DVector3();
+	private final double extent;
+	private final int maxDepth;
+	private final double minExtent;
+
+	private Node root;
+
+	// dirty geoms, each geom knows its index in the list
+	private final List<DxGeom> dirtyList = new ArrayList<>();
+
+	// Every geom of the space has a handle, the handle is stored in the geom.
+	private DxGeom[] handleGeom = new DxGeom[INITIAL_CAPACITY];
+	// node of the handle, null if not yet cleaned
+	private Node[] handleNode = new Node[INITIAL_CAPACITY];
+	// index in handleNode[h].handles
+	private int[] handleIndex = new int[INITIAL_CAPACITY];
+	private int handleCount;
+	private int[] freeHandles = new int[INITIAL_CAPACITY];
+	private int freeCount;
+
+	/**
+	 * Creation.
+	 * @param space parent space
+	 * @param center center of the root node
+	 * @param extent half the side length of the root node
+	 * @param maxDepth depth of the smallest nodes below the initial root node
+	 * @return octree space
+	 */
+	public static DxOctreeSpace dOctreeSpaceCreate(DxSpace space, DVector3C center, double extent, int maxDepth) {
+		return new DxOctreeSpace(space, center, extent, maxDepth);
+	}
+
+	private DxOctreeSpace(DxSpace space, DVector3C center, double extent, int maxDepth) {
+		super(space);
+		dUASSERT(extent > 0 && maxDepth >= 0, "invalid octree size");
+		type = dOctreeSpaceClass;
+		this.center.set(center);
+		this.extent = extent;
+		this.maxDepth = maxDepth;
+		minExtent = Math.scalb(extent, -maxDepth);
+		root = new Node(null, 0, center.get0(), center.get1(), center.get2(), extent);
+	}
+
+	@Override
+	protected boolean isCopySupported() {
+		return true;
+	}
+
+	@Override
+	protected DxOctreeSpace copy(DxSpace space) {
+		return new DxOctreeSpace(space, center, extent, maxDepth);
+	}
+
+	@Override
+	public DVector3C getCenter() {
+		return new DVector3(root.cx, root.cy, root.cz);
+	}
+
+	@Override
+	public double getExtent() {
+		return root.extent;
+	}
+
+	@Override
+	public double getMinExtent() {
+		return minExtent;
+	}
+
+	@Override
+	void add(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		dUASSERT(g.parent_space == null, "geom is already in a space");
+
+		int h;
+		if (freeCount > 0) {
+			h = freeHandles[--freeCount];
+		} else {
+			if (handleCount == handleGeom.length) {
+				int capacity = handleCount * 2;
+				handleGeom = Arrays.copyOf(handleGeom, capacity);
+				handleNode = Arrays.copyOf(handleNode, capacity);
+				handleIndex = Arrays.copyOf(handleIndex, capacity);
+			}
+			h = handleCount++;
+		}
+		handleGeom[h] = g;
+		handleNode[h] = null;
+		g._sapIdxGeomEx = h;
+
+		// add to dirty list
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add(g);
+
+		super.add(g);
+	}
+
+	@Override
+	void remove(DxGeom g) {
+		CHECK_NOT_LOCKED(this);
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		int dirtyIdx = g._sapIdxDirtyEx;
+		if (dirtyIdx != GEOM_INVALID_IDX) {
+			removeFromDirtyList(dirtyIdx);
+		}
+		int h = g._sapIdxGeomEx;
+		if (handleNode[h] != null) {
+			removeFromNode(h);
+		}
+		handleGeom[h] = null;
+		if (freeCount == freeHandles.length) {
+			freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+		}
+		freeHandles[freeCount++] = h;
+		g._sapIdxGeomEx = GEOM_INVALID_IDX;
+
+		super.remove(g);
+	}
+
+	private void removeFromDirtyList(int dirtyIdx) {
+		int last = dirtyList.size() - 1;
+		DxGeom g = dirtyList.get(dirtyIdx);
+		if (dirtyIdx != last) {
+			DxGeom lastG = dirtyList.get(last);
+			dirtyList.set(dirtyIdx, lastG);
+			lastG._sapIdxDirtyEx = dirtyIdx;
+		}
+		dirtyList.remove(last);
+		g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+	}
+
+	@Override
+	void dirty(DxGeom g) {
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		// check if already dirtied
+		if (g._sapIdxDirtyEx != GEOM_INVALID_IDX) {
+			return;
+		}
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add(g);
+	}
+
+	@Override
+	public void cleanGeoms() {
+		// compute the AABBs of all dirty geoms, clear the dirty flags
+		// and move them in the tree
+		lock_count++;
+		int dirtySize = dirtyList.size();
+		for (int i = 0; i < dirtySize; ++i) {
+			DxGeom g = dirtyList.get(i);
+			if (g instanceof DxSpace) {
+				((DxSpace) g).cleanGeoms();
+			}
+			g.recomputeAABB();
+			dIASSERT(!g.hasFlagAabbBad());
+			g.unsetFlagDirty();
+			g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+			update(g._sapIdxGeomEx);
+		}
+		dirtyList.clear();
+		// also after removals
+		refit(root);
+		lock_count--;
+	}
+
+	@Override
+	public void collide(Object data, DNearCallback callback) {
+		dAASSERT(callback);
+
+		lock_count++;
+		cleanGeoms();
+
+		collideNode(root, data, callback);
+
+		lock_count--;
+	}
+
+	/**
+	 * Collide the geoms of node with each other and with the geoms in the
+	 * subtrees of node, then continue with the children.
+	 */
+	private void collideNode(Node node, Object data, DNearCallback callback) {
+		int[] handles = node.handles;
+		Node[] children = node.children;
+		for (int i = 0; i < node.numHandles; i++) {
+			DxGeom g = handleGeom[handles[i]];
+			if (!GEOM_ENABLED(g)) {
+				continue;
+			}
+			for (int j = i + 1; j < node.numHandles; j++) {
+				DxGeom g2 = handleGeom[handles[j]];
+				if (GEOM_ENABLED(g2)) {
+					collideAABBs(g, g2, data, callback);
+				}
+			}
+			if (children != null) {
+				for (Node child : children) {
+					if (child != null && child.overlaps(g._aabb)) {
+						collide2Node(child, g, data, callback);
+					}
+				}
+			}
+		}
+		if (children != null) {
+			for (int a = 0; a < 8; a++) {
+				Node child = children[a];
+				if (child == null) {
+					continue;
+				}
+				collideNode(child, data, callback);
+				// the loose bounds of siblings overlap
+				for (int b = a + 1; b < 8; b++) {
+					Node sibling = children[b];
+					if (sibling != null && child.overlaps(sibling)) {
+						collideNodes(child, sibling, data, callback);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collide the geoms of the subtree of node1 with the geoms of the
+	 * subtree of node2. Both nodes have the same depth.
+	 */
+	private void collideNodes(Node node1, Node node2, Object data, DNearCallback callback) {
+		// geoms of node1 with the subtree of node2
+		int[] handles = node1.handles;
+		for (int i = 0; i < node1.numHandles; i++) {
+			DxGeom g = handleGeom[handles[i]];
+			if (GEOM_ENABLED(g) && node2.overlaps(g._aabb)) {
+				collide2Node(node2, g, data, callback);
+			}
+		}
+		Node[] children1 = node1.children;
+		if (children1 == null) {
+			return;
+		}
+		// geoms of node2 with the children of node1
+		handles = node2.handles;
+		for (int i = 0; i < node2.numHandles; i++) {
+			DxGeom g = handleGeom[handles[i]];
+			if (!GEOM_ENABLED(g)) {
+				continue;
+			}
+			for (Node child : children1) {
+				if (child != null && child.overlaps(g._aabb)) {
+					collide2Node(child, g, data, callback);
+				}
+			}
+		}
+		Node[] children2 = node2.children;
+		if (children2 == null) {
+			return;
+		}
+		for (Node child1 : children1) {
+			if (child1 == null) {
+				continue;
+			}
+			for (Node child2 : children2) {
+				if (child2 != null && child1.overlaps(child2)) {
+					collideNodes(child1, child2, data, callback);
+				}
+			}
+		}
+	}
+
+	@Override
+	void collide2(Object data, DxGeom geom, DNearCallback callback) {
+		dAASSERT(geom != null && callback != null);
+
+		lock_count++;
+		cleanGeoms();
+		geom.recomputeAABB();
+
+		collide2Node(root, geom, data, callback);
+
+		lock_count--;
+	}
+
+	@Override
+	void raycast(DxRaycaster.Query query) {
+		raycastNode(root, query);
+	}
+
+	private void raycastNode(Node node, DxRaycaster.Query query) {
+		int[] handles = node.handles;
+		for (int i = 0; i < node.numHandles; i++) {
+			DxGeom g = handleGeom[handles[i]];
+			if (GEOM_ENABLED(g) && query.overlaps(g._aabb)) {
+				query.test(g);
+			}
+		}
+		Node[] children = node.children;
+		if (children != null) {
+			for (Node child : children) {
+				if (child != null && query.overlaps(child.minX, child.minY, child.minZ, child.maxX, child.maxY,
+						child.maxZ)) {
+					raycastNode(child, query);
+				}
+			}
+		}
+	}
+
+	private void collide2Node(Node node, DxGeom geom, Object data, DNearCallback callback) {
+		int[] handles = node.handles;
+		for (int i = 0; i < node.numHandles; i++) {
+			DxGeom g = handleGeom[handles[i]];
+			if (GEOM_ENABLED(g)) {
+				collideAABBs(g, geom, data, callback);
+			}
+		}
+		Node[] children = node.children;
+		if (children != null) {
+			for (Node child : children) {
+				if (child != null && child.overlaps(geom._aabb)) {
+					collide2Node(child, geom, data, callback);
+				}
+			}
+		}
+	}
+
+	// *********************************************
+	// Tree
+	// *********************************************
+
+	/**
+	 * Recompute the bounds of the invalid nodes.
+	 */
+	private void refit(Node node) {
+		if (node.boundsValid) {
+			return;
+		}
+		double minX = dInfinity, minY = dInfinity, minZ = dInfinity;
+		double maxX = -dInfinity, maxY = -dInfinity, maxZ = -dInfinity;
+		int[] handles = node.handles;
+		for (int i = 0; i < node.numHandles; i++) {
+			DAABB aabb = handleGeom[handles[i]]._aabb;
+			minX = Math.min(minX, aabb.getMin0());
+			minY = Math.min(minY, aabb.getMin1());
+			minZ = Math.min(minZ, aabb.getMin2());
+			maxX = Math.max(maxX, aabb.getMax0());
+			maxY = Math.max(maxY, aabb.getMax1());
+			maxZ = Math.max(maxZ, aabb.getMax2());
+		}
+		if (node.children != null) {
+			for (Node child : node.children) {
+				if (child != null) {
+					refit(child);
+					minX = Math.min(minX, child.minX);
+					minY = Math.min(minY, child.minY);
+					minZ = Math.min(minZ, child.minZ);
+					maxX = Math.max(maxX, child.maxX);
+					maxY = Math.max(maxY, child.maxY);
+					maxZ = Math.max(maxZ, child.maxZ);
+				}
+			}
+		}
+		node.minX = minX;
+		node.minY = minY;
+		node.minZ = minZ;
+		node.maxX = maxX;
+		node.maxY = maxY;
+		node.maxZ = maxZ;
+		node.boundsValid = true;
+	}
+
+	private void update(int h) {
+		DAABB aabb = handleGeom[h]._aabb;
+		Node node = findNode(aabb);
+		Node oldNode = handleNode[h];
+		if (node == oldNode) {
+			node.invalidate();
+			return;
+		}
+		// add first, so that the common parents of both nodes are not dropped
+		int oldIndex = handleIndex[h];
+		addToNode(node, h);
+		if (oldNode != null) {
+			removeFromNode(oldNode, oldIndex);
+		}
+	}
+
+	/**
+	 * @return The smallest node for the AABB, children are created on demand.
+	 */
+	private Node findNode(DAABB aabb) {
+		double x = (aabb.getMin0() + aabb.getMax0()) * 0.5;
+		double y = (aabb.getMin1() + aabb.getMax1()) * 0.5;
+		double z = (aabb.getMin2() + aabb.getMax2()) * 0.5;
+		if (!(Math.abs(x) < MAX_EXTENT && Math.abs(y) < MAX_EXTENT && Math.abs(z) < MAX_EXTENT)) {
+			// infinite, NaN or far away
+			return root;
+		}
+		while (!root.contains(aabb) && root.extent < MAX_EXTENT) {
+			growRoot(x, y, z);
+		}
+		Node node = root;
+		while (node.extent * 0.5 >= minExtent) {
+			int octant = node.octant(x, y, z);
+			Node child = node.children != null ? node.children[octant] : null;
+			if (child == null) {
+				double e = node.extent * 0.5;
+				child = new Node(node, octant, (octant & 1) != 0 ? node.cx + e : node.cx - e,
+						(octant & 2) != 0 ? node.cy + e : node.cy - e, (octant & 4) != 0 ? node.cz + e : node.cz - e, e);
+				if (!child.contains(aabb)) {
+					return node;
+				}
+				if (node.children == null) {
+					node.children = new Node[8];
+				}
+				node.children[octant] = child;
+			} else if (!child.contains(aabb)) {
+				return node;
+			}
+			node = child;
+		}
+		return node;
+	}
+
+	/**
+	 * Double the size of the root towards (x, y, z). The old root becomes a
+	 * child of the new root, its geoms that do not fit into it anymore are
+	 * moved to the new root.
+	 */
+	private void growRoot(double x, double y, double z) {
+		Node oldRoot = root;
+		double e = oldRoot.extent;
+		Node newRoot = new Node(null, 0, x >= oldRoot.cx ? oldRoot.cx + e : oldRoot.cx - e,
+				y >= oldRoot.cy ? oldRoot.cy + e : oldRoot.cy - e, z >= oldRoot.cz ? oldRoot.cz + e : oldRoot.cz - e,
+				2 * e);
+		root = newRoot;
+		if (oldRoot.subtreeCount == 0) {
+			return;
+		}
+		int octant = newRoot.octant(oldRoot.cx, oldRoot.cy, oldRoot.cz);
+		newRoot.children = new Node[8];
+		newRoot.children[octant] = oldRoot;
+		newRoot.subtreeCount = oldRoot.subtreeCount;
+		oldRoot.parent = newRoot;
+		oldRoot.index = octant;
+		newRoot.boundsValid = false;
+		for (int i = oldRoot.numHandles - 1; i >= 0; i--) {
+			int h = oldRoot.handles[i];
+			if (!oldRoot.contains(handleGeom[h]._aabb)) {
+				addToNode(newRoot, h);
+				removeFromNode(oldRoot, i);
+			}
+		}
+	}
+
+	private void addToNode(Node node, int h) {
+		if (node.numHandles == node.handles.length) {
+			node.handles = Arrays.copyOf(node.handles, node.numHandles * 2);
+		}
+		handleNode[h] = node;
+		handleIndex[h] = node.numHandles;
+		node.handles[node.numHandles++] = h;
+		for (Node n = node; n != null; n = n.parent) {
+			n.subtreeCount++;
+		}
+		node.invalidate();
+	}
+
+	private void removeFromNode(int h) {
+		removeFromNode(handleNode[h], handleIndex[h]);
+		handleNode[h] = null;
+	}
+
+	/**
+	 * Remove the handle at index from node and drop the nodes that are
+	 * empty now.
+	 */
+	private void removeFromNode(Node node, int index) {
+		int last = --node.numHandles;
+		if (index != last) {
+			int moved = node.handles[last];
+			node.handles[index] = moved;
+			handleIndex[moved] = index;
+		}
+		for (Node n = node; n != null; n = n.parent) {
+			n.subtreeCount--;
+		}
+		node.invalidate();
+		while (node.parent != null && node.subtreeCount == 0) {
+			node.parent.children[node.index] = null;
+			node = node.parent;
+		}
+	}
+}
@@ -0,0 +1,212 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DGeomPair;
+import org.ode4j.ode.DSpace.DPairCallback;
+
+/**
+ * Pair cache for {@link DxSpace#collideCached(Object, DPairCallback)}.
+ * <p>
+ * The pairs reported by the broadphase are looked up in an open addressing
+ * hash table that is keyed by the identity of both geoms. Every pair is
+ * stamped with the number of the call that reported it last, pairs with an
+ * old stamp have ended. Ended pairs are removed from the dense pair array
+ * and the table is rebuilt, their pair objects are kept for reuse.
+ */
+final class DxPairCache {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final class Pair implements DGeomPair {
+		DxGeom g1, g2;
+		Object data;
+		int moveCount1, moveCount2;
+		boolean unchanged;
+		int hash;
+		int stamp;
+
+		@Override
+		public DGeom getGeom1() {
+			return g1;
+		}
+
+		@Override
+		public DGeom getGeom2() {
+			return g2;
+		}
+
+		@Override
+		public Object getData() {
+			return data;
+		}
+
+		@Override
+		public void setData(Object data) {
+			this.data = data;
+		}
+
+		@Override
+		public boolean isUnchanged() {
+			return unchanged;
+		}
+	}
+
+	// current pairs
+	private Pair[] pairs = new Pair[INITIAL_CAPACITY];
+	private int size;
+	// ended pairs for reuse
+	private Pair[] free = new Pair[INITIAL_CAPACITY];
+	private int freeCount;
+	// hash table: index into pairs, -1 if empty
+	private int[] table = newTable(INITIAL_CAPACITY * 2);
+	private int mask = INITIAL_CAPACITY * 2 - 1;
+
+	private int stamp;
+	private Object data;
+	private DPairCallback callback;
+
+	private final DNearCallback collector = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+				DxSpace.dSpaceCollide2((DxGeom) o1, (DxGeom) o2, null, this);
+				return;
+			}
+			report((DxGeom) o1, (DxGeom) o2);
+		}
+	};
+
+	private static int[] newTable(int capacity) {
+		int[] table = new int[capacity];
+		Arrays.fill(table, -1);
+		return table;
+	}
+
+	/**
+	 * Symmetric hash, so that the order of the geoms does not matter.
+	 */
+	private static int hash(DxGeom g1, DxGeom g2) {
+		int h = System.identityHashCode(g1) + System.identityHashCode(g2);
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	void collide(DxSpace space, Object data, DPairCallback callback) {
+		this.data = data;
+		this.callback = callback;
+		stamp++;
+		try {
+			space.collide(null, collector);
+			removeEnded();
+		} finally {
+			this.data = null;
+			this.callback = null;
+		}
+	}
+
+	private void report(DxGeom g1, DxGeom g2) {
+		int hash = hash(g1, g2);
+		int slot = hash & mask;
+		int idx;
+		while ((idx = table[slot]) != -1) {
+			Pair p = pairs[idx];
+			if (p.hash == hash && ((p.g1 == g1 && p.g2 == g2) || (p.g1 == g2 && p.g2 == g1))) {
+				if (p.stamp == stamp) {
+					// already reported in this call
+					return;
+				}
+				p.stamp = stamp;
+				p.unchanged = p.moveCount1 == p.g1._moveCount && p.moveCount2 == p.g2._moveCount;
+				p.moveCount1 = p.g1._moveCount;
+				p.moveCount2 = p.g2._moveCount;
+				callback.persist(data, p);
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		Pair p = freeCount > 0 ? free[--freeCount] : new Pair();
+		p.g1 = g1;
+		p.g2 = g2;
+		p.hash = hash;
+		p.stamp = stamp;
+		p.unchanged = false;
+		p.moveCount1 = g1._moveCount;
+		p.moveCount2 = g2._moveCount;
+		if (size == pairs.length) {
+			pairs = Arrays.copyOf(pairs, size * 2);
+		}
+		table[slot] = size;
+		pairs[size++] = p;
+		if (size * 2 > table.length) {
+			rebuildTable(table.length * 2);
+		}
+		callback.begin(data, p);
+	}
+
+	private void removeEnded() {
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			Pair p = pairs[i];
+			if (p.stamp == stamp) {
+				pairs[n++] = p;
+				continue;
+			}
+			callback.end(data, p);
+			// Do not keep references to geoms or user objects
+			p.g1 = null;
+			p.g2 = null;
+			p.data = null;
+			if (freeCount == free.length) {
+				free = Arrays.copyOf(free, freeCount * 2);
+			}
+			free[freeCount++] = p;
+		}
+		if (n != size) {
+			Arrays.fill(pairs, n, size, null);
+			size = n;
+			rebuildTable(table.length);
+		}
+	}
+
+	private void rebuildTable(int capacity) {
+		if (capacity != table.length) {
+			table = newTable(capacity);
+			mask = capacity - 1;
+		} else {
+			Arrays.fill(table, -1);
+		}
+		for (int i = 0; i < size; i++) {
+			int slot = pairs[i].hash & mask;
+			while (table[slot] != -1) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i;
+		}
+	}
+}
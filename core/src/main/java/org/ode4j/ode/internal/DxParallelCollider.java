@@ -0,0 +1,155 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DParallelNearCallback;
+import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Parallel narrowphase for {@link DxSpace#collideParallel(TaskExecutor, DParallelNearCallback)}.
+ * <p>
+ * The broadphase of the space runs as usual and only records the candidate pairs, pairs
+ * with nested spaces are expanded with {@link DxSpace#dSpaceCollide2}. The pair list is then
+ * split into contiguous ranges, one per job, and every job passes its pairs to the callback
+ * together with its own sink. The sinks are merged in job order, so the result is the same
+ * as if all pairs had been processed sequentially in broadphase order.
+ * <p>
+ * The pair list and the task graph are kept between calls.
+ */
+final class DxParallelCollider {
+
+	/** Minimum number of pairs per job. */
+	private static final int MIN_PAIRS_PER_JOB = 32;
+
+	private DxGeom[] pairs = new DxGeom[64];
+	private int pairCount;
+
+	private TaskExecutor executor;
+	private TaskGroup group;
+	private Task[] jobs = new Task[0];
+	private Object[] sinks;
+	private DParallelNearCallback<Object> callback;
+	private volatile RuntimeException failure;
+
+	private final DNearCallback collector = new DNearCallback() {
+		@Override
+		public void call(Object data, DGeom o1, DGeom o2) {
+			if (o1 instanceof DxSpace || o2 instanceof DxSpace) {
+				DxSpace.dSpaceCollide2((DxGeom) o1, (DxGeom) o2, null, this);
+				return;
+			}
+			if (pairCount + 2 > pairs.length) {
+				pairs = Arrays.copyOf(pairs, pairs.length * 2);
+			}
+			pairs[pairCount++] = (DxGeom) o1;
+			pairs[pairCount++] = (DxGeom) o2;
+		}
+	};
+
+	@SuppressWarnings("unchecked")
+	<T> void collide(DxSpace space, TaskExecutor executor, DParallelNearCallback<T> callback) {
+		pairCount = 0;
+		space.collide(null, collector);
+
+		int n = pairCount / 2;
+		int jobCount = Math.min(executor.getThreadCount(), (n + MIN_PAIRS_PER_JOB - 1) / MIN_PAIRS_PER_JOB);
+		if (jobCount < 1) {
+			jobCount = 1;
+		}
+		this.callback = (DParallelNearCallback<Object>) callback;
+		this.sinks = new Object[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			sinks[i] = callback.createSink();
+		}
+		try {
+			if (jobCount == 1) {
+				runJob(0, 1);
+			} else {
+				ensureTasks(executor, jobCount);
+				failure = null;
+				group.reset();
+				for (Task job : jobs) {
+					job.reset();
+					job.submit();
+				}
+				group.submit();
+				group.awaitCompletion();
+				RuntimeException e = failure;
+				if (e != null) {
+					failure = null;
+					throw e;
+				}
+			}
+			for (int i = 0; i < jobCount; i++) {
+				callback.merge((T) sinks[i]);
+			}
+		} finally {
+			// Do not keep references to geoms or user objects
+			Arrays.fill(pairs, 0, pairCount, null);
+			pairCount = 0;
+			this.sinks = null;
+			this.callback = null;
+		}
+	}
+
+	private void ensureTasks(TaskExecutor executor, int jobCount) {
+		if (this.executor == executor && jobs.length == jobCount) {
+			return;
+		}
+		this.executor = executor;
+		group = executor.group("Space Collide", new Runnable() {
+			@Override
+			public void run() {}
+		});
+		jobs = new Task[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			final int job = i;
+			jobs[i] = group.subtask("Space Collide Job", new Runnable() {
+				@Override
+				public void run() {
+					try {
+						runJob(job, jobs.length);
+					} catch (RuntimeException e) {
+						failure = e;
+					}
+				}
+			});
+		}
+	}
+
+	private void runJob(int job, int jobCount) {
+		int n = pairCount / 2;
+		int begin = (int) ((long) n * job / jobCount);
+		int end = (int) ((long) n * (job + 1) / jobCount);
+		Object sink = sinks[job];
+		for (int i = begin; i < end; i++) {
+			callback.call(sink, pairs[2 * i], pairs[2 * i + 1]);
+		}
+	}
+}
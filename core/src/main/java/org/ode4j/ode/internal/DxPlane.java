@@ -91,6 +91,22 @@ public class DxPlane extends DxGeom implements DPlane {
 		make_sure_plane_normal_has_unit_length ();
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxPlane copy (DxSpace space)
+	{
+		DxPlane p = new DxPlane(space, _pV.get0(), _pV.get1(), _pV.get2(), _pD);
+		// the normal is already normalized
+		p._pV.set( _pV );
+		p._pD = _pD;
+		return p;
+	}
+
 
 	@Override
     protected void computeAABB()
@@ -30,6 +30,7 @@ import static org.ode4j.ode.internal.Common.*;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DAABBC;
 import org.ode4j.ode.DGeom;
@@ -383,6 +384,9 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 
 	//struct dxQuadTreeSpace : public dxSpace{
 	private Block[] Blocks;//Block* Blocks;	// Blocks[0] is the root
+	private final DVector3 center = new DVector3();	// creation parameters, for copying
+	private final DVector3 extents = new DVector3();
+	private final int depth;
 
 	private List<DxGeom> DirtyList = new ArrayList<DxGeom>();//dArray<dxGeom*> DirtyList;
 
@@ -430,6 +434,9 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 			DVector3C Center, DVector3C Extents, int Depth) {
 		super(_space);
 		type = dQuadTreeSpaceClass;
+		center.set(Center);
+		extents.set(Extents);
+		depth = Depth;
 
 		int BlockCount = numNodes(Depth);
 
@@ -647,4 +654,14 @@ public class DxQuadTreeSpace extends DxSpace implements DQuadTreeSpace {
 			DVector3C Extents, int Depth){
 		return new DxQuadTreeSpace(space, Center, Extents, Depth);
 	}
+
+	@Override
+	protected boolean isCopySupported() {
+		return true;
+	}
+
+	@Override
+	protected DxQuadTreeSpace copy(DxSpace space) {
+		return new DxQuadTreeSpace(space, center, extents, depth);
+	}
 }
@@ -35,7 +35,6 @@ import static org.ode4j.ode.OdeMath.dMultiplyAdd0_331;
 import static org.ode4j.ode.OdeMath.dSetCrossMatrixMinus;
 import static org.ode4j.ode.internal.Common.*;
 import static org.ode4j.ode.internal.Matrix.dSetZero;
-import static org.ode4j.ode.internal.Misc.dRandInt;
 import static org.ode4j.ode.internal.CommonEnums.*;
 import static org.ode4j.ode.internal.QuickStepEnums.*;
 import static org.ode4j.ode.internal.Timer.*;
@@ -44,7 +43,9 @@ import static org.ode4j.ode.internal.cpp4j.Cstring.memcpy;
 
 import java.io.PrintStream;
 import java.util.Arrays;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
@@ -60,6 +61,7 @@ import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo.dmemestimate_
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
 import org.ode4j.ode.threading.Atomics;
 import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
 import org.ode4j.ode.threading.task.TaskGroup;
 
 /**
@@ -69,10 +71,11 @@ import org.ode4j.ode.threading.task.TaskGroup;
 public class DxQuickStep extends AbstractStepper implements dstepper_fn_t,
 dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
-	//TODO evaluate this
 	/**
 	 * Experimental improvement to reduce GC, see issue #36
+	 * @deprecated Has no effect, the step memory arenas always reuse their arrays.
 	 */
+	@Deprecated
 	public static boolean REUSE_OBJECTS = false;
     /**
      * Due to too many small tasks created for LCP iterations,
@@ -125,6 +128,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	// with high-friction contacts using the SOR method. use with care
 
 	private static final boolean WARM_STARTING = false; // This is disabled in ODE
+	// ode4j: warm starting can also be enabled per world, see DWorld.setQuickStepWarmStarting().
+	// The lambdas of the previous step are damped by this factor, as in ODE.
+	private static final double WARM_STARTING_DAMPING = 0.9;
 
 	private enum ReorderingMethod {
 		REORDERING_METHOD__DONT_REORDER,
@@ -175,6 +181,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static final int dxQUICKSTEPISLAND_STAGE4LCP_FC_STEP_COMPLETE = (dxQUICKSTEPISLAND_STAGE4LCP_FC_STEP);
 	// ENDIF WARM_STARTING
 	private static final int dxQUICKSTEPISLAND_STAGE4B_STEP = 256;
+	private static final int dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP = 128;
 	private static final int dxQUICKSTEPISLAND_STAGE6A_STEP = 16;
 	private static final int dxQUICKSTEPISLAND_STAGE6B_STEP = 1;
 
@@ -234,6 +241,18 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	{
 		DxJoint joint;
 		final DxJoint.Info1 info = new DxJoint.Info1();
+
+		static final DxWorldProcessMemArena.ObjectArrayFactory<DJointWithInfo1> FACTORY =
+				new DxWorldProcessMemArena.ObjectArrayFactory<DJointWithInfo1>() {
+			@Override
+			public DJointWithInfo1[] newArray(int size) {
+				return new DJointWithInfo1[size];
+			}
+			@Override
+			public DJointWithInfo1 newElement() {
+				return new DJointWithInfo1();
+			}
+		};
 	}
 
 	// TZ: We do not do this, this is very inefficient in Java
@@ -421,6 +440,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_last_lambda = last_lambda;
             m_bi_links_or_mi_levels = bi_links_or_mi_levels;
             m_mi_links = mi_links;
+            m_coloredSOR = null;
             m_LCP_IterationSyncReleasee = null;
             m_LCP_IterationAllowedThreads = 0;
             m_LCP_fcStartReleasee = null;
@@ -429,6 +449,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_mi_fc.set(0);
             m_mi_Ad.set(0);
             m_LCP_iteration = 0;
+            m_LCP_maxDelta.set(0);
             m_cf_4b.set(0);
             m_ji_4b.set(0);
         }
@@ -461,6 +482,26 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             m_SOR_reorderThreadsRemaining.set(reorderThreads);
         }
 
+        void ResetLCP_MaxDelta() {
+            m_LCP_maxDelta.set(0);
+        }
+
+        /**
+         * Record the largest lambda change of (a part of) the current iteration.
+         * The bits of non-negative doubles are ordered like the values.
+         */
+        void RecordLCP_MaxDelta(double maxDelta) {
+            long bits = Double.doubleToRawLongBits(maxDelta);
+            long current;
+            while (bits > (current = m_LCP_maxDelta.get()) && !m_LCP_maxDelta.compareAndSet(current, bits)) {
+                // retry
+            }
+        }
+
+        double GetLCP_MaxDelta() {
+            return Double.longBitsToDouble(m_LCP_maxDelta.get());
+        }
+
         void RecordLCP_IterationStart(int totalThreads, TaskGroup nextReleasee) {
             m_LCP_iterationThreadsTotal = totalThreads;
             m_LCP_iterationThreadsRemaining.set(totalThreads);
@@ -476,6 +517,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         double[] m_last_lambda;
         AtomicInteger[] m_bi_links_or_mi_levels;
         AtomicInteger[] m_mi_links;
+        dxQuickStepperColoredSOR m_coloredSOR;
         TaskGroup m_LCP_IterationSyncReleasee;
         int m_LCP_IterationAllowedThreads;
         TaskGroup m_LCP_fcStartReleasee;
@@ -486,6 +528,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         int m_LCP_fcCompleteThreadsTotal;
         final AtomicInteger m_mi_Ad = new AtomicInteger();
         int m_LCP_iteration;
+        final AtomicLong m_LCP_maxDelta = new AtomicLong();
         int m_LCP_iterationThreadsTotal;
         final AtomicInteger m_LCP_iterationThreadsRemaining = new AtomicInteger();
         TaskGroup m_LCP_iterationNextReleasee;
@@ -618,38 +661,13 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 		return result;
 	}
 
-	private final double[] buf_invI = new double[100];
-
-	private double[] ensureSize_invI(int size) {
-		double[] a = buf_invI;
-		if (a.length < size || !REUSE_OBJECTS) {
-			a = new double[size];
-		} else {
-			Arrays.fill(a, 0);
-		}
-		return a;
-	}
-	private final DJointWithInfo1[] buf_jointinfos = new DJointWithInfo1[0];
-
-	private DJointWithInfo1[] ensureSize_jointinfos(int size) {
-		DJointWithInfo1[] a = buf_jointinfos;
-		if (a.length < size || !REUSE_OBJECTS) {
-			//TODO we could partially copy the old array...
-			a = new DJointWithInfo1[size];
-			for (int i = 0; i < size; i++) {
-				a[i] = new DJointWithInfo1();
-			}
-		} else {
-			//Obviously this doesn't reset all objects, only the
-			//ones that are likely to be needed.
-			for (int i = 0; i < size; i++) {
-				DJointWithInfo1 j = a[i];
-				if (j != null) {
-					j.joint = null;
-					j.info.m = 0;
-					j.info.nub = 0;
-				}
-			}
+	private static DJointWithInfo1[] AllocateJointInfos(DxWorldProcessMemArena memarena, int size) {
+		DJointWithInfo1[] a = memarena.AllocateArrayOfObjects(size, DJointWithInfo1.FACTORY);
+		for (int i = 0; i < size; i++) {
+			DJointWithInfo1 j = a[i];
+			j.joint = null;
+			j.info.m = 0;
+			j.info.nub = 0;
 		}
 		return a;
 	}
@@ -661,13 +679,10 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    int nb = callContext.m_islandBodiesCount();
 	    int _nj = callContext.m_islandJointsCount();
 
-	    //double[] invI = memarena.AllocateOveralignedArray(nb * IIE__MAX, INVI_ALIGNMENT);//AllocateOveralignedArray (invI,nb * IIE__MAX, INVI_ALIGNMENT);
-	    double[] invI = ensureSize_invI(nb * IIE__MAX);
+	    double[] invI = memarena.AllocateOveralignedArrayDReal(nb * IIE__MAX, INVI_ALIGNMENT);//AllocateOveralignedArray (invI,nb * IIE__MAX, INVI_ALIGNMENT);
 	    
 	    //dJointWithInfo1[] const jointinfos = memarena.AllocateArray<dJointWithInfo1>(_nj);
-	    memarena.dummy();
-	    //DJointWithInfo1[] jointinfos = new DJointWithInfo1[_nj];
-	    DJointWithInfo1[] jointinfos = ensureSize_jointinfos(_nj);	    
+	    DJointWithInfo1[] jointinfos = AllocateJointInfos(memarena, _nj);
 	    
 	    final int allowedThreads = callContext.m_stepperAllowedThreads();
 	    dIASSERT(allowedThreads != 0);
@@ -975,8 +990,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			// force mixing vector `cfm', and LCP low and high bound vectors, and an
 			// 'findex' vector.
 			//dReal *rhs_tmp = memarena.AllocateArray<dReal>((size_t)nb*6);
-			memarena.dummy();
-			double[] rhs_tmp = new double[nb * RHS__MAX];
+			double[] rhs_tmp = memarena.AllocateArrayDReal(nb * RHS__MAX);
 
 			memarena.dummy();
 			final dxQuickStepperStage2CallContext stage2CallContext = new dxQuickStepperStage2CallContext(); 
@@ -1349,6 +1363,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
 	        final dxQuickStepperStage4CallContext stage4CallContext = new dxQuickStepperStage4CallContext();
 	        stage4CallContext.Initialize(callContext, localContext, lambda, cforce, iMJ, order, last_lambda, bi_links_or_mi_levels, mi_links);
+	        if (callContext.m_world().qs.colored_sor) {
+	        	dxQuickStepperColoredSOR coloredSOR = memarena.AllocateArrayOfObjects(1, dxQuickStepperColoredSOR.FACTORY)[0];
+	        	coloredSOR.Initialize(stage4CallContext, nb);
+	        	stage4CallContext.m_coloredSOR = coloredSOR;
+	        }
         
 	        if (singleThreadedExecution) {
 	            dxQuickStepIsland_Stage4a(stage4CallContext);
@@ -1356,18 +1375,11 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 				IFTIMING_dTimerNow ("solving LCP problem");
 				dxQuickStepIsland_Stage4LCP_iMJComputation(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_STfcComputation(stage4CallContext);
+	            dxQuickStepIsland_Stage4LCP_WarmStartfc(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_AdComputation(stage4CallContext);
 	            dxQuickStepIsland_Stage4LCP_ReorderPrep(stage4CallContext);
 	            
-	            DxWorld world = callContext.m_world();
-	            int num_iterations = world.qs.num_iterations;
-				for (int iteration = 0; iteration < num_iterations; iteration++) {
-					if (IsSORConstraintsReorderRequiredForIteration(iteration)) {
-						stage4CallContext.ResetSOR_ConstraintsReorderVariables(0);
-						dxQuickStepIsland_Stage4LCP_ConstraintsShuffling(stage4CallContext, iteration);
-					}
-					dxQuickStepIsland_Stage4LCP_STIteration(stage4CallContext);
-	            }
+	            dxQuickStepIsland_Stage4LCP_IterationStartSingleThread(stage4CallContext);
 	            dxQuickStepIsland_Stage4b(stage4CallContext);
 	            dxQuickStepIsland_Stage5(stage5CallContext);
 	        } else {
@@ -1389,7 +1401,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	            final TaskGroup stage4LCP_IterationStart = stage4LCP_IterationSync.subgroup("QuickStepIsland Stage4LCP_Iteration Start", new Runnable() {
                     @Override
                     public void run() {
-                    	if (ENABLE_LCP_ITERATIONS_MULTITHREADING) {
+                    	dxQuickStepIsland_Stage4LCP_WarmStartfc(stage4CallContext);
+                    	if (ENABLE_LCP_ITERATIONS_MULTITHREADING && !stage4CallContext.m_stepperCallContext.m_world().qs.colored_sor) {
                     		dxQuickStepIsland_Stage4LCP_IterationStart(stage4CallContext);
                     	} else {
                     		dxQuickStepIsland_Stage4LCP_IterationStartSingleThread(stage4CallContext);
@@ -1454,6 +1467,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
         double[] lambda = stage4CallContext.m_lambda;
         int[] mindex = localContext.m_mindex;
+        boolean warmStarting = IsWarmStartingEnabled(stage4CallContext.m_stepperCallContext);
+        DJointWithInfo1[] jointinfos = localContext.m_jointinfos;
 
         int nj = localContext.m_nj;
         int step_size = dxQUICKSTEPISLAND_STAGE4A_STEP;
@@ -1462,9 +1477,63 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         int ji_step;
         while ((ji_step = Atomics.ThrsafeIncrementIntUpToLimit(stage4CallContext.m_ji_4a, nj_steps)) != nj_steps) {
             int ji = ji_step * step_size;
-            int lambdacurr = getMIndex(mindex, ji);
-            int lambdsnext = getMIndex(mindex, ji + Math.min(step_size, nj - ji));
-            dSetZero(lambda, lambdacurr, lambdsnext - lambdacurr);
+            int jiend = ji + Math.min(step_size, nj - ji);
+            if (warmStarting) {
+                // start with the damped lambdas of the previous step
+                for (; ji != jiend; ji++) {
+                    int lambdacurr = getMIndex(mindex, ji);
+                    int infom = getMIndex(mindex, ji + 1) - lambdacurr;
+                    double[] jointLambda = jointinfos[ji].joint.lambda;
+                    for (int i = 0; i != infom; i++) {
+                        lambda[lambdacurr + i] = WARM_STARTING_DAMPING * jointLambda[i];
+                    }
+                }
+            } else {
+                int lambdacurr = getMIndex(mindex, ji);
+                int lambdsnext = getMIndex(mindex, jiend);
+                dSetZero(lambda, lambdacurr, lambdsnext - lambdacurr);
+            }
+        }
+    }
+
+    private static boolean IsWarmStartingEnabled(DxStepperProcessingCallContext callContext) {
+        return WARM_STARTING || callContext.m_world().qs.warm_starting;
+    }
+
+    /**
+     * Add the constraint forces of the initial (warm started) lambdas to fc.
+     * Requires iMJ, the lambdas of stage 4a and the cleared fc.
+     */
+    private static
+    void dxQuickStepIsland_Stage4LCP_WarmStartfc(dxQuickStepperStage4CallContext stage4CallContext)
+    {
+        if (!IsWarmStartingEnabled(stage4CallContext.m_stepperCallContext)) {
+            return;
+        }
+        dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
+        double[] fc = stage4CallContext.m_cforce;
+        double[] lambda = stage4CallContext.m_lambda;
+        double[] iMJ = stage4CallContext.m_iMJ;
+        int[] jb = localContext.m_jb;
+        int m = localContext.m_m;
+
+        for (int i = 0; i != m; i++) {
+            double lambda_i = lambda[i];
+            if (lambda_i == 0) {
+                continue;
+            }
+            int iMJ_ptr = i * IMJ__MAX;
+            int fc_ptr1 = jb[i * 2] * CFE__MAX;
+            for (int j = 0; j != CFE__MAX; j++) {
+                fc[fc_ptr1 + j] += lambda_i * iMJ[iMJ_ptr + IMJ__1_MIN + j];
+            }
+            int b2 = jb[i * 2 + 1];
+            if (b2 != -1) {
+                int fc_ptr2 = b2 * CFE__MAX;
+                for (int j = 0; j != CFE__MAX; j++) {
+                    fc[fc_ptr2 + j] += lambda_i * iMJ[iMJ_ptr + IMJ__2_MIN + j];
+                }
+            }
         }
     }
 
@@ -1475,7 +1544,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
         
         int stage4b_allowedThreads = 1;
-        if (IsStage4bJointInfosIterationRequired(localContext)) {
+        if (IsStage4bJointInfosIterationRequired(callContext, localContext)) {
             int allowedThreads = callContext.m_stepperAllowedThreads();
             stage4b_allowedThreads += CalculateOptimalThreadsCount(localContext.m_nj, allowedThreads - stage4b_allowedThreads, dxQUICKSTEPISLAND_STAGE4B_STEP);
         }
@@ -1682,15 +1751,57 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
     {
         DxStepperProcessingCallContext callContext = stage4CallContext.m_stepperCallContext;
         DxWorld world = callContext.m_world();
+        if (world.qs.colored_sor) {
+            dxQuickStepIsland_Stage4LCP_ColoredIterations(stage4CallContext, world.getTaskExecutor());
+            return;
+        }
         int num_iterations = world.qs.num_iterations;
-		for (int iteration = 0; iteration < num_iterations; iteration++) {
+        int iteration = 0;
+		while (iteration < num_iterations) {
 			if (IsSORConstraintsReorderRequiredForIteration(iteration)) {
 				stage4CallContext.ResetSOR_ConstraintsReorderVariables(0);
 				dxQuickStepIsland_Stage4LCP_ConstraintsShuffling(stage4CallContext, iteration);
 			}
-			dxQuickStepIsland_Stage4LCP_STIteration(stage4CallContext);
+			double maxDelta = dxQuickStepIsland_Stage4LCP_STIteration(stage4CallContext);
+			iteration++;
+			if (IsLCPConverged(world.qs, maxDelta)) {
+				break;
+			}
         }
+		stage4CallContext.m_LCP_iteration = iteration;
+    }
 
+    private static
+    void dxQuickStepIsland_Stage4LCP_ColoredIterations(final dxQuickStepperStage4CallContext stage4CallContext, TaskExecutor executor)
+    {
+        DxStepperProcessingCallContext callContext = stage4CallContext.m_stepperCallContext;
+        dxQuickStepParameters qs = callContext.m_world().qs;
+        int num_iterations = qs.num_iterations;
+        final dxQuickStepperColoredSOR coloredSOR = stage4CallContext.m_coloredSOR;
+        coloredSOR.Start(executor);
+        int iteration = 0;
+        try {
+            while (iteration < num_iterations) {
+                boolean reordered = iteration == 0;
+                if (IsSORConstraintsReorderRequiredForIteration(iteration)) {
+                    stage4CallContext.ResetSOR_ConstraintsReorderVariables(0);
+                    dxQuickStepIsland_Stage4LCP_ConstraintsShuffling(stage4CallContext, iteration);
+                    reordered = true;
+                }
+                if (reordered) {
+                    coloredSOR.AssignColors();
+                }
+                stage4CallContext.ResetLCP_MaxDelta();
+                coloredSOR.Iterate();
+                iteration++;
+                if (IsLCPConverged(qs, stage4CallContext.GetLCP_MaxDelta())) {
+                    break;
+                }
+            }
+        } finally {
+            coloredSOR.Finish();
+        }
+        stage4CallContext.m_LCP_iteration = iteration;
     }
 
     private static
@@ -1703,9 +1814,15 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 
         int num_iterations = qs.num_iterations;
         int iteration = stage4CallContext.m_LCP_iteration;
+
+        if (iteration != 0 && IsLCPConverged(qs, stage4CallContext.GetLCP_MaxDelta())) {
+            // Do not start any further iterations, m_LCP_iteration is the number of iterations used
+            return 1;
+        }
         
         if (iteration < num_iterations)
         {
+            stage4CallContext.ResetLCP_MaxDelta();
             int stage4LCP_Iteration_allowedThreads = stage4CallContext.m_LCP_IterationAllowedThreads;
 
             boolean reorderRequired = false;
@@ -1946,8 +2063,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	private static void ConstraintsReorderingHelper(dxQuickStepperStage4CallContext stage4CallContext, int startIndex,
 			int indicesCount) {
 		IndexError[] order = stage4CallContext.m_order;
+		AtomicLong seed = stage4CallContext.m_stepperCallContext.m_world().qs.seed;
 		for (int index = 1; index < indicesCount; ++index) {
-			int swapIndex = dRandInt(index + 1);
+			int swapIndex = Misc.dRandInt(seed, index + 1);
 			IndexError tmp = order[startIndex + index];
 			order[startIndex + index] = order[startIndex + swapIndex];
 			order[startIndex + swapIndex] = tmp;
@@ -2139,6 +2257,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         AtomicInteger[] mi_links = stage4CallContext.m_mi_links;
 
         int knownToBeCompletedLevel = initiallyKnownToBeCompletedLevel;
+        double maxDelta = 0;
 
         while (true) {
             int initialLevelRoot = mi_links[2 * dxHEAD_INDEX + 0].get();
@@ -2159,7 +2278,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
                     int currentLevelNextLink = mi_links[2 * currentLevelFirstLink + 0].get();
                     if (Atomics.ThrsafeCompareExchange(mi_links[2 * currentLevelRoot + 1], currentLevelFirstLink, currentLevelNextLink)) {
                         // if succeeded, execute selected iteration step...
-                        dxQuickStepIsland_Stage4LCP_IterationStep(stage4CallContext, dxDECODE_INDEX(currentLevelFirstLink));
+                        double delta = dxQuickStepIsland_Stage4LCP_IterationStep(stage4CallContext, dxDECODE_INDEX(currentLevelFirstLink));
+                        maxDelta = Math.max(maxDelta, delta);
 
                         // Check if there are any dependencies
                         int level0DownLink = mi_links[2 * currentLevelFirstLink + 1].get();
@@ -2221,20 +2341,278 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
             knownToBeCompletedLevel = initialLevelRoot;
         }
 
+        stage4CallContext.RecordLCP_MaxDelta(maxDelta);
         // Decrement running threads count on exit
         Atomics.ThrsafeAdd(stage4CallContext.m_LCP_iterationThreadsRemaining, -1);
     }
 
 	private static
-    void dxQuickStepIsland_Stage4LCP_STIteration(dxQuickStepperStage4CallContext stage4CallContext)
+    double dxQuickStepIsland_Stage4LCP_STIteration(dxQuickStepperStage4CallContext stage4CallContext)
     {
 	    dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
 	    int m = localContext.m_m;
+	    double maxDelta = 0;
         for (int i = 0; i != m; ++i) {
-            dxQuickStepIsland_Stage4LCP_IterationStep(stage4CallContext, i);
+            maxDelta = Math.max(maxDelta, dxQuickStepIsland_Stage4LCP_IterationStep(stage4CallContext, i));
         }
+        return maxDelta;
     }
 
+	/**
+	 * @return Whether the iterations can stop because no lambda changed by more than the tolerance.
+	 */
+	private static boolean IsLCPConverged(dxQuickStepParameters qs, double maxDelta) {
+		return qs.tolerance > 0 && maxDelta <= qs.tolerance;
+	}
+
+	/**
+	 * Graph-colored SOR iterations.
+	 * <p>
+	 * Rows are colored greedily in the current order so that no two rows of the same
+	 * color share a body. All rows of a color are independent and are processed as a flat
+	 * parallel loop, the colors are processed one after the other. Rows that do not fit into
+	 * {@link #MAX_COLORS} colors are processed sequentially after the last color.
+	 * <p>
+	 * The threads of the executor join the loop as helpers when they become available.
+	 * The calling thread never waits for a helper to start, it only waits for chunks that
+	 * have already been taken by a helper. Therefore it is safe to use this from a task of
+	 * the same executor. Both the calling thread and idle helpers block on a {@link Phaser}
+	 * instead of spinning, so they do not take CPU time from other tasks of the executor.
+	 * <p>
+	 * Instances are kept in the stepper arena and reused by the following islands and steps.
+	 * A helper that starts late may join a later solve of the same instance, which is safe
+	 * because chunks are only taken from the current generation.
+	 */
+	private static class dxQuickStepperColoredSOR
+	{
+		private static final int MAX_COLORS = 64;
+		// low 32 bits of m_next while the range of a new generation is written
+		private static final int CLOSED = Integer.MAX_VALUE;
+
+		static final DxWorldProcessMemArena.ObjectArrayFactory<dxQuickStepperColoredSOR> FACTORY =
+				new DxWorldProcessMemArena.ObjectArrayFactory<dxQuickStepperColoredSOR>() {
+			@Override
+			public dxQuickStepperColoredSOR[] newArray(int size) {
+				return new dxQuickStepperColoredSOR[size];
+			}
+			@Override
+			public dxQuickStepperColoredSOR newElement() {
+				return new dxQuickStepperColoredSOR();
+			}
+		};
+
+		dxQuickStepperStage4CallContext m_stage4CallContext;
+		int m_nb;
+		long[] m_bodyColors = new long[0];
+		int[] m_rowColors = new int[0];
+		// positions in m_order, sorted by color
+		int[] m_rows = new int[0];
+		final int[] m_colorStart = new int[MAX_COLORS + 2];
+		int m_helpers;
+		TaskExecutor m_executor;
+		TaskGroup m_helperGroup;
+		Task[] m_helperTasks;
+		volatile boolean m_finished = true;
+
+		// the range of the current generation, published by m_next
+		int m_generation;
+		int m_begin;
+		int m_end;
+		int m_chunkSize;
+		int m_chunkCount;
+		// generation in the high and the next chunk in the low 32 bits, so that a chunk
+		// can only be taken from the generation whose range has been read
+		final AtomicLong m_next = new AtomicLong(CLOSED);
+		// advances whenever a generation is published and in Finish()
+		final Phaser m_published = new Phaser(1);
+		// the calling thread plus one party for every chunk of the current generation
+		final Phaser m_done = new Phaser(1);
+
+		void Initialize(dxQuickStepperStage4CallContext stage4CallContext, int nb)
+		{
+			int m = stage4CallContext.m_localContext.m_m;
+			m_stage4CallContext = stage4CallContext;
+			m_nb = nb;
+			if (m_bodyColors.length < nb) {
+				m_bodyColors = new long[nb];
+			}
+			if (m_rows.length < m) {
+				m_rowColors = new int[m];
+				m_rows = new int[m];
+			}
+		}
+
+		void Start(TaskExecutor executor)
+		{
+			int m = m_stage4CallContext.m_localContext.m_m;
+			m_helpers = Math.max(0, Math.min(executor.getThreadCount() - 1, m / dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP - 1));
+			if (m_helpers == 0) {
+				return;
+			}
+			m_finished = false;
+			// Helpers of an earlier solve that have not run yet keep their group
+			if (m_executor == executor && m_helperTasks.length == m_helpers && m_helperGroup.isCompleted()) {
+				m_helperGroup.reset();
+				for (Task helper : m_helperTasks) {
+					helper.reset();
+				}
+			} else {
+				m_executor = executor;
+				// Helpers are plain tasks, executors may run groups inline on the submitting thread
+				m_helperGroup = executor.group("QuickStepIsland Stage4LCP_Colored Helpers", new Runnable() {
+					@Override
+					public void run() {}
+				});
+				m_helperTasks = new Task[m_helpers];
+				for (int i = 0; i < m_helpers; i++) {
+					m_helperTasks[i] = m_helperGroup.subtask("QuickStepIsland Stage4LCP_Colored Helper", new Runnable() {
+						@Override
+						public void run() {
+							Help();
+						}
+					});
+				}
+			}
+			for (Task helper : m_helperTasks) {
+				helper.submit();
+			}
+			m_helperGroup.submit();
+		}
+
+		void Finish()
+		{
+			if (m_helpers == 0) {
+				return;
+			}
+			m_finished = true;
+			m_published.arrive();
+		}
+
+		void AssignColors()
+		{
+			dxQuickStepperLocalContext localContext = m_stage4CallContext.m_localContext;
+			IndexError[] order = m_stage4CallContext.m_order;
+			int[] jb = localContext.m_jb;
+			long[] bodyColors = m_bodyColors;
+			int[] rowColors = m_rowColors;
+			int[] colorStart = m_colorStart;
+			int m = localContext.m_m;
+
+			Arrays.fill(bodyColors, 0, m_nb, 0);
+			Arrays.fill(colorStart, 0);
+			for (int i = 0; i < m; i++) {
+				int index = order[i].index;
+				int b1 = jb[index * 2];
+				int b2 = jb[index * 2 + 1];
+				long used = bodyColors[b1] | (b2 != -1 ? bodyColors[b2] : 0);
+				// the lowest color that is used by neither body, MAX_COLORS if all are used
+				int color = Long.numberOfTrailingZeros(~used);
+				if (color < MAX_COLORS) {
+					bodyColors[b1] |= 1L << color;
+					if (b2 != -1) {
+						bodyColors[b2] |= 1L << color;
+					}
+				}
+				rowColors[i] = color;
+				colorStart[color + 1]++;
+			}
+			for (int c = 0; c <= MAX_COLORS; c++) {
+				colorStart[c + 1] += colorStart[c];
+			}
+			// stable counting sort, colorStart[c] is the insert position for color c
+			for (int i = 0; i < m; i++) {
+				m_rows[colorStart[rowColors[i]]++] = i;
+			}
+			// shift back, the insert positions now point to the end of each color
+			for (int c = MAX_COLORS; c > 0; c--) {
+				colorStart[c] = colorStart[c - 1];
+			}
+			colorStart[0] = 0;
+		}
+
+		void Iterate()
+		{
+			int threads = m_helpers + 1;
+			for (int c = 0; c < MAX_COLORS; c++) {
+				int begin = m_colorStart[c];
+				int end = m_colorStart[c + 1];
+				if (begin == end) {
+					continue;
+				}
+				int rows = end - begin;
+				if (m_helpers == 0 || rows < 2 * dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP) {
+					m_stage4CallContext.RecordLCP_MaxDelta(ProcessRows(begin, end));
+					continue;
+				}
+				int chunkSize = Math.max(dxQUICKSTEPISLAND_STAGE4LCP_COLOR_STEP, (rows + threads - 1) / threads);
+				int chunkCount = (rows + chunkSize - 1) / chunkSize;
+				m_done.bulkRegister(chunkCount);
+				Publish(begin, end, chunkSize, chunkCount);
+				m_published.arrive();
+				Work();
+				// wait for the chunks that have been taken by helpers
+				m_done.arriveAndAwaitAdvance();
+			}
+			// rows that did not fit into any color
+			m_stage4CallContext.RecordLCP_MaxDelta(ProcessRows(m_colorStart[MAX_COLORS], m_colorStart[MAX_COLORS + 1]));
+		}
+
+		/**
+		 * Start a new generation. It is closed while the range is written, a helper that
+		 * still holds the value of the previous generation fails to take a chunk.
+		 */
+		private void Publish(int begin, int end, int chunkSize, int chunkCount)
+		{
+			long generation = (long) ++m_generation << 32;
+			m_next.set(generation | CLOSED);
+			m_begin = begin;
+			m_end = end;
+			m_chunkSize = chunkSize;
+			m_chunkCount = chunkCount;
+			m_next.set(generation);
+		}
+
+		private void Help()
+		{
+			int phase = m_published.getPhase();
+			while (!m_finished) {
+				Work();
+				phase = m_published.awaitAdvance(phase);
+			}
+		}
+
+		private void Work()
+		{
+			for (;;) {
+				long next = m_next.get();
+				int chunk = (int) next;
+				if (chunk >= m_chunkCount) {
+					return;
+				}
+				if (!m_next.compareAndSet(next, next + 1)) {
+					continue;
+				}
+				// the generation can not end before this chunk is done, so the range is stable
+				int begin = m_begin + chunk * m_chunkSize;
+				try {
+					m_stage4CallContext.RecordLCP_MaxDelta(ProcessRows(begin, Math.min(begin + m_chunkSize, m_end)));
+				} finally {
+					m_done.arriveAndDeregister();
+				}
+			}
+		}
+
+		private double ProcessRows(int begin, int end)
+		{
+			int[] rows = m_rows;
+			double maxDelta = 0;
+			for (int i = begin; i < end; i++) {
+				maxDelta = Math.max(maxDelta, dxQuickStepIsland_Stage4LCP_IterationStep(m_stage4CallContext, rows[i]));
+			}
+			return maxDelta;
+		}
+	}
+
 	//***************************************************************************
 	// SOR-LCP method
 
@@ -2247,8 +2625,9 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	// note: fc is returned as inv(M)*J'*lambda, the constraint force is actually J'*lambda
 	//
 	// b, lo and hi are modified on exit
+    // returns the absolute change of lambda
     private static
-    void dxQuickStepIsland_Stage4LCP_IterationStep(dxQuickStepperStage4CallContext stage4CallContext, int i)
+    double dxQuickStepIsland_Stage4LCP_IterationStep(dxQuickStepperStage4CallContext stage4CallContext, int i)
     {
     	
     	dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
@@ -2343,10 +2722,12 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 			fc[fc_ptr2 + CFE_AY] += delta * iMJ[iMJ_ptr + 10];
 			fc[fc_ptr2 + CFE_AZ] += delta * iMJ[iMJ_ptr + 11];
 		}
+	    return dFabs(delta);
     }  
 
-	private static boolean IsStage4bJointInfosIterationRequired(dxQuickStepperLocalContext localContext) {
-		return localContext.m_mfb > 0;
+	private static boolean IsStage4bJointInfosIterationRequired(DxStepperProcessingCallContext callContext,
+			dxQuickStepperLocalContext localContext) {
+		return localContext.m_mfb > 0 || (IsWarmStartingEnabled(callContext) && localContext.m_m > 0);
 	}
     
 	private static
@@ -2356,6 +2737,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 	    dxQuickStepperLocalContext localContext = stage4CallContext.m_localContext;
 
         if (Atomics.ThrsafeExchange(stage4CallContext.m_cf_4b, 1) == 0) {
+            callContext.m_world().SetQuickStepIterations(callContext.m_islandIndex(), stage4CallContext.m_LCP_iteration);
             DxBody[] bodyA = callContext.m_islandBodiesStartA();
             int bodyOfs = callContext.m_islandBodiesStartOfs();
             int nb = callContext.m_islandBodiesCount();
@@ -2376,7 +2758,8 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
         // note that the SOR method overwrites rhs and J at this point, so
         // they should not be used again.
 
-        if (IsStage4bJointInfosIterationRequired(localContext)) {
+        if (IsStage4bJointInfosIterationRequired(callContext, localContext)) {
+            boolean warmStarting = IsWarmStartingEnabled(callContext);
 			DVector3 dataL = new DVector3(); //JVE__MAX;
 			DVector3 dataA = new DVector3(); //JVE__MAX;
             double[] Jcopy = localContext.m_Jcopy;
@@ -2409,7 +2792,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 						DxJoint joint = jointinfos[ji].joint;
 
 				// #ifdef WARM_STARTING
-						if (WARM_STARTING) {
+						if (warmStarting) {
 							memcpy(joint.lambda, 0, lambda, lambdacurrOfs, fb_infom);
 						}
 				// #endif
@@ -2447,7 +2830,7 @@ dmemestimate_fn_t, dmaxcallcountestimate_fn_t {
 					}
 					else {
 				// #ifdef WARM_STARTING
-						if (WARM_STARTING) {
+						if (warmStarting) {
                     		int lambdacurrOfs = getMIndex(mindex, ji);
                     		int infom = getMIndex(mindex,  ji + 1) - getMIndex(mindex, ji);
 							DxJoint joint = jointinfos[ji].joint;
@@ -66,6 +66,20 @@ public class DxRay extends DxGeom implements DRay {
 		_length = length;
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxRay copy(DxSpace space)
+	{
+		DxRay r = new DxRay(space, _length);
+		r.setFlags(r.getFlags() | (getFlags() & (RAY_FIRSTCONTACT | RAY_BACKFACECULL | RAY_CLOSEST_HIT)));
+		return r;
+	}
+
 
 	@Override
 	protected void computeAABB()
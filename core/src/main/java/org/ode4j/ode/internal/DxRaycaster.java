@@ -0,0 +1,332 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DRayHits;
+import org.ode4j.ode.internal.aabbtree.AABBTreeRayCallback;
+import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Batched ray casts for {@link DxSpace#raycastBatch(double[], double[], double[], DRayHits, TaskExecutor)}.
+ * <p>
+ * Every job owns a query with a private ray geom and contact buffer.
+ * The space passes the geoms whose AABBs are hit by the ray to
+ * {@link Query#test(DxGeom)}, which runs the usual ray collider and keeps the
+ * closest hit. Once a ray has hit a geom, the remaining AABBs are only tested
+ * up to the distance of that hit.
+ * <p>
+ * The queries and the task graph are kept between calls.
+ */
+final class DxRaycaster {
+
+	/** Minimum number of rays per job. */
+	private static final int MIN_RAYS_PER_JOB = 64;
+
+	/**
+	 * A ray or a box that moves along a ray, as passed to
+	 * {@link DxSpace#raycast(Query)}.
+	 * <p>
+	 * The ray goes from the origin to origin + t * direction for t in
+	 * [0, maxT]. A box query expands every tested AABB by its half extents,
+	 * so the ray of its center finds all AABBs that the moving box touches.
+	 */
+	abstract static class Query implements AABBTreeRayCallback<DxGeom> {
+		// origin, direction and inverse direction of the ray
+		double ox, oy, oz;
+		double dx, dy, dz;
+		private double ix, iy, iz;
+		// half extents of the box, 0 for rays
+		double hx, hy, hz;
+		// end of the ray, this becomes smaller with every closer hit
+		double maxT;
+		// entry and exit of the last AABB for which overlaps() was true,
+		// the entry axis is -1 if the box overlaps the AABB at t = 0
+		double tEnter, tExit;
+		int enterAxis;
+
+		void set(double ox, double oy, double oz, double dx, double dy, double dz, double maxT) {
+			this.ox = ox;
+			this.oy = oy;
+			this.oz = oz;
+			this.dx = dx;
+			this.dy = dy;
+			this.dz = dz;
+			ix = 1 / dx;
+			iy = 1 / dy;
+			iz = 1 / dz;
+			this.maxT = maxT;
+		}
+
+		/**
+		 * @return 'true' if the ray hits the box before maxT.
+		 */
+		@Override
+		public boolean overlaps(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+			double tMin = 0;
+			double tMax = maxT;
+			int axis = -1;
+			if (dx != 0) {
+				double t1 = (minX - hx - ox) * ix;
+				double t2 = (maxX + hx - ox) * ix;
+				double t = Math.min(t1, t2);
+				if (t > tMin) {
+					tMin = t;
+					axis = 0;
+				}
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			} else if (ox < minX - hx || ox > maxX + hx) {
+				return false;
+			}
+			if (dy != 0) {
+				double t1 = (minY - hy - oy) * iy;
+				double t2 = (maxY + hy - oy) * iy;
+				double t = Math.min(t1, t2);
+				if (t > tMin) {
+					tMin = t;
+					axis = 1;
+				}
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			} else if (oy < minY - hy || oy > maxY + hy) {
+				return false;
+			}
+			if (dz != 0) {
+				double t1 = (minZ - hz - oz) * iz;
+				double t2 = (maxZ + hz - oz) * iz;
+				double t = Math.min(t1, t2);
+				if (t > tMin) {
+					tMin = t;
+					axis = 2;
+				}
+				tMax = Math.min(tMax, Math.max(t1, t2));
+			} else if (oz < minZ - hz || oz > maxZ + hz) {
+				return false;
+			}
+			if (tMin > tMax) {
+				return false;
+			}
+			tEnter = tMin;
+			tExit = tMax;
+			enterAxis = axis;
+			return true;
+		}
+
+		boolean overlaps(DAABB aabb) {
+			return overlaps(aabb.getMin0(), aabb.getMin1(), aabb.getMin2(), aabb.getMax0(), aabb.getMax1(),
+					aabb.getMax2());
+		}
+
+		@Override
+		public void hit(DxGeom g) {
+			test(g);
+		}
+
+		/**
+		 * Test an enabled geom whose AABB may be hit by the query.
+		 * Nested spaces are searched with their own structures.
+		 */
+		void test(DxGeom g) {
+			if (g instanceof DxSpace) {
+				((DxSpace) g).raycast(this);
+			} else {
+				testGeom(g);
+			}
+		}
+
+		/**
+		 * Test a geom that is not a space. Implementations reduce maxT
+		 * when they find a hit.
+		 */
+		abstract void testGeom(DxGeom g);
+	}
+
+	/**
+	 * The current ray of a job.
+	 */
+	private static final class RayQuery extends Query {
+		private final DxRay ray = DxRay.dCreateRay(null, 1);
+		private final DContactGeomBuffer contacts = new DContactGeomBuffer(1);
+		private DxGeom hitGeom;
+		private final DContactGeom hit = new DContactGeom();
+
+		RayQuery() {
+			ray.setClosestHit(true);
+		}
+
+		private void start(double[] origins, double[] dirs, int i, double length) {
+			double x = dirs[i * 3];
+			double y = dirs[i * 3 + 1];
+			double z = dirs[i * 3 + 2];
+			double l = Math.sqrt(x * x + y * y + z * z);
+			dUASSERT(l > 0, "zero ray direction");
+			set(origins[i * 3], origins[i * 3 + 1], origins[i * 3 + 2], x / l, y / l, z / l, length);
+			hitGeom = null;
+			ray.set(ox, oy, oz, dx, dy, dz);
+			ray.setLength(length);
+		}
+
+		@Override
+		void testGeom(DxGeom g) {
+			if (DxGeom.dCollide(ray, g, 1, contacts, 1) == 0) {
+				return;
+			}
+			DContactGeom c = contacts.get(0);
+			if (c.depth <= maxT) {
+				maxT = c.depth;
+				hitGeom = g;
+				hit.set(c);
+				ray.setLength(maxT);
+			}
+		}
+	}
+
+	private RayQuery[] queries = new RayQuery[0];
+
+	private TaskExecutor executor;
+	private TaskGroup group;
+	private Task[] jobs = new Task[0];
+	private volatile RuntimeException failure;
+
+	private DxSpace space;
+	private double[] origins;
+	private double[] dirs;
+	private double[] maxLen;
+	private DRayHits hits;
+
+	int raycast(DxSpace space, double[] origins, double[] dirs, double[] maxLen, DRayHits hits,
+			TaskExecutor executor) {
+		int n = maxLen.length;
+		dUASSERT(origins.length >= n * 3 && dirs.length >= n * 3, "origins and dirs need 3 values per ray");
+		hits.reset(n);
+
+		int jobCount = 1;
+		if (executor != null) {
+			jobCount = Math.min(executor.getThreadCount(), (n + MIN_RAYS_PER_JOB - 1) / MIN_RAYS_PER_JOB);
+			if (jobCount < 1) {
+				jobCount = 1;
+			}
+		}
+		if (queries.length < jobCount) {
+			RayQuery[] q = new RayQuery[jobCount];
+			System.arraycopy(queries, 0, q, 0, queries.length);
+			for (int i = queries.length; i < jobCount; i++) {
+				q[i] = new RayQuery();
+			}
+			queries = q;
+		}
+
+		this.space = space;
+		this.origins = origins;
+		this.dirs = dirs;
+		this.maxLen = maxLen;
+		this.hits = hits;
+		space.lock_count++;
+		try {
+			space.cleanGeoms();
+			if (jobCount == 1) {
+				runJob(0, 1);
+			} else {
+				ensureTasks(executor, jobCount);
+				failure = null;
+				group.reset();
+				for (Task job : jobs) {
+					job.reset();
+					job.submit();
+				}
+				group.submit();
+				group.awaitCompletion();
+				RuntimeException e = failure;
+				if (e != null) {
+					failure = null;
+					throw e;
+				}
+			}
+		} finally {
+			space.lock_count--;
+			// Do not keep references to user objects
+			this.space = null;
+			this.origins = null;
+			this.dirs = null;
+			this.maxLen = null;
+			this.hits = null;
+			for (RayQuery q : queries) {
+				q.hitGeom = null;
+				q.hit.g1 = null;
+				q.hit.g2 = null;
+			}
+		}
+
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (hits.isHit(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void ensureTasks(TaskExecutor executor, int jobCount) {
+		if (this.executor == executor && jobs.length == jobCount) {
+			return;
+		}
+		this.executor = executor;
+		group = executor.group("Space Raycast", new Runnable() {
+			@Override
+			public void run() {}
+		});
+		jobs = new Task[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			final int job = i;
+			jobs[i] = group.subtask("Space Raycast Job", new Runnable() {
+				@Override
+				public void run() {
+					try {
+						runJob(job, jobs.length);
+					} catch (RuntimeException e) {
+						failure = e;
+					}
+				}
+			});
+		}
+	}
+
+	private void runJob(int job, int jobCount) {
+		int n = maxLen.length;
+		int begin = (int) ((long) n * job / jobCount);
+		int end = (int) ((long) n * (job + 1) / jobCount);
+		RayQuery q = queries[job];
+		for (int i = begin; i < end; i++) {
+			q.start(origins, dirs, i, maxLen[i]);
+			space.raycast(q);
+			if (q.hitGeom != null) {
+				hits.set(i, q.hitGeom, q.maxT, q.hit.pos, q.hit.normal);
+			}
+		}
+	}
+}
@@ -186,6 +186,18 @@ public class DxSAPSpace extends DxSpace implements DSapSpace {
 		ax2id = ( ( axisorder >> 4 ) & 3 );
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxSAPSpace copy( DxSpace space )
+	{
+		return new DxSAPSpace( space, ax0id | ( ax1id << 2 ) | ( ax2id << 4 ) );
+	}
+
 	//TODO check super class?!?
 	//dxSAPSpace::~dxSAPSpace()
 	@Override
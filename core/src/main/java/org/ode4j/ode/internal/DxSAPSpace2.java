@@ -140,6 +140,16 @@ public class DxSAPSpace2 extends DxSpace implements DSapSpace {
         ax2id = ((axisorder >> 4) & 3);
     }
 
+    @Override
+    protected boolean isCopySupported() {
+        return true;
+    }
+
+    @Override
+    protected DxSAPSpace2 copy(DxSpace space) {
+        return new DxSAPSpace2(space, ax0id | (ax1id << 2) | (ax2id << 4), staticGeomCategoryMask);
+    }
+
     @Override
     void add(DxGeom g) {
         CHECK_NOT_LOCKED(this);
@@ -0,0 +1,679 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DSapSpace;
+
+/**
+ * Incremental ("classical") sweep and prune space.
+ * <p>
+ * Unlike DxSAPSpace, which sorts all AABBs in every call to collide(), this
+ * space keeps the sorted AABB endpoints of all geoms on all three axes
+ * between calls. Only the endpoints of dirty geoms are moved, with an
+ * insertion sort, so with high frame to frame coherence an update costs
+ * little more than the number of moved geoms.
+ * <p>
+ * Every swap of two endpoints updates a persistent set of the geom pairs
+ * whose AABBs overlap on all axes. collide() only reports the pairs of this
+ * set, so its cost depends on the number of overlapping pairs rather than on
+ * the number of geoms.
+ * <p>
+ * Geoms with infinite AABBs (such as planes) are kept out of the axes and
+ * are tested against all other geoms, like in DxSAPSpace.
+ * <p>
+ * Fast movement over large distances and adding or removing geoms cost
+ * O(N) per geom.
+ */
+public class DxSAPSpaceIncremental extends DxSpace implements DSapSpace {
+
+	private static final int GEOM_INVALID_IDX = -1;
+
+	// state of a handle
+	private static final byte STATE_NEW = 0;	// not yet cleaned
+	private static final byte STATE_AXES = 1;	// endpoints on the axes
+	private static final byte STATE_INF = 2;	// infinite AABB, in infGeomList
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	// dirty geoms, each geom knows its index in the list
+	private final List<DxGeom> dirtyList = new ArrayList<>();
+	// geoms with infinite AABBs
+	private final List<DxGeom> infGeomList = new ArrayList<>();
+
+	// Our sorting axes. Axis indices into geom's aabb.
+	private final int[] axes = new int[3];
+
+	// Every geom of the space has a handle, the handle is stored in the geom.
+	private DxGeom[] handleGeom = new DxGeom[INITIAL_CAPACITY];
+	private byte[] handleState = new byte[INITIAL_CAPACITY];
+	// endpoint positions: [handle * 6 + axis * 2 + (0 for min, 1 for max)]
+	private int[] epIndex = new int[INITIAL_CAPACITY * 6];
+	private int handleCount;
+	private int[] freeHandles = new int[INITIAL_CAPACITY];
+	private int freeCount;
+
+	// sorted endpoints per axis: value and (handle << 1 | 1 for max)
+	private final double[][] epValue = new double[3][INITIAL_CAPACITY * 2];
+	private final int[][] epData = new int[3][INITIAL_CAPACITY * 2];
+	private int epCount;
+
+	private final PairSet pairs = new PairSet();
+	// the handle that is being removed, its pairs are not added again
+	private int removingHandle = GEOM_INVALID_IDX;
+
+	/**
+	 * Creation.
+	 * @param space space
+	 * @param axisorder axis order
+	 * @return SAPSpace
+	 */
+	public static DxSAPSpaceIncremental dSweepAndPruneSpaceCreate( DxSpace space, int axisorder ) {
+		return new DxSAPSpaceIncremental( space, axisorder );
+	}
+
+	private DxSAPSpaceIncremental( DxSpace space, int axisorder )
+	{
+		super(space);
+		type = dSweepAndPruneSpaceClass;
+		_aabb.setZero();
+		axes[0] = ( ( axisorder ) & 3 );
+		axes[1] = ( ( axisorder >> 2 ) & 3 );
+		axes[2] = ( ( axisorder >> 4 ) & 3 );
+	}
+
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxSAPSpaceIncremental copy( DxSpace space )
+	{
+		return new DxSAPSpaceIncremental( space, axes[0] | ( axes[1] << 2 ) | ( axes[2] << 4 ) );
+	}
+
+	/**
+	 * @return Number of geom pairs with overlapping AABBs, not counting
+	 * geoms with infinite AABBs.
+	 */
+	int getNumOverlappingPairs() {
+		return pairs.size;
+	}
+
+	@Override
+	void add( DxGeom g )
+	{
+		CHECK_NOT_LOCKED (this);
+		dUASSERT(g.parent_space == null, "geom is already in a space");
+
+		int h;
+		if (freeCount > 0) {
+			h = freeHandles[--freeCount];
+		} else {
+			if (handleCount == handleGeom.length) {
+				int capacity = handleCount * 2;
+				handleGeom = Arrays.copyOf(handleGeom, capacity);
+				handleState = Arrays.copyOf(handleState, capacity);
+				epIndex = Arrays.copyOf(epIndex, capacity * 6);
+			}
+			h = handleCount++;
+		}
+		handleGeom[h] = g;
+		handleState[h] = STATE_NEW;
+		g._sapIdxGeomEx = h;
+
+		// add to dirty list
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add( g );
+
+		super.add(g);
+	}
+
+	@Override
+	void remove( DxGeom g )
+	{
+		CHECK_NOT_LOCKED(this);
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		int dirtyIdx = g._sapIdxDirtyEx;
+		if (dirtyIdx != GEOM_INVALID_IDX) {
+			removeFromDirtyList(dirtyIdx);
+		}
+		int h = g._sapIdxGeomEx;
+		if (handleState[h] == STATE_AXES) {
+			removeFromAxes(h);
+		} else if (handleState[h] == STATE_INF) {
+			infGeomList.remove(g);
+		}
+		handleGeom[h] = null;
+		if (freeCount == freeHandles.length) {
+			freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+		}
+		freeHandles[freeCount++] = h;
+		g._sapIdxGeomEx = GEOM_INVALID_IDX;
+
+		super.remove(g);
+	}
+
+	private void removeFromDirtyList(int dirtyIdx) {
+		int last = dirtyList.size() - 1;
+		DxGeom g = dirtyList.get(dirtyIdx);
+		if (dirtyIdx != last) {
+			DxGeom lastG = dirtyList.get(last);
+			dirtyList.set(dirtyIdx, lastG);
+			lastG._sapIdxDirtyEx = dirtyIdx;
+		}
+		dirtyList.remove(last);
+		g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+	}
+
+	@Override
+	void dirty( DxGeom g )
+	{
+		dUASSERT(g.parent_space == this, "object is not in this space");
+
+		// check if already dirtied
+		if (g._sapIdxDirtyEx != GEOM_INVALID_IDX) {
+			return;
+		}
+		g._sapIdxDirtyEx = dirtyList.size();
+		dirtyList.add( g );
+	}
+
+	@Override
+	public void cleanGeoms()
+	{
+		int dirtySize = dirtyList.size();
+		if (dirtySize == 0) {
+			return;
+		}
+
+		// compute the AABBs of all dirty geoms, clear the dirty flags
+		// and move their endpoints
+		lock_count++;
+		for (int i = 0; i < dirtySize; ++i) {
+			DxGeom g = dirtyList.get(i);
+			if (g instanceof DxSpace) {
+				((DxSpace) g).cleanGeoms();
+			}
+			g.recomputeAABB();
+			dIASSERT(!g.hasFlagAabbBad());
+			g.unsetFlagDirty();
+			g._sapIdxDirtyEx = GEOM_INVALID_IDX;
+			update(g._sapIdxGeomEx);
+		}
+		dirtyList.clear();
+		lock_count--;
+	}
+
+	@Override
+	public void collide( Object data, DNearCallback callback )
+	{
+		dAASSERT (callback);
+
+		lock_count++;
+
+		cleanGeoms();
+
+		// report the persistent pairs
+		for (int i = 0; i < pairs.size; i++) {
+			DxGeom g1 = handleGeom[pairs.first[i]];
+			DxGeom g2 = handleGeom[pairs.second[i]];
+			if (GEOM_ENABLED(g1) && GEOM_ENABLED(g2)) {
+				DxSAPSpace.collideGeomsNoAABBs(g1, g2, data, callback);
+			}
+		}
+
+		// collide infinite ones with each other and with normal ones
+		int infSize = infGeomList.size();
+		for (int m = 0; m < infSize; ++m) {
+			DxGeom g1 = infGeomList.get(m);
+			if (!GEOM_ENABLED(g1)) {
+				continue;
+			}
+			for (int n = m + 1; n < infSize; ++n) {
+				DxGeom g2 = infGeomList.get(n);
+				if (GEOM_ENABLED(g2)) {
+					DxSAPSpace.collideGeomsNoAABBs(g1, g2, data, callback);
+				}
+			}
+			int[] ep = epData[0];
+			for (int n = 0; n < epCount; ++n) {
+				if ((ep[n] & 1) == 0) {
+					DxGeom g2 = handleGeom[ep[n] >> 1];
+					if (GEOM_ENABLED(g2)) {
+						DxSAPSpace.collideGeomsNoAABBs(g1, g2, data, callback);
+					}
+				}
+			}
+		}
+
+		lock_count--;
+	}
+
+	@Override
+	void collide2( Object data, DxGeom geom, DNearCallback callback )
+	{
+		dAASSERT (geom!=null && callback!=null);
+
+		lock_count++;
+
+		cleanGeoms();
+		geom.recomputeAABB();
+
+		for (int i = 0; i < infGeomList.size(); ++i) {
+			DxGeom g = infGeomList.get(i);
+			if (GEOM_ENABLED(g)) {
+				collideAABBs (g,geom,data,callback);
+			}
+		}
+
+		// only geoms that start before the end of geom can intersect it
+		double max0 = geom._aabb.getMax(axes[0]);
+		double[] value = epValue[0];
+		int[] ep = epData[0];
+		for (int i = 0; i < epCount && value[i] <= max0; ++i) {
+			if ((ep[i] & 1) == 0) {
+				DxGeom g = handleGeom[ep[i] >> 1];
+				if (GEOM_ENABLED(g)) {
+					collideAABBs (g,geom,data,callback);
+				}
+			}
+		}
+
+		lock_count--;
+	}
+
+	@Override
+	void raycast( DxRaycaster.Query query )
+	{
+		for (int i = 0; i < infGeomList.size(); ++i) {
+			DxGeom g = infGeomList.get(i);
+			if (GEOM_ENABLED(g)) {
+				query.test(g);
+			}
+		}
+
+		// only geoms that start before the end of the ray can be hit,
+		// the end moves closer with every hit
+		int axis = axes[0];
+		double[] value = epValue[0];
+		int[] ep = epData[0];
+		for (int i = 0; i < epCount && value[i] <= rayMax(query, axis); ++i) {
+			if ((ep[i] & 1) == 0) {
+				DxGeom g = handleGeom[ep[i] >> 1];
+				if (GEOM_ENABLED(g) && query.overlaps(g._aabb)) {
+					query.test(g);
+				}
+			}
+		}
+	}
+
+	private static double rayMax(DxRaycaster.Query query, int axis) {
+		double o, d, h;
+		switch (axis) {
+		case 0: o = query.ox; d = query.dx; h = query.hx; break;
+		case 1: o = query.oy; d = query.dy; h = query.hy; break;
+		default: o = query.oz; d = query.dz; h = query.hz; break;
+		}
+		return (d > 0 ? o + d * query.maxT : o) + h;
+	}
+
+	// *********************************************
+	// Endpoints
+	// *********************************************
+
+	private void update(int h) {
+		DxGeom g = handleGeom[h];
+		boolean infinite = g._aabb.getMax(axes[0]) == dInfinity;
+		byte state = handleState[h];
+		if (infinite) {
+			if (state == STATE_AXES) {
+				removeFromAxes(h);
+			}
+			if (state != STATE_INF) {
+				infGeomList.add(g);
+				handleState[h] = STATE_INF;
+			}
+		} else if (state == STATE_AXES) {
+			moveOnAxes(h);
+		} else {
+			if (state == STATE_INF) {
+				infGeomList.remove(g);
+			}
+			insertIntoAxes(h);
+			handleState[h] = STATE_AXES;
+		}
+	}
+
+	private void insertIntoAxes(int h) {
+		if (epCount + 2 > epData[0].length) {
+			int capacity = epData[0].length * 2;
+			for (int k = 0; k < 3; k++) {
+				epValue[k] = Arrays.copyOf(epValue[k], capacity);
+				epData[k] = Arrays.copyOf(epData[k], capacity);
+			}
+		}
+		// append the endpoints at the end, where they don't overlap with
+		// anything, and sort them down
+		int iMin = epCount;
+		int iMax = epCount + 1;
+		epCount += 2;
+		DAABB aabb = handleGeom[h]._aabb;
+		for (int k = 0; k < 3; k++) {
+			epValue[k][iMin] = dInfinity;
+			epData[k][iMin] = h << 1;
+			epValue[k][iMax] = dInfinity;
+			epData[k][iMax] = (h << 1) | 1;
+			epIndex[h * 6 + k * 2] = iMin;
+			epIndex[h * 6 + k * 2 + 1] = iMax;
+		}
+		for (int k = 0; k < 3; k++) {
+			epValue[k][iMin] = aabb.getMin(axes[k]);
+			epValue[k][iMax] = aabb.getMax(axes[k]);
+			sortDown(k, iMin);
+			sortDown(k, iMax);
+		}
+	}
+
+	private void moveOnAxes(int h) {
+		DAABB aabb = handleGeom[h]._aabb;
+		for (int k = 0; k < 3; k++) {
+			int iMin = epIndex[h * 6 + k * 2];
+			int iMax = epIndex[h * 6 + k * 2 + 1];
+			double min = aabb.getMin(axes[k]);
+			double max = aabb.getMax(axes[k]);
+			double oldMin = epValue[k][iMin];
+			double oldMax = epValue[k][iMax];
+			epValue[k][iMin] = min;
+			epValue[k][iMax] = max;
+			// grow first, then shrink, so that min and max never pass each other
+			if (min < oldMin) {
+				sortDown(k, iMin);
+			}
+			if (max > oldMax) {
+				sortUp(k, iMax);
+			}
+			if (min > oldMin) {
+				sortUp(k, epIndex[h * 6 + k * 2]);
+			}
+			if (max < oldMax) {
+				sortDown(k, epIndex[h * 6 + k * 2 + 1]);
+			}
+		}
+	}
+
+	private void removeFromAxes(int h) {
+		// move the endpoints to the end, this removes all pairs of the handle
+		removingHandle = h;
+		for (int k = 0; k < 3; k++) {
+			for (int i = epIndex[h * 6 + k * 2 + 1]; i < epCount - 1; i++) {
+				passUp(k, i);
+			}
+			for (int i = epIndex[h * 6 + k * 2]; i < epCount - 2; i++) {
+				passUp(k, i);
+			}
+		}
+		removingHandle = GEOM_INVALID_IDX;
+		epCount -= 2;
+	}
+
+	@Override
+	public void DESTRUCTOR()
+	{
+		// drop the axes at once rather than moving the geoms out one by one
+		for (int h = 0; h < handleCount; h++) {
+			if (handleState[h] == STATE_AXES) {
+				handleState[h] = STATE_NEW;
+			}
+		}
+		epCount = 0;
+		pairs.clear();
+		super.DESTRUCTOR();
+	}
+
+	/**
+	 * Endpoints are ordered by value, a min endpoint comes before a max
+	 * endpoint with the same value, so that touching AABBs overlap.
+	 */
+	private static boolean isBefore(double v1, int d1, double v2, int d2) {
+		return v1 < v2 || (v1 == v2 && (d1 & 1) < (d2 & 1));
+	}
+
+	private void sortDown(int k, int i) {
+		double[] value = epValue[k];
+		int[] ep = epData[k];
+		while (i > 0 && isBefore(value[i], ep[i], value[i - 1], ep[i - 1])) {
+			passDown(k, i);
+			i--;
+		}
+	}
+
+	private void sortUp(int k, int i) {
+		double[] value = epValue[k];
+		int[] ep = epData[k];
+		while (i < epCount - 1 && isBefore(value[i + 1], ep[i + 1], value[i], ep[i])) {
+			passUp(k, i);
+			i++;
+		}
+	}
+
+	/**
+	 * Swap the endpoint at i with its left neighbour.
+	 */
+	private void passDown(int k, int i) {
+		double[] value = epValue[k];
+		int[] ep = epData[k];
+		int d = ep[i];
+		int prev = ep[i - 1];
+		int h = d >> 1;
+		int other = prev >> 1;
+		double v = value[i];
+		value[i] = value[i - 1];
+		ep[i] = prev;
+		epIndex[other * 6 + k * 2 + (prev & 1)] = i;
+		value[i - 1] = v;
+		ep[i - 1] = d;
+		epIndex[h * 6 + k * 2 + (d & 1)] = i - 1;
+		if ((d & 1) == 0) {
+			if ((prev & 1) != 0) {
+				// min passes a max to the left: start of an overlap
+				addPairIfOverlapping(h, other);
+			}
+		} else if ((prev & 1) == 0) {
+			// max passes a min to the left: end of an overlap
+			pairs.remove(h, other);
+		}
+	}
+
+	/**
+	 * Swap the endpoint at i with its right neighbour.
+	 */
+	private void passUp(int k, int i) {
+		double[] value = epValue[k];
+		int[] ep = epData[k];
+		int d = ep[i];
+		int next = ep[i + 1];
+		int h = d >> 1;
+		int other = next >> 1;
+		double v = value[i];
+		value[i] = value[i + 1];
+		ep[i] = next;
+		epIndex[other * 6 + k * 2 + (next & 1)] = i;
+		value[i + 1] = v;
+		ep[i + 1] = d;
+		epIndex[h * 6 + k * 2 + (d & 1)] = i + 1;
+		if ((d & 1) != 0) {
+			if ((next & 1) == 0) {
+				// max passes a min to the right: start of an overlap
+				addPairIfOverlapping(h, other);
+			}
+		} else if ((next & 1) != 0) {
+			// min passes a max to the right: end of an overlap
+			pairs.remove(h, other);
+		}
+	}
+
+	/**
+	 * Called after the endpoints of two handles started to overlap on one
+	 * axis. The overlap on all axes is checked with the endpoint positions.
+	 */
+	private void addPairIfOverlapping(int h1, int h2) {
+		if (h1 == removingHandle || h2 == removingHandle) {
+			return;
+		}
+		int o1 = h1 * 6;
+		int o2 = h2 * 6;
+		for (int k = 0; k < 6; k += 2) {
+			if (epIndex[o1 + k] > epIndex[o2 + k + 1] || epIndex[o2 + k] > epIndex[o1 + k + 1]) {
+				return;
+			}
+		}
+		pairs.add(h1, h2);
+	}
+
+	// *********************************************
+	// Overlapping pairs
+	// *********************************************
+
+	/**
+	 * Set of handle pairs. The pairs are stored densely for iteration, an
+	 * open addressing hash table maps a pair to its position.
+	 */
+	private static final class PairSet {
+
+		private static final long EMPTY = -1;
+
+		int size;
+		int[] first = new int[INITIAL_CAPACITY];
+		int[] second = new int[INITIAL_CAPACITY];
+
+		private long[] keys = newKeys(INITIAL_CAPACITY * 2);
+		private int[] slots = new int[INITIAL_CAPACITY * 2];
+		private int mask = INITIAL_CAPACITY * 2 - 1;
+
+		private static long[] newKeys(int capacity) {
+			long[] keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			return keys;
+		}
+
+		private static long key(int h1, int h2) {
+			return h1 < h2 ? ((long) h1 << 32) | h2 : ((long) h2 << 32) | h1;
+		}
+
+		private int hash(long key) {
+			long x = key * 0x9E3779B97F4A7C15L;
+			return (int) (x ^ (x >>> 32)) & mask;
+		}
+
+		void add(int h1, int h2) {
+			long key = key(h1, h2);
+			int slot = hash(key);
+			while (keys[slot] != EMPTY) {
+				if (keys[slot] == key) {
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if (size == first.length) {
+				first = Arrays.copyOf(first, size * 2);
+				second = Arrays.copyOf(second, size * 2);
+			}
+			first[size] = (int) (key >>> 32);
+			second[size] = (int) key;
+			keys[slot] = key;
+			slots[slot] = size;
+			size++;
+			if (size * 2 > keys.length) {
+				rehash(keys.length * 2);
+			}
+		}
+
+		void remove(int h1, int h2) {
+			long key = key(h1, h2);
+			int slot = hash(key);
+			while (keys[slot] != key) {
+				if (keys[slot] == EMPTY) {
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			// move the last pair into the gap
+			int pos = slots[slot];
+			size--;
+			if (pos != size) {
+				first[pos] = first[size];
+				second[pos] = second[size];
+				long lastKey = ((long) first[pos] << 32) | second[pos];
+				int lastSlot = hash(lastKey);
+				while (keys[lastSlot] != lastKey) {
+					lastSlot = (lastSlot + 1) & mask;
+				}
+				slots[lastSlot] = pos;
+			}
+			// backward shift deletion
+			int gap = slot;
+			int i = (gap + 1) & mask;
+			while (keys[i] != EMPTY) {
+				int home = hash(keys[i]);
+				// move the entry if its home slot is not in (gap, i]
+				if (((i - home) & mask) >= ((i - gap) & mask)) {
+					keys[gap] = keys[i];
+					slots[gap] = slots[i];
+					gap = i;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[gap] = EMPTY;
+		}
+
+		void clear() {
+			size = 0;
+			Arrays.fill(keys, EMPTY);
+		}
+
+		private void rehash(int capacity) {
+			keys = newKeys(capacity);
+			slots = new int[capacity];
+			mask = capacity - 1;
+			for (int pos = 0; pos < size; pos++) {
+				long key = ((long) first[pos] << 32) | second[pos];
+				int slot = hash(key);
+				while (keys[slot] != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				slots[slot] = pos;
+			}
+		}
+	}
+}
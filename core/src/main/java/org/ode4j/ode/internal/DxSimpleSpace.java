@@ -53,6 +53,18 @@ public class DxSimpleSpace extends DxSpace implements DSimpleSpace {
 		type = dSimpleSpaceClass;
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxSimpleSpace copy(DxSpace space)
+	{
+		return new DxSimpleSpace(space);
+	}
+
 
 	@Override
 	public void cleanGeoms()
@@ -26,9 +26,14 @@ package org.ode4j.ode.internal;
 
 import java.util.Iterator;
 
+import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DAABB;
+import org.ode4j.ode.DAABBC;
 import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DRayHits;
 import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DSweepHit;
+import org.ode4j.ode.threading.task.TaskExecutor;
 
 import static org.ode4j.ode.internal.Common.*;
 
@@ -85,6 +90,12 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	// is locked.
 	int lock_count;
 
+	private DxParallelCollider parallelCollider;
+	private DxBatchCollider batchCollider;
+	private DxPairCache pairCache;
+	private DxRaycaster raycaster;
+	private DxSweeper sweeper;
+
 	/**
 	 * Turn all dirty geoms into clean geoms by computing their AABBs and any
 	 * other space data structures that are required. this should clear the
@@ -98,6 +109,97 @@ public abstract class DxSpace extends DxGeom implements DSpace {
 	public abstract void collide (Object data, DNearCallback callback);
 	abstract void collide2 (Object data, DxGeom geom, DNearCallback callback);
 
+	@Override
+	public <T> void collideParallel(TaskExecutor executor, DParallelNearCallback<T> callback)
+	{
+		dAASSERT (executor, callback);
+		if (parallelCollider == null) {
+			parallelCollider = new DxParallelCollider();
+		}
+		parallelCollider.collide(this, executor, callback);
+	}
+
+	@Override
+	public void collideBatched(int flags, DBatchedNearCallback callback)
+	{
+		collideBatched(null, flags, callback);
+	}
+
+	@Override
+	public void collideBatched(TaskExecutor executor, int flags, DBatchedNearCallback callback)
+	{
+		dAASSERT (callback);
+		if (batchCollider == null) {
+			batchCollider = new DxBatchCollider();
+		}
+		batchCollider.collide(this, executor, flags, callback);
+	}
+
+	@Override
+	public void collideCached(Object data, DPairCallback callback)
+	{
+		dAASSERT (callback);
+		if (pairCache == null) {
+			pairCache = new DxPairCache();
+		}
+		pairCache.collide(this, data, callback);
+	}
+
+	@Override
+	public int raycastBatch(double[] origins, double[] dirs, double[] maxLen, DRayHits hits)
+	{
+		return raycastBatch(origins, dirs, maxLen, hits, null);
+	}
+
+	@Override
+	public int raycastBatch(double[] origins, double[] dirs, double[] maxLen, DRayHits hits,
+			TaskExecutor executor)
+	{
+		dAASSERT (origins, dirs, maxLen, hits);
+		if (raycaster == null) {
+			raycaster = new DxRaycaster();
+		}
+		return raycaster.raycast(this, origins, dirs, maxLen, hits, executor);
+	}
+
+	@Override
+	public boolean sweep(DGeom geom, DVector3C motion, DSweepHit hit)
+	{
+		dAASSERT (geom, motion, hit);
+		if (sweeper == null) {
+			sweeper = new DxSweeper();
+		}
+		return sweeper.sweep(this, (DxGeom) geom, motion, hit);
+	}
+
+	@Override
+	public boolean sweepAABB(DAABBC aabb, DVector3C motion, DSweepHit hit)
+	{
+		dAASSERT (aabb, motion, hit);
+		if (sweeper == null) {
+			sweeper = new DxSweeper();
+		}
+		return sweeper.sweepAABB(this, aabb, motion, hit);
+	}
+
+	/**
+	 * Pass all enabled geoms whose AABB is hit by the ray or box of the
+	 * query to the query.
+	 * The space is clean and locked. This may be called concurrently for
+	 * different queries, so it must not modify the space.
+	 * <p>
+	 * This tests every geom, spaces with a spatial structure override it.
+	 * @param query ray query
+	 */
+	void raycast(DxRaycaster.Query query)
+	{
+		for (DxGeom g = _first; g != null; g = g.getNext()) {
+			if (GEOM_ENABLED(g) && query.overlaps(g._aabb)) {
+				query.test(g);
+			}
+		}
+	}
+
 
 	public void dSpaceDestroy ()
 	{
@@ -59,6 +59,18 @@ public class DxSphere extends DxGeom implements DSphere {
 		updateZeroSizedFlag(radius == 0.0);
 	}
 
+	@Override
+	protected boolean isCopySupported()
+	{
+		return true;
+	}
+
+	@Override
+	protected DxSphere copy(DxSpace space)
+	{
+		return new DxSphere(space, _radius);
+	}
+
 
 	@Override
     protected void computeAABB()
@@ -0,0 +1,214 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.OdeConstants.dInfinity;
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DContactGeomBuffer;
+import org.ode4j.ode.DSweepHit;
+
+/**
+ * Sweep queries for {@link DxSpace#sweep(org.ode4j.ode.DGeom, DVector3C, DSweepHit)}
+ * and {@link DxSpace#sweepAABB(DAABBC, DVector3C, DSweepHit)}.
+ * <p>
+ * The broadphase is a box query of the space: the AABB of the moving geom
+ * moves along the motion and every AABB it touches is passed to the
+ * narrowphase, starting at the fraction where the AABBs begin to overlap.
+ * <p>
+ * The narrowphase moves a copy of the geom along the motion in steps of half
+ * the smallest half extent of its AABB until the collider reports a contact,
+ * then bisects the last step down to TOLERANCE. The libccd port has no GJK
+ * distance query, so this works with all colliders instead of conservative
+ * advancement. Objects that are thinner than the step can be missed when
+ * they are only grazed.
+ */
+final class DxSweeper {
+
+	/** Precision of the fraction, relative to the step length. */
+	private static final double TOLERANCE = 1e-3;
+
+	private final Sweep sweep = new Sweep();
+	private final SweepAABB sweepAABB = new SweepAABB();
+
+	private final class Sweep extends DxRaycaster.Query {
+		private final DContactGeomBuffer contacts = new DContactGeomBuffer(1);
+		private final DVector3 start = new DVector3();
+		private final DVector3 motion = new DVector3();
+		private DxGeom geom;
+		private DxGeom proxy;
+		// step of the marching in fractions of the motion
+		private double step;
+		private DxGeom hitGeom;
+		private final DContactGeom hit = new DContactGeom();
+
+		@Override
+		void testGeom(DxGeom g) {
+			if (g == geom || (g.body == geom.body && g.body != null)) {
+				return;
+			}
+			if ((geom.category_bits & g.collide_bits) == 0 && (g.category_bits & geom.collide_bits) == 0) {
+				return;
+			}
+			// BVH leaves have fat bounds
+			if (!overlaps(g._aabb)) {
+				return;
+			}
+			double lo = tEnter;
+			double end = tExit;
+			if (!collide(g, lo)) {
+				// march to the first contact, then bisect
+				double t = lo;
+				do {
+					if (t >= end) {
+						return;
+					}
+					lo = t;
+					t = Math.min(t + step, end);
+				} while (!collide(g, t));
+				double hi = t;
+				while ((hi - lo) > step * TOLERANCE) {
+					double mid = (lo + hi) * 0.5;
+					if (collide(g, mid)) {
+						hi = mid;
+					} else {
+						lo = mid;
+					}
+				}
+				// the contact of hi
+				collide(g, hi);
+			}
+			if (lo <= maxT) {
+				maxT = lo;
+				hitGeom = g;
+				hit.set(contacts.get(0));
+			}
+		}
+
+		/**
+		 * @return 'true' if the geom at fraction t touches g, the contact is
+		 * in contacts.
+		 */
+		private boolean collide(DxGeom g, double t) {
+			proxy.setPosition(start.get0() + t * motion.get0(), start.get1() + t * motion.get1(),
+					start.get2() + t * motion.get2());
+			return DxGeom.dCollide(proxy, g, 1, contacts, 1) > 0;
+		}
+	}
+
+	private static final class SweepAABB extends DxRaycaster.Query {
+		private DxGeom hitGeom;
+		private double hitFraction;
+		private int hitAxis;
+
+		@Override
+		void testGeom(DxGeom g) {
+			if (overlaps(g._aabb) && tEnter <= maxT) {
+				maxT = tEnter;
+				hitGeom = g;
+				hitFraction = tEnter;
+				hitAxis = enterAxis;
+			}
+		}
+	}
+
+	boolean sweep(DxSpace space, DxGeom geom, DVector3C motion, DSweepHit result) {
+		dUASSERT(geom.isCopySupported(), geom.getClass().getSimpleName() + " can not be copied");
+		result.reset();
+		space.lock_count++;
+		try {
+			space.cleanGeoms();
+			geom.recomputeAABB();
+			Sweep q = sweep;
+			q.geom = geom;
+			q.hitGeom = null;
+			q.motion.set(motion);
+			q.start.set(geom.final_posr().pos());
+			q.proxy = geom.copy(null);
+			q.proxy.copyState(geom, null);
+			DAABBC aabb = geom._aabb;
+			dUASSERT(aabb.len0() < dInfinity && aabb.len1() < dInfinity
+					&& aabb.len2() < dInfinity, "geom must be finite");
+			double minHalf = Math.min(aabb.len0(), Math.min(aabb.len1(), aabb.len2())) * 0.5;
+			double length = motion.length();
+			q.step = length > 0 ? Math.max(minHalf * 0.5, length * 1e-6) / length : 1;
+			q.hx = aabb.len0() * 0.5;
+			q.hy = aabb.len1() * 0.5;
+			q.hz = aabb.len2() * 0.5;
+			DVector3C c = aabb.getCenter();
+			q.set(c.get0(), c.get1(), c.get2(), motion.get0(), motion.get1(), motion.get2(), 1);
+			space.raycast(q);
+			if (q.hitGeom != null) {
+				result.set(q.hitGeom, q.maxT, q.hit.normal, q.hit.pos);
+			}
+			return q.hitGeom != null;
+		} finally {
+			space.lock_count--;
+			// copyState() does not update the shape, so the proxy is not kept
+			if (sweep.proxy != null) {
+				sweep.proxy.destroy();
+				sweep.proxy = null;
+			}
+			sweep.geom = null;
+			sweep.hitGeom = null;
+			sweep.hit.g1 = null;
+			sweep.hit.g2 = null;
+		}
+	}
+
+	boolean sweepAABB(DxSpace space, DAABBC aabb, DVector3C motion, DSweepHit result) {
+		result.reset();
+		space.lock_count++;
+		try {
+			space.cleanGeoms();
+			SweepAABB q = sweepAABB;
+			q.hitGeom = null;
+			q.hx = aabb.len0() * 0.5;
+			q.hy = aabb.len1() * 0.5;
+			q.hz = aabb.len2() * 0.5;
+			DVector3C c = aabb.getCenter();
+			q.set(c.get0(), c.get1(), c.get2(), motion.get0(), motion.get1(), motion.get2(), 1);
+			space.raycast(q);
+			if (q.hitGeom == null) {
+				return false;
+			}
+			DVector3 normal = new DVector3();
+			if (q.hitAxis >= 0) {
+				normal.set(q.hitAxis, motion.get(q.hitAxis) > 0 ? -1 : 1);
+			} else if (motion.length() > 0) {
+				// overlapping at the start
+				normal.set(motion).scale(-1 / motion.length());
+			}
+			DVector3 pos = new DVector3(c).addScaled(motion, q.hitFraction);
+			result.set(q.hitGeom, q.hitFraction, normal, pos);
+			return true;
+		} finally {
+			space.lock_count--;
+			sweepAABB.hitGeom = null;
+		}
+	}
+}
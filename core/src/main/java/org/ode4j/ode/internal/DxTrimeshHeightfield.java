@@ -380,6 +380,18 @@ public class DxTrimeshHeightfield extends DxAbstractHeightfield {
         return new DxTrimeshHeightfield( space, data, bPlaceable, layered );
     }
 
+    @Override
+    protected boolean isCopySupported()
+    {
+        return true;
+    }
+
+    @Override
+    protected DxTrimeshHeightfield copy( DxSpace space )
+    {
+        return new DxTrimeshHeightfield( space, m_p_data, hasFlagPlaceable(), layered );
+    }
+
     //  void dGeomHeightfieldSetHeightfieldData( dGeom g, dHeightfieldData d )
     void dGeomHeightfieldSetHeightfieldData( DHeightfieldData d )
     {
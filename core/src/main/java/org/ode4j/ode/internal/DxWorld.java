@@ -33,9 +33,15 @@ import static org.ode4j.ode.internal.Common.dSqrt;
 import static org.ode4j.ode.internal.Common.dUASSERT;
 import static org.ode4j.ode.internal.ErrorHandler.dMessage;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
 import org.ode4j.math.DVector3;
 import org.ode4j.math.DVector3C;
 import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorldSnapshot;
 import org.ode4j.ode.internal.Objects_H.dxAutoDisable;
 import org.ode4j.ode.internal.Objects_H.dxContactParameters;
 import org.ode4j.ode.internal.Objects_H.dxDampingParameters;
@@ -43,7 +49,9 @@ import org.ode4j.ode.internal.Objects_H.dxQuickStepParameters;
 import org.ode4j.ode.internal.cpp4j.java.Ref;
 import org.ode4j.ode.internal.cpp4j.java.RefInt;
 import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.processmem.DxIslandCache;
 import org.ode4j.ode.internal.processmem.DxIslandsProcessingCallContext;
+import org.ode4j.ode.internal.processmem.DxParallelIslandsBuilder;
 import org.ode4j.ode.internal.processmem.DxStepWorkingMemory;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dmaxcallcountestimate_fn_t;
 import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper_fn_t;
@@ -55,17 +63,22 @@ import org.ode4j.ode.internal.processmem.DxUtil.shrink_block_fn_t;
 import org.ode4j.ode.internal.processmem.DxWorldProcessContext;
 import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo;
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemArena;
+import org.ode4j.ode.internal.joints.DxContactCache;
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemoryManager;
 import org.ode4j.ode.internal.processmem.DxWorldProcessMemoryReserveInfo;
 import org.ode4j.ode.threading.Threading;
 import org.ode4j.ode.threading.task.SameThreadTaskExecutor;
-import org.ode4j.ode.threading.task.Task;
 import org.ode4j.ode.threading.task.TaskExecutor;
-import org.ode4j.ode.threading.task.TaskGroup;
 
 public class DxWorld extends DBase implements DWorld {
 
 	private TaskExecutor taskExecutor = new SameThreadTaskExecutor();
+	private DxIslandsProcessingCallContext islandsCallContext;
+	private DxParallelIslandsBuilder parallelIslandsBuilder;
+	private DxIslandCache islandCache;
+	private final DxContactCache contactCache = new DxContactCache();
+	private int[] quickStepIterations = new int[0];
+	private int quickStepIslandCount;
 	
 	//TODO
 	public final Ref<DxBody> firstbody = new Ref<DxBody>();
@@ -145,6 +158,9 @@ public class DxWorld extends DBase implements DWorld {
 
 	public void dWorldDestroy ()
 	{
+		// no need to maintain islands while everything is removed
+		setPersistentIslands(false);
+		dWorldSetQuickStepWarmStarting(false);
 		// delete all bodies and joints
 //		dAASSERT (w);
 		DxBody nextb, b = firstbody.get();
@@ -319,10 +335,15 @@ public class DxWorld extends DBase implements DWorld {
 
 	    boolean result = false;
 
+	    if (qs.warm_starting) {
+	    	contactCache.beginStep();
+	    }
 	    DxWorldProcessIslandsInfo islandsinfo = new DxWorldProcessIslandsInfo();
+	    quickStepIslandCount = 0;
 	    if (DxWorldProcessContext.dxReallocateWorldProcessContext (this, islandsinfo, stepsize, 
 	            DxQuickStep.INSTANCE))//dxEstimateQuickStepMemoryRequirements))
 	    {
+	    	ResetQuickStepIterations(islandsinfo.GetIslandsCount());
 	    	//if (dxProcessIslands (w, islandsinfo, stepsize, &dxQuickStepIsland, &dxEstimateQuickStepMaxCallCount))
 	        if (dxProcessIslands (islandsinfo, stepsize, DxQuickStep.INSTANCE, Step.INSTANCE))
 	        {
@@ -533,6 +554,58 @@ public class DxWorld extends DBase implements DWorld {
 	}
 
 
+	private void dWorldSetQuickStepColoredSOR (boolean colored)
+	{
+		qs.colored_sor = colored;
+	}
+
+
+	private boolean dWorldGetQuickStepColoredSOR ()
+	{
+		return qs.colored_sor;
+	}
+
+
+	private void dWorldSetQuickStepRandomSeed (long seed)
+	{
+		qs.seed.set(seed);
+	}
+
+
+	private long dWorldGetQuickStepRandomSeed ()
+	{
+		return qs.seed.get();
+	}
+
+
+	private void dWorldSetQuickStepWarmStarting (boolean warmStarting)
+	{
+		qs.warm_starting = warmStarting;
+		if (!warmStarting) {
+			contactCache.clear();
+		}
+	}
+
+
+	private boolean dWorldGetQuickStepWarmStarting ()
+	{
+		return qs.warm_starting;
+	}
+
+
+	private void dWorldSetQuickStepTolerance (double tolerance)
+	{
+		dUASSERT (tolerance >= 0, "tolerance must be >= 0");
+		qs.tolerance = tolerance;
+	}
+
+
+	private double dWorldGetQuickStepTolerance ()
+	{
+		return qs.tolerance;
+	}
+
+
 //	void dWorldSetContactMaxCorrectingVel (dxWorld w, double vel)
 	public void dWorldSetContactMaxCorrectingVel (double vel)
 	{
@@ -649,9 +722,6 @@ public class DxWorld extends DBase implements DWorld {
 			dmaxcallcountestimate_fn_t maxCallCountEstimator)
 	{
 
-		final DxIslandsProcessingCallContext callContext = new DxIslandsProcessingCallContext(this, 
-				islandsInfo, stepSize, stepper);
-
 		//DxStepWorkingMemory wmem = world.wmem;
 		dIASSERT(wmem != null);
 		DxWorldProcessContext context = wmem.GetWorldProcessingContext(); 
@@ -664,29 +734,20 @@ public class DxWorld extends DBase implements DWorld {
 		dIASSERT(islandsAllowedThreadCount != 0);
 		dIASSERT(activeThreadCount.get() >= islandsAllowedThreadCount);
 
+		// The task graph is reused for all steps unless the threading configuration changes
+		DxIslandsProcessingCallContext callContext = islandsCallContext;
+		if (callContext == null || !callContext.IsCompatible(taskExecutor, islandsAllowedThreadCount)) {
+			callContext = new DxIslandsProcessingCallContext(this, taskExecutor, islandsAllowedThreadCount);
+			islandsCallContext = callContext;
+		}
+		callContext.Initialize(islandsInfo, stepSize, stepper);
+
 		// For now, set stepper allowed threads equal to island stepping threads
 		int stepperAllowedThreadCount = islandsAllowedThreadCount; 
 
 		callContext.SetStepperAllowedThreads(Threading.ENABLE_STEPPER_MULTITHREADING ? stepperAllowedThreadCount : 1);
 
-		final TaskGroup group = taskExecutor.group("World Islands Stepping Group", new Runnable() {
-			@Override
-			public void run() {}
-		});
-
-		for (int i = 0; i < islandsAllowedThreadCount; i++) {
-    		Task task = group.subtask("World Islands Stepping Start", new Runnable() {
-				@Override
-				public void run() {
-					callContext.ThreadedProcessJobStart(group);
-				}
-			});
-			task.submit();
-    	}
-		group.submit();
-		// Wait until group completes (since jobs were the dependencies of the group the group 
-		// is going to complete only after all the jobs end)
-    	group.awaitCompletion();
+		callContext.ProcessIslands();
 	
 		return summaryFault.get() == 0;
 	}
@@ -889,6 +950,294 @@ public class DxWorld extends DBase implements DWorld {
 	public void setTaskExecutor(TaskExecutor executor) {
 		this.taskExecutor = executor;
 	}
+
+	public TaskExecutor getTaskExecutor() {
+		return taskExecutor;
+	}
+
+	/**
+	 * @return The concurrent island builder or 'null' if islands are searched sequentially.
+	 */
+	public DxParallelIslandsBuilder GetParallelIslandsBuilder() {
+		return parallelIslandsBuilder;
+	}
+
+	@Override
+	public void setParallelIslandSearch(boolean parallel) {
+		if (!parallel) {
+			parallelIslandsBuilder = null;
+		} else if (parallelIslandsBuilder == null) {
+			parallelIslandsBuilder = new DxParallelIslandsBuilder(this);
+		}
+	}
+
+	@Override
+	public boolean getParallelIslandSearch() {
+		return parallelIslandsBuilder != null;
+	}
+
+	/**
+	 * @return The persistent islands or 'null' if islands are searched in every step.
+	 */
+	public DxIslandCache GetIslandCache() {
+		return islandCache;
+	}
+
+	@Override
+	public void setPersistentIslands(boolean persistent) {
+		if (!persistent) {
+			if (islandCache != null) {
+				islandCache.clear();
+				islandCache = null;
+			}
+		} else if (islandCache == null) {
+			islandCache = new DxIslandCache(this);
+		}
+	}
+
+	@Override
+	public boolean getPersistentIslands() {
+		return islandCache != null;
+	}
+
+	@Override
+	public int getNumBodies() {
+		return nb;
+	}
+
+	@Override
+	public int getBodyStateSize(int layout) {
+		int size = 0;
+		if ((layout & BODY_STATE_POSITION) != 0) size += 3;
+		if ((layout & BODY_STATE_QUATERNION) != 0) size += 4;
+		if ((layout & BODY_STATE_LINEAR_VEL) != 0) size += 3;
+		if ((layout & BODY_STATE_ANGULAR_VEL) != 0) size += 3;
+		return size;
+	}
+
+	private static int put(double[] dst, int i, DVector3C v) {
+		dst[i] = v.get0();
+		dst[i + 1] = v.get1();
+		dst[i + 2] = v.get2();
+		return i + 3;
+	}
+
+	@Override
+	public int exportBodyStates(double[] dst, int offset, int layout) {
+		dUASSERT(offset >= 0 && dst.length - offset >= nb * getBodyStateSize(layout),
+				"buffer too small");
+		int i = offset;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((layout & BODY_STATE_POSITION) != 0) {
+				i = put(dst, i, b._posr.pos);
+			}
+			if ((layout & BODY_STATE_QUATERNION) != 0) {
+				dst[i] = b._q.get0();
+				dst[i + 1] = b._q.get1();
+				dst[i + 2] = b._q.get2();
+				dst[i + 3] = b._q.get3();
+				i += 4;
+			}
+			if ((layout & BODY_STATE_LINEAR_VEL) != 0) {
+				i = put(dst, i, b.lvel);
+			}
+			if ((layout & BODY_STATE_ANGULAR_VEL) != 0) {
+				i = put(dst, i, b.avel);
+			}
+		}
+		return nb;
+	}
+
+	private static int put(DoubleBuffer dst, int i, DVector3C v) {
+		dst.put(i, v.get0());
+		dst.put(i + 1, v.get1());
+		dst.put(i + 2, v.get2());
+		return i + 3;
+	}
+
+	// Positions are set via Buffer, the covariant overrides do not exist in Java 8.
+
+	@Override
+	public int exportBodyStates(DoubleBuffer dst, int layout) {
+		int size = nb * getBodyStateSize(layout);
+		dUASSERT(dst.remaining() >= size, "buffer too small");
+		int start = dst.position();
+		if (dst.hasArray()) {
+			exportBodyStates(dst.array(), dst.arrayOffset() + start, layout);
+			((Buffer) dst).position(start + size);
+			return nb;
+		}
+		int i = start;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((layout & BODY_STATE_POSITION) != 0) {
+				i = put(dst, i, b._posr.pos);
+			}
+			if ((layout & BODY_STATE_QUATERNION) != 0) {
+				dst.put(i, b._q.get0());
+				dst.put(i + 1, b._q.get1());
+				dst.put(i + 2, b._q.get2());
+				dst.put(i + 3, b._q.get3());
+				i += 4;
+			}
+			if ((layout & BODY_STATE_LINEAR_VEL) != 0) {
+				i = put(dst, i, b.lvel);
+			}
+			if ((layout & BODY_STATE_ANGULAR_VEL) != 0) {
+				i = put(dst, i, b.avel);
+			}
+		}
+		((Buffer) dst).position(i);
+		return nb;
+	}
+
+	@Override
+	public int exportBodyStates(ByteBuffer dst, int layout) {
+		DoubleBuffer doubles = dst.asDoubleBuffer();
+		exportBodyStates(doubles, layout);
+		((Buffer) dst).position(dst.position() + doubles.position() * 8);
+		return nb;
+	}
+
+	@Override
+	public int importBodyStates(double[] src, int offset, int layout) {
+		dUASSERT(offset >= 0 && src.length - offset >= nb * getBodyStateSize(layout),
+				"buffer too small");
+		int i = offset;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((layout & BODY_STATE_POSITION) != 0) {
+				b.dBodySetPosition(src[i], src[i + 1], src[i + 2]);
+				i += 3;
+			}
+			if ((layout & BODY_STATE_QUATERNION) != 0) {
+				b.dBodySetQuaternion(src[i], src[i + 1], src[i + 2], src[i + 3]);
+				i += 4;
+			}
+			if ((layout & BODY_STATE_LINEAR_VEL) != 0) {
+				b.dBodySetLinearVel(src[i], src[i + 1], src[i + 2]);
+				i += 3;
+			}
+			if ((layout & BODY_STATE_ANGULAR_VEL) != 0) {
+				b.dBodySetAngularVel(src[i], src[i + 1], src[i + 2]);
+				i += 3;
+			}
+		}
+		return nb;
+	}
+
+	@Override
+	public int importBodyStates(DoubleBuffer src, int layout) {
+		int size = nb * getBodyStateSize(layout);
+		dUASSERT(src.remaining() >= size, "buffer too small");
+		int start = src.position();
+		if (src.hasArray()) {
+			importBodyStates(src.array(), src.arrayOffset() + start, layout);
+			((Buffer) src).position(start + size);
+			return nb;
+		}
+		int i = start;
+		for (DxBody b = firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			if ((layout & BODY_STATE_POSITION) != 0) {
+				b.dBodySetPosition(src.get(i), src.get(i + 1), src.get(i + 2));
+				i += 3;
+			}
+			if ((layout & BODY_STATE_QUATERNION) != 0) {
+				b.dBodySetQuaternion(src.get(i), src.get(i + 1), src.get(i + 2), src.get(i + 3));
+				i += 4;
+			}
+			if ((layout & BODY_STATE_LINEAR_VEL) != 0) {
+				b.dBodySetLinearVel(src.get(i), src.get(i + 1), src.get(i + 2));
+				i += 3;
+			}
+			if ((layout & BODY_STATE_ANGULAR_VEL) != 0) {
+				b.dBodySetAngularVel(src.get(i), src.get(i + 1), src.get(i + 2));
+				i += 3;
+			}
+		}
+		((Buffer) src).position(i);
+		return nb;
+	}
+
+	@Override
+	public int importBodyStates(ByteBuffer src, int layout) {
+		DoubleBuffer doubles = src.asDoubleBuffer();
+		importBodyStates(doubles, layout);
+		((Buffer) src).position(src.position() + doubles.position() * 8);
+		return nb;
+	}
+
+	@Override
+	public void saveSnapshot(DWorldSnapshot snapshot) {
+		((DxWorldSnapshot) snapshot).save(this);
+	}
+
+	@Override
+	public void restoreSnapshot(DWorldSnapshot snapshot) {
+		((DxWorldSnapshot) snapshot).restore(this);
+	}
+
+	void SaveContactCache(DxWorldSnapshot snapshot) {
+		contactCache.save(snapshot);
+	}
+
+	void RestoreContactCache(DxWorldSnapshot snapshot) {
+		contactCache.restore(snapshot);
+	}
+
+	/**
+	 * Create an empty world with the parameters of this world.
+	 * The task executor is not shared, the new world steps on the
+	 * calling thread until another executor is set.
+	 * @return new world
+	 */
+	DxWorld dWorldCopyParameters()
+	{
+		DxWorld w = dWorldCreate();
+		w.gravity.set(gravity);
+		w.global_erp = global_erp;
+		w.global_cfm = global_cfm;
+		w.adis.set(adis);
+		w.body_flags = body_flags;
+		w.islands_max_threads = islands_max_threads;
+		w.qs.num_iterations = qs.num_iterations;
+		w.qs.w = qs.w;
+		w.qs.colored_sor = qs.colored_sor;
+		w.qs.seed.set(qs.seed.get());
+		w.qs.warm_starting = qs.warm_starting;
+		w.qs.tolerance = qs.tolerance;
+		w.contactp.max_vel = contactp.max_vel;
+		w.contactp.min_depth = contactp.min_depth;
+		w.dampingp.set(dampingp);
+		w.max_angular_speed = max_angular_speed;
+		w.userdata = userdata;
+		w.contactCache.setMaxDistance(contactCache.getMaxDistance());
+		w.setParallelIslandSearch(getParallelIslandSearch());
+		w.setPersistentIslands(getPersistentIslands());
+		return w;
+	}
+
+	/**
+	 * @return The contact impulses of the previous step or 'null' if warm starting is disabled.
+	 */
+	public DxContactCache GetContactCache() {
+		return qs.warm_starting ? contactCache : null;
+	}
+
+	private void ResetQuickStepIterations(int islandCount) {
+		if (quickStepIterations.length < islandCount) {
+			quickStepIterations = new int[islandCount];
+		} else {
+			Arrays.fill(quickStepIterations, 0, islandCount, 0);
+		}
+		quickStepIslandCount = islandCount;
+	}
+
+	/**
+	 * Record the number of SOR iterations used for an island.
+	 * Each island is only written by the thread that steps it.
+	 */
+	public void SetQuickStepIterations(int island, int iterations) {
+		quickStepIterations[island] = iterations;
+	}
 	@Override
 	public void setGravity (double x, double y, double z)
 	{ dWorldSetGravity (x,y,z); }
@@ -932,6 +1281,39 @@ public class DxWorld extends DBase implements DWorld {
 	@Override
 	public double getQuickStepW() 
 	{ return dWorldGetQuickStepW (); }
+	@Override
+	public void setQuickStepColoredSOR(boolean colored)
+	{ dWorldSetQuickStepColoredSOR (colored); }
+	@Override
+	public boolean getQuickStepColoredSOR()
+	{ return dWorldGetQuickStepColoredSOR (); }
+	@Override
+	public void setQuickStepRandomSeed(long seed)
+	{ dWorldSetQuickStepRandomSeed (seed); }
+	@Override
+	public long getQuickStepRandomSeed()
+	{ return dWorldGetQuickStepRandomSeed (); }
+	@Override
+	public void setQuickStepWarmStarting(boolean warmStarting)
+	{ dWorldSetQuickStepWarmStarting (warmStarting); }
+	@Override
+	public boolean getQuickStepWarmStarting()
+	{ return dWorldGetQuickStepWarmStarting (); }
+	@Override
+	public void setQuickStepTolerance(double tolerance)
+	{ dWorldSetQuickStepTolerance (tolerance); }
+	@Override
+	public double getQuickStepTolerance()
+	{ return dWorldGetQuickStepTolerance (); }
+	@Override
+	public int[] getQuickStepIterationsUsed()
+	{ return Arrays.copyOf(quickStepIterations, quickStepIslandCount); }
+	@Override
+	public void setQuickStepWarmStartingDistance(double distance)
+	{ contactCache.setMaxDistance(distance); }
+	@Override
+	public double getQuickStepWarmStartingDistance()
+	{ return contactCache.getMaxDistance(); }
 
 	@Override
 	public void  setAutoDisableLinearThreshold (double threshold) 
@@ -0,0 +1,184 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorldCopy;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointContact;
+
+/**
+ * Deep copy of a world and a space.
+ * <p>
+ * Bodies, joints and geoms are created in the same order as in the original,
+ * so the copy processes them in the same order during collision and
+ * stepping. Immutable shape data (trimesh, heightfield and convex data) is
+ * shared, everything else is copied.
+ */
+public final class DxWorldCopy implements DWorldCopy {
+
+	private final IdentityHashMap<DxBody, DxBody> bodies = new IdentityHashMap<>();
+	private final IdentityHashMap<DxJoint, DxJoint> joints = new IdentityHashMap<>();
+	private final IdentityHashMap<DxGeom, DxGeom> geoms = new IdentityHashMap<>();
+	private final DxWorld world;
+	private final DxSpace space;
+
+	private DxWorldCopy(DxWorld w, DxSpace s) {
+		world = w.dWorldCopyParameters();
+
+		// object lists are prepended to, so copy them starting with the last one
+		List<DxBody> bl = new ArrayList<>(w.nb);
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			bl.add(b);
+		}
+		for (int i = bl.size() - 1; i >= 0; i--) {
+			DxBody b = bl.get(i);
+			bodies.put(b, b.dBodyCopy(world));
+		}
+
+		space = s != null ? copySpace(s, null) : null;
+		// geoms of the bodies that are not in the space
+		for (int i = bl.size() - 1; i >= 0; i--) {
+			for (DxGeom g = bl.get(i).geom; g != null; g = g.dGeomGetBodyNext()) {
+				if (!geoms.containsKey(g)) {
+					copyGeom(g, null);
+				}
+			}
+		}
+
+		List<DxJoint> jl = new ArrayList<>(w.nj);
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			// grouped joints, i.e. usually contact joints, belong to a joint group
+			// that is not copied
+			if (!j.isFlagsInGroup()) {
+				jl.add(j);
+			}
+		}
+		for (int i = jl.size() - 1; i >= 0; i--) {
+			copyJoint(jl.get(i));
+		}
+	}
+
+	public static DxWorldCopy copy(DxWorld w, DxSpace s) {
+		dUASSERT(s == null || s.parent_space == null, "space must be a top level space");
+		// check all geoms before anything is created
+		if (s != null) {
+			checkCopySupported(s);
+		}
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			for (DxGeom g = b.geom; g != null; g = g.dGeomGetBodyNext()) {
+				checkCopySupported(g);
+			}
+		}
+		return new DxWorldCopy(w, s);
+	}
+
+	private static void checkCopySupported(DxGeom g) {
+		dUASSERT(g.isCopySupported(), g.getClass().getSimpleName() + " can not be copied");
+		if (g instanceof DxSpace) {
+			for (DxGeom c = ((DxSpace) g)._first; c != null; c = c.getNext()) {
+				checkCopySupported(c);
+			}
+		}
+	}
+
+	private DxSpace copySpace(DxSpace src, DxSpace parent) {
+		DxSpace s = (DxSpace) copyGeom(src, parent);
+		s.cleanup = src.cleanup;
+		s.sublevel = src.sublevel;
+		List<DxGeom> gl = new ArrayList<>(src.count);
+		for (DxGeom g = src._first; g != null; g = g.getNext()) {
+			gl.add(g);
+		}
+		for (int i = gl.size() - 1; i >= 0; i--) {
+			DxGeom g = gl.get(i);
+			if (g instanceof DxSpace) {
+				copySpace((DxSpace) g, s);
+			} else {
+				copyGeom(g, s);
+			}
+		}
+		return s;
+	}
+
+	private DxGeom copyGeom(DxGeom src, DxSpace parent) {
+		DxBody b = null;
+		if (src.body != null) {
+			b = bodies.get(src.body);
+			dUASSERT(b != null, "geom is attached to a body of another world");
+		}
+		DxGeom g = src.copy(parent);
+		g.copyState(src, b);
+		geoms.put(src, g);
+		return g;
+	}
+
+	private void copyJoint(DxJoint src) {
+		DxJoint j = src.copy(world);
+		j.attachCopy(bodies.get(src.node[0].body), bodies.get(src.node[1].body));
+		if (j instanceof DxJointContact) {
+			DContactGeom cg = ((DxJointContact) j).getContact().geom;
+			cg.g1 = geoms.get(cg.g1);
+			cg.g2 = geoms.get(cg.g2);
+		}
+		joints.put(src, j);
+	}
+
+	@Override
+	public DWorld getWorld() {
+		return world;
+	}
+
+	@Override
+	public DSpace getSpace() {
+		return space;
+	}
+
+	@Override
+	public DBody getBody(DBody original) {
+		return bodies.get(original);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends DJoint> T getJoint(T original) {
+		return (T) joints.get(original);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends DGeom> T getGeom(T original) {
+		return (T) geoms.get(original);
+	}
+}
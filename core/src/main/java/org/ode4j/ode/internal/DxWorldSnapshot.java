@@ -0,0 +1,271 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.ode4j.ode.internal.Common.dUASSERT;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DMatrix3C;
+import org.ode4j.math.DVector3;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DWorldSnapshot;
+import org.ode4j.ode.internal.joints.DxJoint;
+
+/**
+ * Binary snapshot of the dynamic state of a world.
+ * <p>
+ * Numbers are written to a reusable heap buffer. References to the bodies,
+ * joints and geoms of the world are kept in a separate table, they are used
+ * to check on restore that the world still contains the same objects and to
+ * restore the geom pairs of the contact cache.
+ */
+public final class DxWorldSnapshot implements DWorldSnapshot {
+
+	// bytes per body without the auto-disable sample buffers
+	private static final int BODY_BYTES = 5 * 4 + 8 * (3 + 4 + 9 + 3 + 3 + 3 + 3 + 1);
+	private static final int JOINT_BYTES = 4 * 3 + 8 * (6 + 12);
+
+	private ByteBuffer buf = ByteBuffer.allocate(1024);
+	private Object[] refs = new Object[64];
+	private int refCount;
+	private int refPos;
+	private DxWorld world;
+
+	@Override
+	public int getSize() {
+		return world == null ? 0 : buf.position();
+	}
+
+	// *********************************************
+	// Primitive access for the parts of the world.
+	// *********************************************
+
+	private void ensure(int bytes) {
+		if (buf.remaining() < bytes) {
+			int capacity = Math.max(buf.capacity() * 2, buf.position() + bytes);
+			ByteBuffer grown = ByteBuffer.allocate(capacity);
+			buf.flip();
+			grown.put(buf);
+			buf = grown;
+		}
+	}
+
+	public void putInt(int v) {
+		ensure(4);
+		buf.putInt(v);
+	}
+
+	public void putDouble(double v) {
+		ensure(8);
+		buf.putDouble(v);
+	}
+
+	public void putRef(Object o) {
+		if (refCount == refs.length) {
+			refs = Arrays.copyOf(refs, refCount * 2);
+		}
+		refs[refCount++] = o;
+	}
+
+	public int getInt() {
+		return buf.getInt();
+	}
+
+	public double getDouble() {
+		return buf.getDouble();
+	}
+
+	public Object getRef() {
+		return refs[refPos++];
+	}
+
+	private void putVector(DVector3C v) {
+		buf.putDouble(v.get0());
+		buf.putDouble(v.get1());
+		buf.putDouble(v.get2());
+	}
+
+	private void getVector(DVector3 v) {
+		v.set(buf.getDouble(), buf.getDouble(), buf.getDouble());
+	}
+
+	// *********************************************
+	// World state
+	// *********************************************
+
+	void save(DxWorld w) {
+		// clear references of a previous save, so that they do not keep objects alive
+		Arrays.fill(refs, 0, refCount, null);
+		refCount = 0;
+		buf.clear();
+		world = w;
+
+		ensure(8 + 4 + 4);
+		buf.putLong(w.qs.seed.get());
+		buf.putInt(w.nb);
+		buf.putInt(w.nj);
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			putRef(b);
+			int samples = b.average_lvel_buffer != null ? b.average_lvel_buffer.length : 0;
+			ensure(BODY_BYTES + samples * 6 * 8);
+			// only the enabled state, the other flags are settings of the body
+			buf.putInt(b.flags & DxBody.dxBodyDisabled);
+			putVector(b._posr.pos);
+			buf.putDouble(b._q.get0());
+			buf.putDouble(b._q.get1());
+			buf.putDouble(b._q.get2());
+			buf.putDouble(b._q.get3());
+			DMatrix3C R = b._posr.R();
+			for (int i = 0; i < 3; i++) {
+				for (int j = 0; j < 3; j++) {
+					buf.putDouble(R.get(i, j));
+				}
+			}
+			putVector(b.lvel);
+			putVector(b.avel);
+			putVector(b.facc);
+			putVector(b.tacc);
+			buf.putDouble(b.adis_timeleft);
+			buf.putInt(b.adis_stepsleft);
+			buf.putInt(b.average_counter);
+			buf.putInt(b.average_ready);
+			buf.putInt(samples);
+			for (int i = 0; i < samples; i++) {
+				putVector(b.average_lvel_buffer[i]);
+				putVector(b.average_avel_buffer[i]);
+			}
+		}
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			putRef(j);
+			ensure(JOINT_BYTES);
+			buf.putInt(j.isEnabled() ? 1 : 0);
+			for (int i = 0; i < 6; i++) {
+				buf.putDouble(j.lambda[i]);
+			}
+			DJoint.DJointFeedback fb = j.feedback;
+			buf.putInt(fb != null ? 1 : 0);
+			if (fb != null) {
+				putVector(fb.f1);
+				putVector(fb.t1);
+				putVector(fb.f2);
+				putVector(fb.t2);
+			}
+		}
+		w.SaveContactCache(this);
+	}
+
+	void restore(DxWorld w) {
+		dUASSERT(world == w, "snapshot was not saved from this world");
+		int size = buf.position();
+		buf.flip();
+		try {
+			restoreInternal(w);
+		} finally {
+			buf.limit(buf.capacity());
+			buf.position(size);
+		}
+	}
+
+	private void restoreInternal(DxWorld w) {
+		long seed = buf.getLong();
+		int nb = buf.getInt();
+		int nj = buf.getInt();
+		// check the structure before anything is changed
+		dUASSERT(nb == w.nb && nj == w.nj, "bodies or joints were added or removed");
+		refPos = 0;
+		for (DxBody b = w.firstbody.get(); b != null; b = (DxBody) b.getNext()) {
+			dUASSERT(refs[refPos++] == b, "bodies were added or removed");
+		}
+		for (DxJoint j = w.firstjoint.get(); j != null; j = (DxJoint) j.getNext()) {
+			dUASSERT(refs[refPos++] == j, "joints were added or removed");
+		}
+
+		w.qs.seed.set(seed);
+		refPos = 0;
+		for (int n = 0; n < nb; n++) {
+			DxBody b = (DxBody) getRef();
+			b.flags = (b.flags & ~DxBody.dxBodyDisabled) | buf.getInt();
+			getVector(b._posr.pos);
+			b._q.set(buf.getDouble(), buf.getDouble(), buf.getDouble(), buf.getDouble());
+			DMatrix3 R = b._posr.Rw();
+			for (int i = 0; i < 3; i++) {
+				for (int j = 0; j < 3; j++) {
+					R.set(i, j, buf.getDouble());
+				}
+			}
+			getVector(b.lvel);
+			getVector(b.avel);
+			getVector(b.facc);
+			getVector(b.tacc);
+			b.adis_timeleft = buf.getDouble();
+			b.adis_stepsleft = buf.getInt();
+			b.average_counter = buf.getInt();
+			b.average_ready = buf.getInt();
+			int samples = buf.getInt();
+			if (samples > 0 && (b.average_lvel_buffer == null || b.average_lvel_buffer.length != samples)) {
+				b.average_lvel_buffer = DVector3.newArray(samples);
+				b.average_avel_buffer = DVector3.newArray(samples);
+			}
+			for (int i = 0; i < samples; i++) {
+				getVector(b.average_lvel_buffer[i]);
+				getVector(b.average_avel_buffer[i]);
+			}
+			// notify all attached geoms that this body has moved
+			for (DxGeom geom = b.geom; geom != null; geom = geom.dGeomGetBodyNext()) {
+				geom.dGeomMoved();
+			}
+		}
+		for (int n = 0; n < nj; n++) {
+			DxJoint j = (DxJoint) getRef();
+			boolean enabled = buf.getInt() != 0;
+			if (enabled != j.isEnabled()) {
+				// this also updates persistent islands
+				if (enabled) {
+					j.enable();
+				} else {
+					j.disable();
+				}
+			}
+			for (int i = 0; i < 6; i++) {
+				j.lambda[i] = buf.getDouble();
+			}
+			if (buf.getInt() != 0) {
+				if (j.feedback == null) {
+					// the feedback object was removed, skip its values
+					buf.position(buf.position() + 12 * 8);
+				} else {
+					DJoint.DJointFeedback fb = j.feedback;
+					getVector(fb.f1);
+					getVector(fb.t1);
+					getVector(fb.f2);
+					getVector(fb.t2);
+				}
+			}
+		}
+		w.RestoreContactCache(this);
+	}
+}
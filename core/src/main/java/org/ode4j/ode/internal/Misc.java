@@ -61,12 +61,23 @@ public class Misc {
 	//unsigned long dRand()
 	public static long
 	dRand()
+	{
+		return dRand(seed);
+	}
+
+
+	/**
+	 * Like {@link #dRand()}, but uses the given seed instead of the global one.
+	 * @param s seed
+	 * @return random number
+	 */
+	static long dRand(AtomicLong s)
 	{
 	    long origSeed, newSeed;
         do {
-            origSeed = seed.get();
+            origSeed = s.get();
             newSeed = (1664525L * origSeed + 1013904223L) & 0xffffffffL;
-        } while (!seed.compareAndSet(origSeed, newSeed));
+        } while (!s.compareAndSet(origSeed, newSeed));
         return newSeed;
 //		seed = (1664525L*seed + 1013904223L) & 0xffffffffL;
 	}
@@ -122,11 +133,23 @@ public class Misc {
 	 * @return random value
 	 */
 	public static int dRandInt (long n)
+	{
+		return dRandInt(seed, n);
+	}
+
+
+	/**
+	 * Like {@link #dRandInt(long)}, but uses the given seed instead of the global one.
+	 * @param s seed
+	 * @param n max value
+	 * @return random value
+	 */
+	static int dRandInt (AtomicLong s, long n)
 	{
 	    long result;
 	    // Since there is no memory barrier macro in ODE assign via volatile variable 
 	    // to prevent compiler reusing seed as value of `r'
-	    long raw_r = dRand();
+	    long raw_r = dRand(s);
 	    long r = raw_r;
 	    
 	    long un = n;
@@ -24,6 +24,8 @@
  *************************************************************************/
 package org.ode4j.ode.internal;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DMatrix3C;
 import org.ode4j.math.DVector3;
@@ -99,10 +101,20 @@ public class Objects_H {
 	public static class dxQuickStepParameters {
 		public int num_iterations;		// number of SOR iterations to perform
 		public double w;			// the SOR over-relaxation parameter
+		public boolean colored_sor;	// process independent rows in parallel batches
+		public boolean warm_starting;	// start with the constraint forces of the previous step
+		public double tolerance;	// stop iterating when no lambda changes by more than this, 0 to disable
+		// random number seed for reordering the constraints, per world so that
+		// worlds can be stepped in parallel with reproducible results
+		public final AtomicLong seed;
 
 	    dxQuickStepParameters() {
 	    	num_iterations = 20;
 	    	w = 1.3;
+	    	colored_sor = false;
+	    	warm_starting = false;
+	    	tolerance = 0;
+	    	seed = new AtomicLong(Misc.dRandGetSeed());
 	    }
 	}
 
@@ -108,6 +108,18 @@ dmaxcallcountestimate_fn_t {
 	{
 		DxJoint joint;
 		final DxJoint.Info1 info = new DxJoint.Info1();
+
+		static final DxWorldProcessMemArena.ObjectArrayFactory<dJointWithInfo1> FACTORY =
+				new DxWorldProcessMemArena.ObjectArrayFactory<dJointWithInfo1>() {
+			@Override
+			public dJointWithInfo1[] newArray(int size) {
+				return new dJointWithInfo1[size];
+			}
+			@Override
+			public dJointWithInfo1 newElement() {
+				return new dJointWithInfo1();
+			}
+		};
 	}
 
 	// #define AMATRIX_ALIGNMENT   dMAX(64, EFFICIENT_ALIGNMENT)
@@ -602,16 +614,17 @@ dmaxcallcountestimate_fn_t {
 		int nb = callContext.m_islandBodiesCount();
 		int _nj = callContext.m_islandJointsCount();
 
-		memarena.dummy();
-		double[] invI = new double[dM3E__MAX * nb];//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
+		double[] invI = memarena.AllocateArrayDReal(dM3E__MAX * nb);//memarena.AllocateArray<dReal> (3*4*(size_t)nb);
 		// Reserve twice as much memory and start from the middle so that regardless of 
 		// what direction the array grows to there would be sufficient room available.
 		final int ji_reserve_count = 2 * _nj;
-		memarena.dummy();
-		dJointWithInfo1[] jointinfosA = new dJointWithInfo1[ji_reserve_count];//memarena.AllocateArray<dJointWithInfo1>(ji_reserve_count);
-		//TZ: init
-		for (int i = 0; i < jointinfosA.length; i++) {
-			jointinfosA[i] = new dJointWithInfo1();
+		dJointWithInfo1[] jointinfosA = memarena.AllocateArrayOfObjects(ji_reserve_count, dJointWithInfo1.FACTORY);//memarena.AllocateArray<dJointWithInfo1>(ji_reserve_count);
+		// init, the array may be longer than ji_reserve_count
+		for (int i = 0; i < ji_reserve_count; i++) {
+			dJointWithInfo1 ji = jointinfosA[i];
+			ji.joint = null;
+			ji.info.m = 0;
+			ji.info.nub = 0;
 		}
 		int jointinfosOfs = 0;
 
@@ -852,6 +865,8 @@ dmaxcallcountestimate_fn_t {
 		dJointWithInfo1[] jointinfosA = callContext.m_jointinfosA;
 		int jiP = callContext.m_jointinfosOfs;
 		int _nj = callContext.m_stepperCallContext.m_islandJointsCount();
+		// the array from the arena may be longer than requested
+		final int jointinfosEnd = 2 * _nj + jiP;
 
 		// get m = total constraint dimension, nub = number of unbounded variables.
 		// create constraint offset array and number-of-rows array for all joints.
@@ -875,7 +890,7 @@ dmaxcallcountestimate_fn_t {
 			//	      dJointWithInfo1 *jicurr = jointiinfos + lcp_end;
 			//	      dxJoint *const *const _jend = _joint + _nj;
 			//	      dxJoint *const *_jcurr = _joint;
-			dJointWithInfo1 jicurrO = jointinfosA.length > 0 ? jointinfosA[lcp_end+jiP] : null;
+			dJointWithInfo1 jicurrO = jointinfosEnd > 0 ? jointinfosA[lcp_end+jiP] : null;
 			int jicurrP = lcp_end;
 			final int _jend = _nj; 
 			int _jcurrP = 0;
@@ -885,7 +900,7 @@ dmaxcallcountestimate_fn_t {
 				// Switch to growing array forward
 				{
 					boolean fwd_end_reached = false;
-					dJointWithInfo1 jimixendO = jointinfosA.length > 0 ? jointinfosA[mix_end+jiP] : null;
+					dJointWithInfo1 jimixendO = jointinfosEnd > 0 ? jointinfosA[mix_end+jiP] : null;
 					int jimixendP = mix_end;
 					while (true) {  // jicurr=dest, _jcurr=src
 						if (_jcurrP == _jend) {
@@ -902,7 +917,7 @@ dmaxcallcountestimate_fn_t {
 							if (jicurrO.info.nub == 0) { // A lcp info - a correct guess!!!
 								jicurrO.joint = j;
 								++jicurrP;
-								jicurrO = (jicurrP+jiP) < jointinfosA.length ? jointinfosA[jicurrP+jiP] : null;//TZ
+								jicurrO = (jicurrP+jiP) < jointinfosEnd ? jointinfosA[jicurrP+jiP] : null;//TZ
 							} else if (jicurrO.info.nub < jicurrO.info.m) { // A mixed case
 								if (unb_start == mix_start) { // no unbounded infos yet - just move to opposite side of mixed-s
 									unb_start = mix_start = mix_start - 1;
@@ -1088,8 +1103,7 @@ dmaxcallcountestimate_fn_t {
 		// if there are constraints, compute constrForce
 		if (m > 0) {
 			//mindex = memarena->AllocateArray<unsigned int>((size_t)(nj + 1));
-			memarena.dummy();
-			mindex = new int[nj + 1];
+			mindex = memarena.AllocateArrayInt(nj + 1);
 			{
 				//unsigned int *mcurr = mindex;
 				int[] mcurrA = mindex;
@@ -25,6 +25,8 @@ package org.ode4j.ode.internal.aabbtree;
 
 import java.util.Arrays;
 
+import org.ode4j.ode.DBhvSpace.BUILD;
+
 /*
  * Based on https://github.com/turbulenz/turbulenz_engine/blob/master/tslib/aabbtree.ts
  */
@@ -32,6 +34,14 @@ public class AABBTree<T> {
 
     public static final int UNDEFINED_INDEX = -1;
     private static final int FREE_NODES_POOL_SIZE = 100;
+    /**
+     * SAH trees: A subtree is rebuilt rather than refitted when more than
+     * this fraction of its leaves has left the fat bounds of its parent since
+     * the subtree was built. A rebuild costs about log(n) refits of the
+     * subtree, but every escaped leaf enlarges the bounds of all its
+     * ancestors and makes queries visit nodes that they could skip.
+     */
+    private static final double REBUILD_VIOLATION_RATE = 0.25;
 
     private final ExternalObjectHandler<T> externalObjectHandler;
     private final int numNodesLeaf;
@@ -47,14 +57,52 @@ public class AABBTree<T> {
     private int numExternalNodes;
     private int startUpdate;
     private int endUpdate;
-    private boolean highQuality;
     private int nodesStack[];
 
-    @SuppressWarnings("unchecked")
+    private final Sort sort;
+    // SAH: the split positions are not the median, subtrees are rebuilt on updates
+    private final boolean adaptive;
+    private boolean parallelBuild;
+    // split positions for recursiveBuild() and predictNumNodes(), see Sort.Build
+    private int[] splitsLeft = new int[0];
+    private int[] splitsRight = new int[0];
+    private boolean useSplits;
+    // SAH: indices of leaves that left the bounds of their parent
+    private int[] violations = new int[16];
+    private int numViolations;
+    private AABBTreeNode<T>[] subtreeNodes;
+
     public AABBTree(ExternalObjectHandler<T> externalObjectHandler, int numNodesLeaf, boolean highQuality, double fatAabbMargin) {
+        this(externalObjectHandler, numNodesLeaf, highQuality ? BUILD.HIGH_QUALITY : BUILD.LOW_QUALITY, fatAabbMargin);
+    }
+
+    /**
+     * @param externalObjectHandler handler
+     * @param numNodesLeaf max number of leaves per leaf group
+     * @param build tree builder. With SAH, updates decide per subtree
+     * whether to refit or rebuild it.
+     * @param fatAabbMargin margin of leaf groups
+     */
+    @SuppressWarnings("unchecked")
+    public AABBTree(ExternalObjectHandler<T> externalObjectHandler, int numNodesLeaf, BUILD build,
+            double fatAabbMargin) {
         this.externalObjectHandler = externalObjectHandler;
         this.numNodesLeaf = numNodesLeaf;
-        this.highQuality = highQuality;
+        switch (build) {
+        case HIGH_QUALITY:
+            sort = HQSort.INSTANCE;
+            break;
+        case SAH:
+            sort = SAHSort.INSTANCE;
+            break;
+        case MORTON:
+            sort = MortonSort.INSTANCE;
+            break;
+        default:
+            sort = LQSort.INSTANCE;
+            break;
+        }
+        this.adaptive = build == BUILD.SAH;
         this.fatAabbMargin = fatAabbMargin;
         startUpdate = 0x7FFFFFFF;
         endUpdate = -0x7FFFFFFF;
@@ -62,6 +110,18 @@ public class AABBTree<T> {
         nodes = (AABBTreeNode<T>[]) new AABBTreeNode<?>[FREE_NODES_POOL_SIZE];
     }
 
+    /**
+     * @param parallelBuild Sort large trees with ForkJoin tasks of the
+     * common pool when the tree is rebuilt.
+     */
+    public void setParallelBuild(boolean parallelBuild) {
+        this.parallelBuild = parallelBuild;
+    }
+
+    public boolean getParallelBuild() {
+        return parallelBuild;
+    }
+
     private void allocateNodes(int size) {
         if (nodes.length < size + FREE_NODES_POOL_SIZE) {
             nodes = Arrays.copyOf(nodes, size + FREE_NODES_POOL_SIZE);
@@ -143,7 +203,15 @@ public class AABBTree<T> {
 
             if (doUpdate) {
                 node.bounds(min0, min1, min2, max0, max1, max2);
-                if (!needsRebuild && endNode > 1) {
+                if (adaptive) {
+                    if (!needsRebuild && endNode > 1) {
+                        AABBTreeNode<T> parent = findParent(index);
+                        if (parent.minX > min0 || parent.minY > min1 || parent.minZ > min2 || parent.maxX < max0
+                                || parent.maxY < max1 || parent.maxZ < max2) {
+                            addViolation(index);
+                        }
+                    }
+                } else if (!needsRebuild && endNode > 1) {
                     numUpdates++;
                     if (!needsRebound) {
                         // force a rebound when things change too much
@@ -187,6 +255,9 @@ public class AABBTree<T> {
     }
 
     public boolean finalizeUpdate() {
+        if (!needsRebuild && needsRebound && adaptive) {
+            rebuildSubtrees();
+        }
         boolean b = needsRebuild;
         if (needsRebuild) {
             rebuild();
@@ -196,6 +267,133 @@ public class AABBTree<T> {
         return b;
     }
 
+    private void addViolation(int index) {
+        if (numViolations == violations.length) {
+            violations = Arrays.copyOf(violations, numViolations * 2);
+        }
+        violations[numViolations++] = index;
+        needsRebound = true;
+        if (startUpdate > index) {
+            startUpdate = index;
+        }
+        if (endUpdate < index) {
+            endUpdate = index;
+        }
+    }
+
+    /**
+     * Cost model of SAH trees: Rebuild the largest subtrees that have too
+     * many violations, the rest is refitted by rebound().
+     */
+    private void rebuildSubtrees() {
+        Arrays.sort(violations, 0, numViolations);
+        int n = 0;
+        for (int i = 0; i < numViolations; i++) {
+            if (n == 0 || violations[n - 1] != violations[i]) {
+                violations[n++] = violations[i];
+            }
+        }
+        numViolations = n;
+        if (numViolations > REBUILD_VIOLATION_RATE * numExternalNodes) {
+            needsRebuild = true;
+        } else {
+            visitSubtree(0);
+        }
+        numViolations = 0;
+    }
+
+    private void visitSubtree(int topNodeIndex) {
+        int escapeNodeIndex = topNodeIndex + nodes[topNodeIndex].escapeNodeOffset;
+        int numSubtreeViolations = countViolations(topNodeIndex + 1, escapeNodeIndex);
+        if (numSubtreeViolations == 0) {
+            return;
+        }
+        int numLeaves = 0;
+        for (int i = topNodeIndex + 1; i < escapeNodeIndex && i < endNode; i++) {
+            if (nodes[i].isLeaf()) {
+                numLeaves++;
+            }
+        }
+        if (numLeaves > numNodesLeaf && numSubtreeViolations > REBUILD_VIOLATION_RATE * numLeaves
+                && rebuildSubtree(topNodeIndex, escapeNodeIndex, numLeaves)) {
+            return;
+        }
+        for (int i = topNodeIndex + 1; i < escapeNodeIndex && i < endNode; i += nodes[i].escapeNodeOffset) {
+            if (!nodes[i].isLeaf()) {
+                visitSubtree(i);
+            }
+        }
+    }
+
+    private int countViolations(int startIndex, int endIndex) {
+        int first = Arrays.binarySearch(violations, 0, numViolations, startIndex);
+        int last = Arrays.binarySearch(violations, 0, numViolations, endIndex);
+        first = first >= 0 ? first : -first - 1;
+        last = last >= 0 ? last : -last - 1;
+        return last - first;
+    }
+
+    /**
+     * Rebuild a subtree in place. If the new subtree needs fewer nodes, the
+     * remaining nodes are cleared, as if their leaves had been removed.
+     * @return 'false' if the new subtree would not fit.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean rebuildSubtree(int topNodeIndex, int escapeNodeIndex, int numLeaves) {
+        if (subtreeNodes == null || subtreeNodes.length < numLeaves) {
+            subtreeNodes = (AABBTreeNode<T>[]) new AABBTreeNode<?>[numLeaves];
+        }
+        int endIndex = Math.min(escapeNodeIndex, endNode);
+        int numBuildNodes = 0;
+        for (int i = topNodeIndex + 1; i < endIndex; i++) {
+            if (nodes[i].isLeaf()) {
+                subtreeNodes[numBuildNodes++] = nodes[i];
+            }
+        }
+        sortNodes(subtreeNodes, numBuildNodes);
+        if (predictNumNodes(0, numBuildNodes, 0, false) > escapeNodeIndex - topNodeIndex) {
+            return false;
+        }
+        // the leaves are placed anew, do not reuse their slots as inner nodes
+        for (int i = topNodeIndex + 1; i < endIndex; i++) {
+            nodes[i] = null;
+        }
+        recursiveBuild(subtreeNodes, 0, numBuildNodes, topNodeIndex, false);
+        Arrays.fill(subtreeNodes, 0, numBuildNodes, null);
+
+        AABBTreeNode<T> topNode = nodes[topNodeIndex];
+        for (int i = topNodeIndex + topNode.escapeNodeOffset; i < endIndex; i++) {
+            AABBTreeNode<T> node = allocateNode(0, 0, 0, 0, 0, 0, 1, null, false);
+            node.clear();
+            nodes[i] = node;
+        }
+        topNode.escapeNodeOffset = escapeNodeIndex - topNodeIndex;
+        if (endIndex == endNode) {
+            while (!nodes[endNode - 1].isLeaf()) {
+                endNode--;
+            }
+        }
+        return true;
+    }
+
+    private void sortNodes(AABBTreeNode<T>[] buildNodes, int numBuildNodes) {
+        if (splitsLeft.length < numBuildNodes) {
+            splitsLeft = new int[numBuildNodes];
+            splitsRight = new int[numBuildNodes];
+        }
+        useSplits = sort.sortNodes(buildNodes, numBuildNodes, numNodesLeaf, splitsLeft, splitsRight, parallelBuild);
+    }
+
+    /**
+     * @param right 'true' if [startIndex, endIndex) is the right child range
+     */
+    private int splitIndex(int startIndex, int endIndex, boolean right) {
+        if (useSplits) {
+            return right ? splitsRight[startIndex] : splitsLeft[endIndex - 1];
+        }
+        return ((startIndex + endIndex) >> 1);
+    }
+
     private void rebound() {
         if (endNode > 1) {
             int startUpdateNodeIndex = startUpdate;
@@ -214,6 +412,9 @@ public class AABBTree<T> {
                     if (nodeIndex < endUpdateNodeIndex) {
                         if (!node.isLeaf()) {
                             if (escapeNodeIndex > startUpdateNodeIndex) {
+                                if (numNodesStack == nodesStack.length) {
+                                    nodesStack = Arrays.copyOf(nodesStack, numNodesStack * 2);
+                                }
                                 nodesStack[numNodesStack] = topNodeIndex;
                                 numNodesStack++;
                                 topNodeIndex = nodeIndex;
@@ -277,6 +478,7 @@ public class AABBTree<T> {
         needsRebuild = false;
         needsRebound = false;
         numAdds = 0;
+        numViolations = 0;
         // numUpdates = 0;
         startUpdate = 0x7FFFFFFF;
         endUpdate = -0x7FFFFFFF;
@@ -304,16 +506,14 @@ public class AABBTree<T> {
             }
 
             if (numBuildNodes > 1) {
-                if (numBuildNodes > numNodesLeaf && numAdds > 0) {
-                    if (highQuality) {
-                        HQSort.INSTANCE.sortNodes(buildNodes, numBuildNodes, numNodesLeaf);
-                    } else {
-                        LQSort.INSTANCE.sortNodes(buildNodes, numBuildNodes, numNodesLeaf);
-                    }
+                // without adds the nodes are still in the order of the last build
+                useSplits = false;
+                if (numBuildNodes > numNodesLeaf && (numAdds > 0 || adaptive)) {
+                    sortNodes(buildNodes, numBuildNodes);
                 }
-                int predictedNumNodes = predictNumNodes(0, numBuildNodes, 0);
+                int predictedNumNodes = predictNumNodes(0, numBuildNodes, 0, false);
                 allocateNodes(predictedNumNodes);
-                recursiveBuild(buildNodes, 0, numBuildNodes, 0);
+                recursiveBuild(buildNodes, 0, numBuildNodes, 0, false);
                 endNode = nodes[0].escapeNodeOffset;
             } else {
                 AABBTreeNode<T> rootNode = buildNodes[0];
@@ -328,11 +528,12 @@ public class AABBTree<T> {
         numAdds = 0;
         numUpdates = 0;
         numRemoves = 0;
+        numViolations = 0;
         startUpdate = 0x7FFFFFFF;
         endUpdate = -0x7FFFFFFF;
     }
 
-    void recursiveBuild(AABBTreeNode<T>[] buildNodes, int startIndex, int endIndex, int lastNodeIndex) {
+    void recursiveBuild(AABBTreeNode<T>[] buildNodes, int startIndex, int endIndex, int lastNodeIndex, boolean right) {
 
         int nodeIndex = lastNodeIndex;
         lastNodeIndex++;
@@ -388,13 +589,13 @@ public class AABBTree<T> {
             maxZ += fatAabbMargin;
             lastNode = nodes[lastNodeIndex];
         } else {
-            int splitPosIndex = ((startIndex + endIndex) >> 1);
+            int splitPosIndex = splitIndex(startIndex, endIndex, right);
             if ((startIndex + 1) >= splitPosIndex) {
                 AABBTreeNode<T> buildNode = buildNodes[startIndex];
                 externalObjectHandler.setSpatialIndex(buildNode.externalObject, lastNodeIndex);
                 nodes[lastNodeIndex] = buildNode; // replaceNode
             } else {
-                recursiveBuild(buildNodes, startIndex, splitPosIndex, lastNodeIndex);
+                recursiveBuild(buildNodes, startIndex, splitPosIndex, lastNodeIndex, false);
             }
             lastNode = nodes[lastNodeIndex];
             minX = lastNode.minX;
@@ -412,7 +613,7 @@ public class AABBTree<T> {
                 externalObjectHandler.setSpatialIndex(buildNode.externalObject, lastNodeIndex);
                 nodes[lastNodeIndex] = buildNode; // replaceNode
             } else {
-                recursiveBuild(buildNodes, splitPosIndex, endIndex, lastNodeIndex);
+                recursiveBuild(buildNodes, splitPosIndex, endIndex, lastNodeIndex, true);
             }
 
             lastNode = nodes[lastNodeIndex];
@@ -445,21 +646,24 @@ public class AABBTree<T> {
         }
     }
 
-    private int predictNumNodes(int startIndex, int endIndex, int lastNodeIndex) {
+    /**
+     * Must be called with the same split positions as recursiveBuild().
+     */
+    private int predictNumNodes(int startIndex, int endIndex, int lastNodeIndex, boolean right) {
         lastNodeIndex++;
         if ((startIndex + numNodesLeaf) >= endIndex) {
             lastNodeIndex += (endIndex - startIndex);
         } else {
-            int splitPosIndex = ((startIndex + endIndex) >> 1);
+            int splitPosIndex = splitIndex(startIndex, endIndex, right);
             if ((startIndex + 1) >= splitPosIndex) {
                 lastNodeIndex++;
             } else {
-                lastNodeIndex = predictNumNodes(startIndex, splitPosIndex, lastNodeIndex);
+                lastNodeIndex = predictNumNodes(startIndex, splitPosIndex, lastNodeIndex, false);
             }
             if ((splitPosIndex + 1) >= endIndex) {
                 lastNodeIndex++;
             } else {
-                lastNodeIndex = predictNumNodes(splitPosIndex, endIndex, lastNodeIndex);
+                lastNodeIndex = predictNumNodes(splitPosIndex, endIndex, lastNodeIndex, true);
             }
         }
         return lastNodeIndex;
@@ -472,6 +676,7 @@ public class AABBTree<T> {
         needsRebound = false;
         numAdds = 0;
         numUpdates = 0;
+        numViolations = 0;
         numExternalNodes = 0;
         endNode = 0;
         startUpdate = 0x7FFFFFFF;
@@ -570,4 +775,22 @@ public class AABBTree<T> {
         }
     }
 
+    public void getRayOverlappingNodes(AABBTreeRayCallback<T> callback) {
+        int endNodeIndex = endNode;
+        if (numExternalNodes > 0) {
+            int nodeIndex = 0;
+            while (nodeIndex < endNodeIndex) {
+                AABBTreeNode<T> node = nodes[nodeIndex];
+                if (callback.overlaps(node.minX, node.minY, node.minZ, node.maxX, node.maxY, node.maxZ)) {
+                    if (node.isLeaf() && externalObjectHandler.isEnabled(node.externalObject)) {
+                        callback.hit(node.externalObject);
+                    }
+                    nodeIndex++;
+                } else {
+                    nodeIndex += node.escapeNodeOffset;
+                }
+            }
+        }
+    }
+
 }
@@ -26,16 +26,17 @@ package org.ode4j.ode.internal.aabbtree;
 /*
  * Based on https://github.com/turbulenz/turbulenz_engine/blob/master/tslib/aabbtree.ts
  */
-public class HQSort extends Sort {
+public class HQSort extends PartitionSort {
 
 	final static HQSort INSTANCE = new HQSort();
 	
-	void sortNodes(AABBTreeNode<?>[] nodes, int numNodes, int numNodesLeaf) {
-		sortNodesRecursive(nodes, 0, numNodes, false, numNodesLeaf);
-	}
-
-	void sortNodesRecursive(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, boolean reverse,
-			int numNodesLeaf) {
+	/**
+	 * Median split along the axis where the children have the smallest
+	 * surface area.
+	 */
+	@Override
+	protected int split(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int depth) {
+		boolean reverse = (depth & 1) != 0;
 		int splitNodeIndex = ((startIndex + endIndex) >> 1);
 
 		nthElement(nodes, startIndex, splitNodeIndex, endIndex, 0, false);
@@ -69,13 +70,7 @@ public class HQSort extends Sort {
 		}
 
 		nthElement(nodes, startIndex, splitNodeIndex, endIndex, axis, reverse);
-		reverse = !reverse;
-		if ((startIndex + numNodesLeaf) < splitNodeIndex) {
-			sortNodesRecursive(nodes, startIndex, splitNodeIndex, reverse, numNodesLeaf);
-		}
-		if ((splitNodeIndex + numNodesLeaf) < endIndex) {
-			sortNodesRecursive(nodes, splitNodeIndex, endIndex, reverse, numNodesLeaf);
-		}
+		return splitNodeIndex;
 	}
 
 	protected double getkey(AABBTreeNode<?> node, int axis, boolean reverse) {
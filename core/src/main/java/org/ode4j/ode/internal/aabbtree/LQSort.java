@@ -26,26 +26,20 @@ package org.ode4j.ode.internal.aabbtree;
 /*
  * Based on https://github.com/turbulenz/turbulenz_engine/blob/master/tslib/aabbtree.ts
  */
-public class LQSort extends Sort {
+public class LQSort extends PartitionSort {
 
 	final static LQSort INSTANCE = new LQSort();
 
-	void sortNodes(AABBTreeNode<?>[] nodes, int numNodes, int numNodesLeaf) {
-		sortNodesRecursive(nodes, 0, numNodes, 0, false, numNodesLeaf);
-	}
-
-	void sortNodesRecursive(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int axis, boolean reverse,
-			int numNodesLeaf) {
+	/**
+	 * Median split, the axis changes from level to level: X, Z, Y, X, ...
+	 */
+	@Override
+	protected int split(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int depth) {
 		int splitNodeIndex = ((startIndex + endIndex) >> 1);
+		int axis = (2 * depth) % 3;
+		boolean reverse = (depth & 1) != 0;
 		nthElement(nodes, startIndex, splitNodeIndex, endIndex, axis, reverse);
-		axis = (axis + 2) % 3;
-		reverse = !reverse;
-		if ((startIndex + numNodesLeaf) < splitNodeIndex) {
-			sortNodesRecursive(nodes, startIndex, splitNodeIndex, axis, reverse, numNodesLeaf);
-		}
-		if ((splitNodeIndex + numNodesLeaf) < endIndex) {
-			sortNodesRecursive(nodes, splitNodeIndex, endIndex, axis, reverse, numNodesLeaf);
-		}
+		return splitNodeIndex;
 	}
 
 	/**
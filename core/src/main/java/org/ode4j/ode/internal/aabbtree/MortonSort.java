@@ -0,0 +1,109 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.aabbtree;
+
+import java.util.Arrays;
+
+/**
+ * Morton code presort.
+ * <p>
+ * The nodes are sorted once by the Morton code (Z-order) of their centers,
+ * then the tree is built with median splits. This builds much faster than
+ * the other sorts because no range is partitioned, but the tree is only
+ * as good as the Z-order curve.
+ */
+class MortonSort extends Sort {
+
+	final static MortonSort INSTANCE = new MortonSort();
+
+	@Override
+	boolean sortNodes(AABBTreeNode<?>[] nodes, int numNodes, int numNodesLeaf, int[] splitsLeft, int[] splitsRight,
+			boolean parallel) {
+		if (numNodes <= numNodesLeaf) {
+			return false;
+		}
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int n = 0; n < numNodes; n++) {
+			AABBTreeNode<?> node = nodes[n];
+			double x = node.minX + node.maxX;
+			double y = node.minY + node.maxY;
+			double z = node.minZ + node.maxZ;
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			minZ = Math.min(minZ, z);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+			maxZ = Math.max(maxZ, z);
+		}
+
+		// key = morton code | node index, use as many bits per axis as the index leaves
+		int indexBits = 32 - Integer.numberOfLeadingZeros(numNodes - 1);
+		int axisBits = Math.min(21, (63 - indexBits) / 3);
+		double cells = (1 << axisBits) - 1;
+		double scaleX = maxX > minX ? cells / (maxX - minX) : 0;
+		double scaleY = maxY > minY ? cells / (maxY - minY) : 0;
+		double scaleZ = maxZ > minZ ? cells / (maxZ - minZ) : 0;
+		long[] keys = new long[numNodes];
+		for (int n = 0; n < numNodes; n++) {
+			AABBTreeNode<?> node = nodes[n];
+			long code = spread((int) ((node.minX + node.maxX - minX) * scaleX))
+					| (spread((int) ((node.minY + node.maxY - minY) * scaleY)) << 1)
+					| (spread((int) ((node.minZ + node.maxZ - minZ) * scaleZ)) << 2);
+			keys[n] = (code << indexBits) | n;
+		}
+		if (parallel && numNodes > PARALLEL_THRESHOLD) {
+			Arrays.parallelSort(keys);
+		} else {
+			Arrays.sort(keys);
+		}
+
+		AABBTreeNode<?>[] sorted = Arrays.copyOf(nodes, numNodes);
+		long indexMask = (1L << indexBits) - 1;
+		for (int n = 0; n < numNodes; n++) {
+			nodes[n] = sorted[(int) (keys[n] & indexMask)];
+		}
+		return false;
+	}
+
+	/**
+	 * Spread the lower 21 bits of v so that there are two zero bits between
+	 * each bit.
+	 */
+	private static long spread(int v) {
+		long x = v & 0x1FFFFFL;
+		x = (x | (x << 32)) & 0x1F00000000FFFFL;
+		x = (x | (x << 16)) & 0x1F0000FF0000FFL;
+		x = (x | (x << 8)) & 0x100F00F00F00F00FL;
+		x = (x | (x << 4)) & 0x10C30C30C30C30C3L;
+		x = (x | (x << 2)) & 0x1249249249249249L;
+		return x;
+	}
+
+	@Override
+	protected int split(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int depth) {
+		return ((startIndex + endIndex) >> 1);
+	}
+
+}
@@ -0,0 +1,240 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.aabbtree;
+
+import java.util.Arrays;
+
+/**
+ * Binned surface area heuristic (SAH) sort.
+ * <p>
+ * Unlike HQSort and LQSort, which always split at the median, every range
+ * is split where the sum of the child surface areas weighted with their
+ * number of nodes is lowest. The candidate split planes are the borders of
+ * NUM_BINS bins along the centroid bounds of each axis.
+ */
+class SAHSort extends PartitionSort {
+
+	final static SAHSort INSTANCE = new SAHSort();
+
+	private static final int NUM_BINS = 16;
+	// Fall back to median splits below this depth to bound the tree depth.
+	private static final int MAX_DEPTH = 40;
+
+	/** Scratch arrays, one set per thread of a parallel sort. */
+	private static final class Bins {
+		final int[] binCount = new int[NUM_BINS];
+		final double[] binBounds = new double[NUM_BINS * 6];
+		final double[] rightArea = new double[NUM_BINS];
+		final int[] rightCount = new int[NUM_BINS];
+	}
+
+	private static final ThreadLocal<Bins> BINS = new ThreadLocal<Bins>() {
+		@Override
+		protected Bins initialValue() {
+			return new Bins();
+		}
+	};
+
+	@Override
+	protected int split(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int depth) {
+		int splitNodeIndex = depth < MAX_DEPTH ? partitionSAH(nodes, startIndex, endIndex) : -1;
+		if (splitNodeIndex < 0) {
+			splitNodeIndex = ((startIndex + endIndex) >> 1);
+			nthElement(nodes, startIndex, splitNodeIndex, endIndex, longestAxis(nodes, startIndex, endIndex), false);
+		}
+		return splitNodeIndex;
+	}
+
+	/**
+	 * @return The split position, or -1 if there is no split plane that
+	 * separates the centroids.
+	 */
+	private int partitionSAH(AABBTreeNode<?>[] nodes, int startIndex, int endIndex) {
+		Bins bins = BINS.get();
+		int[] binCount = bins.binCount;
+		double[] binBounds = bins.binBounds;
+		double[] rightArea = bins.rightArea;
+		int[] rightCount = bins.rightCount;
+		double bestCost = Double.MAX_VALUE;
+		int bestAxis = -1;
+		int bestBin = 0;
+		double bestMin = 0;
+		double bestScale = 0;
+		for (int axis = 0; axis < 3; axis++) {
+			double cMin = Double.MAX_VALUE;
+			double cMax = -Double.MAX_VALUE;
+			for (int n = startIndex; n < endIndex; n++) {
+				double c = getkey(nodes[n], axis, false);
+				if (cMin > c) {
+					cMin = c;
+				}
+				if (cMax < c) {
+					cMax = c;
+				}
+			}
+			if (!(cMax > cMin)) {
+				continue;
+			}
+			double scale = NUM_BINS / (cMax - cMin);
+
+			Arrays.fill(binCount, 0);
+			for (int b = 0; b < NUM_BINS; b++) {
+				binBounds[b * 6] = binBounds[b * 6 + 1] = binBounds[b * 6 + 2] = Double.MAX_VALUE;
+				binBounds[b * 6 + 3] = binBounds[b * 6 + 4] = binBounds[b * 6 + 5] = -Double.MAX_VALUE;
+			}
+			for (int n = startIndex; n < endIndex; n++) {
+				AABBTreeNode<?> node = nodes[n];
+				int b = bin(node, axis, cMin, scale);
+				binCount[b]++;
+				int o = b * 6;
+				binBounds[o] = Math.min(binBounds[o], node.minX);
+				binBounds[o + 1] = Math.min(binBounds[o + 1], node.minY);
+				binBounds[o + 2] = Math.min(binBounds[o + 2], node.minZ);
+				binBounds[o + 3] = Math.max(binBounds[o + 3], node.maxX);
+				binBounds[o + 4] = Math.max(binBounds[o + 4], node.maxY);
+				binBounds[o + 5] = Math.max(binBounds[o + 5], node.maxZ);
+			}
+
+			// right side: bins b..NUM_BINS-1
+			double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+			int count = 0;
+			for (int b = NUM_BINS - 1; b > 0; b--) {
+				int o = b * 6;
+				if (binCount[b] > 0) {
+					minX = Math.min(minX, binBounds[o]);
+					minY = Math.min(minY, binBounds[o + 1]);
+					minZ = Math.min(minZ, binBounds[o + 2]);
+					maxX = Math.max(maxX, binBounds[o + 3]);
+					maxY = Math.max(maxY, binBounds[o + 4]);
+					maxZ = Math.max(maxZ, binBounds[o + 5]);
+					count += binCount[b];
+				}
+				rightCount[b] = count;
+				rightArea[b] = count > 0 ? area(minX, minY, minZ, maxX, maxY, maxZ) : 0;
+			}
+
+			// left side: bins 0..b-1
+			minX = minY = minZ = Double.MAX_VALUE;
+			maxX = maxY = maxZ = -Double.MAX_VALUE;
+			count = 0;
+			for (int b = 1; b < NUM_BINS; b++) {
+				int o = (b - 1) * 6;
+				if (binCount[b - 1] > 0) {
+					minX = Math.min(minX, binBounds[o]);
+					minY = Math.min(minY, binBounds[o + 1]);
+					minZ = Math.min(minZ, binBounds[o + 2]);
+					maxX = Math.max(maxX, binBounds[o + 3]);
+					maxY = Math.max(maxY, binBounds[o + 4]);
+					maxZ = Math.max(maxZ, binBounds[o + 5]);
+					count += binCount[b - 1];
+				}
+				if (count == 0 || rightCount[b] == 0) {
+					continue;
+				}
+				double cost = area(minX, minY, minZ, maxX, maxY, maxZ) * count + rightArea[b] * rightCount[b];
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestAxis = axis;
+					bestBin = b;
+					bestMin = cMin;
+					bestScale = scale;
+				}
+			}
+		}
+		if (bestAxis < 0) {
+			return -1;
+		}
+
+		// move the nodes of bins < bestBin to the front
+		int first = startIndex;
+		int last = endIndex - 1;
+		while (first <= last) {
+			if (bin(nodes[first], bestAxis, bestMin, bestScale) < bestBin) {
+				first++;
+			} else {
+				AABBTreeNode<?> temp = nodes[first];
+				nodes[first] = nodes[last];
+				nodes[last] = temp;
+				last--;
+			}
+		}
+		return first;
+	}
+
+	private int bin(AABBTreeNode<?> node, int axis, double cMin, double scale) {
+		int b = (int) ((getkey(node, axis, false) - cMin) * scale);
+		return b < NUM_BINS ? b : NUM_BINS - 1;
+	}
+
+	private static double area(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		double x = maxX - minX;
+		double y = maxY - minY;
+		double z = maxZ - minZ;
+		return x * y + x * z + y * z;
+	}
+
+	private static int longestAxis(AABBTreeNode<?>[] nodes, int startIndex, int endIndex) {
+		double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, minZ = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE, maxZ = -Double.MAX_VALUE;
+		for (int n = startIndex; n < endIndex; n++) {
+			AABBTreeNode<?> node = nodes[n];
+			minX = Math.min(minX, node.minX);
+			minY = Math.min(minY, node.minY);
+			minZ = Math.min(minZ, node.minZ);
+			maxX = Math.max(maxX, node.maxX);
+			maxY = Math.max(maxY, node.maxY);
+			maxZ = Math.max(maxZ, node.maxZ);
+		}
+		double x = maxX - minX;
+		double y = maxY - minY;
+		double z = maxZ - minZ;
+		if (x >= y && x >= z) {
+			return 0;
+		}
+		return y >= z ? 1 : 2;
+	}
+
+	/**
+	 * @param axis
+	 *            0 = X, 1 = Y, 2 = Z
+	 */
+	@Override
+	protected double getkey(AABBTreeNode<?> node, int axis, boolean reverse) {
+		double v;
+		switch (axis) {
+		case 0:
+			v = node.minX + node.maxX;
+			break;
+		case 1:
+			v = node.minY + node.maxY;
+			break;
+		default:
+			v = node.minZ + node.maxZ;
+			break;
+		}
+		return reverse ? -v : v;
+	}
+
+}
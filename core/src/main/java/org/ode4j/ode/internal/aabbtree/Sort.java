@@ -23,68 +23,118 @@
  *************************************************************************/
 package org.ode4j.ode.internal.aabbtree;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
 /*
  * Based on https://github.com/turbulenz/turbulenz_engine/blob/master/tslib/aabbtree.ts
  */
 public abstract class Sort {
 
-	protected void nthElement(AABBTreeNode<?>[] nodes, int first, int nth, int last, int axis, boolean reverse) {
-		while ((last - first) > 3) {
-			double midValue = medianFn(getkey(nodes[first], axis, reverse),
-					getkey(nodes[first + ((last - first) >> 1)], axis, reverse),
-					getkey(nodes[last - 1], axis, reverse));
-
-			int firstPos = first;
-			int lastPos = last;
-			for (;;) {
-				while (getkey(nodes[firstPos], axis, reverse) < midValue) {
-					firstPos++;
-				}
-				do {
-					lastPos--;
-				} while (midValue < getkey(nodes[lastPos], axis, reverse));
-
-				if (firstPos >= lastPos) {
-					break;
-				}
-				AABBTreeNode<?> temp = nodes[firstPos];
-				nodes[firstPos] = nodes[lastPos];
-				nodes[lastPos] = temp;
-				firstPos++;
-			}
-			if (firstPos <= nth) {
-				first = firstPos;
-			} else {
-				last = firstPos;
-			}
+	/** Ranges with more nodes are sorted with ForkJoin tasks in a parallel sort. */
+	static final int PARALLEL_THRESHOLD = 4096;
+
+	/**
+	 * State of one call of sortNodes().
+	 * <p>
+	 * The split position of the root and of every left child range [s, e)
+	 * is stored in splitsLeft[e - 1], the split position of a right child
+	 * range [s, e) in splitsRight[s]. Every position is used by one range
+	 * only, so parallel tasks never write the same element.
+	 */
+	static final class Build {
+		final AABBTreeNode<?>[] nodes;
+		final int numNodesLeaf;
+		final int[] splitsLeft;
+		final int[] splitsRight;
+		final boolean parallel;
+
+		Build(AABBTreeNode<?>[] nodes, int numNodesLeaf, int[] splitsLeft, int[] splitsRight, boolean parallel) {
+			this.nodes = nodes;
+			this.numNodesLeaf = numNodesLeaf;
+			this.splitsLeft = splitsLeft;
+			this.splitsRight = splitsRight;
+			this.parallel = parallel;
 		}
-		insertionSort(nodes, first, last, axis, reverse);
 	}
 
-	void insertionSort(AABBTreeNode<?>[] nodes, int first, int last, int axis, boolean reverse) {
-		int sorted = first + 1;
-		while (sorted != last) {
-			AABBTreeNode<?> tempNode = nodes[sorted];
-			double tempKey = getkey(tempNode, axis, reverse);
+	@SuppressWarnings("serial")
+	private final class SortTask extends RecursiveAction {
+		private final Build build;
+		private final int startIndex, endIndex, depth;
+		private final boolean right;
 
-			int next = sorted;
-			int current = sorted - 1;
+		SortTask(Build build, int startIndex, int endIndex, int depth, boolean right) {
+			this.build = build;
+			this.startIndex = startIndex;
+			this.endIndex = endIndex;
+			this.depth = depth;
+			this.right = right;
+		}
 
-			while (next != first && tempKey < getkey(nodes[current], axis, reverse)) {
-				nodes[next] = nodes[current];
-				next--;
-				current--;
-			}
+		@Override
+		protected void compute() {
+			sortNodesRecursive(build, startIndex, endIndex, depth, right);
+		}
+	}
 
-			if (next != sorted) {
-				nodes[next] = tempNode;
+	/**
+	 * Sort the nodes in the order of AABBTree.recursiveBuild() and record
+	 * the split positions in splitsLeft and splitsRight, see {@link Build}.
+	 * @param nodes nodes
+	 * @param numNodes number of nodes
+	 * @param numNodesLeaf max number of nodes per leaf group
+	 * @param splitsLeft split positions of left ranges, at least numNodes long
+	 * @param splitsRight split positions of right ranges, at least numNodes long
+	 * @param parallel sort large ranges in parallel
+	 * @return 'false' if no split positions were recorded and the median
+	 * has to be used instead.
+	 */
+	boolean sortNodes(AABBTreeNode<?>[] nodes, int numNodes, int numNodesLeaf, int[] splitsLeft, int[] splitsRight,
+			boolean parallel) {
+		if (numNodesLeaf < numNodes) {
+			Build build = new Build(nodes, numNodesLeaf, splitsLeft, splitsRight, parallel);
+			if (parallel && numNodes > PARALLEL_THRESHOLD) {
+				ForkJoinPool.commonPool().invoke(new SortTask(build, 0, numNodes, 0, false));
+			} else {
+				sortNodesRecursive(build, 0, numNodes, 0, false);
 			}
+		}
+		return true;
+	}
 
-			sorted++;
+	private void sortNodesRecursive(Build build, int startIndex, int endIndex, int depth, boolean right) {
+		int splitNodeIndex = split(build.nodes, startIndex, endIndex, depth);
+		if (right) {
+			build.splitsRight[startIndex] = splitNodeIndex;
+		} else {
+			build.splitsLeft[endIndex - 1] = splitNodeIndex;
+		}
+
+		// mirror the recursion of AABBTree.recursiveBuild()
+		int numNodesLeaf = build.numNodesLeaf;
+		boolean sortLeft = (startIndex + 1) < splitNodeIndex && (startIndex + numNodesLeaf) < splitNodeIndex;
+		boolean sortRight = (splitNodeIndex + 1) < endIndex && (splitNodeIndex + numNodesLeaf) < endIndex;
+		if (build.parallel && sortLeft && sortRight && (endIndex - startIndex) > PARALLEL_THRESHOLD) {
+			ForkJoinTask.invokeAll(new SortTask(build, startIndex, splitNodeIndex, depth + 1, false),
+					new SortTask(build, splitNodeIndex, endIndex, depth + 1, true));
+			return;
+		}
+		if (sortLeft) {
+			sortNodesRecursive(build, startIndex, splitNodeIndex, depth + 1, false);
+		}
+		if (sortRight) {
+			sortNodesRecursive(build, splitNodeIndex, endIndex, depth + 1, true);
 		}
 	}
 
-	protected abstract double getkey(AABBTreeNode<?> tempNode, int axis, boolean reverse);
+	/**
+	 * Partition the range [startIndex, endIndex).
+	 * @param depth depth of the range in the tree, 0 for the root
+	 * @return The split position, startIndex &lt; split &lt; endIndex.
+	 */
+	protected abstract int split(AABBTreeNode<?>[] nodes, int startIndex, int endIndex, int depth);
 
 	static double medianFn(double a, double b, double c) {
 		if (a < b) {
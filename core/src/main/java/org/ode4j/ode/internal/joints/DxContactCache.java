@@ -0,0 +1,246 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.joints;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DContactGeom;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.internal.DxWorldSnapshot;
+
+/**
+ * Contact impulses of the previous step for warm starting.
+ * <p>
+ * Contact joints are usually destroyed after every step. When a contact joint is destroyed,
+ * its constraint impulses (lambda) are stored with its geom pair, features and position.
+ * A contact joint that is created for the same pair of geoms before the next step starts with
+ * the impulses of the closest stored contact, preferably one with the same features.
+ * Every stored contact is used at most once.
+ */
+public final class DxContactCache {
+
+	private static final int ROWS = 3;
+
+	private static final class Entry {
+		DGeom g2;
+		int side1;
+		int side2;
+		double x, y, z;
+		final double[] lambda = new double[ROWS];
+		Entry next;
+	}
+
+	private final IdentityHashMap<DGeom, Entry> entries = new IdentityHashMap<>();
+	private Entry free;
+	private boolean clearOnStore;
+	private double maxDistance = 0.02;
+
+	/**
+	 * @param distance Maximum distance between two contacts that are considered the same contact.
+	 */
+	public void setMaxDistance(double distance) {
+		maxDistance = distance;
+	}
+
+	public double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * To be called at the beginning of every step. Contacts that are stored after this call
+	 * replace all previously stored contacts.
+	 */
+	public void beginStep() {
+		if (clearOnStore) {
+			// nothing was stored after the previous step
+			clear();
+		}
+		clearOnStore = true;
+	}
+
+	/**
+	 * Store the impulses of a contact joint that is being destroyed.
+	 */
+	void store(DxJointContact joint) {
+		if (clearOnStore) {
+			clear();
+			clearOnStore = false;
+		}
+		double[] lambda = joint.lambda;
+		if (lambda[0] == 0 && lambda[1] == 0 && lambda[2] == 0) {
+			return;
+		}
+		DContactGeom geom = joint.getContact().geom;
+		Entry e = free;
+		if (e != null) {
+			free = e.next;
+		} else {
+			e = new Entry();
+		}
+		DVector3C pos = geom.pos;
+		e.g2 = geom.g2;
+		e.side1 = geom.side1;
+		e.side2 = geom.side2;
+		e.x = pos.get0();
+		e.y = pos.get1();
+		e.z = pos.get2();
+		System.arraycopy(lambda, 0, e.lambda, 0, ROWS);
+		e.next = entries.get(geom.g1);
+		entries.put(geom.g1, e);
+	}
+
+	/**
+	 * Initialize the impulses of a new contact joint from the best matching stored contact.
+	 */
+	void seed(DxJointContact joint) {
+		DContactGeom geom = joint.getContact().geom;
+		Entry first = entries.get(geom.g1);
+		if (first == null) {
+			return;
+		}
+		DVector3C pos = geom.pos;
+		double px = pos.get0(), py = pos.get1(), pz = pos.get2();
+		double maxDist2 = maxDistance * maxDistance;
+		double bestDist2 = Double.MAX_VALUE;
+		boolean bestSameFeature = false;
+		Entry best = null, bestPrev = null;
+		for (Entry prev = null, e = first; e != null; prev = e, e = e.next) {
+			if (e.g2 != geom.g2) {
+				continue;
+			}
+			double dx = e.x - px, dy = e.y - py, dz = e.z - pz;
+			double dist2 = dx * dx + dy * dy + dz * dz;
+			if (dist2 > maxDist2) {
+				continue;
+			}
+			// prefer contacts between the same features, then the closest one
+			boolean sameFeature = e.side1 == geom.side1 && e.side2 == geom.side2;
+			if (sameFeature == bestSameFeature ? dist2 < bestDist2 : sameFeature) {
+				best = e;
+				bestPrev = prev;
+				bestDist2 = dist2;
+				bestSameFeature = sameFeature;
+			}
+		}
+		if (best == null) {
+			return;
+		}
+		System.arraycopy(best.lambda, 0, joint.lambda, 0, ROWS);
+		// use every stored contact only once
+		if (bestPrev == null) {
+			if (best.next == null) {
+				entries.remove(geom.g1);
+			} else {
+				entries.put(geom.g1, best.next);
+			}
+		} else {
+			bestPrev.next = best.next;
+		}
+		release(best);
+	}
+
+	public void clear() {
+		for (Entry e : entries.values()) {
+			while (e != null) {
+				Entry next = e.next;
+				release(e);
+				e = next;
+			}
+		}
+		entries.clear();
+	}
+
+	/**
+	 * Write all stored contacts to a world snapshot.
+	 */
+	public void save(DxWorldSnapshot s) {
+		s.putInt(clearOnStore ? 1 : 0);
+		s.putInt(entries.size());
+		for (Map.Entry<DGeom, Entry> me : entries.entrySet()) {
+			int n = 0;
+			for (Entry e = me.getValue(); e != null; e = e.next) {
+				n++;
+			}
+			s.putRef(me.getKey());
+			s.putInt(n);
+			for (Entry e = me.getValue(); e != null; e = e.next) {
+				s.putRef(e.g2);
+				s.putInt(e.side1);
+				s.putInt(e.side2);
+				s.putDouble(e.x);
+				s.putDouble(e.y);
+				s.putDouble(e.z);
+				for (int i = 0; i < ROWS; i++) {
+					s.putDouble(e.lambda[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replace all stored contacts with the contacts of a world snapshot.
+	 */
+	public void restore(DxWorldSnapshot s) {
+		clear();
+		clearOnStore = s.getInt() != 0;
+		int nGeoms = s.getInt();
+		for (int g = 0; g < nGeoms; g++) {
+			DGeom g1 = (DGeom) s.getRef();
+			int n = s.getInt();
+			Entry last = null;
+			for (int k = 0; k < n; k++) {
+				Entry e = free;
+				if (e != null) {
+					free = e.next;
+					e.next = null;
+				} else {
+					e = new Entry();
+				}
+				e.g2 = (DGeom) s.getRef();
+				e.side1 = s.getInt();
+				e.side2 = s.getInt();
+				e.x = s.getDouble();
+				e.y = s.getDouble();
+				e.z = s.getDouble();
+				for (int i = 0; i < ROWS; i++) {
+					e.lambda[i] = s.getDouble();
+				}
+				// keep the order of the chain
+				if (last == null) {
+					entries.put(g1, e);
+				} else {
+					last.next = e;
+				}
+				last = e;
+			}
+		}
+	}
+
+	private void release(Entry e) {
+		e.g2 = null;
+		e.next = free;
+		free = e;
+	}
+}
@@ -35,6 +35,8 @@ import static org.ode4j.ode.internal.Rotation.dQMultiply1;
 import static org.ode4j.ode.internal.Rotation.dQMultiply2;
 import static org.ode4j.ode.internal.Rotation.dQMultiply3;
 
+import java.util.Arrays;
+
 import org.ode4j.math.DQuaternion;
 import org.ode4j.math.DQuaternionC;
 import org.ode4j.math.DVector3;
@@ -44,6 +46,7 @@ import org.ode4j.ode.DJoint;
 import org.ode4j.ode.internal.DObject;
 import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.DxWorld;
+import org.ode4j.ode.internal.processmem.DxIslandCache;
 
 /**
  * design note: the general principle for giving a joint the option of connecting
@@ -289,6 +292,64 @@ public abstract class DxJoint extends DObject implements DJoint {
 		feedback = null;
 	}
 
+	/**
+	 * Create a joint of the same type in another world with the parameters,
+	 * flags and body relative values of this joint. The new joint is not
+	 * attached to any bodies.
+	 * @param w world of the new joint
+	 * @return new joint
+	 */
+	public abstract DxJoint copy(DxWorld w);
+
+	/**
+	 * Copy the parameters of a joint of the same type.
+	 * Each dxJoint with own parameters should redefine it.
+	 */
+	/*virtual */
+	void copyParameters(DxJoint src) {
+		flags = src.flags & ~dJOINT_INGROUP;
+		System.arraycopy(src.lambda, 0, lambda, 0, lambda.length);
+		if (src.feedback != null) {
+			feedback = new DJoint.DJointFeedback();
+			feedback.f1.set(src.feedback.f1);
+			feedback.t1.set(src.feedback.t1);
+			feedback.f2.set(src.feedback.f2);
+			feedback.t2.set(src.feedback.t2);
+		}
+		userdata = src.userdata;
+	}
+
+	/**
+	 * Attach a copied joint to the copies of the bodies of the source joint.
+	 * Unlike dJointAttach() this keeps the copied body relative values and
+	 * the dJOINT_REVERSE flag.
+	 * @param body1 copy of node[0].body of the source joint
+	 * @param body2 copy of node[1].body of the source joint
+	 */
+	public void attachCopy(DxBody body1, DxBody body2)
+	{
+		dUASSERT (node[0].body == null && node[1].body == null, "joint is already attached");
+		dUASSERT ( (body1==null || body1.getWorld() == world) &&
+				(body2==null || body2.getWorld() == world),
+				"joint and bodies must be in same world");
+		if (body1 == null) {
+			return;
+		}
+		node[0].body = body1;
+		node[1].body = body2;
+		node[1].next = body1.firstjoint.get();
+		body1.firstjoint.set(node[1]);
+		if (body2 != null) {
+			node[0].next = body2.firstjoint.get();
+			body2.firstjoint.set(node[0]);
+		}
+
+		DxIslandCache islandCache = world.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.jointAttached(this);
+		}
+	}
+
 	//dxJoint::~dxJoint()
 	@Override
 	public void DESTRUCTOR() {
@@ -829,6 +890,11 @@ public abstract class DxJoint extends DObject implements DJoint {
 		// Only need to calculate relative value if a body exist
 		if (body1 != null || body2 != null)
 			setRelativeValues();
+
+		DxIslandCache islandCache = world.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.jointAttached(this);
+		}
 	}
 
 	//void dJointEnable ()
@@ -836,6 +902,10 @@ public abstract class DxJoint extends DObject implements DJoint {
 	public void enable()
 	{
 		flags &= ~dJOINT_DISABLED;
+		DxIslandCache islandCache = world.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.jointAttached(this);
+		}
 	}
 
 	//void dJointDisable ()
@@ -843,6 +913,10 @@ public abstract class DxJoint extends DObject implements DJoint {
 	public void disable()
 	{
 		flags |= dJOINT_DISABLED;
+		DxIslandCache islandCache = world.GetIslandCache();
+		if (islandCache != null) {
+			islandCache.jointDetached(this);
+		}
 	}
 
 	/**
@@ -863,6 +937,9 @@ public abstract class DxJoint extends DObject implements DJoint {
 //	public static void removeJointReferencesFromAttachedBodies (dxJoint j)
 	public void removeJointReferencesFromAttachedBodies ()
 	{
+		if (island != null) {
+			world.GetIslandCache().jointDetached(this);
+		}
 		for (int i=0; i<2; i++) {
 			DxBody body = node[i].body;
 			if (body != null) {
@@ -948,6 +1025,31 @@ public abstract class DxJoint extends DObject implements DJoint {
 	        DESTRUCTOR();//j->~dxJoint();
 	    }
 	}
+
+	/**
+	 * Re-initialize a joint that has been detached with
+	 * <tt>FinalizeAndDestroyJointInstance(true)</tt> so that it can be reused
+	 * in world <tt>w</tt>. This restores the state set up by the constructor.
+	 * Used by pooling joint groups.
+	 */
+	void ReinitializeJointInstance(DxWorld w)
+	{
+		dIASSERT( w!= null );
+		world = w;
+		flags = 0;
+		node[0].body = null;
+		node[0].next = null;
+		node[1].body = null;
+		node[1].next = null;
+		Arrays.fill(lambda, 0);
+		feedback = null;
+		tag = 0;
+		island = null;
+		islandIndex = 0;
+		userdata = null;
+		addObjectToList( this, w.firstjoint );
+		w.nj++;
+	}
 	
 	// *************************************
 	// dJoint API
@@ -323,6 +323,26 @@ public class DxJointAMotor extends DxJoint implements DAMotorJoint
 		}
 	}
 
+	@Override
+	public DxJointAMotor copy(DxWorld w) {
+		DxJointAMotor j = new DxJointAMotor(w);
+		j.copyParameters(this);
+		return j;
+	}
+
+	@Override
+	void copyParameters(DxJoint src) {
+		super.copyParameters(src);
+		DxJointAMotor m = (DxJointAMotor) src;
+		m_mode = m.m_mode;
+		m_num = m.m_num;
+		System.arraycopy(m.m_rel, 0, m_rel, 0, m_rel.length);
+		for (int i = 0; i != m_axis.length; ++i) { m_axis[i].set(m.m_axis[i]); }
+		for (int i = 0; i != m_references.length; ++i) { m_references[i].set(m.m_references[i]); }
+		System.arraycopy(m.m_angle, 0, m_angle, 0, m_angle.length);
+		for (int i = 0; i != m_limot.length; ++i) { m_limot[i].set(m.m_limot[i]); }
+	}
+
 
 	/*virtual */
 	//dxJointAMotor::~dxJointAMotor()
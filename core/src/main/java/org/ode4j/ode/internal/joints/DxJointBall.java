@@ -51,6 +51,25 @@ public class DxJointBall extends DxJoint implements DBallJoint
 		cfm = world.getCFM();
 	}
 
+	@Override
+	public DxJointBall copy( DxWorld w )
+	{
+		DxJointBall j = new DxJointBall( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointBall b = (DxJointBall) src;
+		anchor1.set( b.anchor1 );
+		anchor2.set( b.anchor2 );
+		erp = b.erp;
+		cfm = b.cfm;
+	}
+
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
 	{
@@ -66,6 +66,27 @@ public class DxJointConstrainedBall extends DxJointBall implements DConstrainedB
 		axis2 = new DVector3();
 	}
 
+	@Override
+	public DxJointConstrainedBall copy(DxWorld w) {
+		DxJointConstrainedBall j = new DxJointConstrainedBall(w);
+		j.copyParameters(this);
+		return j;
+	}
+
+	@Override
+	void copyParameters(DxJoint src) {
+		super.copyParameters(src);
+		DxJointConstrainedBall b = (DxJointConstrainedBall) src;
+		baseAxis.set(b.baseAxis);
+		body2Axis.set(b.body2Axis);
+		twistUpAxis1.set(b.twistUpAxis1);
+		twistUpAxis2.set(b.twistUpAxis2);
+		axis1.set(b.axis1);
+		axis2.set(b.axis2);
+		limotFlex.set(b.limotFlex);
+		limotTwist.set(b.limotTwist);
+	}
+
 	@Override
 	public void getInfo1(DxJoint.Info1 info) {
 		info.setNub(3);
@@ -52,6 +52,30 @@ public class DxJointContact extends DxJoint implements DContactJoint
 		super (w);
 	}
 
+	@Override
+	public DxJointContact copy( DxWorld w )
+	{
+		DxJointContact j = new DxJointContact( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointContact c = (DxJointContact) src;
+		the_m = c.the_m;
+		contact.set( c.contact );
+	}
+
+	@Override
+	void ReinitializeJointInstance(DxWorld w)
+	{
+		super.ReinitializeJointInstance(w);
+		the_m = 0;
+	}
+
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
 	{
@@ -380,6 +404,19 @@ public class DxJointContact extends DxJoint implements DContactJoint
 
 	public void setContact(DContact contact) {
 		this.contact.set(contact);
+		DxContactCache cache = world != null ? world.GetContactCache() : null;
+		if (cache != null) {
+			cache.seed(this);
+		}
+	}
+
+	@Override
+	void FinalizeAndDestroyJointInstance(boolean delete_it) {
+		DxContactCache cache = world != null ? world.GetContactCache() : null;
+		if (cache != null) {
+			cache.store(this);
+		}
+		super.FinalizeAndDestroyJointInstance(delete_it);
 	}
 }
 
@@ -51,6 +51,24 @@ public class DxJointDBall extends DxJoint implements DDoubleBallJoint {
 		cfm = world.getCFM();
 	}
 
+	@Override
+	public DxJointDBall copy(DxWorld w) {
+		DxJointDBall j = new DxJointDBall(w);
+		j.copyParameters(this);
+		return j;
+	}
+
+	@Override
+	void copyParameters(DxJoint src) {
+		super.copyParameters(src);
+		DxJointDBall b = (DxJointDBall) src;
+		anchor1.set(b.anchor1);
+		anchor2.set(b.anchor2);
+		erp = b.erp;
+		cfm = b.cfm;
+		targetDistance = b.targetDistance;
+	}
+
 	@Override
 	void
 	getSureMaxInfo( SureMaxInfo info )
@@ -57,6 +57,21 @@ public class DxJointDHinge extends DxJointDBall implements DDoubleHingeJoint {
     	super(w);
     }
 
+    @Override
+    public DxJointDHinge copy(DxWorld w) {
+        DxJointDHinge j = new DxJointDHinge(w);
+        j.copyParameters(this);
+        return j;
+    }
+
+    @Override
+    void copyParameters(DxJoint src) {
+        super.copyParameters(src);
+        DxJointDHinge h = (DxJointDHinge) src;
+        axis1.set(h.axis1);
+        axis2.set(h.axis2);
+    }
+
 
 	@Override
     void
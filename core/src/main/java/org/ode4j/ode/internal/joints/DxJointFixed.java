@@ -73,6 +73,25 @@ public class DxJointFixed extends DxJoint implements DFixedJoint {
 		cfm = world.getCFM();
 	}
 
+	@Override
+	public DxJointFixed copy ( DxWorld w )
+	{
+		DxJointFixed j = new DxJointFixed( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters ( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointFixed f = (DxJointFixed) src;
+		qrel.set( f.qrel );
+		offset.set( f.offset );
+		erp = f.erp;
+		cfm = f.cfm;
+	}
+
 
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
@@ -28,6 +28,7 @@ import java.util.ArrayList;
 
 import org.ode4j.ode.DJointGroup;
 import org.ode4j.ode.internal.DBase;
+import org.ode4j.ode.internal.DxWorld;
 
 /** 
  * joint group. NOTE: any joints in the group that have their world destroyed
@@ -41,6 +42,9 @@ public class DxJointGroup extends DBase implements DJointGroup
     
 	//TODO use LinkedList?
 	private final ArrayList<DxJoint> _stack = new ArrayList<DxJoint>(); 
+	// detached contact joints that are reused if pooling is enabled
+	private final ArrayList<DxJointContact> _freeContacts = new ArrayList<DxJointContact>();
+	private boolean _pooling = false;
 
 	public DxJointGroup() {}
 	
@@ -153,12 +157,32 @@ public class DxJointGroup extends DBase implements DJointGroup
 //        }
         for (int i = _stack.size()-1; i >= 0; i--) {
         	DxJoint j = _stack.get(i);
-        	j.FinalizeAndDestroyJointInstance(false);
+        	if (_pooling && j instanceof DxJointContact && j.world != null) {
+        		// detach, but keep the instance alive for reuse
+        		j.FinalizeAndDestroyJointInstance(true);
+        		_freeContacts.add((DxJointContact) j);
+        	} else {
+        		j.FinalizeAndDestroyJointInstance(false);
+        	}
         }
         _stack.clear();
     }
 
 
+    /**
+     * @return A detached contact joint that has been re-initialized for
+     * world <tt>w</tt>, or <tt>null</tt> if the pool is empty.
+     */
+    DxJointContact obtainContact(DxWorld w) {
+    	if (_freeContacts.isEmpty()) {
+    		return null;
+    	}
+    	DxJointContact j = _freeContacts.remove(_freeContacts.size()-1);
+    	j.ReinitializeJointInstance(w);
+    	return j;
+    }
+
+
     void addJoint(DxJoint j) {
 //		stack.add(j);
 //		num++;
@@ -182,6 +206,20 @@ public class DxJointGroup extends DBase implements DJointGroup
 	@Override
 	public void destroy() {
 		dJointGroupDestroy();
+		_freeContacts.clear();
+	}
+
+	@Override
+	public void setPooling(boolean pooling) {
+		_pooling = pooling;
+		if (!pooling) {
+			_freeContacts.clear();
+		}
+	}
+
+	@Override
+	public boolean isPooling() {
+		return _pooling;
 	}
     
 }
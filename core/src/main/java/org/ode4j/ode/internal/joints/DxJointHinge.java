@@ -73,6 +73,27 @@ public class DxJointHinge extends DxJoint implements DHingeJoint
 		limot.init( world );
 	}
 
+	@Override
+	public DxJointHinge copy( DxWorld w )
+	{
+		DxJointHinge j = new DxJointHinge( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointHinge h = (DxJointHinge) src;
+		anchor1.set( h.anchor1 );
+		anchor2.set( h.anchor2 );
+		axis1.set( h.axis1 );
+		axis2.set( h.axis2 );
+		qrel.set( h.qrel );
+		limot.set( h.limot );
+	}
+
 
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
@@ -119,6 +119,33 @@ public class DxJointHinge2 extends DxJoint implements DHinge2Joint {
 		setFlagsTwoBodies();
 	}
 
+	@Override
+	public DxJointHinge2 copy( DxWorld w ) {
+		DxJointHinge2 j = new DxJointHinge2( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src ) {
+		super.copyParameters( src );
+		DxJointHinge2 h = (DxJointHinge2) src;
+		anchor1.set( h.anchor1 );
+		anchor2.set( h.anchor2 );
+		_axis1.set( h._axis1 );
+		_axis2.set( h._axis2 );
+		c0 = h.c0;
+		s0 = h.s0;
+		v1.set( h.v1 );
+		v2.set( h.v2 );
+		w1.set( h.w1 );
+		w2.set( h.w2 );
+		limot1.set( h.limot1 );
+		limot2.set( h.limot2 );
+		susp_erp = h.susp_erp;
+		susp_cfm = h.susp_cfm;
+	}
+
 
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
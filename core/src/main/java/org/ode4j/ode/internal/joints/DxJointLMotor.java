@@ -59,6 +59,28 @@ public class DxJointLMotor extends DxJoint implements DLMotorJoint {
 		}
 	}
 
+	@Override
+	public DxJointLMotor copy( DxWorld w )
+	{
+		DxJointLMotor j = new DxJointLMotor( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointLMotor m = (DxJointLMotor) src;
+		num = m.num;
+		for ( int i = 0;i < 3;i++ )
+		{
+			_rel[i] = m._rel[i];
+			axis[i].set( m.axis[i] );
+			limot[i].set( m.limot[i] );
+		}
+	}
+
 	void
 	//computeGlobalAxes( dVector3 ax[3] )
 	computeGlobalAxes( DVector3[] ax )
@@ -75,6 +75,21 @@ public class DxJointLimitMotor {
 		limit_err = 0;
 	}
 
+	public void set( DxJointLimitMotor other )
+	{
+		vel = other.vel;
+		fmax = other.fmax;
+		lostop = other.lostop;
+		histop = other.histop;
+		fudge_factor = other.fudge_factor;
+		normal_cfm = other.normal_cfm;
+		stop_erp = other.stop_erp;
+		stop_cfm = other.stop_cfm;
+		bounce = other.bounce;
+		limit = other.limit;
+		limit_err = other.limit_err;
+	}
+
 
 	public void set( PARAM num, double value )
 	{
@@ -42,6 +42,14 @@ public class DxJointNull extends DxJoint implements DNullJoint
 		super(w);
 	}
 
+	@Override
+	public DxJointNull copy( DxWorld w )
+	{
+		DxJointNull j = new DxJointNull( w );
+		j.copyParameters( this );
+		return j;
+	}
+
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
 	{
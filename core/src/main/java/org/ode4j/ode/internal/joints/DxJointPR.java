@@ -130,6 +130,29 @@ public class DxJointPR extends DxJoint implements DPRJoint
 		limotP.init( world );
 	}
 
+	@Override
+	public DxJointPR copy( DxWorld w )
+	{
+		DxJointPR j = new DxJointPR( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointPR pr = (DxJointPR) src;
+		_anchor2.set( pr._anchor2 );
+		axisR1.set( pr.axisR1 );
+		axisR2.set( pr.axisR2 );
+		axisP1.set( pr.axisP1 );
+		qrel.set( pr.qrel );
+		offset.set( pr.offset );
+		limotR.set( pr.limotR );
+		limotP.set( pr.limotP );
+	}
+
 
 //	double dJointGetPRPosition( dJoint j )
 	double dJointGetPRPosition()
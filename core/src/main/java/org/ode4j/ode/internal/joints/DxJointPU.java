@@ -131,6 +131,23 @@ public class DxJointPU extends DxJointUniversal implements DPUJoint
 		limot2.init( world );
 	}
 
+	@Override
+	public DxJointPU copy( DxWorld w )
+	{
+		DxJointPU j = new DxJointPU( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointPU pu = (DxJointPU) src;
+		axisP1.set( pu.axisP1 );
+		limotP.set( pu.limotP );
+	}
+
 
 	double dJointGetPUPosition( )
 	{
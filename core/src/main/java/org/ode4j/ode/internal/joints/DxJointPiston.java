@@ -128,6 +128,28 @@ public class DxJointPiston extends DxJoint implements DPistonJoint
 		limotR.init ( world );
 	}
 
+	@Override
+	public DxJointPiston copy ( DxWorld w )
+	{
+		DxJointPiston j = new DxJointPiston( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters ( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointPiston p = (DxJointPiston) src;
+		axis1.set( p.axis1 );
+		axis2.set( p.axis2 );
+		qrel.set( p.qrel );
+		anchor1.set( p.anchor1 );
+		anchor2.set( p.anchor2 );
+		limotP.set( p.limotP );
+		limotR.set( p.limotR );
+	}
+
 
 	double dJointGetPistonPosition (  )
 	{
@@ -70,6 +70,27 @@ public class DxJointPlane2D extends DxJoint implements DPlane2DJoint
 		motor_angle.init( world );
 	}
 
+	@Override
+	public DxJointPlane2D copy( DxWorld w )
+	{
+		DxJointPlane2D j = new DxJointPlane2D( w );
+		j.copyParameters( this );
+		return j;
+	}
+
+	@Override
+	void copyParameters( DxJoint src )
+	{
+		super.copyParameters( src );
+		DxJointPlane2D p = (DxJointPlane2D) src;
+		row_motor_x = p.row_motor_x;
+		row_motor_y = p.row_motor_y;
+		row_motor_angle = p.row_motor_angle;
+		motor_x.set( p.motor_x );
+		motor_y.set( p.motor_y );
+		motor_angle.set( p.motor_angle );
+	}
+
 
 	@Override
 	void getSureMaxInfo( SureMaxInfo info )
@@ -62,6 +62,23 @@ public class DxJointSlider extends DxJoint implements DSliderJoint {
         limot.init(world);
     }
 
+    @Override
+    public DxJointSlider copy(DxWorld w) {
+        DxJointSlider j = new DxJointSlider(w);
+        j.copyParameters(this);
+        return j;
+    }
+
+    @Override
+    void copyParameters(DxJoint src) {
+        super.copyParameters(src);
+        DxJointSlider s = (DxJointSlider) src;
+        axis1.set(s.axis1);
+        qrel.set(s.qrel);
+        offset.set(s.offset);
+        limot.set(s.limot);
+    }
+
 
     //double dJointGetSliderPosition ( dJoint j )
     public double dJointGetSliderPosition() {
@@ -106,6 +106,33 @@ public class DxJointTransmission extends DxJoint implements DTransmissionJoint {
         update = true;
     }
 
+    @Override
+    public DxJointTransmission copy(DxWorld w) {
+        DxJointTransmission j = new DxJointTransmission(w);
+        j.copyParameters(this);
+        return j;
+    }
+
+    @Override
+    void copyParameters(DxJoint src) {
+        super.copyParameters(src);
+        DxJointTransmission t = (DxJointTransmission) src;
+        mode = t.mode;
+        update = t.update;
+        for (int i = 0; i < 2; i += 1) {
+            contacts[i].set(t.contacts[i]);
+            axes[i].set(t.axes[i]);
+            anchors[i].set(t.anchors[i]);
+            reference[i].set(t.reference[i]);
+        }
+        System.arraycopy(t.phase, 0, phase, 0, 2);
+        System.arraycopy(t.radii, 0, radii, 0, 2);
+        backlash = t.backlash;
+        ratio = t.ratio;
+        erp = t.erp;
+        cfm = t.cfm;
+    }
+
 	@Override
     void
     getSureMaxInfo( SureMaxInfo info )
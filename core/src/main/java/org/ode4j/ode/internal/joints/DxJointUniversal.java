@@ -74,6 +74,27 @@ public class DxJointUniversal extends DxJoint implements DUniversalJoint {
         limot2.init(world);
     }
 
+    @Override
+    public DxJointUniversal copy(DxWorld w) {
+        DxJointUniversal j = new DxJointUniversal(w);
+        j.copyParameters(this);
+        return j;
+    }
+
+    @Override
+    void copyParameters(DxJoint src) {
+        super.copyParameters(src);
+        DxJointUniversal u = (DxJointUniversal) src;
+        _anchor1.set(u._anchor1);
+        _anchor2.set(u._anchor2);
+        _axis1.set(u._axis1);
+        _axis2.set(u._axis2);
+        qrel1.set(u.qrel1);
+        qrel2.set(u.qrel2);
+        limot1.set(u.limot1);
+        limot2.set(u.limot2);
+    }
+
 
     void getAxes(DVector3 ax1, DVector3 ax2) {
         // This says "ax1 = joint->node[0].body->posr.R * joint->axis1"
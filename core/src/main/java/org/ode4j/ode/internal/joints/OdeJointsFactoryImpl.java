@@ -104,7 +104,14 @@ public class OdeJointsFactoryImpl {
 			final DContact c)
 	{
 		dAASSERT (w, c);
-		DxJointContact j = createJoint(new DxJointContact((DxWorld) w), group);
+		DxJointContact j = null;
+		if (group != null) {
+			j = ((DxJointGroup)group).obtainContact((DxWorld) w);
+		}
+		if (j == null) {
+			j = new DxJointContact((DxWorld) w);
+		}
+		j = createJoint(j, group);
 		j.setContact(c);
 		return j;
 	}
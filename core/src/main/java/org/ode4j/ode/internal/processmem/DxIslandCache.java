@@ -0,0 +1,403 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.processmem;
+
+import java.util.Arrays;
+
+import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxWorld;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.joints.DxJointNode;
+import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo.dmemestimate_fn_t;
+
+/**
+ * Persistent island membership.
+ * <p>
+ * Every body belongs to exactly one island, every enabled and attached joint to the island
+ * of its bodies. Attaching a joint merges the islands of its bodies right away. Removing a
+ * joint that connects two bodies (or removing a body) only marks the island as dirty, dirty
+ * islands are split at the beginning of the next step by a search that is restricted to the
+ * bodies of that island. Joints that connect a body to the static environment can never split
+ * an island, so contacts with static geometry do not cause any island search.
+ * <p>
+ * Islands that contain at least one enabled body are written to
+ * {@link DxWorldProcessIslandsInfo} for the steppers.
+ */
+public final class DxIslandCache {
+
+	public static final class Island {
+		private DxBody[] bodies = new DxBody[4];
+		private int nb;
+		private DxJoint[] joints = new DxJoint[4];
+		private int nj;
+		private boolean dirty;
+		private int listIndex;
+
+		private void addBody(DxBody b) {
+			if (nb == bodies.length) {
+				bodies = Arrays.copyOf(bodies, nb * 2);
+			}
+			b.island = this;
+			b.islandIndex = nb;
+			bodies[nb++] = b;
+		}
+
+		private void addJoint(DxJoint j) {
+			if (nj == joints.length) {
+				joints = Arrays.copyOf(joints, nj * 2);
+			}
+			j.island = this;
+			j.islandIndex = nj;
+			joints[nj++] = j;
+		}
+
+		private void removeBody(DxBody b) {
+			DxBody last = bodies[--nb];
+			bodies[b.islandIndex] = last;
+			last.islandIndex = b.islandIndex;
+			bodies[nb] = null;
+			b.island = null;
+		}
+
+		private void removeJoint(DxJoint j) {
+			DxJoint last = joints[--nj];
+			joints[j.islandIndex] = last;
+			last.islandIndex = j.islandIndex;
+			joints[nj] = null;
+			j.island = null;
+		}
+	}
+
+	private final DxWorld world;
+	private Island[] islands = new Island[16];
+	private int islandCount;
+	private Island[] freeIslands = new Island[16];
+	private int freeCount;
+	private int dirtyCount;
+	private DxBody[] scratchBodies = new DxBody[16];
+	private DxJoint[] scratchJoints = new DxJoint[16];
+	private DxBody[] stack = new DxBody[16];
+
+	public DxIslandCache(DxWorld world) {
+		this.world = world;
+		for (DxBody b=world.firstbody.get(); b!=null; b=(DxBody)b.getNext()) {
+			bodyAdded(b);
+		}
+		for (DxJoint j=world.firstjoint.get(); j!=null; j=(DxJoint)j.getNext()) {
+			jointAttached(j);
+		}
+	}
+
+	/**
+	 * Remove all references from bodies and joints to the cache.
+	 */
+	public void clear() {
+		for (DxBody b=world.firstbody.get(); b!=null; b=(DxBody)b.getNext()) {
+			b.island = null;
+		}
+		for (DxJoint j=world.firstjoint.get(); j!=null; j=(DxJoint)j.getNext()) {
+			j.island = null;
+		}
+		Arrays.fill(islands, 0, islandCount, null);
+		islandCount = 0;
+	}
+
+	// ***********************************************
+	// Topology changes
+	// ***********************************************
+
+	public void bodyAdded(DxBody b) {
+		obtainIsland().addBody(b);
+	}
+
+	/**
+	 * To be called after all joints have been detached from the body.
+	 */
+	public void bodyRemoved(DxBody b) {
+		Island island = b.island;
+		if (island == null) {
+			return;
+		}
+		island.removeBody(b);
+		if (island.nb == 0) {
+			releaseIsland(island);
+		} else {
+			markDirty(island);
+		}
+	}
+
+	/**
+	 * To be called when a joint is attached or enabled.
+	 */
+	public void jointAttached(DxJoint j) {
+		if (j.island != null) {
+			return;
+		}
+		DxBody b0 = j.node[0].body;
+		if (b0 == null || !j.isEnabled()) {
+			// -1 is used in Step to prevent search over disabled joints
+			j.tag = -1;
+			return;
+		}
+		Island island = b0.island;
+		DxBody b1 = j.node[1].body;
+		if (b1 != null && b1.island != island) {
+			island = merge(island, b1.island);
+		}
+		island.addJoint(j);
+	}
+
+	/**
+	 * To be called before a joint is detached from its bodies or when it is disabled.
+	 */
+	public void jointDetached(DxJoint j) {
+		// Joints outside of islands must not keep the index of a previous step
+		j.tag = -1;
+		Island island = j.island;
+		if (island == null) {
+			return;
+		}
+		island.removeJoint(j);
+		// A joint with a single body does not link bodies. If one of the body references has
+		// already been cleared, the joint is detached from a destroyed body, which marks the
+		// island dirty in bodyRemoved().
+		if (j.node[0].body != null && j.node[1].body != null) {
+			markDirty(island);
+		}
+	}
+
+	private Island merge(Island a, Island b) {
+		if (a.nb + a.nj < b.nb + b.nj) {
+			Island t = a;
+			a = b;
+			b = t;
+		}
+		for (int i = 0; i < b.nb; i++) {
+			a.addBody(b.bodies[i]);
+		}
+		for (int i = 0; i < b.nj; i++) {
+			a.addJoint(b.joints[i]);
+		}
+		if (b.dirty) {
+			markDirty(a);
+		}
+		releaseIsland(b);
+		return a;
+	}
+
+	private void markDirty(Island island) {
+		if (!island.dirty) {
+			island.dirty = true;
+			dirtyCount++;
+		}
+	}
+
+	private Island obtainIsland() {
+		Island island;
+		if (freeCount > 0) {
+			island = freeIslands[--freeCount];
+			freeIslands[freeCount] = null;
+		} else {
+			island = new Island();
+		}
+		if (islandCount == islands.length) {
+			islands = Arrays.copyOf(islands, islandCount * 2);
+		}
+		island.listIndex = islandCount;
+		islands[islandCount++] = island;
+		return island;
+	}
+
+	private void releaseIsland(Island island) {
+		Island last = islands[--islandCount];
+		islands[island.listIndex] = last;
+		last.listIndex = island.listIndex;
+		islands[islandCount] = null;
+		if (island.dirty) {
+			island.dirty = false;
+			dirtyCount--;
+		}
+		Arrays.fill(island.bodies, 0, island.nb, null);
+		Arrays.fill(island.joints, 0, island.nj, null);
+		island.nb = 0;
+		island.nj = 0;
+		if (freeCount == freeIslands.length) {
+			freeIslands = Arrays.copyOf(freeIslands, freeCount * 2);
+		}
+		freeIslands[freeCount++] = island;
+	}
+
+	// ***********************************************
+	// Island processing
+	// ***********************************************
+
+	/**
+	 * Split all dirty islands into their connected components.
+	 */
+	private void splitDirtyIslands() {
+		if (dirtyCount == 0) {
+			return;
+		}
+		// New islands are appended, they are not dirty
+		int count = islandCount;
+		for (int i = 0; i < count; i++) {
+			Island island = islands[i];
+			if (island.dirty) {
+				split(island);
+			}
+		}
+		dirtyCount = 0;
+	}
+
+	private void split(Island island) {
+		island.dirty = false;
+		int nb = island.nb;
+		int nj = island.nj;
+		if (scratchBodies.length < nb) {
+			scratchBodies = new DxBody[Math.max(nb, scratchBodies.length * 2)];
+			stack = new DxBody[scratchBodies.length];
+		}
+		if (scratchJoints.length < nj) {
+			scratchJoints = new DxJoint[Math.max(nj, scratchJoints.length * 2)];
+		}
+		System.arraycopy(island.bodies, 0, scratchBodies, 0, nb);
+		System.arraycopy(island.joints, 0, scratchJoints, 0, nj);
+		for (int i = 0; i < nb; i++) {
+			scratchBodies[i].island = null;
+		}
+		Arrays.fill(island.bodies, 0, nb, null);
+		Arrays.fill(island.joints, 0, nj, null);
+		island.nb = 0;
+		island.nj = 0;
+
+		Island target = island;
+		for (int i = 0; i < nb; i++) {
+			DxBody start = scratchBodies[i];
+			if (start.island != null) {
+				continue;
+			}
+			if (target == null) {
+				target = obtainIsland();
+			}
+			target.addBody(start);
+			int stacksize = 0;
+			DxBody b = start;
+			while (true) {
+				for (DxJointNode n=b.firstjoint.get(); n!=null; n=n.next) {
+					DxBody nbody = n.body;
+					// Only joints that are still members of the island are followed
+					if (n.joint.island == island && nbody != null && nbody.island == null) {
+						target.addBody(nbody);
+						stack[stacksize++] = nbody;
+					}
+				}
+				if (stacksize == 0) {
+					break;
+				}
+				b = stack[--stacksize];
+			}
+			target = null;
+		}
+		for (int i = 0; i < nj; i++) {
+			DxJoint j = scratchJoints[i];
+			j.island = null;
+			j.node[0].body.island.addJoint(j);
+		}
+		Arrays.fill(scratchBodies, 0, nb, null);
+		Arrays.fill(scratchJoints, 0, nj, null);
+	}
+
+	int BuildIslandsAndEstimateStepperMemoryRequirements(
+			DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
+			double stepsize, dmemestimate_fn_t stepperestimate)
+	{
+		// handle auto-disabling of bodies
+		world.dInternalHandleAutoDisabling (stepsize);
+
+		splitDirtyIslands();
+
+		int nb = world.nb, nj = world.nj;
+		int[] islandsizes = memarena.AllocateArrayInt(2 * nb);
+		DxBody[] body = memarena.AllocateArrayDxBody(nb);
+		DxJoint[] joint = memarena.AllocateArrayDxJoint(nj);
+
+		int maxreq = 0;
+		int sizescurrP = 0;
+		int bodystart = 0;
+		int jointstart = 0;
+		for (int i = 0; i < islandCount; i++) {
+			Island island = islands[i];
+			if (!isActive(island)) {
+				continue;
+			}
+			DxBody[] bodies = island.bodies;
+			int bcount = island.nb;
+			for (int k = 0; k < bcount; k++) {
+				DxBody b = bodies[k];
+				b.tag = 1;
+				// Make sure all bodies are in the enabled state.
+				b.dBodyEnable_noAdis();
+			}
+			System.arraycopy(bodies, 0, body, bodystart, bcount);
+			DxJoint[] joints = island.joints;
+			int jcount = island.nj;
+			for (int k = 0; k < jcount; k++) {
+				joints[k].tag = 1;
+			}
+			System.arraycopy(joints, 0, joint, jointstart, jcount);
+
+			islandsizes[sizescurrP+DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT] = bcount;
+			islandsizes[sizescurrP+DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT] = jcount;
+			sizescurrP += DxWorldProcessIslandsInfo.dxISE__MAX;
+
+			int islandreq = stepperestimate.dxEstimateMemoryRequirements(
+					body, bodystart, bcount, joint, jointstart, jcount);
+			maxreq = (maxreq > islandreq) ? maxreq : islandreq;
+
+			bodystart += bcount;
+			jointstart += jcount;
+		}
+
+		int islandcount = sizescurrP / DxWorldProcessIslandsInfo.dxISE__MAX;
+		islandsinfo.AssignInfo(islandcount, islandsizes, body, joint);
+		return maxreq;
+	}
+
+	private static boolean isActive(Island island) {
+		DxBody[] bodies = island.bodies;
+		for (int k = 0; k < island.nb; k++) {
+			if (bodies[k].dBodyIsEnabled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Number of islands, including islands that are disabled.
+	 */
+	public int getIslandCount() {
+		splitDirtyIslands();
+		return islandCount;
+	}
+}
@@ -34,32 +34,84 @@ import org.ode4j.ode.internal.processmem.DxStepperProcessingCallContext.dstepper
 import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
 import org.ode4j.ode.threading.Atomics;
 import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
 import org.ode4j.ode.threading.task.TaskGroup;
 
+/**
+ * Island processing context of a world.
+ * <p>
+ * The context and its task graph (one group with one job per island thread) are created once
+ * and reused for every step as long as the executor and the number of threads do not change.
+ * If the stepper runs single-threaded, each job steps islands in a loop, so that no
+ * task objects are allocated during a step.
+ */
 public class DxIslandsProcessingCallContext {
 
-	public DxIslandsProcessingCallContext(DxWorld world, DxWorldProcessIslandsInfo islandsInfo, 
-			double stepSize, dstepper_fn_t stepper) {
+	public DxIslandsProcessingCallContext(DxWorld world, TaskExecutor executor, int jobCount) {
 		m_world = world;
+		m_executor = executor;
+		//m_islandToProcessStorage = 0;
+		m_stepperAllowedThreads = 0;
+		m_group = executor.group("World Islands Stepping Group", new Runnable() {
+			@Override
+			public void run() {}
+		});
+		m_jobs = new Task[jobCount];
+		for (int i = 0; i < jobCount; i++) {
+			final DxSingleIslandCallContext stepperCallContext = new DxSingleIslandCallContext(this);
+			m_jobs[i] = m_group.subtask("World Islands Stepping Start", new Runnable() {
+				@Override
+				public void run() {
+					ThreadedProcessJobStart(stepperCallContext);
+				}
+			});
+		}
+	}
+
+	public void Initialize(DxWorldProcessIslandsInfo islandsInfo, double stepSize, dstepper_fn_t stepper) {
 		m_islandsInfo = islandsInfo;
 		m_stepSize = stepSize;
 		m_stepper = stepper;
-		//m_islandToProcessStorage = 0;
-		m_stepperAllowedThreads = 0;
+		m_islandToProcessStorage.set(0);
 	}
 
 	public void SetStepperAllowedThreads(int allowedThreadsLimit) { m_stepperAllowedThreads = allowedThreadsLimit; }
 
+	/**
+	 * @return Whether this context can be reused with the given executor and number of jobs.
+	 */
+	public boolean IsCompatible(TaskExecutor executor, int jobCount) {
+		return m_executor == executor && m_jobs.length == jobCount;
+	}
+
+	/**
+	 * Submit all island jobs and wait until they have completed.
+	 */
+	public void ProcessIslands() {
+		m_group.reset();
+		for (Task job : m_jobs) {
+			job.reset();
+			job.submit();
+		}
+		m_group.submit();
+		// Wait until group completes (since jobs were the dependencies of the group the group 
+		// is going to complete only after all the jobs end)
+		m_group.awaitCompletion();
+	}
+
     final DxWorld                   m_world;
-    final DxWorldProcessIslandsInfo m_islandsInfo;
-    final double                    m_stepSize;
-    final dstepper_fn_t             m_stepper;
+    private final TaskExecutor      m_executor;
+    private final TaskGroup         m_group;
+    private final Task[]            m_jobs;
+    DxWorldProcessIslandsInfo       m_islandsInfo;
+    double                          m_stepSize;
+    dstepper_fn_t                   m_stepper;
     //volatile int                  m_islandToProcessStorage;
     final AtomicInteger             m_islandToProcessStorage = new AtomicInteger();
     int                        m_stepperAllowedThreads;
 
     
-    public void ThreadedProcessJobStart(final TaskGroup parent)
+    private void ThreadedProcessJobStart(final DxSingleIslandCallContext stepperCallContext)
     {
         DxWorldProcessContext context = m_world.UnsafeGetWorldProcessingContext(); 
 
@@ -73,83 +125,90 @@ public class DxIslandsProcessingCallContext {
         // Save area state after context allocation to be restored for the stepper
         BlockPointer arenaState = stepperArena.SaveState();
         //new(stepperCallContext) DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
-        //stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, islandBodiesStart, islandJointsStart);
-        final DxSingleIslandCallContext stepperCallContext = new DxSingleIslandCallContext(this, stepperArena, arenaState, 
-        		islandBodiesStart, islandJointsStart);
-        
-        Task task = parent.subtask("World Islands Stepping Selection", new Runnable() {
-			@Override
-			public void run() {
-				stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandSearch(stepperCallContext, parent);
-			}
-		});
-        task.submit();
+        stepperCallContext.Initialize(stepperArena, arenaState, islandBodiesStart, islandJointsStart);
+
+        if (m_stepperAllowedThreads == 1) {
+            // The stepper does not spawn any tasks, so there is no need to chain
+            // a task per island, just process the islands one after the other.
+            while (SelectNextIsland(stepperCallContext)) {
+                ThreadedProcessIslandStepper(stepperCallContext);
+            }
+            context.ReturnStepperMemArena(stepperArena);
+        } else {
+            ThreadedProcessIslandSearch(stepperCallContext, m_group);
+        }
     }
 
     private void ThreadedProcessIslandSearch(final DxSingleIslandCallContext stepperCallContext, final TaskGroup parent)
     {
-        boolean finalizeJob = false;
+        if (SelectNextIsland(stepperCallContext)) {
+            TaskGroup searchTask = parent.subgroup("World Islands Stepping Selection", new Runnable() {
+                @Override
+                public void run() {
+                    stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandSearch(stepperCallContext, parent);
+                }
+            });
+            stepperCallContext.m_stepperCallContext.AssignStepperTaskGroup(searchTask);
+            Task stepperTask = searchTask.subtask("Island Stepping Job Start", new Runnable() {
+                @Override
+                public void run() {
+                    stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandStepper(stepperCallContext);
+                }
+            });
+            stepperTask.submit();
+            searchTask.submit();
+        }
+        else {
+            DxWorldProcessMemArena stepperArena = stepperCallContext.m_stepperArena;
+            DxWorldProcessContext context = m_world.UnsafeGetWorldProcessingContext(); 
+            context.ReturnStepperMemArena(stepperArena);
+        }
+    }
 
+    /**
+     * Select the next unprocessed island and prepare the stepper context for it.
+     * @return 'false' if there are no islands left.
+     */
+    private boolean SelectNextIsland(final DxSingleIslandCallContext stepperCallContext)
+    {
         final DxWorldProcessIslandsInfo islandsInfo = m_islandsInfo;
         int[] islandSizes = islandsInfo.GetIslandSizes();
 
         final int islandsCount = islandsInfo.GetIslandsCount();
         int islandToProcess = ObtainNextIslandToBeProcessed(islandsCount);
 
-        if (islandToProcess != islandsCount) {
-            // First time, the counts are zeros and on next passes, adding counts will skip island that has just been processed by stepper
-            DxBody[] islandBodiesStartA = stepperCallContext.GetSelectedIslandBodiesA();
-            int islandBodiesStartP = stepperCallContext.GetSelectedIslandBodiesEndP();
-            DxJoint[] islandJointsStartA = stepperCallContext.GetSelectedIslandJointsA();
-            int islandJointsStartP = stepperCallContext.GetSelectedIslandJointsEndP();
-            int islandIndex = stepperCallContext.m_islandIndex;
-
-            for (; ; ++islandIndex) {
-                int bcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
-                int jcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
-
-                if (islandIndex == islandToProcess) {
-                    // Store selected island details
-                    stepperCallContext.AssignIslandSelection(
-                    		islandBodiesStartA, islandBodiesStartP, 
-                    		islandJointsStartA, islandJointsStartP, bcount, jcount);
-
-                    // Store next island index to continue search from
-                    ++islandIndex;
-                    stepperCallContext.AssignIslandSearchProgress(islandIndex);
-
-                    // Restore saved stepper memory arena position
-                    stepperCallContext.RestoreSavedMemArenaStateForStepper();
-                    TaskGroup searchTask = parent.subgroup("World Islands Stepping Selection", new Runnable() {
-						@Override
-						public void run() {
-							stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandSearch(stepperCallContext, parent);
-						}
-                    });
-                    stepperCallContext.m_stepperCallContext.AssignStepperTaskGroup(searchTask);
-                    Task stepperTask = searchTask.subtask("Island Stepping Job Start", new Runnable() {
-						@Override
-						public void run() {
-							stepperCallContext.m_islandsProcessingContext.ThreadedProcessIslandStepper(stepperCallContext);
-						}
-					});
-                    stepperTask.submit();
-                    searchTask.submit();
-                    break;
-                }
+        if (islandToProcess == islandsCount) {
+            return false;
+        }
 
-                islandBodiesStartP += bcount;
-                islandJointsStartP += jcount;
+        // First time, the counts are zeros and on next passes, adding counts will skip island that has just been processed by stepper
+        DxBody[] islandBodiesStartA = stepperCallContext.GetSelectedIslandBodiesA();
+        int islandBodiesStartP = stepperCallContext.GetSelectedIslandBodiesEndP();
+        DxJoint[] islandJointsStartA = stepperCallContext.GetSelectedIslandJointsA();
+        int islandJointsStartP = stepperCallContext.GetSelectedIslandJointsEndP();
+        int islandIndex = stepperCallContext.m_islandIndex;
+
+        for (; ; ++islandIndex) {
+            int bcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
+            int jcount = islandSizes[islandIndex * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
+
+            if (islandIndex == islandToProcess) {
+                // Store selected island details
+                stepperCallContext.AssignIslandSelection(islandIndex,
+                        islandBodiesStartA, islandBodiesStartP, 
+                        islandJointsStartA, islandJointsStartP, bcount, jcount);
+
+                // Store next island index to continue search from
+                ++islandIndex;
+                stepperCallContext.AssignIslandSearchProgress(islandIndex);
+
+                // Restore saved stepper memory arena position
+                stepperCallContext.RestoreSavedMemArenaStateForStepper();
+                return true;
             }
-        }
-        else {
-            finalizeJob = true;
-        }
 
-        if (finalizeJob) {
-            DxWorldProcessMemArena stepperArena = stepperCallContext.m_stepperArena;
-            DxWorldProcessContext context = m_world.UnsafeGetWorldProcessingContext(); 
-            context.ReturnStepperMemArena(stepperArena);
+            islandBodiesStartP += bcount;
+            islandJointsStartP += jcount;
         }
     }
 
@@ -0,0 +1,329 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.processmem;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.ode4j.ode.internal.DxBody;
+import org.ode4j.ode.internal.DxWorld;
+import org.ode4j.ode.internal.joints.DxJoint;
+import org.ode4j.ode.internal.processmem.DxWorldProcessIslandsInfo.dmemestimate_fn_t;
+import org.ode4j.ode.threading.task.Task;
+import org.ode4j.ode.threading.task.TaskExecutor;
+import org.ode4j.ode.threading.task.TaskGroup;
+
+/**
+ * Concurrent island search.
+ * <p>
+ * Instead of a depth-first walk over the body/joint graph, islands are found with a
+ * lock-free union-find over body slots: the joints are split in chunks that are merged
+ * concurrently, then the bodies are split in chunks that resolve their roots. Only the final
+ * counting sort into {@link DxWorldProcessIslandsInfo} is sequential.
+ * <p>
+ * Bodies and joints of an island are ordered as they appear in the world, not in
+ * depth-first order as with the sequential search.
+ * <p>
+ * All buffers and the task graph are kept between steps.
+ */
+public final class DxParallelIslandsBuilder {
+
+	/** Minimum number of bodies or joints per task. */
+	private static final int MIN_CHUNK_SIZE = 1024;
+
+	private static final int PHASE_UNION = 0;
+	private static final int PHASE_ROOTS = 1;
+
+	private final DxWorld world;
+
+	private DxBody[] bodies = new DxBody[0];
+	private DxJoint[] joints = new DxJoint[0];
+	private AtomicIntegerArray parent = new AtomicIntegerArray(0);
+	private int[] roots = new int[0];
+	private boolean[] active = new boolean[0];
+	private int[] islandOfRoot = new int[0];
+	private int[] bodyIsland = new int[0];
+	private int[] jointIsland = new int[0];
+	private int[] bodyNext = new int[0];
+	private int[] jointNext = new int[0];
+	private int nb;
+	private int nj;
+
+	private TaskExecutor executor;
+	private TaskGroup group;
+	private Task[] chunks = new Task[0];
+	private int phase;
+
+	public DxParallelIslandsBuilder(DxWorld world) {
+		this.world = world;
+	}
+
+	int BuildIslandsAndEstimateStepperMemoryRequirements(
+			DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
+			double stepsize, dmemestimate_fn_t stepperestimate)
+	{
+		// handle auto-disabling of bodies
+		world.dInternalHandleAutoDisabling (stepsize);
+
+		collect();
+
+		int threads = world.GetThreadingIslandsMaxThreadsCount(null);
+		int work = nb > nj ? nb : nj;
+		int chunkCount = Math.min(threads, (work + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE);
+		if (chunkCount <= 1) {
+			runPhase(PHASE_UNION, 0, 1);
+			runPhase(PHASE_ROOTS, 0, 1);
+		} else {
+			ensureTasks(world.getTaskExecutor(), chunkCount);
+			runParallel(PHASE_UNION);
+			runParallel(PHASE_ROOTS);
+		}
+
+		int maxreq = assignIslands(islandsinfo, memarena, stepperestimate);
+
+		// Do not keep references to destroyed objects
+		Arrays.fill(bodies, 0, nb, null);
+		Arrays.fill(joints, 0, nj, null);
+		return maxreq;
+	}
+
+	/**
+	 * Copy bodies and joints into arrays, body tags are set to the slot index.
+	 */
+	private void collect() {
+		nb = world.nb;
+		nj = world.nj;
+		if (bodies.length < nb) {
+			int size = nb + (nb >> 1);
+			bodies = new DxBody[size];
+			parent = new AtomicIntegerArray(size);
+			roots = new int[size];
+			active = new boolean[size];
+			islandOfRoot = new int[size];
+			bodyIsland = new int[size];
+			bodyNext = new int[size];
+		}
+		if (joints.length < nj) {
+			int size = nj + (nj >> 1);
+			joints = new DxJoint[size];
+			jointIsland = new int[size];
+			jointNext = new int[size];
+		}
+		int i = 0;
+		for (DxBody b=world.firstbody.get(); b!=null; b=(DxBody)b.getNext(), i++) {
+			bodies[i] = b;
+			b.tag = i;
+			parent.set(i, i);
+			active[i] = false;
+			islandOfRoot[i] = -1;
+		}
+		i = 0;
+		for (DxJoint j=world.firstjoint.get(); j!=null; j=(DxJoint)j.getNext(), i++) {
+			joints[i] = j;
+		}
+	}
+
+	private void ensureTasks(TaskExecutor executor, int chunkCount) {
+		if (this.executor == executor && chunks.length == chunkCount) {
+			return;
+		}
+		this.executor = executor;
+		group = executor.group("World Islands Search", new Runnable() {
+			@Override
+			public void run() {}
+		});
+		chunks = new Task[chunkCount];
+		for (int i = 0; i < chunkCount; i++) {
+			final int chunk = i;
+			chunks[i] = group.subtask("World Islands Search Chunk", new Runnable() {
+				@Override
+				public void run() {
+					runPhase(phase, chunk, chunks.length);
+				}
+			});
+		}
+	}
+
+	private void runParallel(int phase) {
+		this.phase = phase;
+		group.reset();
+		for (Task chunk : chunks) {
+			chunk.reset();
+			chunk.submit();
+		}
+		group.submit();
+		group.awaitCompletion();
+	}
+
+	private void runPhase(int phase, int chunk, int chunkCount) {
+		if (phase == PHASE_UNION) {
+			int begin = (int) ((long) nj * chunk / chunkCount);
+			int end = (int) ((long) nj * (chunk + 1) / chunkCount);
+			for (int i = begin; i < end; i++) {
+				DxJoint j = joints[i];
+				DxBody b0 = j.node[0].body;
+				DxBody b1 = j.node[1].body;
+				if (b0 != null && b1 != null && j.isEnabled()) {
+					union(b0.tag, b1.tag);
+				}
+			}
+		} else {
+			int begin = (int) ((long) nb * chunk / chunkCount);
+			int end = (int) ((long) nb * (chunk + 1) / chunkCount);
+			for (int i = begin; i < end; i++) {
+				int root = find(i);
+				roots[i] = root;
+				if (bodies[i].dBodyIsEnabled()) {
+					// Concurrent writes all store the same value
+					active[root] = true;
+				}
+			}
+		}
+	}
+
+	private int find(int x) {
+		final AtomicIntegerArray p = parent;
+		int px = p.get(x);
+		while (px != x) {
+			int gpx = p.get(px);
+			if (gpx != px) {
+				// Path splitting, losing the race only means less compression
+				p.compareAndSet(x, px, gpx);
+			}
+			x = px;
+			px = p.get(x);
+		}
+		return x;
+	}
+
+	private void union(int a, int b) {
+		while (true) {
+			a = find(a);
+			b = find(b);
+			if (a == b) {
+				return;
+			}
+			// Always link the larger root below the smaller one, this prevents cycles.
+			if (a > b) {
+				int t = a;
+				a = b;
+				b = t;
+			}
+			if (parent.compareAndSet(b, b, a)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Sequential counting sort of bodies and joints into islands.
+	 */
+	private int assignIslands(DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
+			dmemestimate_fn_t stepperestimate) {
+		int[] islandsizes = memarena.AllocateArrayInt(2 * nb);
+		DxBody[] body = memarena.AllocateArrayDxBody(nb);
+		DxJoint[] joint = memarena.AllocateArrayDxJoint(nj);
+		Arrays.fill(islandsizes, 0, 2 * nb, 0);
+
+		int islandcount = 0;
+		for (int i = 0; i < nb; i++) {
+			int root = roots[i];
+			if (active[root]) {
+				int island = islandOfRoot[root];
+				if (island < 0) {
+					island = islandcount++;
+					islandOfRoot[root] = island;
+				}
+				bodyIsland[i] = island;
+				islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT]++;
+			} else {
+				bodyIsland[i] = -1;
+			}
+		}
+		for (int i = 0; i < nj; i++) {
+			DxJoint j = joints[i];
+			DxBody b0 = j.node[0].body;
+			int island = -1;
+			if (b0 != null) {
+				if (j.isEnabled()) {
+					island = bodyIsland[b0.tag];
+				}
+				if (island >= 0) {
+					islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT]++;
+				}
+			}
+			jointIsland[i] = island;
+		}
+
+		// Start offsets of the islands, bodyNext/jointNext are reused as write positions
+		int bodystart = 0;
+		int jointstart = 0;
+		for (int island = 0; island < islandcount; island++) {
+			bodyNext[island] = bodystart;
+			jointNext[island] = jointstart;
+			bodystart += islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
+			jointstart += islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
+		}
+
+		for (int i = 0; i < nj; i++) {
+			DxJoint j = joints[i];
+			int island = jointIsland[i];
+			if (island >= 0) {
+				j.tag = 1;
+				joint[jointNext[island]++] = j;
+			} else {
+				// -1 is used in Step to prevent search over disabled joints
+				j.tag = j.isEnabled() ? 0 : -1;
+			}
+		}
+		for (int i = 0; i < nb; i++) {
+			DxBody b = bodies[i];
+			int island = bodyIsland[i];
+			if (island >= 0) {
+				b.tag = 1;
+				// Make sure all bodies are in the enabled state.
+				b.dBodyEnable_noAdis();
+				body[bodyNext[island]++] = b;
+			} else {
+				b.tag = -1;
+			}
+		}
+
+		int maxreq = 0;
+		bodystart = 0;
+		jointstart = 0;
+		for (int island = 0; island < islandcount; island++) {
+			int bcount = islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_BODIES_COUNT];
+			int jcount = islandsizes[island * DxWorldProcessIslandsInfo.dxISE__MAX + DxWorldProcessIslandsInfo.dxISE_JOINTS_COUNT];
+			int islandreq = stepperestimate.dxEstimateMemoryRequirements(
+					body, bodystart, bcount, joint, jointstart, jcount);
+			maxreq = (maxreq > islandreq) ? maxreq : islandreq;
+			bodystart += bcount;
+			jointstart += jcount;
+		}
+
+		islandsinfo.AssignInfo(islandcount, islandsizes, body, joint);
+		return maxreq;
+	}
+
+}
@@ -28,17 +28,21 @@ import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.joints.DxJoint;
 
 public class DxSingleIslandCallContext {
-	DxSingleIslandCallContext(DxIslandsProcessingCallContext islandsProcessingContext, 
-			DxWorldProcessMemArena stepperArena, DxUtil.BlockPointer arenaInitialState, 
+	DxSingleIslandCallContext(DxIslandsProcessingCallContext islandsProcessingContext) {
+		m_islandsProcessingContext = islandsProcessingContext;
+		m_stepperCallContext = new DxStepperProcessingCallContext(islandsProcessingContext.m_world, 
+				0, 0, null, null, null);
+	}
+
+	void Initialize(DxWorldProcessMemArena stepperArena, DxUtil.BlockPointer arenaInitialState, 
 			DxBody[] islandBodiesStart, 
 			DxJoint[] islandJointsStart) {
-		m_islandsProcessingContext = islandsProcessingContext;
 		m_islandIndex = 0; 
 		m_stepperArena = stepperArena;
 		m_arenaInitialState = arenaInitialState; 
-		m_stepperCallContext = new DxStepperProcessingCallContext(islandsProcessingContext.m_world, 
-				islandsProcessingContext.m_stepSize, 
-				islandsProcessingContext.m_stepperAllowedThreads, 
+		m_stepperCallContext.Initialize(m_islandsProcessingContext.m_world, 
+				m_islandsProcessingContext.m_stepSize, 
+				m_islandsProcessingContext.m_stepperAllowedThreads, 
 				stepperArena, 
 				islandBodiesStart, islandJointsStart);
 	}
@@ -48,11 +52,11 @@ public class DxSingleIslandCallContext {
 		m_islandIndex = islandIndex; 
 	}
 
-	void AssignIslandSelection(DxBody[] islandBodiesStartA, int islandBodiesStartP, 
+	void AssignIslandSelection(int islandIndex, DxBody[] islandBodiesStartA, int islandBodiesStartP, 
 			DxJoint[] islandJointsStartA, int islandJointsStartP, 
 			int islandBodiesCount, int islandJointsCount)
 	{
-		m_stepperCallContext.AssignIslandSelection(islandBodiesStartA, islandBodiesStartP, 
+		m_stepperCallContext.AssignIslandSelection(islandIndex, islandBodiesStartA, islandBodiesStartP, 
 				islandJointsStartA, islandJointsStartP, 
 				islandBodiesCount, islandJointsCount);
 	}
@@ -75,11 +79,11 @@ public class DxSingleIslandCallContext {
 		m_stepperArena.RestoreState(m_arenaInitialState);
 	}
 
-	DxIslandsProcessingCallContext  m_islandsProcessingContext;
+	final DxIslandsProcessingCallContext  m_islandsProcessingContext;
 	int                          	m_islandIndex;
 	DxWorldProcessMemArena          m_stepperArena;
 	DxUtil.BlockPointer            	m_arenaInitialState;
-	DxStepperProcessingCallContext  m_stepperCallContext;
+	final DxStepperProcessingCallContext  m_stepperCallContext;
 
 
 }
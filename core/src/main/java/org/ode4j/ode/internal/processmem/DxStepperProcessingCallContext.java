@@ -44,6 +44,13 @@ public final class DxStepperProcessingCallContext {
 			DxWorldProcessMemArena stepperArena, 
 			DxBody[] islandBodiesStart,
 			DxJoint[] islandJointsStart) {
+		Initialize(world, stepSize, stepperAllowedThreads, stepperArena, islandBodiesStart, islandJointsStart);
+	}
+
+	void Initialize(DxWorld world, double stepSize, int stepperAllowedThreads, 
+			DxWorldProcessMemArena stepperArena, 
+			DxBody[] islandBodiesStart,
+			DxJoint[] islandJointsStart) {
 		m_world = world;
 		m_stepSize = stepSize;
 		m_stepperArena = stepperArena;
@@ -51,15 +58,18 @@ public final class DxStepperProcessingCallContext {
 		m_islandBodiesStartOfs = 0;
 		m_islandJointsStartA = islandJointsStart;
 		m_islandJointsStartOfs = 0;
+		m_islandIndex = 0;
 		m_islandBodiesCount = 0;
 		m_islandJointsCount = 0;
 		m_stepperAllowedThreads = stepperAllowedThreads;
+		m_taskGroup = null;
 	}
 
-	void AssignIslandSelection(DxBody[] islandBodiesStartA, int islandBodiesStartOfs,
+	void AssignIslandSelection(int islandIndex, DxBody[] islandBodiesStartA, int islandBodiesStartOfs,
 			DxJoint[] islandJointsStartA, int islandJointsStartOfs,
 			int islandBodiesCount, int islandJointsCount)
 	{
+		m_islandIndex = islandIndex;
 		m_islandBodiesStartA = islandBodiesStartA;
 		m_islandBodiesStartOfs = islandBodiesStartOfs;
 		m_islandJointsStartA = islandJointsStartA;
@@ -78,6 +88,7 @@ public final class DxStepperProcessingCallContext {
 	private int         	   m_islandBodiesStartOfs;
 	private DxJoint[]          m_islandJointsStartA;
 	private int  		       m_islandJointsStartOfs;
+	private int                m_islandIndex;
 	private int                m_islandBodiesCount;
 	private int                m_islandJointsCount;
 	private int                m_stepperAllowedThreads;
@@ -91,6 +102,13 @@ public final class DxStepperProcessingCallContext {
 		return m_world;
 	}
 
+	/**
+	 * @return Index of the selected island in the islands of the current step.
+	 */
+	public int m_islandIndex() {
+		return m_islandIndex;
+	}
+
 	public int m_islandBodiesCount() {
 		return m_islandBodiesCount;
 	}
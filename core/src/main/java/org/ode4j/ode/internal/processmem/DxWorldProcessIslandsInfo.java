@@ -82,6 +82,17 @@ public class DxWorldProcessIslandsInfo {
             DxWorldProcessIslandsInfo islandsinfo, DxWorldProcessMemArena memarena, 
             DxWorld world, double stepsize, dmemestimate_fn_t stepperestimate)
     {
+        DxIslandCache islandCache = world.GetIslandCache();
+        if (islandCache != null) {
+            return islandCache.BuildIslandsAndEstimateStepperMemoryRequirements(
+                    islandsinfo, memarena, stepsize, stepperestimate);
+        }
+        DxParallelIslandsBuilder parallelBuilder = world.GetParallelIslandsBuilder();
+        if (parallelBuilder != null) {
+            return parallelBuilder.BuildIslandsAndEstimateStepperMemoryRequirements(
+                    islandsinfo, memarena, stepsize, stepperestimate);
+        }
+
         int maxreq = 0;
 
         // handle auto-disabling of bodies
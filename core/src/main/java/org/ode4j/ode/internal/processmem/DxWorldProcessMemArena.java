@@ -29,8 +29,23 @@ import org.ode4j.ode.internal.DxBody;
 import org.ode4j.ode.internal.joints.DxJoint;
 import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
 
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicIntegerArray;
 
+/**
+ * Memory arena for world stepping.
+ * <p>
+ * In ODE the arena is a single memory block that allocations are carved from. In Java
+ * the arena keeps the arrays it has handed out in a list of blocks. An allocation takes
+ * the next block and reuses its array if it has the requested type and is large enough,
+ * otherwise the block is replaced by a larger array. {@link #SaveState()},
+ * {@link #RestoreState(BlockPointer)} and {@link #ResetState()} move the allocation
+ * position like in ODE, so every island and every step allocates the same sequence of
+ * blocks and the arrays grow to a high-water mark instead of being reallocated.
+ * <p>
+ * Arrays are cleared when they are handed out, they can be larger than requested.
+ * An arena must only be used by one thread at a time.
+ */
 public final class DxWorldProcessMemArena {
 	
     //   public:
@@ -55,49 +70,60 @@ public final class DxWorldProcessMemArena {
 
     boolean IsStructureValid() //const
     {
-        return m_pAllocBegin!=null 
-        && m_pAllocEnd!=null 
-        && m_pAllocBegin.toInt() <= m_pAllocEnd.toInt() 
-        && (m_pAllocCurrentOrNextArena == null || m_pAllocCurrentOrNextArena == m_pAllocBegin) 
-        && m_pArenaBegin!=null  
-        && m_pArenaBegin.toInt() <= m_pAllocBegin.toInt(); 
+        return m_pArenaBegin!=null 
+        && m_allocCurrent >= 0 
+        && m_allocCurrent <= m_blocks.length;
     }
 
     int GetMemorySize() //const
     {
-        return m_pAllocEnd.toInt() - m_pAllocBegin.toInt();
+        return m_memorySize;
     }
 
     public BlockPointer SaveState() //const
     {
-        return m_pAllocCurrentOrNextArena;
+        // the state is the index of the next block, the pointers are cached to avoid garbage
+        if (m_allocCurrent >= m_states.length) {
+            m_states = Arrays.copyOf(m_states, Math.max(m_allocCurrent + 1, m_states.length * 2));
+        }
+        BlockPointer state = m_states[m_allocCurrent];
+        if (state == null) {
+            state = new BlockPointer(this, m_allocCurrent);
+            m_states[m_allocCurrent] = state;
+        }
+        return state;
     }
 
     public void RestoreState(BlockPointer state)
     {
-    	m_pAllocCurrentOrNextArena = state;
+    	m_allocCurrent = state.toInt();
     }
 
     public void ResetState()
     {
-    	m_pAllocCurrentOrNextArena = m_pAllocBegin;
+    	m_allocCurrent = 0;
     }
 
     public BlockPointer PeekBufferRemainder() //const
     {
-        return m_pAllocCurrentOrNextArena;
+        return SaveState();
     }
 
     //dxWorldProcessMemArena *GetNextMemArena() const { return (dxWorldProcessMemArena *)m_pAllocCurrentOrNextArena; }
-    DxWorldProcessMemArena GetNextMemArena() { return m_pAllocCurrentOrNextArena.asDxWorldProcessMemArena(); }
+    DxWorldProcessMemArena GetNextMemArena() { return m_nextArena; }
     //void SetNextMemArena(dxWorldProcessMemArena *pArenaInstance) { m_pAllocCurrentOrNextArena = pArenaInstance; }
-    void SetNextMemArena(DxWorldProcessMemArena pArenaInstance) { m_pAllocCurrentOrNextArena.setTo( pArenaInstance ); }
+    void SetNextMemArena(DxWorldProcessMemArena pArenaInstance) { m_nextArena = pArenaInstance; }
 
     
-    private BlockPointer m_pAllocCurrentOrNextArena = new BlockPointer(this, 0);
-    private BlockPointer m_pAllocBegin = new BlockPointer(this, 0);
-    private BlockPointer m_pAllocEnd = new BlockPointer(this, 0);
+    // In ODE the current position and the next arena share one pointer, 
+    // in Java they are separate fields.
+    private int m_allocCurrent;
+    private DxWorldProcessMemArena m_nextArena;
+    private int m_memorySize;
     private BlockPointer m_pArenaBegin;
+    private Object[] m_blocks = new Object[16];
+    private Object[] m_blockTypes = new Object[16];
+    private BlockPointer[] m_states = new BlockPointer[16];
 
     DxWorldProcessMemoryManager m_pArenaMemMgr;
 
@@ -147,13 +173,11 @@ public final class DxWorldProcessMemArena {
 
                 arena = DxUtil.dEFFICIENT_PTR(pNewArenaBuffer).asDxWorldProcessMemArena();
 
-                BlockPointer blockbegin = DxUtil.dEFFICIENT_PTR(arena, 1);
-                BlockPointer blockend = DxUtil.dOFFSET_EFFICIENTLY(blockbegin, memreq_with_reserve);
-
-                arena.m_pAllocBegin = blockbegin;
-                arena.m_pAllocEnd = blockend;
+                // the arrays are allocated on demand, only remember the size
+                arena.m_memorySize = memreq_with_reserve;
                 arena.m_pArenaBegin = pNewArenaBuffer;
-                arena.m_pAllocCurrentOrNextArena.setTo(null);
+                arena.m_allocCurrent = 0;
+                arena.m_nextArena = null;
                 arena.m_pArenaMemMgr = memmgr;
             }
 
@@ -200,12 +224,63 @@ public final class DxWorldProcessMemArena {
     // Java methods to simulate the C++ manager (TZ)
     // ***********************************************
 
+    /**
+     * Factory for arrays of reusable objects, see {@link #AllocateArrayOfObjects(int, ObjectArrayFactory)}.
+     */
+    public interface ObjectArrayFactory<T> {
+        T[] newArray(int size);
+        T newElement();
+    }
+
+    /**
+     * @return The array of the next block if it was allocated by the same type of allocation, 
+     * otherwise 'null'.
+     */
+    private Object PeekBlock(Object type) {
+        int current = m_allocCurrent;
+        if (current >= m_blocks.length) {
+            int newLength = Math.max(current + 1, m_blocks.length * 2);
+            m_blocks = Arrays.copyOf(m_blocks, newLength);
+            m_blockTypes = Arrays.copyOf(m_blockTypes, newLength);
+            return null;
+        }
+        return m_blockTypes[current] == type ? m_blocks[current] : null;
+    }
+
+    private void ReplaceBlock(Object type, Object block) {
+        m_blocks[m_allocCurrent] = block;
+        m_blockTypes[m_allocCurrent] = type;
+    }
+
+    /**
+     * @return The capacity of a new array, grows by at least 50% to reach the high-water mark quickly.
+     */
+    private static int GrowCapacity(int oldLength, int size) {
+        return Math.max(size, oldLength + (oldLength >> 1));
+    }
+
     public final double[] AllocateArrayDReal(int size) {
-        return new double[size];
+        double[] a = (double[]) PeekBlock(double[].class);
+        if (a != null && a.length >= size) {
+            Arrays.fill(a, 0, size, 0);
+        } else {
+            a = new double[GrowCapacity(a != null ? a.length : 0, size)];
+            ReplaceBlock(double[].class, a);
+        }
+        m_allocCurrent++;
+        return a;
     }
 
     public final int[] AllocateArrayInt(int size) {
-        return new int[size];
+        int[] a = (int[]) PeekBlock(int[].class);
+        if (a != null && a.length >= size) {
+            Arrays.fill(a, 0, size, 0);
+        } else {
+            a = new int[GrowCapacity(a != null ? a.length : 0, size)];
+            ReplaceBlock(int[].class, a);
+        }
+        m_allocCurrent++;
+        return a;
     }
 
     public double[] AllocateOveralignedArrayDReal(int count, int alignment)
@@ -213,11 +288,59 @@ public final class DxWorldProcessMemArena {
         //return (ElementType *)AllocateOveralignedBlock(count * sizeof(ElementType), alignment);
         // TZ: we assume that alignment is for the whole block so it can be safely ignored.
         //     Do we have to make sure to have size be a multiple of alignment?
-        return new double[count];
+        return AllocateArrayDReal(count);
     }
 
     public final AtomicIntegerArray AllocateArrayAtomicord32(int size) {
-        return new AtomicIntegerArray(size);
+        AtomicIntegerArray a = (AtomicIntegerArray) PeekBlock(AtomicIntegerArray.class);
+        if (a != null && a.length() >= size) {
+            for (int i = 0; i < size; i++) {
+                a.lazySet(i, 0);
+            }
+        } else {
+            a = new AtomicIntegerArray(GrowCapacity(a != null ? a.length() : 0, size));
+            ReplaceBlock(AtomicIntegerArray.class, a);
+        }
+        m_allocCurrent++;
+        return a;
+    }
+
+    /**
+     * Allocate an array whose first 'size' elements are not 'null'. The elements are reused 
+     * and must be reset by the caller.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T[] AllocateArrayOfObjects(int size, ObjectArrayFactory<T> factory) {
+        T[] a = (T[]) PeekBlock(factory);
+        if (a == null || a.length < size) {
+            T[] old = a;
+            a = factory.newArray(GrowCapacity(old != null ? old.length : 0, size));
+            if (old != null) {
+                System.arraycopy(old, 0, a, 0, old.length);
+            }
+            ReplaceBlock(factory, a);
+        }
+        for (int i = 0; i < size; i++) {
+            if (a[i] == null) {
+                a[i] = factory.newElement();
+            }
+        }
+        m_allocCurrent++;
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] AllocateArrayOfReferences(int size, Class<T[]> type) {
+        T[] a = (T[]) PeekBlock(type);
+        if (a != null && a.length >= size) {
+            Arrays.fill(a, 0, size, null);
+        } else {
+            a = (T[]) java.lang.reflect.Array.newInstance(type.getComponentType(), 
+                    GrowCapacity(a != null ? a.length : 0, size));
+            ReplaceBlock(type, a);
+        }
+        m_allocCurrent++;
+        return a;
     }
 
     /**
@@ -242,11 +365,19 @@ public final class DxWorldProcessMemArena {
     }
 
     public final double[][] AllocateArrayDRealDReal(int n) {
-        return new double[n][];
+        return AllocateArrayOfReferences(n, double[][].class);
     }
 
     public final boolean[] AllocateArrayBool(int n) {
-        return new boolean[n];
+        boolean[] a = (boolean[]) PeekBlock(boolean[].class);
+        if (a != null && a.length >= n) {
+            Arrays.fill(a, 0, n, false);
+        } else {
+            a = new boolean[GrowCapacity(a != null ? a.length : 0, n)];
+            ReplaceBlock(boolean[].class, a);
+        }
+        m_allocCurrent++;
+        return a;
     }
 
     public BlockPointer BEGIN_STATE_SAVE() {
@@ -268,11 +399,11 @@ public final class DxWorldProcessMemArena {
     }
 
     public DxBody[] AllocateArrayDxBody(int nb) {
-        return new DxBody[nb];
+        return AllocateArrayOfReferences(nb, DxBody[].class);
     }
 
     public DxJoint[] AllocateArrayDxJoint(int nj) {
-        return new DxJoint[nj];
+        return AllocateArrayOfReferences(nj, DxJoint[].class);
     }
 
 }
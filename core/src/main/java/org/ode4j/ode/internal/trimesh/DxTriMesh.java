@@ -58,6 +58,23 @@ public abstract class DxTriMesh extends DxMeshBase implements DTriMesh {
         return Geom;
     }
 
+    @Override
+    protected boolean isCopySupported() {
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    protected DxTriMesh copy(DxSpace space) {
+        DxTriMesh Geom = dCreateTriMesh(space, getMeshData(),
+                m_Callback, m_ArrayCallback, m_RayCallback);
+        Geom.m_TriMergeCallback = m_TriMergeCallback;
+        for (TRIMESHTC tc : TRIMESHTC.values()) {
+            Geom.setDoTC(tc, getDoTC(tc));
+        }
+        return Geom;
+    }
+
     //public:
     // Functions
     //dxTriMesh(dxSpace * Space, dxTriMeshData * Data, dTriCallback * Callback, dTriArrayCallback * ArrayCallback, dTriRayCallback * RayCallback):
@@ -0,0 +1,102 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.threading.task;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Task executor backed by a work-stealing {@link ForkJoinPool}.
+ * <p>
+ * Tasks submitted from a worker thread are pushed onto that worker's own deque
+ * and stolen by idle workers, so there is no single shared queue between the
+ * threads. A {@link TaskGroup} whose last subtask completes on a worker is run
+ * directly on that worker as a continuation instead of being queued again.
+ * <p>
+ * Use with {@link org.ode4j.ode.DWorld#setTaskExecutor(TaskExecutor)}.
+ */
+public class ForkJoinTaskExecutor extends AbstractTaskExecutor {
+
+	/**
+	 * Maximum number of nested group continuations that are run inline on a
+	 * worker before they are forked instead, this keeps the stack bounded.
+	 */
+	private static final int MAX_INLINE_DEPTH = 16;
+
+	private final ForkJoinPool pool;
+
+	public ForkJoinTaskExecutor(int threads) {
+		pool = new ForkJoinPool(threads, new WorkerFactory(), null, true);
+	}
+
+	private class WorkerFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			Worker t = new Worker(pool, ForkJoinTaskExecutor.this);
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	private static class Worker extends ForkJoinWorkerThread {
+		private final ForkJoinTaskExecutor owner;
+		private int inlineDepth;
+
+		Worker(ForkJoinPool pool, ForkJoinTaskExecutor owner) {
+			super(pool);
+			this.owner = owner;
+		}
+	}
+
+	@Override
+	public void submit(Task task) {
+		Thread current = Thread.currentThread();
+		if (current instanceof Worker && ((Worker) current).owner == this) {
+			Worker worker = (Worker) current;
+			if (task instanceof TaskGroup && worker.inlineDepth < MAX_INLINE_DEPTH) {
+				worker.inlineDepth++;
+				try {
+					task.run();
+				} finally {
+					worker.inlineDepth--;
+				}
+			} else {
+				ForkJoinTask.adapt(task).fork();
+			}
+		} else {
+			pool.execute(task);
+		}
+	}
+
+	@Override
+	public int getThreadCount() {
+		return pool.getParallelism();
+	}
+
+	@Override
+	public void flush() {
+	}
+
+}
@@ -48,7 +48,7 @@ public class SameThreadTaskExecutor extends AbstractTaskExecutor {
                 task.parent.subtaskCompleted();
             }
 	        task.runnable.run();
-	        task.completed.countDown();
+	        task.markCompleted();
 	    }
 	}
 }
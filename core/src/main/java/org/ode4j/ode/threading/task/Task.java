@@ -23,32 +23,64 @@
  *************************************************************************/
 package org.ode4j.ode.threading.task;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.atomic.AtomicInteger;
-
 public class Task implements Runnable {
 
     public final TaskExecutor executor;
     public final String name;
     public final TaskGroup parent;
     public final Runnable runnable;
-    protected final CountDownLatch completed;
-    protected final AtomicInteger subtaskCount;
+    private volatile boolean completed;
+    private volatile boolean awaited;
 
     protected Task(TaskExecutor executor, String name, TaskGroup parent, Runnable runnable) {
         this.executor = executor;
         this.name = name;
         this.parent = parent;
         this.runnable = runnable;
-        subtaskCount = new AtomicInteger(0);
-        completed = new CountDownLatch(1);
     }
 
     public void awaitCompletion() {
-        try {
-            executor.flush();
-            completed.await();
-        } catch (InterruptedException e) {
+        executor.flush();
+        if (completed) {
+            return;
+        }
+        awaited = true;
+        synchronized (this) {
+            try {
+                while (!completed) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+            }
+        }
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    protected void markCompleted() {
+        completed = true;
+        if (awaited) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Prepare a completed task for being submitted again, as if it had just been
+     * created with {@link TaskGroup#subtask(String, Runnable)}. This allows building
+     * a task graph once and reusing it, e.g. once per step.
+     * <p>
+     * The task must have completed. If the task has a parent group, the parent must be
+     * reset before its subtasks.
+     */
+    public void reset() {
+        completed = false;
+        awaited = false;
+        if (parent != null) {
+            parent.subtaskAdded();
         }
     }
 
@@ -65,7 +97,7 @@ public class Task implements Runnable {
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            completed.countDown();
+            markCompleted();
             if (parent != null) {
                 parent.subtaskCompleted();
             }
@@ -23,36 +23,59 @@
  *************************************************************************/
 package org.ode4j.ode.threading.task;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 public class TaskGroup extends Task {
 
+	private static final AtomicIntegerFieldUpdater<TaskGroup> SUBTASK_COUNT =
+			AtomicIntegerFieldUpdater.newUpdater(TaskGroup.class, "subtaskCount");
+
+	private volatile int subtaskCount;
+
 	TaskGroup(TaskExecutor executor, String name, Runnable runnable) {
 		this(executor, name, null, runnable);
 	}
 
 	TaskGroup(TaskExecutor executor, String name, TaskGroup parent, Runnable runnable) {
 		super(executor, name, parent, runnable);
-		subtaskCount.incrementAndGet();
+		subtaskCount = 1;
 	}
 
 	public TaskGroup subgroup(String name, Runnable runnable) {
 		TaskGroup subgroup = new TaskGroup(executor, name, this, runnable);
-		subtaskCount.incrementAndGet();
+		subtaskAdded();
 		return subgroup;
 	}
 
 	public Task subtask(String name, Runnable runnable) {
 		Task subtask = new Task(executor, name, this, runnable);
-		subtaskCount.incrementAndGet();
+		subtaskAdded();
 		return subtask;
 	}
 
+	/**
+	 * Prepare a completed group for being submitted again. Subtasks that should run
+	 * again have to be reset after the group, they then count as dependencies of the
+	 * group again.
+	 * @see Task#reset()
+	 */
+	@Override
+	public void reset() {
+		subtaskCount = 1;
+		super.reset();
+	}
+
 	@Override
 	public void submit() {
 		subtaskCompleted();
 	}
 
+	void subtaskAdded() {
+		SUBTASK_COUNT.incrementAndGet(this);
+	}
+
 	void subtaskCompleted() {
-		if (subtaskCount.decrementAndGet() == 0) {
+		if (SUBTASK_COUNT.decrementAndGet(this) == 0) {
 			super.submit();
 		}
 	}
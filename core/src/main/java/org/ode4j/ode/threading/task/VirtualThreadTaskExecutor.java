@@ -0,0 +1,116 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.threading.task;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Task executor that runs every task on its own virtual thread.
+ * <p>
+ * Many worlds (e.g. one per game room) can each have their own executor while
+ * sharing the JVM's carrier threads, so the number of OS threads depends on the
+ * number of cores rather than on the number of worlds.
+ * <p>
+ * Virtual threads require Java 21. The executor is looked up at runtime so that
+ * ode4j can still be compiled for (and run on) older JVMs and Android, use
+ * {@link #isSupported()} to check for availability.
+ * <p>
+ * Call {@link #shutdown()} when the executor is no longer needed.
+ */
+public class VirtualThreadTaskExecutor extends AbstractTaskExecutor {
+
+	private final ExecutorService executor;
+	private final int threads;
+
+	/**
+	 * Create an executor that allows one parallel job per available processor.
+	 */
+	public VirtualThreadTaskExecutor() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param threads Maximum number of islands that are stepped in parallel.
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads
+	 */
+	public VirtualThreadTaskExecutor(int threads) {
+		this.threads = threads;
+		this.executor = createVirtualThreadExecutor();
+		if (executor == null) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later.");
+		}
+	}
+
+	/**
+	 * @return 'true' if the JVM supports virtual threads.
+	 */
+	public static boolean isSupported() {
+		return findFactoryMethod() != null;
+	}
+
+	private static Method findFactoryMethod() {
+		try {
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+	private static ExecutorService createVirtualThreadExecutor() {
+		Method factory = findFactoryMethod();
+		if (factory == null) {
+			return null;
+		}
+		try {
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void submit(Task task) {
+		executor.execute(task);
+	}
+
+	@Override
+	public int getThreadCount() {
+		return threads;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * Shut down the underlying executor. Tasks that have already been submitted
+	 * are completed, new tasks are rejected.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+}
@@ -4,6 +4,7 @@ import java.util.Random;
 
 import org.junit.Test;
 import org.ode4j.math.DQuaternion;
+import org.ode4j.math.DVector3;
 import org.ode4j.ode.DGeom;
 import org.ode4j.ode.DSapSpace.AXES;
 import org.ode4j.ode.DSpace;
@@ -41,6 +42,8 @@ public class SpacePerformanceTest {
         test_performance_with_dynamic_world(space, iterations, staticGeoms, geoms);
         space = OdeHelper.createBHVSpace(null, 16, false, 0.2, STATIC_CATEGORY);
         test_performance_with_dynamic_world(space, iterations, staticGeoms, geoms);
+        space = OdeHelper.createOctreeSpace(null, new DVector3(125, 125, 125), 128, 5);
+        test_performance_with_dynamic_world(space, iterations, staticGeoms, geoms);
     }
 
     private void test_performance_with_dynamic_world(DSpace space, int iterations, int passiveGeomNum, int geomNum) {
@@ -123,6 +126,8 @@ public class SpacePerformanceTest {
         test_performance_with_static_world(space, iterations, staticGeoms, geoms);
         space = OdeHelper.createBHVSpace(null, 4, false, 0.2, STATIC_CATEGORY);
         test_performance_with_static_world(space, iterations, staticGeoms, geoms);
+        space = OdeHelper.createOctreeSpace(null, new DVector3(125, 125, 125), 128, 5);
+        test_performance_with_static_world(space, iterations, staticGeoms, geoms);
     }
 
     private void test_performance_with_static_world(DSpace space, int iterations, int passiveGeomNum, int geomNum) {
@@ -0,0 +1,66 @@
+package org.ode4j.benchmarks;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.DWorldSnapshot;
+import org.ode4j.ode.OdeHelper;
+
+public class WorldSnapshotPerformanceTest {
+
+    @Test
+    public void test_performance_save_restore() {
+        OdeHelper.initODE2(0);
+        // Warmup
+        test_performance_save_restore(1000, 1000);
+        System.out.println("---------------");
+        test_performance_save_restore(1000, 1000);
+        test_performance_save_restore(200, 10000);
+        test_performance_save_restore(20, 100000);
+    }
+
+    private void test_performance_save_restore(int iterations, int bodyNum) {
+        System.out.printf("-= Iterations: %d  Bodies: %d =-  ", iterations, bodyNum);
+        DWorld world = OdeHelper.createWorld();
+        world.setAutoDisableFlag(true);
+        world.setAutoDisableAverageSamplesCount(4);
+        DSpace space = OdeHelper.createHashSpace();
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.5);
+        DBody prev = null;
+        for (int i = 0; i < bodyNum; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i % 100, i / 100, 1);
+            OdeHelper.createSphere(space, 0.5).setBody(b);
+            // one joint for every second body
+            if (prev != null && (i & 1) == 1) {
+                DBallJoint j = OdeHelper.createBallJoint(world);
+                j.attach(prev, b);
+            }
+            prev = b;
+        }
+        world.quickStep(0.01);
+
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        long timeSave = 0;
+        long timeRestore = 0;
+        for (int j = 0; j < iterations; j++) {
+            long time1 = System.nanoTime();
+            world.saveSnapshot(snapshot);
+            long time2 = System.nanoTime();
+            world.restoreSnapshot(snapshot);
+            long time3 = System.nanoTime();
+            timeSave += time2 - time1;
+            timeRestore += time3 - time2;
+        }
+        double per1k = 1000.0 / bodyNum / iterations / 1000;
+        System.out.printf("Size: %d bytes  Save Time per 1k bodies: %.1f us  Restore Time per 1k bodies: %.1f us%n",
+                snapshot.getSize(), timeSave * per1k, timeRestore * per1k);
+        space.destroy();
+        world.destroy();
+    }
+}
@@ -23,11 +23,14 @@
 package org.ode4j.ode;
 
 import org.junit.Test;
+import org.ode4j.math.DMatrix3;
 import org.ode4j.math.DVector3;
 
+import java.lang.reflect.Method;
 import java.util.Iterator;
 
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 public class DBodyTest {
 
@@ -68,4 +71,127 @@ public class DBodyTest {
         assertEquals(g1, it2.next());
         assertFalse(it2.hasNext());
     }
+
+    private static DBody createRotatedBody(DWorld world) {
+        DBody b = OdeHelper.createBody(world);
+        b.setPosition(1, 2, 3);
+        DMatrix3 R = new DMatrix3();
+        OdeMath.dRFromAxisAndAngle(R, 1, 2, 3, 0.7);
+        b.setRotation(R);
+        b.setLinearVel(0.5, -1, 2);
+        b.setAngularVel(1, 0.3, -0.2);
+        return b;
+    }
+
+    /**
+     * Scalar and vector overloads of the force and point functions.
+     */
+    @Test
+    public void testForceAndPointOverloads() {
+        DWorld world = OdeHelper.createWorld();
+        DBody a = createRotatedBody(world);
+        DBody b = createRotatedBody(world);
+        DVector3 f = new DVector3(1, -2, 0.5);
+        DVector3 p = new DVector3(0.3, 0.2, -0.4);
+
+        a.addRelForce(1, -2, 0.5);
+        b.addRelForce(f);
+        a.addRelTorque(1, -2, 0.5);
+        b.addRelTorque(f);
+        a.addForceAtPos(1, -2, 0.5, 0.3, 0.2, -0.4);
+        b.addForceAtPos(f, p);
+        a.addForceAtRelPos(1, -2, 0.5, 0.3, 0.2, -0.4);
+        b.addForceAtRelPos(f, p);
+        a.addRelForceAtPos(1, -2, 0.5, 0.3, 0.2, -0.4);
+        b.addRelForceAtPos(f, p);
+        a.addRelForceAtRelPos(1, -2, 0.5, 0.3, 0.2, -0.4);
+        b.addRelForceAtRelPos(f, p);
+        assertTrue(a.getForce().isEq(b.getForce(), 0));
+        assertTrue(a.getTorque().isEq(b.getTorque(), 0));
+
+        // torque of a force at a relative position: (R*p) x f
+        DBody c = createRotatedBody(world);
+        c.addForceAtRelPos(f, p);
+        DVector3 pw = new DVector3();
+        c.vectorToWorld(p, pw);
+        DVector3 t = new DVector3();
+        t.eqCross(pw, f);
+        assertTrue(c.getForce().isEq(f, 0));
+        assertTrue(c.getTorque().isEq(t, 1e-12));
+
+        DVector3 r1 = new DVector3();
+        DVector3 r2 = new DVector3();
+        a.getRelPointPos(0.3, 0.2, -0.4, r1);
+        a.getRelPointPos(p, r2);
+        assertTrue(r1.isEq(r2, 0));
+        // round trip
+        a.getPosRelPoint(r1, r2);
+        assertTrue(r2.isEq(p, 1e-12));
+        a.getRelPointVel(0.3, 0.2, -0.4, r1);
+        a.getRelPointVel(p, r2);
+        assertTrue(r1.isEq(r2, 0));
+        a.getPointVel(0.3, 0.2, -0.4, r1);
+        a.getPointVel(p, r2);
+        assertTrue(r1.isEq(r2, 0));
+        a.vectorToWorld(0.3, 0.2, -0.4, r1);
+        a.vectorToWorld(p, r2);
+        assertTrue(r1.isEq(r2, 0));
+        a.vectorFromWorld(r1, r2);
+        assertTrue(r2.isEq(p, 1e-12));
+        // result may be the same object as the argument
+        r1.set(p);
+        a.vectorToWorld(r1, r1);
+        assertTrue(r1.isEq(pw, 0));
+        world.destroy();
+    }
+
+    /**
+     * The scalar overloads of the force and point functions must not allocate.
+     */
+    @Test
+    public void testForceAndPointOverloadsDoNotAllocate() throws Exception {
+        // Accessed via reflection because the org.ode4j module does not read java.management.
+        Object threads = Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getThreadMXBean").invoke(null);
+        Class<?> extended;
+        try {
+            extended = Class.forName("com.sun.management.ThreadMXBean");
+        } catch (ClassNotFoundException e) {
+            extended = null;
+        }
+        assumeTrue(extended != null && extended.isInstance(threads));
+        assumeTrue((Boolean) extended.getMethod("isThreadAllocatedMemorySupported").invoke(threads));
+        extended.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threads, true);
+        Method allocatedBytes = extended.getMethod("getThreadAllocatedBytes", long.class);
+        long thread = Thread.currentThread().getId();
+
+        DWorld world = OdeHelper.createWorld();
+        DBody b = createRotatedBody(world);
+        DVector3 result = new DVector3();
+        final int n = 100000;
+        // warm up, then measure
+        for (int round = 0; round < 2; round++) {
+            long before = (Long) allocatedBytes.invoke(threads, thread);
+            for (int i = 0; i < n; i++) {
+                b.addRelForce(1, 2, 3);
+                b.addRelTorque(1, 2, 3);
+                b.addForceAtPos(1, 2, 3, 4, 5, 6);
+                b.addForceAtRelPos(1, 2, 3, 4, 5, 6);
+                b.addRelForceAtPos(1, 2, 3, 4, 5, 6);
+                b.addRelForceAtRelPos(1, 2, 3, 4, 5, 6);
+                b.getRelPointPos(1, 2, 3, result);
+                b.getRelPointVel(1, 2, 3, result);
+                b.getPointVel(1, 2, 3, result);
+                b.getPosRelPoint(1, 2, 3, result);
+                b.vectorToWorld(1, 2, 3, result);
+                b.vectorFromWorld(1, 2, 3, result);
+            }
+            long allocated = (Long) allocatedBytes.invoke(threads, thread) - before;
+            if (round == 1) {
+                // a single temporary vector per call would be several MB
+                assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+            }
+        }
+        world.destroy();
+    }
 }
@@ -0,0 +1,178 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.internal.DxWorld;
+
+public class DJointGroupPoolingTest {
+
+    private static final int MAX_CONTACTS = 4;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    private static DContact newContact(double z) {
+        DContact c = new DContact();
+        c.geom.pos.set(0, 0, z);
+        c.geom.normal.set(0, 0, 1);
+        c.geom.depth = 0.01;
+        c.surface.mu = 0.5;
+        return c;
+    }
+
+    @Test
+    public void testSetting() {
+        DJointGroup group = OdeHelper.createJointGroup();
+        assertFalse(group.isPooling());
+        group.setPooling(true);
+        assertTrue(group.isPooling());
+        group.setPooling(false);
+        assertFalse(group.isPooling());
+        group.destroy();
+    }
+
+    @Test
+    public void testContactJointsAreReused() {
+        DWorld world = OdeHelper.createWorld();
+        DBody body = OdeHelper.createBody(world);
+        DJointGroup group = OdeHelper.createJointGroup();
+        group.setPooling(true);
+
+        List<DContactJoint> first = new ArrayList<DContactJoint>();
+        for (int i = 0; i < 3; i++) {
+            DContactJoint j = OdeHelper.createContactJoint(world, group, newContact(i));
+            j.attach(body, null);
+            j.setFeedback(new DJoint.DJointFeedback());
+            j.setData("joint" + i);
+            first.add(j);
+        }
+        assertEquals(3, ((DxWorld) world).nj);
+        assertEquals(3, body.getNumJoints());
+        group.empty();
+        assertEquals(0, ((DxWorld) world).nj);
+        assertEquals(0, body.getNumJoints());
+
+        for (int i = 0; i < 3; i++) {
+            DContactJoint j = OdeHelper.createContactJoint(world, group, newContact(10 + i));
+            assertTrue(first.contains(j));
+            assertNull(j.getBody(0));
+            assertNull(j.getBody(1));
+            assertNull(j.getFeedback());
+            assertNull(j.getData());
+            assertEquals(10 + i, j.getContact().geom.pos.get2(), 0);
+            j.attach(body, null);
+        }
+        assertEquals(3, ((DxWorld) world).nj);
+        assertEquals(3, body.getNumJoints());
+        // pool is exhausted
+        DContactJoint extra = OdeHelper.createContactJoint(world, group, newContact(0));
+        assertFalse(first.contains(extra));
+
+        group.destroy();
+        world.destroy();
+    }
+
+    @Test
+    public void testWithoutPooling() {
+        DWorld world = OdeHelper.createWorld();
+        DJointGroup group = OdeHelper.createJointGroup();
+        DContactJoint j1 = OdeHelper.createContactJoint(world, group, newContact(0));
+        group.empty();
+        DContactJoint j2 = OdeHelper.createContactJoint(world, group, newContact(0));
+        assertNotSame(j1, j2);
+
+        group.setPooling(true);
+        group.empty();
+        group.setPooling(false);
+        DContactJoint j3 = OdeHelper.createContactJoint(world, group, newContact(0));
+        assertNotSame(j2, j3);
+
+        group.setPooling(true);
+        group.empty();
+        assertSame(j3, OdeHelper.createContactJoint(world, group, newContact(0)));
+        group.destroy();
+        world.destroy();
+    }
+
+    private static double[] simulate(boolean pooling) {
+        DMisc.dRandSetSeed(0);
+        final DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        DSpace space = OdeHelper.createSimpleSpace();
+        final DJointGroup contacts = OdeHelper.createJointGroup();
+        contacts.setPooling(pooling);
+        OdeHelper.createPlane(space, 0, 0, 1, 0);
+        DMass m = OdeHelper.createMass();
+        m.setBox(1, 1, 1, 1);
+        DBody box = OdeHelper.createBody(world);
+        box.setMass(m);
+        box.setPosition(0, 0, 1);
+        box.setAngularVel(0.5, 0.2, 0);
+        OdeHelper.createBox(space, 1, 1, 1).setBody(box);
+        DNearCallback callback = new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                DContactBuffer buf = new DContactBuffer(MAX_CONTACTS);
+                int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf.getGeomBuffer());
+                for (int i = 0; i < n; i++) {
+                    DContact contact = buf.get(i);
+                    contact.surface.mu = 0.5;
+                    DJoint c = OdeHelper.createContactJoint(world, contacts, contact);
+                    c.attach(o1.getBody(), o2.getBody());
+                }
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            space.collide(null, callback);
+            world.quickStep(0.01);
+            contacts.empty();
+        }
+        double[] result = new double[] { box.getPosition().get0(),
+                box.getPosition().get1(), box.getPosition().get2() };
+        contacts.destroy();
+        space.destroy();
+        world.destroy();
+        return result;
+    }
+
+    @Test
+    public void testSameResultAsWithoutPooling() {
+        assertArrayEquals(simulate(false), simulate(true), 0);
+    }
+}
@@ -0,0 +1,226 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DBatchedNearCallback;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+public class DSpaceCollideBatchedTest {
+
+    private static final int MAX_CONTACTS = 4;
+
+    private static class Contact {
+        final DGeom g1;
+        final DGeom g2;
+        final DGeom cg1;
+        final DGeom cg2;
+        final double depth;
+        final DVector3 normal;
+        final DVector3 pos;
+
+        Contact(DGeom g1, DGeom g2, DContactGeom c) {
+            this.g1 = g1;
+            this.g2 = g2;
+            this.cg1 = c.g1;
+            this.cg2 = c.g2;
+            this.depth = c.depth;
+            this.normal = new DVector3(c.normal);
+            this.pos = new DVector3(c.pos);
+        }
+    }
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    /**
+     * Boxes, spheres, capsules and cylinders in random order on a plane, some
+     * geoms share a body, and a nested simple space.
+     */
+    private static DSpace createScene(DWorld world) {
+        DHashSpace space = OdeHelper.createHashSpace();
+        OdeHelper.createPlane(space, 0, 0, 1, 0.05);
+        DBody body = null;
+        for (int i = 0; i < 400; i++) {
+            double x = (i % 20) * 0.9;
+            double y = (i / 20) * 0.9;
+            DGeom g;
+            switch ((i * 7) % 4) {
+            case 0:
+                g = OdeHelper.createBox(space, 1, 1, 1);
+                break;
+            case 1:
+                g = OdeHelper.createSphere(space, 0.5);
+                break;
+            case 2:
+                g = OdeHelper.createCapsule(space, 0.4, 0.5);
+                break;
+            default:
+                g = OdeHelper.createCylinder(space, 0.45, 0.8);
+                break;
+            }
+            if (i % 10 == 0) {
+                body = OdeHelper.createBody(world);
+                body.setPosition(x, y, 0.1 * (i % 4));
+            }
+            if (i % 10 < 2) {
+                g.setBody(body);
+                g.setOffsetWorldPosition(x, y, 0.1 * (i % 4));
+            } else {
+                g.setPosition(x, y, 0.1 * (i % 4));
+            }
+        }
+        DSimpleSpace nested = OdeHelper.createSimpleSpace(space);
+        for (int i = 0; i < 20; i++) {
+            OdeHelper.createSphere(nested, 0.6).setPosition(i * 0.9, 3.3, 0.5);
+        }
+        return space;
+    }
+
+    private static boolean accept(DGeom o1, DGeom o2) {
+        // e.g. skip geoms of connected bodies
+        return !(o1 instanceof DCylinder && o2 instanceof DCylinder);
+    }
+
+    private static List<Contact> collideSequential(DSpace space) {
+        final List<Contact> contacts = new ArrayList<>();
+        final DContactGeomBuffer buf = new DContactGeomBuffer(MAX_CONTACTS);
+        space.collide(null, new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                if (o1.isSpace() || o2.isSpace()) {
+                    OdeHelper.spaceCollide2(o1, o2, data, this);
+                } else if (accept(o1, o2)) {
+                    int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf);
+                    for (int i = 0; i < n; i++) {
+                        contacts.add(new Contact(o1, o2, buf.get(i)));
+                    }
+                }
+            }
+        });
+        return contacts;
+    }
+
+    private static List<Contact> collideBatched(DSpace space, TaskExecutor executor) {
+        final List<Contact> contacts = new ArrayList<>();
+        DBatchedNearCallback callback = new DBatchedNearCallback() {
+            @Override
+            public boolean accept(DGeom o1, DGeom o2) {
+                assertTrue(!o1.isSpace() && !o2.isSpace());
+                return DSpaceCollideBatchedTest.accept(o1, o2);
+            }
+
+            @Override
+            public void call(DGeom o1, DGeom o2, DContactGeomBuffer buf, int n) {
+                assertTrue(n > 0 && n <= MAX_CONTACTS);
+                for (int i = 0; i < n; i++) {
+                    contacts.add(new Contact(o1, o2, buf.get(i)));
+                }
+            }
+        };
+        if (executor == null) {
+            space.collideBatched(MAX_CONTACTS, callback);
+        } else {
+            space.collideBatched(executor, MAX_CONTACTS, callback);
+        }
+        return contacts;
+    }
+
+    private static void assertSameContacts(List<Contact> expected, List<Contact> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Contact e = expected.get(i);
+            Contact a = actual.get(i);
+            assertSame(e.g1, a.g1);
+            assertSame(e.g2, a.g2);
+            assertSame(e.cg1, a.cg1);
+            assertSame(e.cg2, a.cg2);
+            assertEquals(e.depth, a.depth, 0);
+            assertEquals(0, e.normal.distance(a.normal), 0);
+            assertEquals(0, e.pos.distance(a.pos), 0);
+        }
+    }
+
+    @Test
+    public void testSequential() {
+        DWorld world = OdeHelper.createWorld();
+        DSpace space = createScene(world);
+        List<Contact> expected = collideSequential(space);
+        assertTrue(expected.size() > 1000);
+        // the buffers are reused by subsequent calls
+        for (int i = 0; i < 2; i++) {
+            assertSameContacts(expected, collideBatched(space, null));
+        }
+        space.destroy();
+        world.destroy();
+    }
+
+    @Test
+    public void testForkJoin() {
+        DWorld world = OdeHelper.createWorld();
+        DSpace space = createScene(world);
+        List<Contact> expected = collideSequential(space);
+        TaskExecutor executor = new ForkJoinTaskExecutor(4);
+        for (int i = 0; i < 3; i++) {
+            assertSameContacts(expected, collideBatched(space, executor));
+        }
+        space.destroy();
+        world.destroy();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExceptionIsPropagated() {
+        DWorld world = OdeHelper.createWorld();
+        DSpace space = createScene(world);
+        try {
+            space.collideBatched(new ForkJoinTaskExecutor(4), MAX_CONTACTS, new DBatchedNearCallback() {
+                @Override
+                public boolean accept(DGeom o1, DGeom o2) {
+                    return true;
+                }
+
+                @Override
+                public void call(DGeom o1, DGeom o2, DContactGeomBuffer contacts, int count) {
+                    throw new IllegalStateException();
+                }
+            });
+        } finally {
+            space.destroy();
+            world.destroy();
+        }
+    }
+
+}
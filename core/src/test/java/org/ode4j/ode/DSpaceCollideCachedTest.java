@@ -0,0 +1,246 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.math.DVector3C;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DGeomPair;
+import org.ode4j.ode.DSpace.DPairCallback;
+
+public class DSpaceCollideCachedTest {
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    private static class Recorder implements DPairCallback {
+        final List<DGeomPair> begun = new ArrayList<>();
+        final List<DGeomPair> persisted = new ArrayList<>();
+        final List<String> ended = new ArrayList<>();
+
+        void clear() {
+            begun.clear();
+            persisted.clear();
+            ended.clear();
+        }
+
+        @Override
+        public void begin(Object data, DGeomPair pair) {
+            assertNull(pair.getData());
+            assertFalse(pair.isUnchanged());
+            pair.setData(key(pair.getGeom1(), pair.getGeom2()));
+            begun.add(pair);
+        }
+
+        @Override
+        public void persist(Object data, DGeomPair pair) {
+            assertEquals(key(pair.getGeom1(), pair.getGeom2()), pair.getData());
+            persisted.add(pair);
+        }
+
+        @Override
+        public void end(Object data, DGeomPair pair) {
+            assertEquals(key(pair.getGeom1(), pair.getGeom2()), pair.getData());
+            ended.add((String) pair.getData());
+        }
+    }
+
+    private static String key(DGeom g1, DGeom g2) {
+        int i1 = (Integer) g1.getData();
+        int i2 = (Integer) g2.getData();
+        return Math.min(i1, i2) + "/" + Math.max(i1, i2);
+    }
+
+    private static DSphere sphere(DSpace space, int id, double x) {
+        DSphere s = OdeHelper.createSphere(space, 0.5);
+        s.setPosition(x, 0, 0);
+        s.setData(id);
+        return s;
+    }
+
+    @Test
+    public void testEvents() {
+        DSpace space = OdeHelper.createSimpleSpace();
+        DSphere a = sphere(space, 0, 0);
+        sphere(space, 1, 0.8);
+        DSphere c = sphere(space, 2, 5);
+        Recorder r = new Recorder();
+
+        space.collideCached(null, r);
+        assertEquals(1, r.begun.size());
+        assertEquals("0/1", r.begun.get(0).getData());
+        assertEquals(0, r.persisted.size());
+        assertEquals(0, r.ended.size());
+        DGeomPair ab = r.begun.get(0);
+
+        // nothing moved
+        r.clear();
+        space.collideCached(null, r);
+        assertEquals(0, r.begun.size());
+        assertEquals(1, r.persisted.size());
+        assertSame(ab, r.persisted.get(0));
+        assertTrue(ab.isUnchanged());
+
+        // c moves next to a, the a/b pair does not change
+        r.clear();
+        c.setPosition(-0.8, 0, 0);
+        space.collideCached(null, r);
+        assertEquals(1, r.begun.size());
+        assertEquals("0/2", r.begun.get(0).getData());
+        assertEquals(1, r.persisted.size());
+        assertTrue(ab.isUnchanged());
+
+        // a moves a little, both pairs persist but have changed
+        r.clear();
+        a.setPosition(0, 0.01, 0);
+        space.collideCached(null, r);
+        assertEquals(0, r.begun.size());
+        assertEquals(2, r.persisted.size());
+        for (DGeomPair p : r.persisted) {
+            assertFalse(p.isUnchanged());
+        }
+
+        // a moves away
+        r.clear();
+        a.setPosition(0, 5, 0);
+        space.collideCached(null, r);
+        assertEquals(0, r.begun.size());
+        assertEquals(0, r.persisted.size());
+        assertEquals(2, r.ended.size());
+        assertTrue(r.ended.contains("0/1"));
+        assertTrue(r.ended.contains("0/2"));
+
+        // a normal collide() does not affect the pairs
+        a.setPosition(0, 0, 0);
+        space.collide(null, (data, o1, o2) -> { });
+        r.clear();
+        space.collideCached(null, r);
+        assertEquals(2, r.begun.size());
+
+        space.destroy();
+    }
+
+    @Test
+    public void testRemoveAndDisable() {
+        DSpace space = OdeHelper.createSimpleSpace();
+        sphere(space, 0, 0);
+        DSphere b = sphere(space, 1, 0.8);
+        DSphere c = sphere(space, 2, -0.8);
+        Recorder r = new Recorder();
+        space.collideCached(null, r);
+        assertEquals(2, r.begun.size());
+
+        r.clear();
+        c.disable();
+        space.collideCached(null, r);
+        assertEquals(1, r.persisted.size());
+        assertEquals(1, r.ended.size());
+        assertEquals("0/2", r.ended.get(0));
+
+        r.clear();
+        c.enable();
+        b.destroy();
+        space.collideCached(null, r);
+        assertEquals(1, r.begun.size());
+        assertEquals("0/2", r.begun.get(0).getData());
+        assertEquals(1, r.ended.size());
+        assertEquals("0/1", r.ended.get(0));
+
+        space.destroy();
+    }
+
+    /**
+     * Random movements in a hash space with a nested space. The cached pairs
+     * must always match the pairs that collide() reports.
+     */
+    @Test
+    public void testAgainstCollide() {
+        Random rnd = new Random(42);
+        DHashSpace space = OdeHelper.createHashSpace();
+        DSimpleSpace nested = OdeHelper.createSimpleSpace(space);
+        DGeom[] geoms = new DGeom[100];
+        for (int i = 0; i < geoms.length; i++) {
+            DSpace s = i % 5 == 0 ? nested : space;
+            geoms[i] = i % 2 == 0 ? OdeHelper.createBox(s, 1, 1, 1) : OdeHelper.createSphere(s, 0.5);
+            geoms[i].setPosition(rnd.nextDouble() * 8, rnd.nextDouble() * 8, rnd.nextDouble() * 2);
+            geoms[i].setData(i);
+        }
+
+        Recorder r = new Recorder();
+        Set<String> previous = new HashSet<>();
+        for (int step = 0; step < 50; step++) {
+            Set<String> expected = new HashSet<>();
+            space.collide(null, new DNearCallback() {
+                @Override
+                public void call(Object data, DGeom o1, DGeom o2) {
+                    if (o1.isSpace() || o2.isSpace()) {
+                        OdeHelper.spaceCollide2(o1, o2, data, this);
+                    } else {
+                        assertTrue(expected.add(key(o1, o2)));
+                    }
+                }
+            });
+
+            r.clear();
+            space.collideCached(null, r);
+            Set<String> current = new HashSet<>();
+            for (DGeomPair p : r.begun) {
+                assertFalse(previous.contains(p.getData()));
+                assertTrue(current.add((String) p.getData()));
+            }
+            for (DGeomPair p : r.persisted) {
+                assertTrue(previous.contains(p.getData()));
+                assertTrue(current.add((String) p.getData()));
+            }
+            assertEquals(expected, current);
+            Set<String> ended = new HashSet<>(previous);
+            ended.removeAll(current);
+            assertEquals(ended, new HashSet<>(r.ended));
+            assertEquals(ended.size(), r.ended.size());
+            previous = current;
+
+            for (DGeom g : geoms) {
+                if (rnd.nextInt(3) == 0) {
+                    DVector3C p = g.getPosition();
+                    g.setPosition(p.get0() + rnd.nextDouble() - 0.5, p.get1() + rnd.nextDouble() - 0.5, p.get2());
+                }
+            }
+        }
+        space.destroy();
+    }
+}
@@ -0,0 +1,178 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DSpace.DParallelNearCallback;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+import org.ode4j.ode.threading.task.SameThreadTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+public class DSpaceCollideParallelTest {
+
+    private static final int MAX_CONTACTS = 4;
+
+    private static class Contact {
+        final DGeom g1;
+        final DGeom g2;
+        final double depth;
+
+        Contact(DGeom g1, DGeom g2, double depth) {
+            this.g1 = g1;
+            this.g2 = g2;
+            this.depth = depth;
+        }
+    }
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    private static void collide(DGeom o1, DGeom o2, List<Contact> out) {
+        DContactGeomBuffer buf = new DContactGeomBuffer(MAX_CONTACTS);
+        int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf);
+        for (int i = 0; i < n; i++) {
+            out.add(new Contact(o1, o2, buf.get(i).depth));
+        }
+    }
+
+    /**
+     * A hash space with overlapping spheres and boxes and a nested simple space.
+     */
+    private static DSpace createScene() {
+        DHashSpace space = OdeHelper.createHashSpace();
+        for (int i = 0; i < 400; i++) {
+            double x = (i % 20) * 0.9;
+            double y = (i / 20) * 0.9;
+            DGeom g = (i % 3 == 0) ? OdeHelper.createBox(space, 1, 1, 1) : OdeHelper.createSphere(space, 0.5);
+            g.setPosition(x, y, 0.1 * (i % 4));
+        }
+        DSimpleSpace nested = OdeHelper.createSimpleSpace(space);
+        for (int i = 0; i < 20; i++) {
+            OdeHelper.createSphere(nested, 0.6).setPosition(i * 0.9, 3.3, 0.5);
+        }
+        return space;
+    }
+
+    private static List<Contact> collideSequential(DSpace space) {
+        final List<Contact> contacts = new ArrayList<>();
+        space.collide(null, new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                if (o1.isSpace() || o2.isSpace()) {
+                    OdeHelper.spaceCollide2(o1, o2, data, this);
+                } else {
+                    collide(o1, o2, contacts);
+                }
+            }
+        });
+        return contacts;
+    }
+
+    private static List<Contact> collideParallel(DSpace space, TaskExecutor executor) {
+        final List<Contact> contacts = new ArrayList<>();
+        space.collideParallel(executor, new DParallelNearCallback<List<Contact>>() {
+            @Override
+            public List<Contact> createSink() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public void call(List<Contact> sink, DGeom o1, DGeom o2) {
+                assertTrue(!o1.isSpace() && !o2.isSpace());
+                collide(o1, o2, sink);
+            }
+
+            @Override
+            public void merge(List<Contact> sink) {
+                contacts.addAll(sink);
+            }
+        });
+        return contacts;
+    }
+
+    private static void assertSameContacts(List<Contact> expected, List<Contact> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i).g1, actual.get(i).g1);
+            assertSame(expected.get(i).g2, actual.get(i).g2);
+            assertEquals(expected.get(i).depth, actual.get(i).depth, 0);
+        }
+    }
+
+    @Test
+    public void testSameThread() {
+        DSpace space = createScene();
+        List<Contact> expected = collideSequential(space);
+        assertTrue(expected.size() > 1000);
+        assertSameContacts(expected, collideParallel(space, new SameThreadTaskExecutor()));
+        space.destroy();
+    }
+
+    @Test
+    public void testForkJoin() {
+        DSpace space = createScene();
+        List<Contact> expected = collideSequential(space);
+        TaskExecutor executor = new ForkJoinTaskExecutor(4);
+        // The task graph is reused by subsequent calls
+        for (int i = 0; i < 3; i++) {
+            assertSameContacts(expected, collideParallel(space, executor));
+        }
+        space.destroy();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExceptionIsPropagated() {
+        DSpace space = createScene();
+        try {
+            space.collideParallel(new ForkJoinTaskExecutor(4), new DParallelNearCallback<Object>() {
+                @Override
+                public Object createSink() {
+                    return null;
+                }
+
+                @Override
+                public void call(Object sink, DGeom o1, DGeom o2) {
+                    throw new IllegalStateException();
+                }
+
+                @Override
+                public void merge(Object sink) {
+                }
+            });
+        } finally {
+            space.destroy();
+        }
+    }
+
+}
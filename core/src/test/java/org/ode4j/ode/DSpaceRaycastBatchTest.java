@@ -0,0 +1,200 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+public class DSpaceRaycastBatchTest {
+
+    private static final int NUM_RAYS = 500;
+
+    private final List<DGeom> geoms = new ArrayList<>();
+    private double[] origins;
+    private double[] dirs;
+    private double[] maxLen;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    /**
+     * Spheres, boxes and capsules, a plane and a nested simple space.
+     */
+    private void createScene(DSpace space) {
+        geoms.clear();
+        Random r = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            DGeom g;
+            switch (i % 3) {
+            case 0:
+                g = OdeHelper.createSphere(space, 0.2 + r.nextDouble());
+                break;
+            case 1:
+                g = OdeHelper.createBox(space, 0.2 + r.nextDouble(), 0.2 + r.nextDouble(), 0.2 + r.nextDouble());
+                break;
+            default:
+                g = OdeHelper.createCapsule(space, 0.3, 0.5 + r.nextDouble());
+                break;
+            }
+            g.setPosition(40 * r.nextDouble(), 40 * r.nextDouble(), 10 * r.nextDouble());
+            if (i % 17 == 0) {
+                g.disable();
+            }
+            geoms.add(g);
+        }
+        geoms.add(OdeHelper.createPlane(space, 0, 0, 1, -1));
+        DSimpleSpace nested = OdeHelper.createSimpleSpace(space);
+        for (int i = 0; i < 10; i++) {
+            DGeom g = OdeHelper.createSphere(nested, 1);
+            g.setPosition(4 * i, 20, 5);
+            geoms.add(g);
+        }
+
+        origins = new double[NUM_RAYS * 3];
+        dirs = new double[NUM_RAYS * 3];
+        maxLen = new double[NUM_RAYS];
+        for (int i = 0; i < NUM_RAYS; i++) {
+            origins[i * 3] = 40 * r.nextDouble();
+            origins[i * 3 + 1] = 40 * r.nextDouble();
+            origins[i * 3 + 2] = 12;
+            dirs[i * 3] = r.nextDouble() - 0.5;
+            dirs[i * 3 + 1] = r.nextDouble() - 0.5;
+            // some rays are parallel to the plane
+            dirs[i * 3 + 2] = i % 10 == 0 ? 0 : -r.nextDouble();
+            maxLen[i] = i % 5 == 0 ? 5 : 100;
+        }
+    }
+
+    /**
+     * Test every geom with a DRay.
+     */
+    private void checkHits(DRayHits hits, int numHits) {
+        DRay ray = OdeHelper.createRay(null, 1);
+        ray.setClosestHit(true);
+        DContactGeomBuffer buf = new DContactGeomBuffer(1);
+        DVector3 pos = new DVector3();
+        int expectedHits = 0;
+        for (int i = 0; i < NUM_RAYS; i++) {
+            ray.set(origins[i * 3], origins[i * 3 + 1], origins[i * 3 + 2], dirs[i * 3], dirs[i * 3 + 1],
+                    dirs[i * 3 + 2]);
+            ray.setLength(maxLen[i]);
+            DGeom closest = null;
+            double depth = Double.POSITIVE_INFINITY;
+            for (DGeom g : geoms) {
+                if (g.isEnabled() && OdeHelper.collide(ray, g, 1, buf) > 0 && buf.get(0).depth < depth) {
+                    closest = g;
+                    depth = buf.get(0).depth;
+                    pos.set(buf.get(0).pos);
+                }
+            }
+            assertSame("ray " + i, closest, hits.getGeom(i));
+            if (closest != null) {
+                expectedHits++;
+                assertEquals(depth, hits.getDepth(i), 1e-12);
+                DVector3 p = new DVector3();
+                hits.getPosition(i, p);
+                assertEquals(0, p.distance(pos), 1e-12);
+            } else {
+                assertTrue(Double.isInfinite(hits.getDepth(i)));
+            }
+        }
+        assertEquals(expectedHits, numHits);
+        ray.destroy();
+    }
+
+    private void check(DSpace space) {
+        createScene(space);
+        DRayHits hits = new DRayHits(4);
+        int n = space.raycastBatch(origins, dirs, maxLen, hits);
+        assertTrue(n > NUM_RAYS / 2);
+        checkHits(hits, n);
+
+        // move some geoms, the result must still match
+        Random r = new Random(3);
+        for (int i = 0; i < 300; i += 4) {
+            geoms.get(i).setPosition(40 * r.nextDouble(), 40 * r.nextDouble(), 10 * r.nextDouble());
+        }
+        n = space.raycastBatch(origins, dirs, maxLen, hits);
+        checkHits(hits, n);
+        space.destroy();
+    }
+
+    @Test
+    public void testSimpleSpace() {
+        check(OdeHelper.createSimpleSpace());
+    }
+
+    @Test
+    public void testHashSpace() {
+        check(OdeHelper.createHashSpace());
+    }
+
+    @Test
+    public void testSAPSpaceIncremental() {
+        check(OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.XYZ));
+        check(OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.ZYX));
+    }
+
+    @Test
+    public void testBVHSpace() {
+        check(OdeHelper.createBHVSpace(0));
+        check(OdeHelper.createBHVSpace(null, 4, DBhvSpace.BUILD.SAH, 0.2, 0));
+    }
+
+    @Test
+    public void testOctreeSpace() {
+        check(OdeHelper.createOctreeSpace(null, new DVector3(20, 20, 5), 16, 5));
+    }
+
+    @Test
+    public void testParallel() {
+        DSpace space = OdeHelper.createBHVSpace(0);
+        createScene(space);
+        DRayHits expected = new DRayHits();
+        int n = space.raycastBatch(origins, dirs, maxLen, expected);
+        TaskExecutor executor = new ForkJoinTaskExecutor(4);
+        DRayHits hits = new DRayHits();
+        // The task graph is reused by subsequent calls
+        for (int k = 0; k < 3; k++) {
+            assertEquals(n, space.raycastBatch(origins, dirs, maxLen, hits, executor));
+            for (int i = 0; i < NUM_RAYS; i++) {
+                assertSame(expected.getGeom(i), hits.getGeom(i));
+                assertEquals(expected.getDepth(i), hits.getDepth(i), 0);
+            }
+        }
+        space.destroy();
+    }
+}
@@ -0,0 +1,203 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+
+public class DSpaceSweepTest {
+
+    private static final double RADIUS = 0.5;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Test
+    public void testSphereBox() {
+        DSpace space = OdeHelper.createSimpleSpace();
+        DBox box = OdeHelper.createBox(space, 1, 1, 1);
+        box.setPosition(5, 0, 0);
+        DSphere sphere = OdeHelper.createSphere(space, RADIUS);
+        DSweepHit hit = new DSweepHit();
+        assertTrue(space.sweep(sphere, new DVector3(10, 0, 0), hit));
+        assertSame(box, hit.getGeom());
+        // the sphere touches the box at x = 4.5
+        assertEquals(0.4, hit.getFraction(), 1e-4);
+        assertEquals(-1, hit.getNormal().get0(), 1e-6);
+        assertEquals(4.5, hit.getPosition().get0(), 1e-3);
+
+        // missed
+        assertFalse(space.sweep(sphere, new DVector3(0, 10, 0), hit));
+        assertNull(hit.getGeom());
+        assertEquals(1, hit.getFraction(), 0);
+
+        // overlapping at the start
+        sphere.setPosition(4.2, 0, 0);
+        assertTrue(space.sweep(sphere, new DVector3(1, 0, 0), hit));
+        assertEquals(0, hit.getFraction(), 0);
+        space.destroy();
+    }
+
+    @Test
+    public void testFastProjectile() {
+        DSpace space = OdeHelper.createHashSpace();
+        DPlane wall = OdeHelper.createPlane(space, -1, 0, 0, -3);
+        DSphere bullet = OdeHelper.createSphere(null, 0.01);
+        DSweepHit hit = new DSweepHit();
+        assertTrue(space.sweep(bullet, new DVector3(100, 1, 0), hit));
+        assertSame(wall, hit.getGeom());
+        assertEquals(2.99 / 100, hit.getFraction(), 1e-6);
+        assertEquals(-1, hit.getNormal().get0(), 1e-6);
+        space.destroy();
+    }
+
+    @Test
+    public void testSkippedGeoms() {
+        DWorld world = OdeHelper.createWorld();
+        DSpace space = OdeHelper.createSimpleSpace();
+        DBody body = OdeHelper.createBody(world);
+        DCapsule capsule = OdeHelper.createCapsule(space, 0.3, 1);
+        capsule.setBody(body);
+        // on the same body
+        DBox attached = OdeHelper.createBox(space, 0.5, 0.5, 0.5);
+        attached.setBody(body);
+        attached.setOffsetPosition(1, 0, 0);
+        DBox disabled = OdeHelper.createBox(space, 1, 1, 1);
+        disabled.setPosition(2, 0, 0);
+        disabled.disable();
+        DBox filtered = OdeHelper.createBox(space, 1, 1, 1);
+        filtered.setPosition(4, 0, 0);
+        filtered.setCategoryBits(2);
+        filtered.setCollideBits(2);
+        capsule.setCategoryBits(1);
+        capsule.setCollideBits(1);
+        DBox box = OdeHelper.createBox(space, 1, 1, 1);
+        box.setPosition(6, 0, 0);
+        DSweepHit hit = new DSweepHit();
+        assertTrue(space.sweep(capsule, new DVector3(10, 0, 0), hit));
+        assertSame(box, hit.getGeom());
+        assertEquals(0.52, hit.getFraction(), 1e-4);
+        space.destroy();
+        world.destroy();
+    }
+
+    @Test
+    public void testSweepAABB() {
+        DSpace space = OdeHelper.createBHVSpace(0);
+        DSphere sphere = OdeHelper.createSphere(space, 1);
+        sphere.setPosition(0, 5, 0);
+        DSweepHit hit = new DSweepHit();
+        DAABB aabb = new DAABB(-0.5, 0.5, -0.5, 0.5, -0.5, 0.5);
+        assertTrue(space.sweepAABB(aabb, new DVector3(0, 10, 0), hit));
+        assertSame(sphere, hit.getGeom());
+        assertEquals(0.35, hit.getFraction(), 1e-12);
+        assertEquals(-1, hit.getNormal().get1(), 0);
+        assertFalse(space.sweepAABB(aabb, new DVector3(0, -10, 0), hit));
+        space.destroy();
+    }
+
+    /**
+     * Sweep spheres through random spheres and compare with the exact time
+     * of impact.
+     */
+    private static void checkSpheres(DSpace space) {
+        Random r = new Random(17);
+        List<DSphere> spheres = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            DSphere s = OdeHelper.createSphere(space, 0.2 + r.nextDouble());
+            s.setPosition(30 * r.nextDouble(), 30 * r.nextDouble(), 30 * r.nextDouble());
+            spheres.add(s);
+        }
+        DSimpleSpace nested = OdeHelper.createSimpleSpace(space);
+        for (int i = 0; i < 20; i++) {
+            DSphere s = OdeHelper.createSphere(nested, 1);
+            s.setPosition(1.5 * i, 15, 15);
+            spheres.add(s);
+        }
+        DSphere moving = OdeHelper.createSphere(null, RADIUS);
+        DSweepHit hit = new DSweepHit();
+        int hits = 0;
+        for (int k = 0; k < 200; k++) {
+            DVector3 p = new DVector3(30 * r.nextDouble(), 30 * r.nextDouble(), 30 * r.nextDouble());
+            DVector3 m = new DVector3(r.nextDouble() - 0.5, r.nextDouble() - 0.5, r.nextDouble() - 0.5).scale(30);
+            moving.setPosition(p);
+            // exact first hit
+            DSphere first = null;
+            double tFirst = 1;
+            boolean graze = false;
+            for (DSphere s : spheres) {
+                DVector3 d = new DVector3(p).sub(s.getPosition());
+                double rr = RADIUS + s.getRadius();
+                double a = m.dot(m);
+                double b = 2 * d.dot(m);
+                double c = d.dot(d) - rr * rr;
+                double disc = b * b - 4 * a * c;
+                if (disc < 0) {
+                    continue;
+                }
+                double t = c <= 0 ? 0 : (-b - Math.sqrt(disc)) / (2 * a);
+                if (t >= 0 && t <= tFirst) {
+                    tFirst = t;
+                    first = s;
+                    // the march may miss spheres that are only grazed
+                    graze = c > 0 && Math.sqrt(disc) / a < 0.5 * RADIUS / m.length();
+                }
+            }
+            boolean isHit = space.sweep(moving, m, hit);
+            if (graze) {
+                continue;
+            }
+            assertEquals(first != null, isHit);
+            if (first != null) {
+                hits++;
+                assertSame(first, hit.getGeom());
+                assertEquals(tFirst, hit.getFraction(), 1e-4);
+                assertTrue(hit.getFraction() <= tFirst);
+            }
+        }
+        assertTrue(hits > 20);
+        space.destroy();
+    }
+
+    @Test
+    public void testSpaces() {
+        checkSpheres(OdeHelper.createSimpleSpace());
+        checkSpheres(OdeHelper.createHashSpace());
+        checkSpheres(OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.XYZ));
+        checkSpheres(OdeHelper.createBHVSpace(0));
+        checkSpheres(OdeHelper.createOctreeSpace(null, new DVector3(15, 15, 15), 16, 5));
+    }
+}
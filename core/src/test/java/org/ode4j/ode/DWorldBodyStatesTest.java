@@ -0,0 +1,144 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import org.junit.Test;
+import org.ode4j.math.DMatrix3;
+import org.ode4j.math.DQuaternion;
+
+public class DWorldBodyStatesTest {
+
+    private static final int BODIES = 5;
+
+    private static DBody[] createBodies(DWorld world) {
+        DBody[] bodies = new DBody[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setPosition(i, 2 * i, 3 * i);
+            DQuaternion q = new DQuaternion(1, 0.1 * i, 0.2, -0.3);
+            q.normalize();
+            b.setQuaternion(q);
+            b.setLinearVel(i + 0.5, -i, 1);
+            b.setAngularVel(-1, i * 0.25, 2);
+            bodies[i] = b;
+        }
+        return bodies;
+    }
+
+    @Test
+    public void testLayout() {
+        DWorld world = OdeHelper.createWorld();
+        assertEquals(3, world.getBodyStateSize(DWorld.BODY_STATE_POSITION));
+        assertEquals(7, world.getBodyStateSize(DWorld.BODY_STATE_POSITION | DWorld.BODY_STATE_QUATERNION));
+        assertEquals(13, world.getBodyStateSize(DWorld.BODY_STATE_ALL));
+        DBody[] bodies = createBodies(world);
+        assertEquals(BODIES, world.getNumBodies());
+
+        double[] states = new double[1 + BODIES * 13];
+        assertEquals(BODIES, world.exportBodyStates(states, 1, DWorld.BODY_STATE_ALL));
+        // most recently created body first
+        for (int i = 0; i < BODIES; i++) {
+            DBody b = bodies[BODIES - 1 - i];
+            int r = 1 + i * 13;
+            assertEquals(b.getPosition().get0(), states[r], 0);
+            assertEquals(b.getPosition().get2(), states[r + 2], 0);
+            assertEquals(b.getQuaternion().get0(), states[r + 3], 0);
+            assertEquals(b.getQuaternion().get3(), states[r + 6], 0);
+            assertEquals(b.getLinearVel().get0(), states[r + 7], 0);
+            assertEquals(b.getAngularVel().get2(), states[r + 12], 0);
+        }
+
+        double[] vel = new double[BODIES * 3];
+        world.exportBodyStates(vel, 0, DWorld.BODY_STATE_ANGULAR_VEL);
+        assertEquals(bodies[BODIES - 1].getAngularVel().get1(), vel[1], 0);
+        world.destroy();
+    }
+
+    @Test
+    public void testRoundTrip() {
+        DWorld source = OdeHelper.createWorld();
+        createBodies(source);
+        double[] expected = new double[BODIES * 13];
+        source.exportBodyStates(expected, 0, DWorld.BODY_STATE_ALL);
+
+        DoubleBuffer heap = DoubleBuffer.allocate(BODIES * 13 + 2);
+        heap.position(2);
+        source.exportBodyStates(heap, DWorld.BODY_STATE_ALL);
+        assertEquals(BODIES * 13 + 2, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(BODIES * 13 * 8 + 8).order(ByteOrder.nativeOrder());
+        direct.position(8);
+        source.exportBodyStates(direct, DWorld.BODY_STATE_ALL);
+        assertEquals(BODIES * 13 * 8 + 8, direct.position());
+
+        // import into worlds with bodies at the origin
+        for (int variant = 0; variant < 3; variant++) {
+            DWorld target = OdeHelper.createWorld();
+            DBody[] bodies = new DBody[BODIES];
+            for (int i = 0; i < BODIES; i++) {
+                bodies[i] = OdeHelper.createBody(target);
+            }
+            if (variant == 0) {
+                target.importBodyStates(expected, 0, DWorld.BODY_STATE_ALL);
+            } else if (variant == 1) {
+                heap.position(2);
+                target.importBodyStates(heap, DWorld.BODY_STATE_ALL);
+                assertEquals(BODIES * 13 + 2, heap.position());
+            } else {
+                direct.position(8);
+                target.importBodyStates(direct, DWorld.BODY_STATE_ALL);
+                assertEquals(BODIES * 13 * 8 + 8, direct.position());
+            }
+            double[] actual = new double[BODIES * 13];
+            target.exportBodyStates(actual, 0, DWorld.BODY_STATE_ALL);
+            assertArrayEquals(expected, actual, 1e-15);
+            // rotation matrix follows the quaternion
+            DMatrix3 R = new DMatrix3();
+            DRotation.dRfromQ(R, bodies[0].getQuaternion());
+            assertTrue(R.isEq(bodies[0].getRotation(), 0));
+            target.destroy();
+        }
+        source.destroy();
+    }
+
+    @Test
+    public void testImportMovesGeoms() {
+        OdeHelper.initODE2(0);
+        DWorld world = OdeHelper.createWorld();
+        DBody b = OdeHelper.createBody(world);
+        DGeom g = OdeHelper.createSphere(1);
+        g.setBody(b);
+        world.importBodyStates(new double[] { 4, 5, 6 }, 0, DWorld.BODY_STATE_POSITION);
+        assertTrue(g.getPosition().isEq(4, 5, 6, 0));
+        g.destroy();
+        world.destroy();
+    }
+}
@@ -0,0 +1,300 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.internal.DxGeom;
+import org.ode4j.ode.internal.DxSpace;
+
+public class DWorldCopyTest {
+
+    private static final int MAX_CONTACTS = 4;
+    private static final int BODIES = 8;
+    private static final int STEPS = 50;
+
+    /** A world with its space and contact group. */
+    private static class Scene {
+        final DWorld world;
+        final DSpace space;
+        final DJointGroup contacts = OdeHelper.createJointGroup();
+
+        private final DNearCallback callback = new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                DContactBuffer buf = new DContactBuffer(MAX_CONTACTS);
+                int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf.getGeomBuffer());
+                for (int i = 0; i < n; i++) {
+                    DContact contact = buf.get(i);
+                    contact.surface.mode = OdeConstants.dContactApprox1;
+                    contact.surface.mu = 0.5;
+                    DJoint c = OdeHelper.createContactJoint(world, contacts, contact);
+                    c.attach(o1.getBody(), o2.getBody());
+                }
+            }
+        };
+
+        Scene(DWorld world, DSpace space) {
+            this.world = world;
+            this.space = space;
+        }
+
+        void run(int steps) {
+            for (int i = 0; i < steps; i++) {
+                space.collide(null, callback);
+                world.quickStep(0.01);
+                contacts.empty();
+            }
+        }
+
+        void destroy() {
+            contacts.destroy();
+            space.destroy();
+            world.destroy();
+        }
+    }
+
+    private Scene scene;
+    private DBody[] bodies;
+    private DHingeJoint hinge;
+    private DBox offsetBox;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setQuickStepNumIterations(30);
+        world.setAutoDisableFlag(true);
+        world.setAutoDisableAverageSamplesCount(5);
+        world.setLinearDamping(0.01);
+        DSpace space = OdeHelper.createHashSpace();
+        scene = new Scene(world, space);
+        OdeHelper.createPlane(space, 0, 0, 1, 0);
+        DSpace sub = OdeHelper.createSimpleSpace(space);
+        DMass m = OdeHelper.createMass();
+        m.setBox(1, 0.5, 0.5, 0.5);
+        bodies = new DBody[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i * 0.6, 0.1 * i, 0.5 + 0.3 * i);
+            b.setAngularVel(0.3 * i, -0.2, 0.1);
+            b.setData(i);
+            OdeHelper.createBox(i % 2 == 0 ? space : sub, 0.5, 0.5, 0.5).setBody(b);
+            bodies[i] = b;
+        }
+        offsetBox = OdeHelper.createBox(sub, 0.2, 0.2, 0.2);
+        offsetBox.setBody(bodies[2]);
+        offsetBox.setOffsetPosition(0, 0, 0.3);
+        hinge = OdeHelper.createHingeJoint(world);
+        hinge.attach(bodies[0], bodies[1]);
+        hinge.setAnchor(0.3, 0.05, 0.65);
+        hinge.setAxis(0, 1, 0);
+        hinge.setParamLoStop(-0.5);
+        hinge.setParamHiStop(0.5);
+        DBallJoint ball = OdeHelper.createBallJoint(world);
+        ball.attach(null, bodies[3]);
+        ball.setAnchor(1.8, 0.3, 1.4);
+    }
+
+    @After
+    public void tearDown() {
+        scene.destroy();
+    }
+
+    private static double[] state(DBody[] bodies) {
+        double[] result = new double[bodies.length * 14];
+        for (int i = 0; i < bodies.length; i++) {
+            DBody b = bodies[i];
+            for (int j = 0; j < 3; j++) {
+                result[i * 14 + j] = b.getPosition().get(j);
+                result[i * 14 + 3 + j] = b.getLinearVel().get(j);
+                result[i * 14 + 6 + j] = b.getAngularVel().get(j);
+            }
+            for (int j = 0; j < 4; j++) {
+                result[i * 14 + 9 + j] = b.getQuaternion().get(j);
+            }
+            result[i * 14 + 13] = b.isEnabled() ? 1 : 0;
+        }
+        return result;
+    }
+
+    private static void assertSameState(double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("i=" + i, expected[i], actual[i], 0);
+        }
+    }
+
+    private static DBody[] copies(DWorldCopy copy, DBody[] bodies) {
+        DBody[] result = new DBody[bodies.length];
+        for (int i = 0; i < bodies.length; i++) {
+            result[i] = copy.getBody(bodies[i]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testStructure() {
+        scene.run(10);
+        DWorldCopy copy = OdeHelper.copyWorld(scene.world, scene.space);
+        DWorld world = copy.getWorld();
+        assertNotSame(scene.world, world);
+        assertEquals(scene.world.getNumBodies(), world.getNumBodies());
+        assertEquals(scene.world.getQuickStepNumIterations(), world.getQuickStepNumIterations());
+        assertEquals(scene.world.getLinearDamping(), world.getLinearDamping(), 0);
+        assertEquals(scene.space.getNumGeoms(), copy.getSpace().getNumGeoms());
+
+        DBody[] copied = copies(copy, bodies);
+        assertSameState(state(bodies), state(copied));
+        for (int i = 0; i < BODIES; i++) {
+            assertSame(world, copied[i].getWorld());
+            assertEquals(i, copied[i].getData());
+            assertEquals(bodies[i].getMass().getMass(), copied[i].getMass().getMass(), 0);
+        }
+
+        DHingeJoint h = copy.getJoint(hinge);
+        assertSame(copied[0], h.getBody(0));
+        assertSame(copied[1], h.getBody(1));
+        assertEquals(hinge.getAngle(), h.getAngle(), 0);
+        assertEquals(hinge.getParam(DJoint.PARAM_N.dParamHiStop1), h.getParam(DJoint.PARAM_N.dParamHiStop1), 0);
+
+        DBox box = copy.getGeom(offsetBox);
+        assertSame(copied[2], box.getBody());
+        for (int j = 0; j < 3; j++) {
+            assertEquals(offsetBox.getOffsetPosition().get(j), box.getOffsetPosition().get(j), 0);
+            assertEquals(offsetBox.getPosition().get(j), box.getPosition().get(j), 0);
+        }
+        assertEquals(offsetBox.getSpace().getNumGeoms(), box.getSpace().getNumGeoms());
+        assertSame(copy.getSpace(), box.getSpace().getSpace());
+        assertNull(copy.getJoint(OdeHelper.createBallJoint(scene.world)));
+        new Scene(world, copy.getSpace()).destroy();
+    }
+
+    @Test
+    public void testSpaceSettings() {
+        DBhvSpace bvh = OdeHelper.createBHVSpace(scene.space, 4, DBhvSpace.BUILD.SAH, 0.1, 0);
+        bvh.setParallelBuild(true);
+        DWorldCopy copy = OdeHelper.copyWorld(scene.world, scene.space);
+        DBhvSpace copied = copy.getGeom(bvh);
+        assertTrue(copied.getParallelBuild());
+        new Scene(copy.getWorld(), copy.getSpace()).destroy();
+    }
+
+    @Test
+    public void testSameTrajectory() {
+        scene.run(20);
+        DWorldCopy copy = OdeHelper.copyWorld(scene.world, scene.space);
+        Scene copied = new Scene(copy.getWorld(), copy.getSpace());
+        assertEquals(scene.world.getQuickStepRandomSeed(), copy.getWorld().getQuickStepRandomSeed());
+
+        scene.run(STEPS);
+        double[] expected = state(bodies);
+        // the global seed is not used by the worlds
+        DMisc.dRandSetSeed(12345);
+        copied.run(STEPS);
+        assertSameState(expected, state(copies(copy, bodies)));
+        copied.destroy();
+    }
+
+    @Test
+    public void testIndependent() {
+        DWorldCopy copy = OdeHelper.copyWorld(scene.world, scene.space);
+        Scene copied = new Scene(copy.getWorld(), copy.getSpace());
+        double[] saved = state(bodies);
+        copy.getBody(bodies[4]).addForce(100, 0, 0);
+        copied.run(STEPS);
+        assertSameState(saved, state(bodies));
+        copied.destroy();
+    }
+
+    private static class CustomGeom extends DxGeom {
+        CustomGeom(DxSpace space) {
+            super(space, false);
+        }
+
+        @Override
+        protected void computeAABB() {
+            _aabb.set(-1, 1, -1, 1, -1, 1);
+        }
+    }
+
+    @Test
+    public void testUnsupportedGeom() {
+        new CustomGeom((DxSpace) scene.space);
+        try {
+            OdeHelper.copyWorld(scene.world, scene.space);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("CustomGeom can not be copied"));
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        final int n = 4;
+        final Scene[] scenes = new Scene[n];
+        final DBody[][] copied = new DBody[n][];
+        for (int i = 0; i < n; i++) {
+            DWorldCopy copy = OdeHelper.copyWorld(scene.world, scene.space);
+            scenes[i] = new Scene(copy.getWorld(), copy.getSpace());
+            copied[i] = copies(copy, bodies);
+        }
+        scene.run(STEPS);
+        double[] expected = state(bodies);
+
+        ExecutorService executor = Executors.newFixedThreadPool(n);
+        try {
+            Future<?>[] futures = new Future<?>[n];
+            for (int i = 0; i < n; i++) {
+                final Scene s = scenes[i];
+                futures[i] = executor.submit(() -> s.run(STEPS));
+            }
+            for (int i = 0; i < n; i++) {
+                futures[i].get();
+                assertSameState(expected, state(copied[i]));
+                scenes[i].destroy();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+
+public class DWorldQuickStepToleranceTest {
+
+    private static final int MAX_CONTACTS = 4;
+    private static final int ITERATIONS = 200;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    /**
+     * Two resting boxes on the ground and one free falling sphere far away,
+     * that is three islands, the sphere has no constraints.
+     */
+    private static int[] simulate(double tolerance, boolean coloredSOR, int steps) {
+        final DWorld world = OdeHelper.createWorld();
+        final DJointGroup contacts = OdeHelper.createJointGroup();
+        DSpace space = OdeHelper.createSimpleSpace();
+        world.setGravity(0, 0, -9.81);
+        world.setQuickStepNumIterations(ITERATIONS);
+        world.setQuickStepTolerance(tolerance);
+        world.setQuickStepColoredSOR(coloredSOR);
+        OdeHelper.createPlane(space, 0, 0, 1, 0);
+        DMass m = OdeHelper.createMass();
+        m.setBox(1, 1, 1, 1);
+        for (int i = 0; i < 2; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i * 5, 0, 0.5);
+            DGeom g = OdeHelper.createBox(space, 1, 1, 1);
+            g.setBody(b);
+        }
+        DBody sphere = OdeHelper.createBody(world);
+        sphere.setPosition(100, 0, 100);
+        DNearCallback nearCallback = new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                DContactBuffer buf = new DContactBuffer(MAX_CONTACTS);
+                int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf.getGeomBuffer());
+                for (int i = 0; i < n; i++) {
+                    DContact contact = buf.get(i);
+                    contact.surface.mode = OdeConstants.dContactApprox1;
+                    contact.surface.mu = 0.5;
+                    DJoint c = OdeHelper.createContactJoint(world, contacts, contact);
+                    c.attach(o1.getBody(), o2.getBody());
+                }
+            }
+        };
+        for (int i = 0; i < steps; i++) {
+            space.collide(null, nearCallback);
+            world.quickStep(0.01);
+            contacts.empty();
+        }
+        int[] iterations = world.getQuickStepIterationsUsed();
+        // the order of the islands depends on the order of the bodies in the world
+        Arrays.sort(iterations);
+        contacts.destroy();
+        space.destroy();
+        world.destroy();
+        return iterations;
+    }
+
+    @Test
+    public void testSetting() {
+        DWorld world = OdeHelper.createWorld();
+        assertEquals(0, world.getQuickStepTolerance(), 0);
+        world.setQuickStepTolerance(1e-3);
+        assertEquals(1e-3, world.getQuickStepTolerance(), 0);
+        assertEquals(0, world.getQuickStepIterationsUsed().length);
+        world.destroy();
+    }
+
+    @Test
+    public void testAllIterationsWithoutTolerance() {
+        assertArrayEquals(new int[] { 0, ITERATIONS, ITERATIONS }, simulate(0, false, 10));
+    }
+
+    @Test
+    public void testEarlyTermination() {
+        for (boolean coloredSOR : new boolean[] { false, true }) {
+            int[] iterations = simulate(1e-4, coloredSOR, 50);
+            assertEquals(3, iterations.length);
+            assertEquals(0, iterations[0]);
+            for (int i = 1; i < 3; i++) {
+                assertTrue(iterations[i] > 0);
+                assertTrue(iterations[i] < ITERATIONS);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+
+public class DWorldSnapshotTest {
+
+    private static final int MAX_CONTACTS = 4;
+    private static final int BODIES = 8;
+
+    private DWorld world;
+    private DSpace space;
+    private DJointGroup contacts;
+    private DBody[] bodies;
+    private DJoint.DJointFeedback feedback;
+
+    private final DNearCallback callback = new DNearCallback() {
+        @Override
+        public void call(Object data, DGeom o1, DGeom o2) {
+            DContactBuffer buf = new DContactBuffer(MAX_CONTACTS);
+            int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf.getGeomBuffer());
+            for (int i = 0; i < n; i++) {
+                DContact contact = buf.get(i);
+                contact.surface.mode = OdeConstants.dContactApprox1;
+                contact.surface.mu = 0.5;
+                DJoint c = OdeHelper.createContactJoint(world, contacts, contact);
+                c.attach(o1.getBody(), o2.getBody());
+            }
+        }
+    };
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        DMisc.dRandSetSeed(0);
+        world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setQuickStepWarmStarting(true);
+        world.setAutoDisableFlag(true);
+        world.setAutoDisableAverageSamplesCount(5);
+        space = OdeHelper.createSimpleSpace();
+        contacts = OdeHelper.createJointGroup();
+        OdeHelper.createPlane(space, 0, 0, 1, 0);
+        DMass m = OdeHelper.createMass();
+        m.setBox(1, 0.5, 0.5, 0.5);
+        bodies = new DBody[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i * 0.6, 0.1 * i, 0.5 + 0.3 * i);
+            b.setAngularVel(0.3 * i, -0.2, 0.1);
+            OdeHelper.createBox(space, 0.5, 0.5, 0.5).setBody(b);
+            bodies[i] = b;
+        }
+        DHingeJoint hinge = OdeHelper.createHingeJoint(world);
+        hinge.attach(bodies[0], bodies[1]);
+        hinge.setAnchor(0.3, 0.05, 0.65);
+        hinge.setAxis(0, 1, 0);
+        feedback = new DJoint.DJointFeedback();
+        hinge.setFeedback(feedback);
+    }
+
+    @After
+    public void tearDown() {
+        contacts.destroy();
+        space.destroy();
+        world.destroy();
+    }
+
+    private void run(int steps) {
+        for (int i = 0; i < steps; i++) {
+            space.collide(null, callback);
+            world.quickStep(0.01);
+            contacts.empty();
+        }
+    }
+
+    private double[] state() {
+        double[] result = new double[BODIES * 14 + 3];
+        for (int i = 0; i < BODIES; i++) {
+            DBody b = bodies[i];
+            for (int j = 0; j < 3; j++) {
+                result[i * 14 + j] = b.getPosition().get(j);
+                result[i * 14 + 3 + j] = b.getLinearVel().get(j);
+                result[i * 14 + 6 + j] = b.getAngularVel().get(j);
+            }
+            for (int j = 0; j < 4; j++) {
+                result[i * 14 + 9 + j] = b.getQuaternion().get(j);
+            }
+            result[i * 14 + 13] = b.isEnabled() ? 1 : 0;
+        }
+        for (int j = 0; j < 3; j++) {
+            result[BODIES * 14 + j] = feedback.f1.get(j);
+        }
+        return result;
+    }
+
+    private static void assertSameState(double[] expected, double[] actual) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("i=" + i, expected[i], actual[i], 0);
+        }
+    }
+
+    @Test
+    public void testRollback() {
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        assertEquals(0, snapshot.getSize());
+        run(20);
+        world.saveSnapshot(snapshot);
+        assertTrue(snapshot.getSize() > 0);
+        double[] saved = state();
+        run(30);
+        double[] expected = state();
+
+        // restore and replay several times
+        for (int k = 0; k < 3; k++) {
+            world.restoreSnapshot(snapshot);
+            assertSameState(saved, state());
+            run(30);
+            assertSameState(expected, state());
+        }
+    }
+
+    @Test
+    public void testAutoDisable() {
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        world.saveSnapshot(snapshot);
+        run(400);
+        // the boxes come to rest on the plane
+        assertFalse(bodies[BODIES - 1].isEnabled());
+        double[] expected = state();
+        world.restoreSnapshot(snapshot);
+        assertTrue(bodies[BODIES - 1].isEnabled());
+        run(400);
+        assertSameState(expected, state());
+    }
+
+    @Test
+    public void testSettingsKept() {
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        run(20);
+        world.saveSnapshot(snapshot);
+        run(30);
+        double[] undamped = state();
+
+        DBody b = bodies[BODIES - 1];
+        b.setLinearDamping(0.5);
+        b.setAngularDamping(0.5);
+        b.setGravityMode(false);
+        b.setAutoDisableFlag(false);
+        world.restoreSnapshot(snapshot);
+        assertEquals(0.5, b.getLinearDamping(), 0);
+        assertEquals(0.5, b.getAngularDamping(), 0);
+        assertFalse(b.getGravityMode());
+        assertFalse(b.getAutoDisableFlag());
+        // the damping is applied after the restore
+        run(30);
+        assertNotEquals(undamped[(BODIES - 1) * 14 + 2], state()[(BODIES - 1) * 14 + 2], 1e-6);
+    }
+
+    @Test
+    public void testReuse() {
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        world.saveSnapshot(snapshot);
+        int size = snapshot.getSize();
+        run(10);
+        world.saveSnapshot(snapshot);
+        assertTrue(snapshot.getSize() >= size);
+        double[] saved = state();
+        run(10);
+        world.restoreSnapshot(snapshot);
+        assertSameState(saved, state());
+    }
+
+    @Test
+    public void testStructureChanged() {
+        DWorldSnapshot snapshot = OdeHelper.createWorldSnapshot();
+        world.saveSnapshot(snapshot);
+        OdeHelper.createBody(world);
+        try {
+            world.restoreSnapshot(snapshot);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        }
+        DWorld other = OdeHelper.createWorld();
+        try {
+            other.restoreSnapshot(snapshot);
+            fail();
+        } catch (RuntimeException e) {
+            // expected
+        } finally {
+            other.destroy();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.internal.joints.DxJoint;
+
+public class DWorldWarmStartingTest {
+
+    private static final int MAX_CONTACTS = 4;
+    private static final int BOXES = 8;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    private static class Scene {
+        final DWorld world = OdeHelper.createWorld();
+        final DSpace space = OdeHelper.createSimpleSpace();
+        final DJointGroup contacts = OdeHelper.createJointGroup();
+        final DBody[] boxes = new DBody[BOXES];
+        double maxSeededLambda;
+
+        Scene(boolean warmStarting, int iterations) {
+            world.setGravity(0, 0, -9.81);
+            world.setQuickStepNumIterations(iterations);
+            world.setQuickStepWarmStarting(warmStarting);
+            OdeHelper.createPlane(space, 0, 0, 1, 0);
+            DMass m = OdeHelper.createMass();
+            m.setBox(1, 1, 1, 1);
+            for (int i = 0; i < BOXES; i++) {
+                DBody b = OdeHelper.createBody(world);
+                b.setMass(m);
+                b.setPosition(0, 0, 0.5 + i);
+                DGeom g = OdeHelper.createBox(space, 1, 1, 1);
+                g.setBody(b);
+                boxes[i] = b;
+            }
+        }
+
+        private final DNearCallback nearCallback = new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                DContactBuffer buf = new DContactBuffer(MAX_CONTACTS);
+                int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, buf.getGeomBuffer());
+                for (int i = 0; i < n; i++) {
+                    DContact contact = buf.get(i);
+                    contact.surface.mode = OdeConstants.dContactApprox1;
+                    contact.surface.mu = 0.5;
+                    DJoint c = OdeHelper.createContactJoint(world, contacts, contact);
+                    maxSeededLambda = Math.max(maxSeededLambda, ((DxJoint) c).lambda[0]);
+                    c.attach(o1.getBody(), o2.getBody());
+                }
+            }
+        };
+
+        void step() {
+            space.collide(null, nearCallback);
+            world.quickStep(0.01);
+            contacts.empty();
+        }
+
+        double topHeight() {
+            return boxes[BOXES - 1].getPosition().get2();
+        }
+
+        void destroy() {
+            contacts.destroy();
+            space.destroy();
+            world.destroy();
+        }
+    }
+
+    @Test
+    public void testSetting() {
+        DWorld world = OdeHelper.createWorld();
+        assertFalse(world.getQuickStepWarmStarting());
+        world.setQuickStepWarmStarting(true);
+        assertTrue(world.getQuickStepWarmStarting());
+        assertEquals(0.02, world.getQuickStepWarmStartingDistance(), 0);
+        world.setQuickStepWarmStartingDistance(0.1);
+        assertEquals(0.1, world.getQuickStepWarmStartingDistance(), 0);
+        world.setQuickStepWarmStarting(false);
+        assertFalse(world.getQuickStepWarmStarting());
+        world.destroy();
+    }
+
+    @Test
+    public void testContactsAreSeeded() {
+        for (boolean warmStarting : new boolean[] { false, true }) {
+            Scene scene = new Scene(warmStarting, 20);
+            for (int i = 0; i < 20; i++) {
+                scene.step();
+            }
+            if (warmStarting) {
+                assertTrue(scene.maxSeededLambda > 0);
+            } else {
+                assertEquals(0, scene.maxSeededLambda, 0);
+            }
+            scene.destroy();
+        }
+    }
+
+    /**
+     * With few iterations, a stack sinks into itself unless the solver starts with
+     * the contact forces of the previous step.
+     */
+    @Test
+    public void testStackWithFewIterations() {
+        double[] sink = new double[2];
+        for (int k = 0; k < 2; k++) {
+            Scene scene = new Scene(k == 1, 4);
+            for (int i = 0; i < 300; i++) {
+                scene.step();
+            }
+            sink[k] = (BOXES - 0.5) - scene.topHeight();
+            scene.destroy();
+        }
+        assertTrue(Math.abs(sink[1]) < 0.5 * sink[0]);
+    }
+}
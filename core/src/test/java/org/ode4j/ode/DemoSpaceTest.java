@@ -27,8 +27,12 @@ package org.ode4j.ode;
 import org.junit.Test;
 import org.ode4j.math.DVector3;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.ode4j.ode.OdeMath.dRandReal;
 import static org.ode4j.ode.OdeMath.dRandSetSeed;
@@ -192,6 +196,20 @@ public class DemoSpaceTest {
         after();
     }
 
+    @Test
+    public void testOctreeSpace() {
+        before();
+        space = OdeHelper.createOctreeSpace(null);
+        demo();
+        after();
+
+        before();
+        // small root, the root has to grow
+        space = OdeHelper.createOctreeSpace(null, new DVector3(0.2, 0.2, 0.2), 0.1, 3);
+        demo();
+        after();
+    }
+
     @Test
     public void testSAPSpace() {
         before();
@@ -205,6 +223,19 @@ public class DemoSpaceTest {
         after();
     }
 
+    @Test
+    public void testSAPSpaceIncremental() {
+        before();
+        space = OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.XYZ);
+        demo();
+        after();
+
+        before();
+        space = OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.XZY);
+        demo();
+        after();
+    }
+
     @Test
     public void testBVHSpace() {
         before();
@@ -216,6 +247,44 @@ public class DemoSpaceTest {
         space = OdeHelper.createBHVSpace(0);
         demo();
         after();
+
+        before();
+        space = OdeHelper.createBHVSpace(null, 4, DBhvSpace.BUILD.SAH, 0.2, 0);
+        demo();
+        after();
+
+        before();
+        DBhvSpace bvhSpace = OdeHelper.createBHVSpace(null, 4, DBhvSpace.BUILD.MORTON, 0.2, 0);
+        bvhSpace.setParallelBuild(true);
+        space = bvhSpace;
+        demo();
+        after();
+    }
+
+    @Test
+    public void testBVHSpaceAddAll() {
+        before();
+        DBhvSpace bvhSpace = OdeHelper.createBHVSpace(null, 4, DBhvSpace.BUILD.SAH, 0.2, 0);
+        space = bvhSpace;
+        init_test();
+        List<DGeom> geoms = new ArrayList<>();
+        for (int i = 0; i < NUM; i++) {
+            space.remove(geom[i]);
+            geoms.add(geom[i]);
+        }
+        bvhSpace.addAll(geoms);
+        assertEquals(NUM, space.getNumGeoms());
+        int[] numPairs = new int[1];
+        space.collide(null, (data, o1, o2) -> {
+            assertTrue(good_matrix[(Integer) o1.getData()][(Integer) o2.getData()]);
+            numPairs[0]++;
+        });
+        int expected = 0;
+        for (int i = 0; i < NUM; i++) {
+            expected += hits[i];
+        }
+        assertEquals(expected / 2, numPairs[0]);
+        after();
     }
 
     private void demo() {
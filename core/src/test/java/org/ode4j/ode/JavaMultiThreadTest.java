@@ -40,7 +40,6 @@ import java.util.regex.Pattern;
 import org.junit.Ignore;
 import org.ode4j.ode.internal.DDestructible;
 import org.ode4j.ode.internal.DxGeom;
-import org.ode4j.ode.internal.DxHashSpace;
 import org.ode4j.ode.internal.ErrorHdl;
 import org.ode4j.ode.internal.Misc;
 import org.ode4j.ode.internal.OdeFactoryImpl;
@@ -127,7 +126,6 @@ public class JavaMultiThreadTest extends TestCase {
             _ignoreFields.add(OdeFactoryImpl.class.getDeclaredField("ode_configuration"));
             _ignoreFields.add(OdeFactoryImpl.class.getDeclaredField("g_world_check_tag_generator"));
             _ignoreFields.add(Misc.class.getDeclaredField("seed"));
-            _ignoreFields.add(DxHashSpace.class.getDeclaredField("prime"));
             //_ignoreFields.add(OdeInit.class.getDeclaredField("bODEInitialized"));
             _ignoreFields.add(DxGeom.class.getDeclaredField("colliders_initialized")); //TODO fix this properly
             _ignoreFields.add(DxGeom.class.getDeclaredField("colliders")); //TODO fix this properly
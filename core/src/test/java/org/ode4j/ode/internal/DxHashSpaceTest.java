@@ -0,0 +1,85 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DHashSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Hash space specific cases, see {@link DxSpaceCollideTest} for the tests
+ * of all spaces.
+ */
+public class DxHashSpaceTest {
+
+    private static final int NUM = 80;
+    // the last two boxes are too big for the hash table
+    private static final int NUM_BIG = 2;
+
+    private DHashSpace space;
+    private SpaceFixture f;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        space = OdeHelper.createHashSpace();
+        f = new SpaceFixture(space, NUM, 23, 4);
+        for (int i = NUM - NUM_BIG; i < NUM; i++) {
+            f.replace(i, OdeHelper.createBox(space, 3000, 3000, 3000));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        space.destroy();
+    }
+
+    @Test
+    public void testBigBoxes() {
+        for (int step = 0; step < 50; step++) {
+            f.move(step % 10 == 0 ? 8 : 0.2);
+            f.checkPairs();
+        }
+    }
+
+    @Test
+    public void testSetLevels() {
+        f.checkPairs();
+        // most boxes are too big now
+        space.setLevels(-2, 0);
+        f.checkPairs();
+        f.move(1);
+        f.checkPairs();
+        space.setLevels(-6, 12);
+        f.checkPairs();
+        f.move(1);
+        f.checkPairs();
+    }
+}
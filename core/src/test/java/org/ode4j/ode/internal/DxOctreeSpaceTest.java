@@ -0,0 +1,81 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DOctreeSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Octree space specific cases, see {@link DxSpaceCollideTest} for the tests
+ * of all spaces.
+ */
+public class DxOctreeSpaceTest {
+
+    private static final int NUM = 80;
+
+    private DOctreeSpace space;
+    private SpaceFixture f;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        // a small root in a tall world, most boxes are outside of it
+        space = OdeHelper.createOctreeSpace(null, new DVector3(5, 5, 5), 4, 4);
+        f = new SpaceFixture(space, NUM, 29, 100);
+    }
+
+    @After
+    public void tearDown() {
+        space.destroy();
+    }
+
+    @Test
+    public void testGrowRoot() {
+        double extent = space.getExtent();
+        f.checkPairs();
+        // far jumps in all directions
+        for (int step = 0; step < 20; step++) {
+            int i = f.r.nextInt(NUM);
+            double d = step < 10 ? 1e4 : 1e14;
+            f.geoms[i].setPosition(d * (f.r.nextDouble() - 0.5), d * (f.r.nextDouble() - 0.5),
+                    d * (f.r.nextDouble() - 0.5));
+            f.checkPairs();
+            f.move(1);
+            f.checkPairs();
+        }
+        assertTrue(space.getExtent() > extent);
+        assertEquals(Math.scalb(4, -4), space.getMinExtent(), 0);
+    }
+}
@@ -0,0 +1,150 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DContact;
+import org.ode4j.ode.DContactBuffer;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DGeom.DNearCallback;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DMisc;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+import org.ode4j.ode.threading.task.SameThreadTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+public class DxQuickStepColoredSORTest {
+
+    private static final int N = 10;
+    private static final int LAYERS = 3;
+    private static final int STEPS = 20;
+    private static final int MAX_CONTACTS = 4;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    /**
+     * Steps a pile of boxes that touch their neighbours, so that all of them form a
+     * single large island.
+     * @return final box positions
+     */
+    private static double[] simulate(boolean colored, TaskExecutor executor) {
+        DMisc.dRandSetSeed(0);
+        final DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setQuickStepColoredSOR(colored);
+        world.setTaskExecutor(executor);
+        DSpace space = OdeHelper.createSimpleSpace();
+        final DJointGroup contactGroup = OdeHelper.createJointGroup();
+        OdeHelper.createPlane(space, 0, 0, 1, 0);
+        DMass m = OdeHelper.createMass();
+        m.setBox(1, 1, 1, 1);
+        DBody[] bodies = new DBody[N * N * LAYERS];
+        int k = 0;
+        for (int z = 0; z < LAYERS; z++) {
+            for (int x = 0; x < N; x++) {
+                for (int y = 0; y < N; y++) {
+                    DBody b = OdeHelper.createBody(world);
+                    b.setMass(m);
+                    b.setPosition(x * 0.999, y * 0.999, 0.499 + z * 0.999);
+                    DBox box = OdeHelper.createBox(space, 1, 1, 1);
+                    box.setBody(b);
+                    bodies[k++] = b;
+                }
+            }
+        }
+        DNearCallback nearCallback = new DNearCallback() {
+            @Override
+            public void call(Object data, DGeom o1, DGeom o2) {
+                DContactBuffer contacts = new DContactBuffer(MAX_CONTACTS);
+                int n = OdeHelper.collide(o1, o2, MAX_CONTACTS, contacts.getGeomBuffer());
+                for (int i = 0; i < n; i++) {
+                    DContact contact = contacts.get(i);
+                    contact.surface.mode = 0;
+                    contact.surface.mu = 0.5;
+                    DJoint c = OdeHelper.createContactJoint(world, contactGroup, contact);
+                    c.attach(o1.getBody(), o2.getBody());
+                }
+            }
+        };
+        for (int s = 0; s < STEPS; s++) {
+            space.collide(null, nearCallback);
+            world.quickStep(0.01);
+            contactGroup.empty();
+        }
+        double[] result = new double[bodies.length * 3];
+        for (int i = 0; i < bodies.length; i++) {
+            result[i * 3] = bodies[i].getPosition().get0();
+            result[i * 3 + 1] = bodies[i].getPosition().get1();
+            result[i * 3 + 2] = bodies[i].getPosition().get2();
+        }
+        contactGroup.destroy();
+        space.destroy();
+        world.destroy();
+        return result;
+    }
+
+    @Test
+    public void testParallelSameAsSequential() {
+        double[] expected = simulate(true, new SameThreadTaskExecutor());
+        // Rows of a color are independent, so the number of threads does not matter
+        double[] actual = simulate(true, new ForkJoinTaskExecutor(4));
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 0);
+        }
+    }
+
+    @Test
+    public void testPileStaysAtRest() {
+        double[] uncolored = simulate(false, new SameThreadTaskExecutor());
+        double[] colored = simulate(true, new ForkJoinTaskExecutor(4));
+        for (int i = 0; i < colored.length; i++) {
+            assertFalse(Double.isNaN(colored[i]));
+            assertEquals(uncolored[i], colored[i], 0.02);
+        }
+    }
+
+    @Test
+    public void testSetting() {
+        DWorld world = OdeHelper.createWorld();
+        assertFalse(world.getQuickStepColoredSOR());
+        world.setQuickStepColoredSOR(true);
+        assertTrue(world.getQuickStepColoredSOR());
+        world.destroy();
+    }
+
+}
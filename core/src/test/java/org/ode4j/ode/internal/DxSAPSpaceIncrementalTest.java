@@ -0,0 +1,103 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Incremental SAP space specific cases, see {@link DxSpaceCollideTest} for
+ * the tests of all spaces.
+ */
+public class DxSAPSpaceIncrementalTest {
+
+    private static final int NUM = 60;
+
+    private DxSAPSpaceIncremental space;
+    private SpaceFixture f;
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        space = (DxSAPSpaceIncremental) OdeHelper.createSapSpaceIncremental(null, DSapSpace.AXES.XZY);
+        f = new SpaceFixture(space, NUM, 17, 4);
+    }
+
+    @After
+    public void tearDown() {
+        space.destroy();
+    }
+
+    /**
+     * Check the pairs and the number of overlapping pairs of finite AABBs.
+     */
+    private void checkPairs() {
+        f.checkPairs();
+        int finitePairs = 0;
+        for (int i = 0; i < NUM; i++) {
+            for (int j = i + 1; j < NUM; j++) {
+                if (!f.geoms[i].getAABB().isDisjoint(f.geoms[j].getAABB())) {
+                    finitePairs++;
+                }
+            }
+        }
+        assertEquals(finitePairs, space.getNumOverlappingPairs());
+    }
+
+    @Test
+    public void testSmallMovements() {
+        for (int step = 0; step < 200; step++) {
+            f.move(0.2);
+            checkPairs();
+        }
+    }
+
+    @Test
+    public void testJumpsAndTouching() {
+        for (int step = 0; step < 100; step++) {
+            // jump across the whole space
+            int i = f.r.nextInt(NUM);
+            f.geoms[i].setPosition(10 * f.r.nextDouble(), 10 * f.r.nextDouble(), 4 * f.r.nextDouble() - 1);
+            // place a box exactly next to another one, touching AABBs overlap
+            int j = f.r.nextInt(NUM);
+            int k = f.r.nextInt(NUM);
+            if (j != k) {
+                DAABBC a = f.geoms[j].getAABB();
+                double half = (f.geoms[k].getAABB().getMax0() - f.geoms[k].getAABB().getMin0()) / 2;
+                f.geoms[k].setPosition(a.getMax0() + half, a.getMin1(), a.getMin2());
+            }
+            checkPairs();
+        }
+    }
+}
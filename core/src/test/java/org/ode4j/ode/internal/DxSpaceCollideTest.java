@@ -0,0 +1,114 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.ode4j.math.DVector3;
+import org.ode4j.ode.DBhvSpace;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DSapSpace;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Compare the pairs reported by every space class with all pairs of
+ * overlapping AABBs while geoms move, are disabled, added and removed.
+ */
+@RunWith(Parameterized.class)
+public class DxSpaceCollideTest {
+
+    private static final int NUM = 80;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> spaces() {
+        return Arrays.asList(new Object[][] {
+            { "simple", (Supplier<DSpace>) OdeHelper::createSimpleSpace },
+            { "hash", (Supplier<DSpace>) OdeHelper::createHashSpace },
+            { "quadtree", (Supplier<DSpace>) () -> OdeHelper.createQuadTreeSpace(null,
+                    new DVector3(5, 5, 0), new DVector3(10, 10, 0), 5) },
+            { "sap", (Supplier<DSpace>) () -> OdeHelper.createSapSpace(DSapSpace.AXES.XZY) },
+            { "sapIncremental", (Supplier<DSpace>) () -> OdeHelper.createSapSpaceIncremental(null,
+                    DSapSpace.AXES.XZY) },
+            { "bvh", (Supplier<DSpace>) () -> OdeHelper.createBHVSpace(null, 4, DBhvSpace.BUILD.SAH, 0.2, 0) },
+            // a small root, most boxes are outside of it
+            { "octree", (Supplier<DSpace>) () -> OdeHelper.createOctreeSpace(null, new DVector3(5, 5, 5), 4, 4) },
+        });
+    }
+
+    private final Supplier<DSpace> factory;
+    private SpaceFixture f;
+
+    public DxSpaceCollideTest(String name, Supplier<DSpace> factory) {
+        this.factory = factory;
+    }
+
+    @BeforeClass
+    public static void init() {
+        OdeHelper.initODE2(0);
+    }
+
+    @Before
+    public void setUp() {
+        f = new SpaceFixture(factory.get(), NUM, 23, 4);
+    }
+
+    @After
+    public void tearDown() {
+        f.space.destroy();
+    }
+
+    @Test
+    public void testMovements() {
+        for (int step = 0; step < 200; step++) {
+            f.move(step % 10 == 0 ? 8 : 0.2);
+            f.checkPairs();
+        }
+    }
+
+    @Test
+    public void testEnableAddRemove() {
+        f.enableAddRemove(100);
+    }
+
+    @Test
+    public void testCollide2() {
+        for (int step = 0; step < 50; step++) {
+            DBox b = OdeHelper.createBox(null, 3 * f.r.nextDouble(), 3 * f.r.nextDouble(), 3 * f.r.nextDouble());
+            b.setPosition(10 * f.r.nextDouble(), 10 * f.r.nextDouble(), 4 * f.r.nextDouble() - 1);
+            b.setData(-1);
+            f.checkCollide2(b);
+            b.destroy();
+            f.checkCollide2(f.geoms[f.r.nextInt(NUM)]);
+            f.move(0.5);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.ode4j.ode.DAABBC;
+import org.ode4j.ode.DBox;
+import org.ode4j.ode.DGeom;
+import org.ode4j.ode.DSpace;
+import org.ode4j.ode.OdeHelper;
+
+/**
+ * Random boxes and a plane in a space, the pairs reported by the space are
+ * compared with all pairs of overlapping AABBs.
+ */
+class SpaceFixture {
+
+    final DSpace space;
+    /** The boxes, followed by the plane. */
+    final DGeom[] geoms;
+    final int numBoxes;
+    final Random r;
+    private final double height;
+    private final boolean[][] reported;
+
+    /**
+     * @param space empty space
+     * @param numBoxes number of boxes
+     * @param seed seed of the random positions and sizes
+     * @param height the boxes are placed in 10 x 10 x height
+     */
+    SpaceFixture(DSpace space, int numBoxes, long seed, double height) {
+        this.space = space;
+        this.numBoxes = numBoxes;
+        this.r = new Random(seed);
+        this.height = height;
+        geoms = new DGeom[numBoxes + 1];
+        reported = new boolean[numBoxes + 1][numBoxes + 1];
+        for (int i = 0; i < numBoxes; i++) {
+            geoms[i] = createBox(i);
+        }
+        // a plane has an infinite AABB
+        geoms[numBoxes] = OdeHelper.createPlane(space, 0, 0, 1, 0.5);
+        geoms[numBoxes].setData(numBoxes);
+    }
+
+    DBox createBox(int i) {
+        // sizes over several levels
+        double size = 0.05 + 4 * r.nextDouble() * r.nextDouble();
+        DBox b = OdeHelper.createBox(space, size, size * (0.5 + r.nextDouble()), size);
+        b.setPosition(10 * r.nextDouble(), 10 * r.nextDouble(), height * r.nextDouble() - 1);
+        b.setData(i);
+        return b;
+    }
+
+    /**
+     * Replace box i with another geom.
+     */
+    void replace(int i, DGeom g) {
+        geoms[i].destroy();
+        g.setData(i);
+        geoms[i] = g;
+    }
+
+    private static boolean isInfinite(DAABBC aabb) {
+        return aabb.len0() == Double.POSITIVE_INFINITY || aabb.len1() == Double.POSITIVE_INFINITY
+                || aabb.len2() == Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Check the pair of geoms i and j. Like in DxSAPSpace, a space may test
+     * geoms with infinite AABBs against all other geoms.
+     */
+    private void checkPair(String msg, int i, DGeom g, boolean hit) {
+        boolean enabled = geoms[i].isEnabled() && g.isEnabled();
+        if (enabled && !geoms[i].getAABB().isDisjoint(g.getAABB())) {
+            assertTrue(msg, hit);
+        } else if (!enabled || !(isInfinite(geoms[i].getAABB()) || isInfinite(g.getAABB()))) {
+            assertFalse(msg, hit);
+        }
+    }
+
+    /**
+     * Compare the pairs reported by collide() with all pairs of overlapping AABBs.
+     */
+    void checkPairs() {
+        for (boolean[] row : reported) {
+            Arrays.fill(row, false);
+        }
+        space.collide(null, (data, o1, o2) -> {
+            int i = (Integer) o1.getData();
+            int j = (Integer) o2.getData();
+            assertFalse("reported twice: " + i + "/" + j, reported[i][j]);
+            reported[i][j] = true;
+            reported[j][i] = true;
+        });
+        for (int i = 0; i < geoms.length; i++) {
+            for (int j = i + 1; j < geoms.length; j++) {
+                checkPair("pair " + i + "/" + j, i, geoms[j], reported[i][j]);
+            }
+        }
+    }
+
+    /**
+     * Compare the geoms reported by collide2() with all overlapping AABBs.
+     */
+    void checkCollide2(DGeom g) {
+        boolean[] hit = new boolean[geoms.length];
+        OdeHelper.spaceCollide2(space, g, null, (data, o1, o2) -> {
+            DGeom other = o1 == g ? o2 : o1;
+            int i = (Integer) other.getData();
+            assertFalse("reported twice: " + i, hit[i]);
+            hit[i] = true;
+        });
+        for (int i = 0; i < geoms.length; i++) {
+            if (geoms[i] != g) {
+                checkPair("geom " + i, i, g, hit[i]);
+            }
+        }
+    }
+
+    /**
+     * Move three quarters of the boxes by up to distance / 2 along each
+     * axis.
+     */
+    void move(double distance) {
+        for (int i = 0; i < numBoxes; i++) {
+            if (r.nextInt(4) == 0) {
+                continue;
+            }
+            double x = geoms[i].getPosition().get0() + distance * (r.nextDouble() - 0.5);
+            double y = geoms[i].getPosition().get1() + distance * (r.nextDouble() - 0.5);
+            double z = geoms[i].getPosition().get2() + distance * (r.nextDouble() - 0.5);
+            geoms[i].setPosition(x, y, z);
+        }
+    }
+
+    /**
+     * Toggle a random box and replace another one, checking the pairs after
+     * every change.
+     */
+    void enableAddRemove(int steps) {
+        for (int step = 0; step < steps; step++) {
+            int i = r.nextInt(numBoxes);
+            if (geoms[i].isEnabled()) {
+                geoms[i].disable();
+            } else {
+                geoms[i].enable();
+            }
+            checkPairs();
+            int j = r.nextInt(numBoxes);
+            geoms[j].destroy();
+            geoms[j] = createBox(j);
+            checkPairs();
+        }
+        assertEquals(numBoxes + 1, space.getNumGeoms());
+    }
+}
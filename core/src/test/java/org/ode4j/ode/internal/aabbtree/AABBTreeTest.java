@@ -0,0 +1,242 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J                                               *
+ * Copyright (C) 2017 Piotr Piastucki, Tilmann Zaeschke                  *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.aabbtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.ode4j.ode.DBhvSpace.BUILD;
+
+public class AABBTreeTest {
+
+    private static final int NUM = 300;
+
+    private static class Obj {
+        final int id;
+        final double[] extents = new double[6];
+        int index = AABBTree.UNDEFINED_INDEX;
+
+        Obj(int id) {
+            this.id = id;
+        }
+
+        void set(double x, double y, double z, double size) {
+            extents[0] = x;
+            extents[1] = y;
+            extents[2] = z;
+            extents[3] = x + size;
+            extents[4] = y + size;
+            extents[5] = z + size;
+        }
+    }
+
+    private static class Handler implements ExternalObjectHandler<Obj> {
+        @Override
+        public void setSpatialIndex(Obj object, int index) {
+            object.index = index;
+        }
+
+        @Override
+        public int getSpatialIndex(Obj object) {
+            return object.index;
+        }
+
+        @Override
+        public boolean isEnabled(Obj object) {
+            return true;
+        }
+
+        @Override
+        public boolean isStatic(Obj object) {
+            return false;
+        }
+    }
+
+    private static boolean overlap(double[] a, double[] b) {
+        return a[0] <= b[3] && a[1] <= b[4] && a[2] <= b[5] && a[3] >= b[0] && a[4] >= b[1] && a[5] >= b[2];
+    }
+
+    /**
+     * All overlapping pairs must be reported exactly once. Leaves that have
+     * shrunk may still report pairs with their old bounds.
+     */
+    private static void checkPairs(AABBTree<Obj> tree, Obj[] objs) {
+        boolean[][] reported = new boolean[objs.length][objs.length];
+        tree.getOverlappingPairs((o1, o2) -> {
+            assertFalse(reported[o1.id][o2.id]);
+            reported[o1.id][o2.id] = true;
+            reported[o2.id][o1.id] = true;
+        });
+        for (int i = 0; i < objs.length; i++) {
+            for (int j = i + 1; j < objs.length; j++) {
+                if (overlap(objs[i].extents, objs[j].extents)) {
+                    assertTrue(i + "/" + j, reported[i][j]);
+                }
+            }
+        }
+    }
+
+    private static void checkQuery(AABBTree<Obj> tree, Obj[] objs, double[] query) {
+        boolean[] reported = new boolean[objs.length];
+        tree.getOverlappingNodes(query, o -> {
+            assertFalse(reported[o.id]);
+            reported[o.id] = true;
+        });
+        for (Obj o : objs) {
+            if (overlap(o.extents, query)) {
+                assertTrue(String.valueOf(o.id), reported[o.id]);
+            }
+        }
+    }
+
+    private static void run(BUILD build, int numNodesLeaf) {
+        Random r = new Random(7);
+        AABBTree<Obj> tree = new AABBTree<>(new Handler(), numNodesLeaf, build, 0.1);
+        Obj[] objs = new Obj[NUM];
+        for (int i = 0; i < NUM; i++) {
+            objs[i] = new Obj(i);
+            // clusters of different density
+            double spread = i % 3 == 0 ? 50 : 5;
+            objs[i].set(r.nextDouble() * spread, r.nextDouble() * spread, r.nextDouble() * 2, 0.2 + r.nextDouble());
+            tree.add(objs[i], objs[i].extents);
+        }
+        tree.finalizeUpdate();
+        checkPairs(tree, objs);
+
+        double[] query = new double[6];
+        for (int step = 0; step < 100; step++) {
+            // most objects move a little, some jump
+            for (Obj o : objs) {
+                if (r.nextInt(3) == 0) {
+                    continue;
+                }
+                double d = r.nextInt(50) == 0 ? 20 : 0.3;
+                double size = o.extents[3] - o.extents[0];
+                o.set(o.extents[0] + d * (r.nextDouble() - 0.5), o.extents[1] + d * (r.nextDouble() - 0.5),
+                        o.extents[2] + 0.1 * (r.nextDouble() - 0.5), size);
+                tree.update(o, o.extents);
+            }
+            tree.finalizeUpdate();
+            checkPairs(tree, objs);
+            double x = r.nextDouble() * 50;
+            double y = r.nextDouble() * 50;
+            query[0] = x;
+            query[1] = y;
+            query[2] = -1;
+            query[3] = x + 5;
+            query[4] = y + 5;
+            query[5] = 3;
+            checkQuery(tree, objs, query);
+        }
+
+        // remove and add some objects
+        for (int i = 0; i < NUM; i += 7) {
+            tree.remove(objs[i]);
+        }
+        for (int i = 0; i < NUM; i += 7) {
+            tree.add(objs[i], objs[i].extents);
+        }
+        tree.finalizeUpdate();
+        checkPairs(tree, objs);
+    }
+
+    private static Obj[] createObjs(int num, Random r) {
+        Obj[] objs = new Obj[num];
+        for (int i = 0; i < num; i++) {
+            objs[i] = new Obj(i);
+            objs[i].set(r.nextDouble() * 1000, r.nextDouble() * 1000, r.nextDouble() * 20, 0.5 + r.nextDouble());
+        }
+        return objs;
+    }
+
+    /**
+     * A parallel build must create the same tree as a sequential build.
+     */
+    private static void runParallel(BUILD build) {
+        // above Sort.PARALLEL_THRESHOLD
+        int num = 20000;
+        Obj[] objs1 = createObjs(num, new Random(3));
+        Obj[] objs2 = createObjs(num, new Random(3));
+        AABBTree<Obj> tree1 = new AABBTree<>(new Handler(), 4, build, 0.1);
+        AABBTree<Obj> tree2 = new AABBTree<>(new Handler(), 4, build, 0.1);
+        tree2.setParallelBuild(true);
+        for (int i = 0; i < num; i++) {
+            tree1.add(objs1[i], objs1[i].extents);
+            tree2.add(objs2[i], objs2[i].extents);
+        }
+        tree1.finalizeUpdate();
+        tree2.finalizeUpdate();
+        for (int i = 0; i < num; i++) {
+            assertEquals(objs1[i].index, objs2[i].index);
+        }
+        Random r = new Random(5);
+        double[] query = new double[6];
+        for (int i = 0; i < 20; i++) {
+            double x = r.nextDouble() * 1000;
+            double y = r.nextDouble() * 1000;
+            query[0] = x;
+            query[1] = y;
+            query[2] = 0;
+            query[3] = x + 50;
+            query[4] = y + 50;
+            query[5] = 10;
+            checkQuery(tree2, objs2, query);
+        }
+    }
+
+    @Test
+    public void testLowQuality() {
+        run(BUILD.LOW_QUALITY, 4);
+    }
+
+    @Test
+    public void testHighQuality() {
+        run(BUILD.HIGH_QUALITY, 4);
+    }
+
+    @Test
+    public void testSAH() {
+        run(BUILD.SAH, 4);
+        run(BUILD.SAH, 1);
+        run(BUILD.SAH, 16);
+    }
+
+    @Test
+    public void testMorton() {
+        run(BUILD.MORTON, 4);
+        run(BUILD.MORTON, 1);
+    }
+
+    @Test
+    public void testParallelBuild() {
+        runParallel(BUILD.LOW_QUALITY);
+        runParallel(BUILD.HIGH_QUALITY);
+        runParallel(BUILD.SAH);
+        runParallel(BUILD.MORTON);
+    }
+}
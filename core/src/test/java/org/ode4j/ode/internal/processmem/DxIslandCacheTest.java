@@ -0,0 +1,224 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.processmem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DHingeJoint;
+import org.ode4j.ode.DJoint;
+import org.ode4j.ode.DJointGroup;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxWorld;
+
+public class DxIslandCacheTest {
+
+    private static final int BODIES = 40;
+    private static final int STEPS = 30;
+
+    /**
+     * Steps a row of bodies whose links change in every step: a joint group of
+     * temporary links is emptied and recreated, permanent links are destroyed,
+     * bodies are destroyed and joints are disabled and enabled again.
+     */
+    private static double[] simulate(boolean persistent) {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.2);
+        DBody[] bodies = new DBody[BODIES];
+        for (int i = 0; i < BODIES; i++) {
+            bodies[i] = OdeHelper.createBody(world);
+            bodies[i].setMass(m);
+            bodies[i].setPosition(i * 0.5, 0.01 * (i % 5), 10);
+        }
+        DJoint[] links = new DJoint[BODIES - 1];
+        for (int i = 0; i < BODIES - 1; i++) {
+            DBallJoint link = OdeHelper.createBallJoint(world);
+            link.attach(bodies[i], bodies[i + 1]);
+            link.setAnchor(i * 0.5 + 0.25, 0, 10);
+            links[i] = link;
+        }
+        // Enabling the islands with existing bodies and joints builds them from scratch
+        world.setPersistentIslands(persistent);
+        DBody late = OdeHelper.createBody(world);
+        late.setMass(m);
+        late.setPosition(-1, 0, 10);
+        DJointGroup group = OdeHelper.createJointGroup();
+        for (int s = 0; s < STEPS; s++) {
+            group.empty();
+            for (int i = s % 3; i < BODIES - 3; i += 7) {
+                if (bodies[i] != null && bodies[i + 3] != null) {
+                    DBallJoint temp = OdeHelper.createBallJoint(world, group);
+                    temp.attach(bodies[i], bodies[i + 3]);
+                    temp.setAnchor(i * 0.5 + 0.75, 0, 10);
+                }
+                if (bodies[i] != null) {
+                    // link to the static environment
+                    DBallJoint fixed = OdeHelper.createBallJoint(world, group);
+                    fixed.attach(bodies[i], null);
+                    fixed.setAnchor(i * 0.5, 0, 10);
+                }
+            }
+            if (s % 4 == 1) {
+                int i = (s * 5) % (BODIES - 1);
+                if (links[i] != null) {
+                    links[i].destroy();
+                    links[i] = null;
+                }
+            }
+            if (s == 5) {
+                links[10].disable();
+                links[20].disable();
+            }
+            if (s == 12) {
+                links[20].enable();
+                bodies[15].destroy();
+                bodies[15] = null;
+                links[14] = null;
+                links[15] = null;
+                DBallJoint join = OdeHelper.createBallJoint(world);
+                join.attach(late, bodies[0]);
+                join.setAnchor(-0.5, 0, 10);
+            }
+            world.step(0.01);
+        }
+        double[] result = new double[BODIES * 3];
+        for (int i = 0; i < BODIES; i++) {
+            if (bodies[i] != null) {
+                result[i * 3] = bodies[i].getPosition().get0();
+                result[i * 3 + 1] = bodies[i].getPosition().get1();
+                result[i * 3 + 2] = bodies[i].getPosition().get2();
+            }
+        }
+        group.destroy();
+        world.destroy();
+        return result;
+    }
+
+    @Test
+    public void testSameResult() {
+        double[] expected = simulate(false);
+        double[] actual = simulate(true);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6);
+        }
+    }
+
+    /**
+     * A joint that is disabled after a step must not be used by the stepper.
+     */
+    private static double[] simulateDisabledJoint(boolean persistent) {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setPersistentIslands(persistent);
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.2);
+        DBody[] bodies = new DBody[4];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = OdeHelper.createBody(world);
+            bodies[i].setMass(m);
+            bodies[i].setPosition(i * 0.5, 0, 10);
+        }
+        for (int i = 0; i < bodies.length - 1; i++) {
+            DBallJoint link = OdeHelper.createBallJoint(world);
+            link.attach(bodies[i], bodies[i + 1]);
+            link.setAnchor(i * 0.5 + 0.25, 0, 10);
+        }
+        DBallJoint last = OdeHelper.createBallJoint(world);
+        last.attach(bodies[0], bodies[3]);
+        last.setAnchor(0.75, 0, 10);
+        // comes after the disabled joint in the next step
+        DHingeJoint hinge = OdeHelper.createHingeJoint(world);
+        hinge.attach(bodies[1], null);
+        hinge.setAnchor(0.5, 0, 10);
+        hinge.setAxis(0, 1, 0);
+        world.step(0.01);
+        last.disable();
+        for (int s = 0; s < 50; s++) {
+            world.step(0.01);
+        }
+        double[] result = new double[bodies.length * 3];
+        for (int i = 0; i < bodies.length; i++) {
+            for (int k = 0; k < 3; k++) {
+                result[i * 3 + k] = bodies[i].getPosition().get(k);
+            }
+        }
+        world.destroy();
+        return result;
+    }
+
+    @Test
+    public void testDisabledJoint() {
+        double[] expected = simulateDisabledJoint(false);
+        double[] actual = simulateDisabledJoint(true);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6);
+        }
+    }
+
+    @Test
+    public void testSplitAndMerge() {
+        DxWorld world = (DxWorld) OdeHelper.createWorld();
+        world.setPersistentIslands(true);
+        assertTrue(world.getPersistentIslands());
+        DxIslandCache cache = world.GetIslandCache();
+        DBody[] bodies = new DBody[4];
+        DJoint[] links = new DJoint[3];
+        for (int i = 0; i < bodies.length; i++) {
+            bodies[i] = OdeHelper.createBody(world);
+        }
+        assertEquals(4, cache.getIslandCount());
+        for (int i = 0; i < links.length; i++) {
+            links[i] = OdeHelper.createBallJoint(world);
+            links[i].attach(bodies[i], bodies[i + 1]);
+        }
+        assertEquals(1, cache.getIslandCount());
+        // Links to the environment do not change the islands
+        OdeHelper.createBallJoint(world).attach(bodies[0], null);
+        assertEquals(1, cache.getIslandCount());
+        links[1].destroy();
+        assertEquals(2, cache.getIslandCount());
+        links[0].disable();
+        assertEquals(3, cache.getIslandCount());
+        links[0].enable();
+        assertEquals(2, cache.getIslandCount());
+        bodies[3].destroy();
+        assertEquals(2, cache.getIslandCount());
+        bodies[2].destroy();
+        assertEquals(1, cache.getIslandCount());
+
+        world.setPersistentIslands(false);
+        assertFalse(world.getPersistentIslands());
+        assertNull(world.GetIslandCache());
+        world.destroy();
+    }
+
+}
@@ -0,0 +1,129 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.processmem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.threading.task.ForkJoinTaskExecutor;
+import org.ode4j.ode.threading.task.TaskExecutor;
+
+public class DxParallelIslandsBuilderTest {
+
+    private static final int CHAINS = 1500;
+    private static final int CHAIN_LENGTH = 4;
+
+    private static DBody[] createChains(DWorld world) {
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.2);
+        DBody[] bodies = new DBody[CHAINS * CHAIN_LENGTH];
+        for (int c = 0; c < CHAINS; c++) {
+            DBody prev = null;
+            for (int i = 0; i < CHAIN_LENGTH; i++) {
+                DBody b = OdeHelper.createBody(world);
+                b.setMass(m);
+                b.setPosition(c * 2, i * 0.5, 10 + 0.01 * (c % 7));
+                DBallJoint joint = OdeHelper.createBallJoint(world);
+                joint.attach(b, prev);
+                joint.setAnchor(c * 2, i * 0.5 - 0.25, 10);
+                bodies[c * CHAIN_LENGTH + i] = b;
+                prev = b;
+            }
+            // Every third chain is asleep, every ninth only partially asleep
+            if (c % 3 == 0) {
+                for (int i = 0; i < CHAIN_LENGTH; i++) {
+                    if (c % 9 != 0 || i > 0) {
+                        bodies[c * CHAIN_LENGTH + i].disable();
+                    }
+                }
+            }
+        }
+        return bodies;
+    }
+
+    private static double[] simulate(boolean parallel, TaskExecutor executor) {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setParallelIslandSearch(parallel);
+        if (executor != null) {
+            world.setTaskExecutor(executor);
+        }
+        DBody[] bodies = createChains(world);
+        // Step instead of QuickStep, QuickStep's results depend on the order of the joints
+        for (int s = 0; s < 10; s++) {
+            world.step(0.01);
+        }
+        double[] result = new double[bodies.length * 4];
+        for (int i = 0; i < bodies.length; i++) {
+            result[i * 4] = bodies[i].getPosition().get0();
+            result[i * 4 + 1] = bodies[i].getPosition().get1();
+            result[i * 4 + 2] = bodies[i].getPosition().get2();
+            result[i * 4 + 3] = bodies[i].isEnabled() ? 1 : 0;
+        }
+        world.destroy();
+        return result;
+    }
+
+    private static void assertSameResult(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-6);
+        }
+    }
+
+    @Test
+    public void testSameThread() {
+        assertSameResult(simulate(false, null), simulate(true, null));
+    }
+
+    @Test
+    public void testForkJoin() {
+        assertSameResult(simulate(false, null), simulate(true, new ForkJoinTaskExecutor(4)));
+    }
+
+    @Test
+    public void testPartiallyDisabledIslandIsEnabled() {
+        DWorld world = OdeHelper.createWorld();
+        world.setParallelIslandSearch(true);
+        assertTrue(world.getParallelIslandSearch());
+        DBody[] bodies = createChains(world);
+        world.quickStep(0.01);
+        // chain 0 had one enabled body, so the whole chain is enabled again
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            assertTrue(bodies[i].isEnabled());
+        }
+        // chain 3 was asleep and stays asleep
+        for (int i = 0; i < CHAIN_LENGTH; i++) {
+            assertFalse(bodies[3 * CHAIN_LENGTH + i].isEnabled());
+        }
+        world.destroy();
+    }
+
+}
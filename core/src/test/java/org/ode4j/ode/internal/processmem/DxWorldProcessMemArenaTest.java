@@ -0,0 +1,138 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.internal.processmem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+import org.ode4j.ode.internal.DxWorld;
+import org.ode4j.ode.internal.processmem.DxUtil.BlockPointer;
+
+public class DxWorldProcessMemArenaTest {
+
+    private static DxWorldProcessMemArena createArena() {
+        return DxWorldProcessMemArena.ReallocateMemArena(null, 1024,
+                DxUtil.g_WorldProcessMallocMemoryManager, 1.2, 0);
+    }
+
+    @Test
+    public void testArraysAreReusedAndCleared() {
+        DxWorldProcessMemArena arena = createArena();
+        double[] d = arena.AllocateArrayDReal(10);
+        int[] i = arena.AllocateArrayInt(5);
+        d[3] = 1;
+        i[4] = 2;
+
+        arena.ResetState();
+        assertSame(d, arena.AllocateArrayDReal(8));
+        assertSame(i, arena.AllocateArrayInt(5));
+        assertEquals(0, d[3], 0);
+        assertEquals(0, i[4]);
+
+        // a larger request replaces the block, the new array is the high-water mark
+        arena.ResetState();
+        double[] d2 = arena.AllocateArrayDReal(11);
+        assertNotSame(d, d2);
+        assertTrue(d2.length >= 11);
+        arena.ResetState();
+        assertSame(d2, arena.AllocateArrayDReal(3));
+    }
+
+    @Test
+    public void testRestoreState() {
+        DxWorldProcessMemArena arena = createArena();
+        double[] a = arena.AllocateArrayDReal(4);
+        BlockPointer state = arena.SaveState();
+        double[] b = arena.AllocateArrayDReal(4);
+        assertNotSame(a, b);
+        arena.RestoreState(state);
+        assertSame(b, arena.AllocateArrayDReal(4));
+        // a different type of allocation at the same position gets its own array
+        arena.RestoreState(state);
+        int[] c = arena.AllocateArrayInt(4);
+        assertArrayEquals(new int[c.length], c);
+    }
+
+    @Test
+    public void testObjectArrays() {
+        DxWorldProcessMemArena.ObjectArrayFactory<StringBuilder> factory =
+                new DxWorldProcessMemArena.ObjectArrayFactory<StringBuilder>() {
+            @Override
+            public StringBuilder[] newArray(int size) {
+                return new StringBuilder[size];
+            }
+            @Override
+            public StringBuilder newElement() {
+                return new StringBuilder();
+            }
+        };
+        DxWorldProcessMemArena arena = createArena();
+        StringBuilder[] a = arena.AllocateArrayOfObjects(3, factory);
+        StringBuilder first = a[0];
+        arena.ResetState();
+        StringBuilder[] b = arena.AllocateArrayOfObjects(6, factory);
+        // elements are kept when the array grows
+        assertSame(first, b[0]);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(b[i] != null);
+        }
+    }
+
+    @Test
+    public void testStepperArenaIsKeptAcrossSteps() {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.5);
+        DBody prev = null;
+        for (int i = 0; i < 10; i++) {
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i, 0, 5);
+            DBallJoint j = OdeHelper.createBallJoint(world);
+            j.attach(b, prev);
+            j.setAnchor(i - 0.5, 0, 5);
+            prev = b;
+        }
+        world.quickStep(0.01);
+        DxWorldProcessContext context = ((DxWorld) world).UnsafeGetWorldProcessingContext();
+        DxWorldProcessMemArena stepperArena = context.GetStepperArenasList();
+        DxWorldProcessMemArena islandsArena = context.GetIslandsMemArena();
+        for (int i = 0; i < 5; i++) {
+            world.quickStep(0.01);
+            world.step(0.01);
+        }
+        assertSame(stepperArena, context.GetStepperArenasList());
+        assertSame(islandsArena, context.GetIslandsMemArena());
+        world.destroy();
+    }
+}
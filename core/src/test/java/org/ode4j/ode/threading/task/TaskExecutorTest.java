@@ -0,0 +1,187 @@
+/*************************************************************************
+ *                                                                       *
+ * Open Dynamics Engine 4J, Copyright (C) 2009-2023 Tilmann Zaeschke     *
+ * All rights reserved.  Email: ode4j@gmx.de   Web: www.ode4j.org        *
+ *                                                                       *
+ * This library is free software; you can redistribute it and/or         *
+ * modify it under the terms of EITHER:                                  *
+ *   (1) The GNU Lesser General Public License as published by the Free  *
+ *       Software Foundation; either version 2.1 of the License, or (at  *
+ *       your option) any later version. The text of the GNU Lesser      *
+ *       General Public License is included with this library in the     *
+ *       file LICENSE.TXT.                                               *
+ *   (2) The BSD-style license that is included with this library in     *
+ *       the file ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT.         *
+ *                                                                       *
+ * This library is distributed in the hope that it will be useful,       *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of        *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the files    *
+ * LICENSE.TXT, ODE-LICENSE-BSD.TXT and ODE4J-LICENSE-BSD.TXT for more   *
+ * details.                                                              *
+ *                                                                       *
+ *************************************************************************/
+package org.ode4j.ode.threading.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ode4j.ode.DBallJoint;
+import org.ode4j.ode.DBody;
+import org.ode4j.ode.DMass;
+import org.ode4j.ode.DWorld;
+import org.ode4j.ode.OdeHelper;
+
+public class TaskExecutorTest {
+
+    private static final int ISLANDS = 64;
+    private static final int STEPS = 50;
+
+    /**
+     * Steps a world of independent pendulum islands and returns the final
+     * body positions.
+     */
+    private static double[] simulate(TaskExecutor executor, boolean quickStep) {
+        DWorld world = OdeHelper.createWorld();
+        world.setGravity(0, 0, -9.81);
+        world.setTaskExecutor(executor);
+        DBody[] bodies = new DBody[ISLANDS * 2];
+        DMass m = OdeHelper.createMass();
+        m.setSphere(1, 0.5);
+        for (int i = 0; i < ISLANDS; i++) {
+            DBody a = OdeHelper.createBody(world);
+            a.setMass(m);
+            a.setPosition(i * 3, 0, 5);
+            DBody b = OdeHelper.createBody(world);
+            b.setMass(m);
+            b.setPosition(i * 3 + 1, 0.1 * i, 5);
+            DBallJoint fixed = OdeHelper.createBallJoint(world);
+            fixed.attach(a, null);
+            fixed.setAnchor(i * 3, 0, 5);
+            DBallJoint link = OdeHelper.createBallJoint(world);
+            link.attach(a, b);
+            link.setAnchor(i * 3 + 0.5, 0, 5);
+            bodies[i * 2] = a;
+            bodies[i * 2 + 1] = b;
+        }
+        for (int s = 0; s < STEPS; s++) {
+            if (quickStep) {
+                world.quickStep(0.01);
+            } else {
+                world.step(0.01);
+            }
+        }
+        double[] result = new double[bodies.length * 3];
+        for (int i = 0; i < bodies.length; i++) {
+            result[i * 3] = bodies[i].getPosition().get0();
+            result[i * 3 + 1] = bodies[i].getPosition().get1();
+            result[i * 3 + 2] = bodies[i].getPosition().get2();
+        }
+        world.destroy();
+        return result;
+    }
+
+    private static void assertSameResult(TaskExecutor executor) {
+        for (boolean quickStep : new boolean[] { true, false }) {
+            double[] expected = simulate(new SameThreadTaskExecutor(), quickStep);
+            double[] actual = simulate(executor, quickStep);
+            // QuickStep shuffles constraints with the shared random generator, so the
+            // order in which islands are processed causes small differences.
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], actual[i], 1e-4);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiThreadTaskExecutor() {
+        assertSameResult(new MultiThreadTaskExecutor(4));
+    }
+
+    @Test
+    public void testForkJoinTaskExecutor() {
+        assertSameResult(new ForkJoinTaskExecutor(4));
+    }
+
+    private static void assertReusable(TaskExecutor executor) {
+        final AtomicInteger subtaskRuns = new AtomicInteger();
+        final AtomicInteger groupRuns = new AtomicInteger();
+        TaskGroup group = executor.group("group", new Runnable() {
+            @Override
+            public void run() {
+                groupRuns.incrementAndGet();
+            }
+        });
+        Task[] subtasks = new Task[8];
+        for (int i = 0; i < subtasks.length; i++) {
+            subtasks[i] = group.subtask("subtask", new Runnable() {
+                @Override
+                public void run() {
+                    subtaskRuns.incrementAndGet();
+                }
+            });
+        }
+        for (int round = 1; round <= 10; round++) {
+            group.reset();
+            for (Task subtask : subtasks) {
+                subtask.reset();
+                subtask.submit();
+            }
+            group.submit();
+            group.awaitCompletion();
+            assertTrue(group.isCompleted());
+            assertEquals(round, groupRuns.get());
+            assertEquals(8 * round, subtaskRuns.get());
+        }
+    }
+
+    @Test
+    public void testTaskGraphReuse() {
+        assertReusable(new SameThreadTaskExecutor());
+        assertReusable(new MultiThreadTaskExecutor(4));
+        assertReusable(new ForkJoinTaskExecutor(4));
+    }
+
+    @Test
+    public void testVirtualThreadTaskExecutor() {
+        assumeTrue(VirtualThreadTaskExecutor.isSupported());
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(4);
+        try {
+            assertSameResult(executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVirtualThreadTaskExecutorAvailability() {
+        if (!VirtualThreadTaskExecutor.isSupported()) {
+            try {
+                new VirtualThreadTaskExecutor(4);
+                fail();
+            } catch (UnsupportedOperationException e) {
+                // expected before Java 21
+            }
+            return;
+        }
+        VirtualThreadTaskExecutor executor = new VirtualThreadTaskExecutor(4);
+        executor.shutdown();
+        TaskGroup group = executor.group("group", new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        try {
+            group.submit();
+            fail();
+        } catch (RejectedExecutionException e) {
+            // expected after shutdown
+        }
+    }
+
+}